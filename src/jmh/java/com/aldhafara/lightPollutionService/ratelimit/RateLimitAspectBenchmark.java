@@ -0,0 +1,130 @@
+package com.aldhafara.lightPollutionService.ratelimit;
+
+import com.aldhafara.lightPollutionService.exception.RateLimitException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link RateLimitAspect#rateLimit} on four threads, either all charging one client's bucket (contended) or
+ * each its own (uncontended). The admitting benchmarks run the aspect on a clock ten thousand times faster than
+ * real time, so buckets never run dry and the measured path is the one a well-behaved client takes;
+ * {@code rejected} freezes the clock to measure the cost of turning a flood away.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RateLimitAspectBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Aspects {
+        final RateLimitAspect fast;
+        final RateLimitAspect frozen;
+        final ProceedingJoinPoint joinPoint;
+        final RateLimited rateLimited;
+
+        public Aspects() {
+            MockEnvironment env = new MockEnvironment()
+                    .withProperty("ratelimit.requests", String.valueOf(TokenBucket.MAX_CAPACITY))
+                    .withProperty("ratelimit.durationSeconds", "1");
+            long origin = System.nanoTime();
+            fast = new RateLimitAspect(env, () -> (System.nanoTime() - origin) / 100L);
+            frozen = new RateLimitAspect(env, () -> 0L);
+            try {
+                Method method = Endpoint.class.getMethod("get");
+                rateLimited = method.getAnnotation(RateLimited.class);
+                joinPoint = joinPoint(method);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private static final AtomicInteger IDS = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setRemoteAddr("10.0.0." + IDS.incrementAndGet());
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SharedClient {
+        @Setup
+        public void setUp() {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setRemoteAddr("10.0.0.1");
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+    }
+
+    @Benchmark
+    public Object uncontended(Aspects aspects, Client client) throws Throwable {
+        return aspects.fast.rateLimit(aspects.joinPoint, aspects.rateLimited);
+    }
+
+    @Benchmark
+    public Object contended(Aspects aspects, SharedClient client) throws Throwable {
+        return aspects.fast.rateLimit(aspects.joinPoint, aspects.rateLimited);
+    }
+
+    @Benchmark
+    public Object rejected(Aspects aspects, SharedClient client) throws Throwable {
+        try {
+            return aspects.frozen.rateLimit(aspects.joinPoint, aspects.rateLimited);
+        } catch (RateLimitException e) {
+            return e;
+        }
+    }
+
+    private static ProceedingJoinPoint joinPoint(Method method) {
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(RateLimitAspectBenchmark.class.getClassLoader(),
+                new Class<?>[]{MethodSignature.class}, (proxy, invoked, args) -> switch (invoked.getName()) {
+                    case "getMethod" -> method;
+                    case "toShortString", "toString" -> "Endpoint.get()";
+                    default -> throw new UnsupportedOperationException(invoked.getName());
+                });
+        Object[] noArgs = new Object[0];
+        return (ProceedingJoinPoint) Proxy.newProxyInstance(RateLimitAspectBenchmark.class.getClassLoader(),
+                new Class<?>[]{ProceedingJoinPoint.class}, (proxy, invoked, args) -> switch (invoked.getName()) {
+                    case "getSignature" -> signature;
+                    case "getArgs" -> noArgs;
+                    case "proceed" -> "ok";
+                    case "toString" -> "execution(Endpoint.get())";
+                    default -> throw new UnsupportedOperationException(invoked.getName());
+                });
+    }
+
+    public static class Endpoint {
+        @RateLimited
+        public String get() {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.TiffByteSource;
+import com.aldhafara.lightPollutionService.raster.TiffDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header parsing and geo-reference extraction, separately and together, on bytes already in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoReferenceExtractorBenchmark {
+
+    @Param({"mock_average", "mock_mask", "synthetic"})
+    public String fixture;
+
+    private final ViirsGeoReferenceExtractor extractor = new ViirsGeoReferenceExtractor();
+    private TiffByteSource source;
+    private TiffDirectory directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        source = TiffByteSource.wrap(Files.readAllBytes(Path.of(URI.create(TiffFixtures.uri(fixture)))));
+        directory = TiffDirectory.read(source);
+    }
+
+    @Benchmark
+    public TiffDirectory readDirectory() {
+        return TiffDirectory.read(source);
+    }
+
+    @Benchmark
+    public ViirsGeoReference extractGeoReference() {
+        return extractor.extractGeoReference(directory);
+    }
+
+    @Benchmark
+    public ViirsGeoReference readAndExtract() {
+        return extractor.extractGeoReference(TiffDirectory.read(source));
+    }
+}
@@ -0,0 +1,61 @@
+package com.aldhafara.lightPollutionService.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold load of a dataset: TIFF parsing, decoding (or mapping), the summed-area table and optionally the pyramid.
+ * Run with {@code -prof gc} to see the allocation per load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Param({"mock_average", "mock_mask", "synthetic"})
+    public String fixture;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    @Param({"0", "8"})
+    public int pyramidLevels;
+
+    /**
+     * 1 decodes on the benchmark thread, 0 on the common fork-join pool; irrelevant when mapped.
+     */
+    @Param({"1", "0"})
+    public int decodeThreads;
+
+    private String uri;
+
+    @Setup
+    public void setUp() {
+        uri = TiffFixtures.uri(fixture);
+    }
+
+    @Benchmark
+    public Object load() {
+        ViirsTiffFileLoader loader = TiffFixtures.loader(uri, mapped, pyramidLevels, decodeThreads);
+        try {
+            loader.getOrLoadReference(TiffFixtures.DATASET);
+            return loader.getRaster(TiffFixtures.DATASET);
+        } finally {
+            loader.stop();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point lookups through {@link ViirsTiffService}, one at a time and in batches of {@value #BATCH_SIZE}, over
+ * random in-bounds coordinates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int POINTS = 1 << 14;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"mock_average", "synthetic"})
+    public String fixture;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    @Param({"0", "100000"})
+    public int cacheEntries;
+
+    private ViirsTiffService service;
+    private double[] latitudes;
+    private double[] longitudes;
+    private List<Coordinates> batch;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ViirsTiffFileLoader loader = TiffFixtures.loader(TiffFixtures.uri(fixture), mapped, 0);
+        loader.getOrLoadReference(TiffFixtures.DATASET);
+        DatasetRegistry registry = TiffFixtures.registry(TiffFixtures.uri(fixture));
+        service = new ViirsTiffService(loader, loader, new PixelValueCache(cacheEntries, 3600), registry,
+                new DatasetAvailability(loader, registry, false, false, 5));
+
+        ViirsGeoReference reference = loader.getReference(TiffFixtures.DATASET);
+        SplittableRandom random = new SplittableRandom(42);
+        latitudes = new double[POINTS];
+        longitudes = new double[POINTS];
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < POINTS; i++) {
+            longitudes[i] = reference.originX() + random.nextDouble() * reference.width() * reference.pixelScaleX();
+            latitudes[i] = reference.originY() - random.nextDouble() * reference.height() * reference.pixelScaleY();
+            if (i < BATCH_SIZE) {
+                batch.add(new Coordinates(latitudes[i], longitudes[i]));
+            }
+        }
+    }
+
+    @Benchmark
+    public double single() {
+        int i = next++ & (POINTS - 1);
+        return service.getValueForLocation(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public double[] batch() {
+        return service.getValuesForLocations(batch);
+    }
+}
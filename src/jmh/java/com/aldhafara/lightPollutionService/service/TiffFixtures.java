@@ -0,0 +1,71 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.raster.SyntheticGeoTiffWriter;
+import com.aldhafara.lightPollutionService.utils.TiffFileStreamProvider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * GeoTIFFs the benchmarks run against: the bundled test fixtures and a large synthetic raster written on demand.
+ */
+final class TiffFixtures {
+
+    static final String DATASET = "2023/average";
+
+    private TiffFixtures() {
+    }
+
+    /**
+     * {@code file:} URI of a fixture: {@code mock_average}, {@code mock_mask} or {@code synthetic} (8192x4096,
+     * 256x256 DEFLATE tiles, written to a temporary file).
+     */
+    static String uri(String fixture) {
+        if ("synthetic".equals(fixture)) {
+            return syntheticGeoTiff(8192, 4096).toUri().toString();
+        }
+        URL resource = TiffFixtures.class.getClassLoader().getResource("tiff/" + fixture + ".tiff");
+        if (resource == null) {
+            throw new IllegalArgumentException("Unknown fixture " + fixture);
+        }
+        try {
+            return resource.toURI().toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static ViirsTiffFileLoader loader(String uri, boolean mapped, int pyramidLevels) {
+        return loader(uri, mapped, pyramidLevels, 0);
+    }
+
+    static ViirsTiffFileLoader loader(String uri, boolean mapped, int pyramidLevels, int decodeThreads) {
+        return new ViirsTiffFileLoader(registry(uri), mapped, 256, 20_000_000L, new TiffFileStreamProvider(),
+                new ViirsGeoReferenceExtractor(), new RasterPyramidCache(pyramidLevels, 20_000_000L, ""), new RasterFileCache(""), Long.MAX_VALUE >> 20, 128, 64, decodeThreads);
+    }
+
+    static DatasetRegistry registry(String uri) {
+        return new DatasetRegistry(Map.of(DATASET, uri), 2023);
+    }
+
+    private static Path syntheticGeoTiff(int width, int height) {
+        try {
+            Path file = Files.createTempFile("synthetic-" + width + "x" + height, ".tiff");
+            file.toFile().deleteOnExit();
+            return new SyntheticGeoTiffWriter()
+                    .size(width, height)
+                    .tiles(256, 256)
+                    .deflate(2)
+                    .geoReference(-180.0, 85.0, 360.0 / width)
+                    .values((x, y) -> (x * 7 + y * 3) % 256)
+                    .write(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.aldhafara.lightPollutionService.controller;
+
+import com.aldhafara.lightPollutionService.exception.AdminAccessDeniedException;
+import com.aldhafara.lightPollutionService.model.ReloadResponse;
+import com.aldhafara.lightPollutionService.service.DatasetRegistry;
+import com.aldhafara.lightPollutionService.service.DatasetReloader;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+
+@RestController
+public class AdminController {
+
+    static final String TOKEN_HEADER = "X-Admin-Token";
+
+    private final DatasetReloader datasetReloader;
+    private final DatasetRegistry datasetRegistry;
+    private final byte[] adminToken;
+
+    public AdminController(DatasetReloader datasetReloader,
+                           DatasetRegistry datasetRegistry,
+                           @Value("${admin.token:}") String adminToken) {
+        this.datasetReloader = datasetReloader;
+        this.datasetRegistry = datasetRegistry;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Operation(
+            summary = "Reload datasets",
+            description = "Re-reads datasets in the background and swaps them in once complete; lookups keep using "
+                    + "the current data meanwhile. Without parameters every dataset in memory is reloaded. "
+                    + "Requires the " + TOKEN_HEADER + " header to match admin.token.",
+            parameters = {
+                    @Parameter(name = "year", description = "Year of the dataset to reload", example = "2023"),
+                    @Parameter(name = "product", description = "Product of the dataset to reload", example = "average")
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Reload scheduled",
+                            content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ReloadResponse.class))
+                    ),
+                    @ApiResponse(responseCode = "403", description = "Missing or wrong admin token", content = @Content),
+                    @ApiResponse(responseCode = "404", description = "Dataset not configured", content = @Content)
+            }
+    )
+    @PostMapping("/admin/datasets/reload")
+    public ResponseEntity<ReloadResponse> reloadDatasets(
+            @RequestHeader(value = TOKEN_HEADER, required = false) String token,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) String product) {
+        checkToken(token);
+        Set<String> keys;
+        if (year == null && product == null) {
+            keys = datasetReloader.reloadResident();
+        } else {
+            String key = datasetRegistry.key(year, product == null ? DatasetRegistry.DEFAULT_PRODUCT : product);
+            datasetReloader.reload(key);
+            keys = Set.of(key);
+        }
+        return ResponseEntity.accepted().body(new ReloadResponse(keys.stream().sorted().toList()));
+    }
+
+    private void checkToken(String token) {
+        if (adminToken.length == 0) {
+            throw new AdminAccessDeniedException("Admin endpoints are disabled, set admin.token to enable them");
+        }
+        if (token == null || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new AdminAccessDeniedException("Invalid " + TOKEN_HEADER + " header");
+        }
+    }
+}
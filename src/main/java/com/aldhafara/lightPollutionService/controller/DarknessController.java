@@ -1,37 +1,99 @@
 package com.aldhafara.lightPollutionService.controller;
 
+import com.aldhafara.lightPollutionService.exception.BatchTooLargeException;
+import com.aldhafara.lightPollutionService.exception.InvalidBatchException;
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.exception.InvalidSamplingParameterException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.DarkestSpotsResponse;
+import com.aldhafara.lightPollutionService.model.DarknessProfile;
 import com.aldhafara.lightPollutionService.model.DarknessResponse;
+import com.aldhafara.lightPollutionService.model.PolygonRequest;
+import com.aldhafara.lightPollutionService.model.RouteRequest;
+import com.aldhafara.lightPollutionService.model.SamplingMode;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.model.ZonalStatistics;
+import com.aldhafara.lightPollutionService.ratelimit.RateLimitBudget;
 import com.aldhafara.lightPollutionService.ratelimit.RateLimited;
+import com.aldhafara.lightPollutionService.service.PointLookup;
 import com.aldhafara.lightPollutionService.service.ViirsTiffService;
+import com.aldhafara.lightPollutionService.stream.PackedPoints;
+import com.aldhafara.lightPollutionService.stream.PointStream;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
 @RestController
 @RequestMapping("/darkness")
 @Validated
 public class DarknessController {
 
+    private static final String MAX_BATCH_SIZE = "${darkness.batch.maxSize:1000}";
+
     private final ViirsTiffService tiffService;
+    private final int maxBatchSize;
+    private final double maxRadiusKm;
+    private final double maxDarkestRadiusKm;
+    private final int maxDarkestLimit;
+    private final int maxProfilePoints;
+    private final int maxProfileSamples;
+    private final long maxZonalPixels;
+    private final int maxHistogramBins;
+    private final long maxStreamPoints;
 
-    public DarknessController(ViirsTiffService tiffService) {
+    public DarknessController(ViirsTiffService tiffService,
+                              @Value(MAX_BATCH_SIZE) int maxBatchSize,
+                              @Value("${darkness.sampling.maxRadiusKm:50}") double maxRadiusKm,
+                              @Value("${darkness.darkest.maxRadiusKm:100}") double maxDarkestRadiusKm,
+                              @Value("${darkness.darkest.maxLimit:100}") int maxDarkestLimit,
+                              @Value("${darkness.profile.maxPoints:10000}") int maxProfilePoints,
+                              @Value("${darkness.profile.maxSamples:10000}") int maxProfileSamples,
+                              @Value("${darkness.zonal.maxPixels:200000000}") long maxZonalPixels,
+                              @Value("${darkness.zonal.maxBins:256}") int maxHistogramBins,
+                              @Value("${darkness.stream.maxPoints:10000000}") long maxStreamPoints) {
         this.tiffService = tiffService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxRadiusKm = maxRadiusKm;
+        this.maxDarkestRadiusKm = maxDarkestRadiusKm;
+        this.maxDarkestLimit = maxDarkestLimit;
+        this.maxProfilePoints = maxProfilePoints;
+        this.maxProfileSamples = maxProfileSamples;
+        this.maxZonalPixels = maxZonalPixels;
+        this.maxHistogramBins = maxHistogramBins;
+        this.maxStreamPoints = maxStreamPoints;
     }
 
     @Operation(
             summary = "Get relative brightness for given coordinates",
             description = "Returns a value [0-255] indicating relative night sky brightness for the provided latitude and longitude. "
-                    + "Higher value means more light pollution.",
+                    + "Higher value means more light pollution. For floating-point VIIRS composites the value is the "
+                    + "radiance in nW/cm²/sr, also returned as `radiance` with estimated `sqm` and `bortle` values.",
             parameters = {
                     @Parameter(
                             name = "latitude",
@@ -44,6 +106,27 @@ public class DarknessController {
                             description = "Longitude in decimal degrees",
                             required = true,
                             example = "21.0117"
+                    ),
+                    @Parameter(
+                            name = "mode",
+                            description = "Sampling mode: nearest pixel, bilinear interpolation, or mean/max over a disc",
+                            schema = @Schema(allowableValues = {"nearest", "bilinear", "mean", "max"}, defaultValue = "nearest")
+                    ),
+                    @Parameter(
+                            name = "radiusKm",
+                            description = "Disc radius in kilometres, required for the mean and max modes at level 0",
+                            example = "5"
+                    ),
+                    @Parameter(
+                            name = "year",
+                            description = "Year of the VIIRS composite; defaults to the configured default year",
+                            example = "2023"
+                    ),
+                    @Parameter(
+                            name = "level",
+                            description = "Pyramid level: 0 is full resolution, level k aggregates 2^k x 2^k pixels "
+                                    + "(mean, or max with mode=max)",
+                            schema = @Schema(defaultValue = "0", minimum = "0")
                     )
             },
             responses = {
@@ -55,7 +138,12 @@ public class DarknessController {
                     ),
                     @ApiResponse(
                             responseCode = "400",
-                            description = "Invalid input parameter or coordinate out of raster bounds",
+                            description = "Invalid input parameter, sampling parameters or coordinate out of raster bounds",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No dataset configured for the requested year",
                             content = @Content
                     ),
                     @ApiResponse(
@@ -74,10 +162,381 @@ public class DarknessController {
     @GetMapping
     public ResponseEntity<DarknessResponse> getDarkness(
             @RequestParam @Min(-90) @Max(90) double latitude,
-            @RequestParam @Min(-180) @Max(180) double longitude
+            @RequestParam @Min(-180) @Max(180) double longitude,
+            @RequestParam(defaultValue = "nearest") String mode,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(defaultValue = "0") @Min(0) int level,
+            @RequestParam(required = false) Integer year
     ) {
-        Double relBrightness = tiffService.getValueForLocation(latitude, longitude);
-        DarknessResponse response = new DarknessResponse(latitude, longitude, relBrightness);
+        ViirsDataset dataset = tiffService.dataset(year);
+        double relBrightness = brightness(latitude, longitude, mode, radiusKm, level, dataset);
+        boolean masked = tiffService.isMasked(latitude, longitude, dataset);
+        DarknessResponse response = dataset.radiance()
+                ? DarknessResponse.ofRadiance(latitude, longitude, relBrightness, masked)
+                : new DarknessResponse(latitude, longitude, relBrightness, masked);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Binary variant of {@link #getDarkness}, selected with {@code Accept: application/octet-stream}: a little-endian
+     * float32 value followed by one byte that is 1 when the pixel is masked.
+     */
+    @Operation(hidden = true)
+    @RateLimited()
+    @GetMapping(produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getDarknessBinary(
+            @RequestParam @Min(-90) @Max(90) double latitude,
+            @RequestParam @Min(-180) @Max(180) double longitude,
+            @RequestParam(defaultValue = "nearest") String mode,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(defaultValue = "0") @Min(0) int level,
+            @RequestParam(required = false) Integer year
+    ) {
+        ViirsDataset dataset = tiffService.dataset(year);
+        double relBrightness = brightness(latitude, longitude, mode, radiusKm, level, dataset);
+        return ResponseEntity.ok(PackedPoints.encode(relBrightness, tiffService.isMasked(latitude, longitude, dataset)));
+    }
+
+    @Operation(
+            summary = "Get relative brightness for many coordinates",
+            description = "Returns one result per submitted point, in request order. Points outside the raster get an "
+                    + "`error` instead of a brightness value; they do not fail the whole batch. "
+                    + "Each point costs a fraction of a request against the rate limit.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Batch processed",
+                            content = @Content(mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = DarknessResponse.class)))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Malformed body, null or invalid coordinates, or batch larger than the configured maximum",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No dataset configured for the requested year",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Too Many Requests",
+                            content = @Content
+                    )
+            }
+    )
+    @RateLimited(perItem = true, maxItems = MAX_BATCH_SIZE)
+    @PostMapping("/batch")
+    public ResponseEntity<List<DarknessResponse>> getDarknessBatch(@RequestBody List<Coordinates> coordinates,
+                                                                   @RequestParam(required = false) Integer year) {
+        if (coordinates.size() > maxBatchSize) {
+            throw new BatchTooLargeException(
+                    String.format("Batch of %d points exceeds the maximum of %d", coordinates.size(), maxBatchSize));
+        }
+        for (int i = 0; i < coordinates.size(); i++) {
+            Coordinates point = coordinates.get(i);
+            if (point == null) {
+                throw new InvalidBatchException(String.format("Batch point %d is null", i));
+            }
+            if (!(Math.abs(point.latitude()) <= 90) || !(Math.abs(point.longitude()) <= 180)) {
+                throw new InvalidBatchException(String.format("Batch point %d has invalid coordinates lat:%.8f, lon:%.8f",
+                        i, point.latitude(), point.longitude()));
+            }
+        }
+        ViirsDataset dataset = tiffService.dataset(year);
+        double[] values = tiffService.getValuesForLocations(coordinates, dataset);
+        boolean[] masked = tiffService.isMasked(coordinates, dataset);
+        boolean radiance = dataset.radiance();
+        List<DarknessResponse> responses = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            Coordinates point = coordinates.get(i);
+            if (Double.isNaN(values[i])) {
+                responses.add(new DarknessResponse(point.latitude(), point.longitude(), null, null, String.format(
+                        "Coordinates lat:%.8f, lon:%.8f are outside the TIFF raster range", point.latitude(), point.longitude())));
+            } else {
+                responses.add(radiance
+                        ? DarknessResponse.ofRadiance(point.latitude(), point.longitude(), values[i], masked[i])
+                        : new DarknessResponse(point.latitude(), point.longitude(), values[i], masked[i]));
+            }
+        }
+        return ResponseEntity.ok(responses);
+    }
+
+    @Operation(
+            summary = "Get relative brightness for many coordinates in a compact binary format",
+            description = "The body holds packed little-endian float32 `latitude, longitude` pairs. The response holds "
+                    + "one little-endian float32 value per point (`NaN` outside the raster or for a non-finite or out-of-range coordinate) "
+                    + "followed by a bitset of "
+                    + "`ceil(n / 8)` bytes marking masked points, bit `i % 8` of byte `i / 8` for point `i`.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Batch processed",
+                            content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Body not made of whole pairs, or batch larger than the configured maximum",
+                            content = @Content
+                    )
+            }
+    )
+    @RateLimited(perItem = true, bytesPerItem = PackedPoints.POINT_BYTES, maxItems = MAX_BATCH_SIZE)
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getDarknessBatchBinary(@RequestBody byte[] body,
+                                                         @RequestParam(required = false) Integer year) {
+        int count = PackedPoints.count(body);
+        if (count > maxBatchSize) {
+            throw new BatchTooLargeException(
+                    String.format("Batch of %d points exceeds the maximum of %d", count, maxBatchSize));
+        }
+        return ResponseEntity.ok(PackedPoints.lookUp(body, tiffService.pointLookup(year)));
+    }
+
+    @Operation(
+            summary = "Find the darkest spots around given coordinates",
+            description = "Returns up to `limit` pixels with the lowest relative brightness whose centres lie within "
+                    + "`radiusKm` of the point, darkest first and nearest first among equally dark ones. "
+                    + "Pixels without valid data are skipped.",
+            parameters = {
+                    @Parameter(name = "latitude", description = "Latitude in decimal degrees", required = true, example = "52.2298"),
+                    @Parameter(name = "longitude", description = "Longitude in decimal degrees", required = true, example = "21.0117"),
+                    @Parameter(name = "radiusKm", description = "Search radius in kilometres", required = true, example = "30"),
+                    @Parameter(name = "limit", description = "Number of spots to return", schema = @Schema(defaultValue = "10", minimum = "1")),
+                    @Parameter(name = "year", description = "Year of the VIIRS composite; defaults to the configured default year", example = "2023")
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Darkest spots found",
+                            content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = DarkestSpotsResponse.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid radius or limit, or coordinate out of raster bounds",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No dataset configured for the requested year",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Too Many Requests",
+                            content = @Content
+                    )
+            }
+    )
+    @RateLimited()
+    @GetMapping("/darkest")
+    public ResponseEntity<DarkestSpotsResponse> getDarkest(
+            @RequestParam @Min(-90) @Max(90) double latitude,
+            @RequestParam @Min(-180) @Max(180) double longitude,
+            @RequestParam double radiusKm,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) Integer year
+    ) {
+        if (!(radiusKm > 0) || radiusKm > maxDarkestRadiusKm) {
+            throw new InvalidSamplingParameterException(String.format(
+                    "radiusKm must be greater than 0 and at most %s", maxDarkestRadiusKm));
+        }
+        if (limit < 1 || limit > maxDarkestLimit) {
+            throw new InvalidSamplingParameterException(String.format(
+                    "limit must be between 1 and %d", maxDarkestLimit));
+        }
+        return ResponseEntity.ok(new DarkestSpotsResponse(latitude, longitude, radiusKm,
+                tiffService.findDarkest(latitude, longitude, radiusKm, limit, year)));
+    }
+
+    @Operation(
+            summary = "Get relative brightness along a route",
+            description = "Takes a GeoJSON LineString (`type` and `[longitude, latitude]` `coordinates`) or an encoded "
+                    + "`polyline` (precision 5) and returns samples every `spacingKm` along it, plus its last point. "
+                    + "`min`, `mean` and `max` cover every raster cell the route crosses, the mean weighted by the "
+                    + "length of route in each cell; cells without valid data and parts outside the raster are left out.",
+            parameters = {
+                    @Parameter(name = "spacingKm", description = "Distance between samples in kilometres", schema = @Schema(defaultValue = "1")),
+                    @Parameter(name = "year", description = "Year of the VIIRS composite; defaults to the configured default year", example = "2023")
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Route profiled",
+                            content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = DarknessProfile.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid geometry, too many points or samples, or invalid spacing",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No dataset configured for the requested year",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Too Many Requests",
+                            content = @Content
+                    )
+            }
+    )
+    @RateLimited()
+    @PostMapping("/profile")
+    public ResponseEntity<DarknessProfile> getProfile(@RequestBody RouteRequest route,
+                                                      @RequestParam(defaultValue = "1") double spacingKm,
+                                                      @RequestParam(required = false) Integer year) {
+        if (!(spacingKm > 0)) {
+            throw new InvalidSamplingParameterException("spacingKm must be greater than 0");
+        }
+        List<Coordinates> points = route.points();
+        if (points.size() > maxProfilePoints) {
+            throw new InvalidGeometryException(String.format(
+                    "Route of %d points exceeds the maximum of %d", points.size(), maxProfilePoints));
+        }
+        return ResponseEntity.ok(tiffService.getProfile(points, spacingKm, maxProfileSamples, year));
+    }
+
+    @Operation(
+            summary = "Get brightness statistics inside a polygon",
+            description = "Takes a GeoJSON Polygon or MultiPolygon (`[longitude, latitude]` positions, holes allowed) "
+                    + "and returns the pixel count, min, mean, max, percentiles and a histogram of the relative "
+                    + "brightness of the valid pixels whose centres lie inside it. Parts outside the raster are ignored.",
+            parameters = {
+                    @Parameter(name = "percentiles", description = "Comma-separated percentiles between 0 and 100", schema = @Schema(defaultValue = "5,25,50,75,95")),
+                    @Parameter(name = "bins", description = "Number of equal-width histogram bins between min and max", schema = @Schema(defaultValue = "16", minimum = "1")),
+                    @Parameter(name = "year", description = "Year of the VIIRS composite; defaults to the configured default year", example = "2023")
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Statistics computed",
+                            content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ZonalStatistics.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid or too large polygon, or invalid percentiles or bins",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No dataset configured for the requested year",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Too Many Requests",
+                            content = @Content
+                    )
+            }
+    )
+    @RateLimited()
+    @PostMapping("/zonal")
+    public ResponseEntity<ZonalStatistics> getZonalStatistics(
+            @RequestBody PolygonRequest polygon,
+            @RequestParam(defaultValue = "5,25,50,75,95") List<Double> percentiles,
+            @RequestParam(defaultValue = "16") int bins,
+            @RequestParam(required = false) Integer year
+    ) {
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new InvalidSamplingParameterException("percentiles must be between 0 and 100");
+            }
+        }
+        if (bins < 1 || bins > maxHistogramBins) {
+            throw new InvalidSamplingParameterException(String.format(
+                    "bins must be between 1 and %d", maxHistogramBins));
+        }
+        return ResponseEntity.ok(tiffService.getZonalStatistics(polygon.rings(), percentiles, bins, maxZonalPixels, year));
+    }
+
+    @Operation(
+            summary = "Stream relative brightness for an unbounded list of coordinates",
+            description = "Reads NDJSON (`{\"latitude\": .., \"longitude\": ..}` per line) or CSV (`latitude,longitude` per "
+                    + "line, optional header) and writes one result line per non-blank input line in the same format, "
+                    + "as it goes. Malformed lines and points outside the raster get an `error` and do not end the stream. "
+                    + "Each point costs a fraction of a request against the rate limit; a stream that runs out of "
+                    + "requests ends with an error line.",
+            parameters = {
+                    @Parameter(name = "year", description = "Year of the VIIRS composite; defaults to the configured default year", example = "2023")
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Results streamed",
+                            content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "No dataset configured for the requested year",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Too Many Requests",
+                            content = @Content
+                    )
+            }
+    )
+    @RateLimited(streamed = true)
+    @PostMapping(value = "/stream", consumes = "application/x-ndjson", produces = "application/x-ndjson")
+    public void streamNdjson(@RequestParam(required = false) Integer year, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        stream(PointStream.Format.NDJSON, "application/x-ndjson", year, request, response);
+    }
+
+    @Operation(hidden = true)
+    @RateLimited(streamed = true)
+    @PostMapping(value = "/stream", consumes = "text/csv", produces = "text/csv")
+    public void streamCsv(@RequestParam(required = false) Integer year, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        stream(PointStream.Format.CSV, "text/csv", year, request, response);
+    }
+
+    /**
+     * Resolves the dataset before committing the response, so a missing year still gets a regular 404.
+     */
+    private void stream(PointStream.Format format, String contentType, Integer year, HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        PointLookup lookup = tiffService.pointLookup(year);
+        response.setContentType(contentType);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        BooleanSupplier allowance = request.getAttribute(RateLimitBudget.ATTRIBUTE) instanceof RateLimitBudget budget
+                ? budget::tryAcquirePoint
+                : () -> true;
+        PointStream.process(request.getReader(), out, format, lookup, maxStreamPoints, allowance);
+    }
+
+    private double brightness(double latitude, double longitude, String mode, Double radiusKm, int level,
+                              ViirsDataset dataset) {
+        SamplingMode samplingMode = SamplingMode.fromParameter(mode);
+        if (level > 0) {
+            if (radiusKm != null) {
+                throw new InvalidSamplingParameterException("radiusKm cannot be combined with a pyramid level");
+            }
+            return tiffService.getValueForLocationAtLevel(latitude, longitude, samplingMode, level, dataset);
+        }
+        return samplingMode == SamplingMode.NEAREST
+                ? tiffService.getValueForLocation(latitude, longitude, dataset)
+                : tiffService.getValueForLocation(latitude, longitude, samplingMode, validRadius(samplingMode, radiusKm), dataset);
+    }
+
+    private double validRadius(SamplingMode mode, Double radiusKm) {
+        if (!mode.isArea()) {
+            return 0;
+        }
+        if (radiusKm == null || !(radiusKm > 0) || radiusKm > maxRadiusKm) {
+            throw new InvalidSamplingParameterException(String.format(
+                    "Mode '%s' requires radiusKm greater than 0 and at most %s", mode, maxRadiusKm));
+        }
+        return radiusKm;
+    }
 }
@@ -1,7 +1,10 @@
 package com.aldhafara.lightPollutionService.controller;
 
+import com.aldhafara.lightPollutionService.model.ReadinessResponse;
 import com.aldhafara.lightPollutionService.model.StatusResponse;
 import com.aldhafara.lightPollutionService.service.StatusService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import io.swagger.v3.oas.annotations.Operation;
@@ -19,7 +22,8 @@ public class StatusController {
 
     @Operation(
             summary = "Service health-check",
-            description = "Returns the server's uptime status, uptime and timestamp.",
+            description = "Returns the server's uptime status, uptime, timestamp, point lookup cache statistics and "
+                    + "whether the default dataset is loaded.",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
@@ -41,10 +45,39 @@ public class StatusController {
                 getUptimePretty(uptimeMillis),
                 statusService.getTimestamp(),
                 statusService.getRatelimitRequests(),
-                statusService.getRatelimitDurationSeconds()
+                statusService.getRatelimitDurationSeconds(),
+                statusService.getLookupCacheStats(),
+                statusService.isReady(),
+                statusService.getDecodeStats()
         );
     }
 
+    @Operation(
+            summary = "Readiness probe",
+            description = "Returns 200 once the default dataset is loaded and 503 while it is still loading, "
+                    + "so a load balancer only routes lookups to instances that can answer them.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ready to serve lookups",
+                            content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ReadinessResponse.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "Default dataset still loading",
+                            content = @Content(mediaType = "application/json",
+                                    schema = @Schema(implementation = ReadinessResponse.class))
+                    )
+            }
+    )
+    @GetMapping("/status/readiness")
+    public ResponseEntity<ReadinessResponse> getReadiness() {
+        return statusService.isReady()
+                ? ResponseEntity.ok(new ReadinessResponse("READY"))
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new ReadinessResponse("LOADING"));
+    }
+
     private String getUptimePretty(long uptimeMillis) {
         int totalSeconds = (int) (uptimeMillis / 1000);
         int days = totalSeconds / 86400;
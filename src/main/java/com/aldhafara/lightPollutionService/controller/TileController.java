@@ -0,0 +1,70 @@
+package com.aldhafara.lightPollutionService.controller;
+
+import com.aldhafara.lightPollutionService.ratelimit.RateLimited;
+import com.aldhafara.lightPollutionService.tiles.RenderedTile;
+import com.aldhafara.lightPollutionService.tiles.TileService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+public class TileController {
+
+    private final TileService tileService;
+    private final CacheControl cacheControl;
+
+    public TileController(TileService tileService,
+                          @Value("${tiles.cacheControl.maxAgeSeconds:86400}") long maxAgeSeconds) {
+        this.tileService = tileService;
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+    }
+
+    @Operation(
+            summary = "Light pollution map tile",
+            description = "Returns a 256x256 Web-Mercator PNG tile in the XYZ scheme, coloured with the configured ramp. "
+                    + "Pixels outside the raster are transparent. Responses carry an ETag; a matching If-None-Match "
+                    + "yields 304 Not Modified.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Rendered tile",
+                            content = @Content(mediaType = MediaType.IMAGE_PNG_VALUE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Tile unchanged since the client's copy",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Tile coordinates outside the XYZ grid or above the maximum zoom",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Too Many Requests",
+                            content = @Content
+                    )
+            }
+    )
+    @RateLimited(requestsString = "${tiles.rateLimit.requests:600}",
+            durationSecondsString = "${tiles.rateLimit.durationSeconds:60}", chargeNotModified = false)
+    @GetMapping("/tiles/{z}/{x}/{y}.png")
+    public ResponseEntity<byte[]> getTile(@PathVariable int z, @PathVariable int x, @PathVariable int y) {
+        RenderedTile tile = tileService.getTile(z, x, y);
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .cacheControl(cacheControl)
+                .eTag(tile.etag())
+                .body(tile.png());
+    }
+}
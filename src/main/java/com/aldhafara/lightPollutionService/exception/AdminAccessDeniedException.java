@@ -0,0 +1,7 @@
+package com.aldhafara.lightPollutionService.exception;
+
+public class AdminAccessDeniedException extends RuntimeException {
+    public AdminAccessDeniedException(String message) {
+        super(message);
+    }
+}
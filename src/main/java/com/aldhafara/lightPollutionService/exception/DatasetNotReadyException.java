@@ -0,0 +1,14 @@
+package com.aldhafara.lightPollutionService.exception;
+
+import lombok.Getter;
+
+@Getter
+public class DatasetNotReadyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public DatasetNotReadyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
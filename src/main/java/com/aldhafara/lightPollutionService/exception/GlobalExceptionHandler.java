@@ -1,23 +1,38 @@
 package com.aldhafara.lightPollutionService.exception;
 
 import com.aldhafara.lightPollutionService.model.ApiErrorResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.servlet.HandlerMapping;
 
 import java.time.Instant;
 
+/**
+ * Errors are always written as JSON, whatever the request accepts, so clients of the binary and image endpoints
+ * still get a readable error instead of a failed content negotiation.
+ */
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     public ResponseEntity<ApiErrorResponse> handleTypeMismatch(MethodArgumentTypeMismatchException ex) {
         return ResponseEntity
-                .badRequest().body(new ApiErrorResponse(
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
                         Instant.now().toString(),
                         400,
                         "Bad Request",
@@ -28,7 +43,7 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiErrorResponse> handleGeneric(Exception ex) {
         return ResponseEntity
-                .status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ApiErrorResponse(
+                .status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
                         Instant.now().toString(),
                         500,
                         "Internal Server Error",
@@ -39,7 +54,7 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(MissingServletRequestParameterException.class)
     public ResponseEntity<ApiErrorResponse> handleMissingParams(MissingServletRequestParameterException ex) {
         return ResponseEntity
-                .badRequest().body(new ApiErrorResponse(
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
                         Instant.now().toString(),
                         400,
                         "Bad Request",
@@ -48,9 +63,10 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(RateLimitException.class)
-    public ResponseEntity<ApiErrorResponse> handleRateLimit(RateLimitException ex) {
+    public ResponseEntity<ApiErrorResponse> handleRateLimit(RateLimitException ex, HttpServletRequest request) {
+        countPerEndpoint("lightpollution.ratelimit.rejections", request);
         return ResponseEntity
-                .status(429).body(new ApiErrorResponse(
+                .status(429).contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
                         Instant.now().toString(),
                         429,
                         "Too Many Requests",
@@ -61,7 +77,7 @@ public class GlobalExceptionHandler {
     @ExceptionHandler({ConstraintViolationException.class})
     public ResponseEntity<ApiErrorResponse> handleValidationException(ConstraintViolationException ex) {
         return ResponseEntity
-                .badRequest().body(new ApiErrorResponse(
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
                         Instant.now().toString(),
                         400,
                         "Invalid request parameters",
@@ -70,13 +86,114 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler({CoordinatesOutOfRasterBoundsException.class})
-    public ResponseEntity<ApiErrorResponse> handleCoordinatesOutOfRasterBoundsException(CoordinatesOutOfRasterBoundsException ex) {
+    public ResponseEntity<ApiErrorResponse> handleCoordinatesOutOfRasterBoundsException(CoordinatesOutOfRasterBoundsException ex,
+                                                                                        HttpServletRequest request) {
+        countPerEndpoint("lightpollution.lookup.outside.raster", request);
         return ResponseEntity
-                .badRequest().body(new ApiErrorResponse(
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
                         Instant.now().toString(),
                         400,
                         "Coordinates outside raster bounds",
                         ex.getMessage()
                 ));
     }
+
+    @ExceptionHandler({BatchTooLargeException.class})
+    public ResponseEntity<ApiErrorResponse> handleBatchTooLargeException(BatchTooLargeException ex) {
+        return ResponseEntity
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        400,
+                        "Batch too large",
+                        ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler({InvalidBatchException.class})
+    public ResponseEntity<ApiErrorResponse> handleInvalidBatchException(InvalidBatchException ex) {
+        return ResponseEntity
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        400,
+                        "Invalid batch",
+                        ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler({InvalidSamplingParameterException.class})
+    public ResponseEntity<ApiErrorResponse> handleInvalidSamplingParameterException(InvalidSamplingParameterException ex) {
+        return ResponseEntity
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        400,
+                        "Invalid sampling parameters",
+                        ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler({InvalidGeometryException.class})
+    public ResponseEntity<ApiErrorResponse> handleInvalidGeometryException(InvalidGeometryException ex) {
+        return ResponseEntity
+                .badRequest().contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        400,
+                        "Invalid geometry",
+                        ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler({TileNotFoundException.class})
+    public ResponseEntity<ApiErrorResponse> handleTileNotFoundException(TileNotFoundException ex) {
+        return ResponseEntity
+                .status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        404,
+                        "Tile not found",
+                        ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler({AdminAccessDeniedException.class})
+    public ResponseEntity<ApiErrorResponse> handleAdminAccessDeniedException(AdminAccessDeniedException ex) {
+        return ResponseEntity
+                .status(HttpStatus.FORBIDDEN).contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        403,
+                        "Forbidden",
+                        ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler({DatasetNotReadyException.class})
+    public ResponseEntity<ApiErrorResponse> handleDatasetNotReadyException(DatasetNotReadyException ex) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        503,
+                        "Service Unavailable",
+                        ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler({DatasetNotFoundException.class})
+    public ResponseEntity<ApiErrorResponse> handleDatasetNotFoundException(DatasetNotFoundException ex) {
+        return ResponseEntity
+                .status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(new ApiErrorResponse(
+                        Instant.now().toString(),
+                        404,
+                        "Dataset not found",
+                        ex.getMessage()
+                ));
+    }
+
+    /**
+     * Tags by the matched route pattern rather than the raw path, so tile coordinates do not explode the tag values.
+     */
+    private void countPerEndpoint(String name, HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        meterRegistry.counter(name, "uri", pattern == null ? "UNKNOWN" : pattern.toString()).increment();
+    }
 }
@@ -0,0 +1,7 @@
+package com.aldhafara.lightPollutionService.exception;
+
+public class InvalidGeometryException extends RuntimeException {
+    public InvalidGeometryException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.aldhafara.lightPollutionService.exception;
+
+public class InvalidSamplingParameterException extends RuntimeException {
+    public InvalidSamplingParameterException(String message) {
+        super(message);
+    }
+}
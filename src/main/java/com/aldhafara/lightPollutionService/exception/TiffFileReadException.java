@@ -1,6 +1,10 @@
 package com.aldhafara.lightPollutionService.exception;
 
 public class TiffFileReadException extends RuntimeException {
+    public TiffFileReadException(String message) {
+        super(message);
+    }
+
     public TiffFileReadException(String message, Throwable cause) {
         super(message, cause);
     }
@@ -0,0 +1,7 @@
+package com.aldhafara.lightPollutionService.exception;
+
+public class TileNotFoundException extends RuntimeException {
+    public TileNotFoundException(String message) {
+        super(message);
+    }
+}
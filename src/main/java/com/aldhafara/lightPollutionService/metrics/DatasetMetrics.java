@@ -0,0 +1,61 @@
+package com.aldhafara.lightPollutionService.metrics;
+
+import com.aldhafara.lightPollutionService.service.PixelValueCache;
+import com.aldhafara.lightPollutionService.service.ViirsTiffFileLoader;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the counters the loader and the lookup cache already keep, so reading them costs nothing on the
+ * request path.
+ */
+@Component
+public class DatasetMetrics implements MeterBinder {
+
+    private final ViirsTiffFileLoader loader;
+    private final PixelValueCache pixelValueCache;
+
+    public DatasetMetrics(ViirsTiffFileLoader loader, PixelValueCache pixelValueCache) {
+        this.loader = loader;
+        this.pixelValueCache = pixelValueCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("lightpollution.dataset.load", loader,
+                        ViirsTiffFileLoader::loadCount, ViirsTiffFileLoader::loadNanos, TimeUnit.NANOSECONDS)
+                .description("Dataset loads and reloads, from reading the source to the finished pyramid")
+                .register(registry);
+        FunctionTimer.builder("lightpollution.dataset.decode", loader,
+                        loader -> loader.decodeStats().decodes(), loader -> loader.decodeStats().decodeMillis(),
+                        TimeUnit.MILLISECONDS)
+                .description("Bands decoded from a TIFF into memory")
+                .register(registry);
+        FunctionCounter.builder("lightpollution.dataset.decoded", loader, loader -> loader.decodeStats().decodedBytes())
+                .description("Uncompressed sample bytes decoded from TIFFs")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("lightpollution.dataset.resident", loader, resident -> resident.residentKeys().size())
+                .description("Datasets currently held in memory")
+                .register(registry);
+        Gauge.builder("lightpollution.dataset.memory", loader, ViirsTiffFileLoader::residentBytes)
+                .description("Heap held by resident datasets")
+                .baseUnit("bytes")
+                .register(registry);
+
+        FunctionCounter.builder("lightpollution.lookup.cache.hits", pixelValueCache, cache -> cache.stats().hits())
+                .register(registry);
+        FunctionCounter.builder("lightpollution.lookup.cache.misses", pixelValueCache, cache -> cache.stats().misses())
+                .register(registry);
+        FunctionCounter.builder("lightpollution.lookup.cache.evictions", pixelValueCache, cache -> cache.stats().evictions())
+                .register(registry);
+        Gauge.builder("lightpollution.lookup.cache.size", pixelValueCache, cache -> cache.stats().size())
+                .register(registry);
+    }
+}
@@ -0,0 +1,4 @@
+package com.aldhafara.lightPollutionService.model;
+
+public record CacheStats(long size, long hits, long misses, long evictions, double hitRatio) {
+}
@@ -0,0 +1,4 @@
+package com.aldhafara.lightPollutionService.model;
+
+public record Coordinates(double latitude, double longitude) {
+}
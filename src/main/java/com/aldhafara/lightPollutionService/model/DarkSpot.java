@@ -0,0 +1,11 @@
+package com.aldhafara.lightPollutionService.model;
+
+/**
+ * A raster pixel found by a darkest-spot search.
+ *
+ * @param latitude   latitude of the pixel centre
+ * @param longitude  longitude of the pixel centre
+ * @param distanceKm distance from the search centre
+ */
+public record DarkSpot(double latitude, double longitude, double relativeBrightness, double distanceKm) {
+}
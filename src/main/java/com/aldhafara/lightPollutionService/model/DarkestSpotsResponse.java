@@ -0,0 +1,9 @@
+package com.aldhafara.lightPollutionService.model;
+
+import java.util.List;
+
+/**
+ * @param spots darkest pixels inside the disc, darkest first and nearest first among equally dark ones
+ */
+public record DarkestSpotsResponse(double latitude, double longitude, double radiusKm, List<DarkSpot> spots) {
+}
@@ -0,0 +1,17 @@
+package com.aldhafara.lightPollutionService.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Brightness along a route. The statistics cover every raster cell the route crosses, not only the samples: the
+ * mean is weighted by the length of route inside each cell. Cells outside the raster or masked are left out, and the
+ * statistics are {@code null} when no cell remains.
+ */
+public record DarknessProfile(double lengthKm, double spacingKm,
+                             @JsonInclude(JsonInclude.Include.NON_NULL) Double min,
+                             @JsonInclude(JsonInclude.Include.NON_NULL) Double mean,
+                             @JsonInclude(JsonInclude.Include.NON_NULL) Double max,
+                             List<ProfileSample> samples) {
+}
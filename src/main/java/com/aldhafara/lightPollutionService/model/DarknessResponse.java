@@ -1,4 +1,42 @@
 package com.aldhafara.lightPollutionService.model;
 
-public record DarknessResponse(double latitude, double longitude, Double relativeBrightness) {
+import com.aldhafara.lightPollutionService.service.SkyBrightness;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * @param radiance estimated from {@code relativeBrightness} only when the dataset holds radiances in nW/cm²/sr, as
+ *                 do {@code sqm} in mag/arcsec² and the {@code bortle} class; omitted otherwise
+ * @param masked   whether the VIIRS mask marks the pixel as having no valid data, in which case the brightness is 0;
+ *                 omitted for points that failed
+ */
+public record DarknessResponse(
+        double latitude,
+        double longitude,
+        Double relativeBrightness,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Double radiance,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Double sqm,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Integer bortle,
+        @JsonInclude(JsonInclude.Include.NON_NULL) Boolean masked,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String error
+) {
+    public DarknessResponse(double latitude, double longitude, Double relativeBrightness) {
+        this(latitude, longitude, relativeBrightness, false, null);
+    }
+
+    public DarknessResponse(double latitude, double longitude, Double relativeBrightness, boolean masked) {
+        this(latitude, longitude, relativeBrightness, masked, null);
+    }
+
+    public DarknessResponse(double latitude, double longitude, Double relativeBrightness, Boolean masked,
+                            String error) {
+        this(latitude, longitude, relativeBrightness, null, null, null, masked, error);
+    }
+
+    /**
+     * Result for a radiance value, with its sky quality estimates.
+     */
+    public static DarknessResponse ofRadiance(double latitude, double longitude, double radiance, boolean masked) {
+        return new DarknessResponse(latitude, longitude, radiance, radiance, SkyBrightness.sqm(radiance),
+                SkyBrightness.bortle(radiance), masked, null);
+    }
 }
@@ -0,0 +1,10 @@
+package com.aldhafara.lightPollutionService.model;
+
+/**
+ * @param decodes            bands decoded from a TIFF into memory, excluding cache hits and mapped rasters
+ * @param decodedBytes       uncompressed sample bytes those decodes produced
+ * @param megabytesPerSecond {@code decodedBytes} over the time spent decoding, in MiB per second
+ * @param threads            threads a single decode runs on
+ */
+public record DecodeStats(long decodes, long decodedBytes, long decodeMillis, double megabytesPerSecond, int threads) {
+}
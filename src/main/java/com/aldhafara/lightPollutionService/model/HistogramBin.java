@@ -0,0 +1,7 @@
+package com.aldhafara.lightPollutionService.model;
+
+/**
+ * Pixels with a brightness in {@code [from, to)}, or {@code [from, to]} for the last bin.
+ */
+public record HistogramBin(double from, double to, long count) {
+}
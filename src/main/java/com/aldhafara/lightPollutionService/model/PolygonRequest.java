@@ -0,0 +1,61 @@
+package com.aldhafara.lightPollutionService.model;
+
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A GeoJSON {@code Polygon} or {@code MultiPolygon} geometry, positions given as {@code [longitude, latitude]}.
+ */
+public record PolygonRequest(String type, JsonNode coordinates) {
+
+    /**
+     * Every ring of every polygon, outer rings and holes alike. Rings need not repeat their first position at the end.
+     */
+    public List<List<Coordinates>> rings() throws InvalidGeometryException {
+        if (coordinates == null || !coordinates.isArray()) {
+            throw new InvalidGeometryException("Expected a GeoJSON Polygon or MultiPolygon");
+        }
+        List<List<Coordinates>> rings = new ArrayList<>();
+        if ("Polygon".equals(type)) {
+            addPolygon(coordinates, rings);
+        } else if ("MultiPolygon".equals(type)) {
+            for (JsonNode polygon : coordinates) {
+                addPolygon(polygon, rings);
+            }
+        } else {
+            throw new InvalidGeometryException("Expected a GeoJSON Polygon or MultiPolygon");
+        }
+        if (rings.isEmpty()) {
+            throw new InvalidGeometryException("A polygon needs at least one ring");
+        }
+        return rings;
+    }
+
+    private static void addPolygon(JsonNode polygon, List<List<Coordinates>> rings) {
+        if (!polygon.isArray()) {
+            throw new InvalidGeometryException("Each polygon must be an array of rings");
+        }
+        for (JsonNode ring : polygon) {
+            if (!ring.isArray() || ring.size() < 3) {
+                throw new InvalidGeometryException("Each ring needs at least three positions");
+            }
+            List<Coordinates> points = new ArrayList<>(ring.size());
+            for (JsonNode position : ring) {
+                if (!position.isArray() || position.size() < 2 || !position.get(0).isNumber() || !position.get(1).isNumber()) {
+                    throw new InvalidGeometryException("Each position needs a longitude and a latitude");
+                }
+                double lon = position.get(0).asDouble();
+                double lat = position.get(1).asDouble();
+                if (!(Math.abs(lat) <= 90) || !(Math.abs(lon) <= 180)) {
+                    throw new InvalidGeometryException(String.format(
+                            "Position lat:%.8f, lon:%.8f is not a valid coordinate", lat, lon));
+                }
+                points.add(new Coordinates(lat, lon));
+            }
+            rings.add(points);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.aldhafara.lightPollutionService.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * @param distanceKm         distance along the route from its first point
+ * @param relativeBrightness pixel value at the sample, or {@code null} outside the raster
+ * @param masked             whether the VIIRS mask marks the pixel as having no valid data
+ */
+public record ProfileSample(double distanceKm, double latitude, double longitude,
+                            @JsonInclude(JsonInclude.Include.NON_NULL) Double relativeBrightness, boolean masked) {
+}
@@ -0,0 +1,6 @@
+package com.aldhafara.lightPollutionService.model;
+
+import java.util.List;
+
+public record ReloadResponse(List<String> reloading) {
+}
@@ -0,0 +1,41 @@
+package com.aldhafara.lightPollutionService.model;
+
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.utils.EncodedPolyline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A route given either as a GeoJSON LineString ({@code type} and {@code [longitude, latitude]} positions) or as an
+ * encoded {@code polyline}.
+ */
+public record RouteRequest(String type, List<List<Double>> coordinates, String polyline) {
+
+    public List<Coordinates> points() throws InvalidGeometryException {
+        List<Coordinates> points;
+        if (polyline != null) {
+            points = EncodedPolyline.decode(polyline);
+        } else if ("LineString".equals(type) && coordinates != null) {
+            points = new ArrayList<>(coordinates.size());
+            for (List<Double> position : coordinates) {
+                if (position == null || position.size() < 2 || position.get(0) == null || position.get(1) == null) {
+                    throw new InvalidGeometryException("Each LineString position needs a longitude and a latitude");
+                }
+                points.add(new Coordinates(position.get(1), position.get(0)));
+            }
+        } else {
+            throw new InvalidGeometryException("Expected a GeoJSON LineString or an encoded polyline");
+        }
+        if (points.size() < 2) {
+            throw new InvalidGeometryException("A route needs at least two points");
+        }
+        for (Coordinates point : points) {
+            if (!(Math.abs(point.latitude()) <= 90) || !(Math.abs(point.longitude()) <= 180)) {
+                throw new InvalidGeometryException(String.format(
+                        "Position lat:%.8f, lon:%.8f is not a valid coordinate", point.latitude(), point.longitude()));
+            }
+        }
+        return points;
+    }
+}
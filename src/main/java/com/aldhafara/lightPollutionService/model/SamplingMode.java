@@ -0,0 +1,40 @@
+package com.aldhafara.lightPollutionService.model;
+
+import com.aldhafara.lightPollutionService.exception.InvalidSamplingParameterException;
+
+import java.util.Locale;
+
+public enum SamplingMode {
+    NEAREST(false),
+    BILINEAR(false),
+    MEAN(true),
+    MAX(true);
+
+    private final boolean area;
+
+    SamplingMode(boolean area) {
+        this.area = area;
+    }
+
+    /**
+     * Whether the mode aggregates a disc around the point and therefore needs a radius.
+     */
+    public boolean isArea() {
+        return area;
+    }
+
+    public static SamplingMode fromParameter(String value) {
+        for (SamplingMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new InvalidSamplingParameterException("Unknown sampling mode '" + value + "', expected one of "
+                + "nearest, bilinear, mean, max");
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,4 +1,6 @@
 package com.aldhafara.lightPollutionService.model;
 
-public record StatusResponse(String status, long uptime, String uptimePretty, String timestamp, int ratelimitRequests, int ratelimitDurationSeconds) {
+public record StatusResponse(String status, long uptime, String uptimePretty, String timestamp, int ratelimitRequests,
+                             int ratelimitDurationSeconds, CacheStats lookupCache, boolean ready,
+                             DecodeStats decode) {
 }
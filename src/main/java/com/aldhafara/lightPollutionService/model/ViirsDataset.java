@@ -0,0 +1,27 @@
+package com.aldhafara.lightPollutionService.model;
+
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.BlockExtremes;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.raster.SummedAreaTable;
+
+/**
+ * @param summedAreaTable integral image of the raster, or {@code null} when the raster is too large to index
+ * @param pyramid         downsampled mean/max levels, or {@code null} when pyramids are disabled
+ * @param mask            pixels without valid data on the raster's grid, already read as 0 through {@code raster},
+ *                        or {@code null} when the year has no mask
+ * @param extremes        per-block minimum and maximum of the valid pixels, or {@code null} when not built
+ * @param radiance        whether samples are radiances in nW/cm²/sr, as in floating-point VIIRS composites, rather
+ *                        than values of a rendered integer image
+ */
+public record ViirsDataset(ViirsGeoReference geoReference, RasterStore raster, SummedAreaTable summedAreaTable,
+                           RasterPyramid pyramid, BitMask mask, BlockExtremes extremes, boolean radiance) {
+
+    public long sizeInBytes() {
+        return raster.sizeInBytes()
+                + (summedAreaTable == null ? 0 : summedAreaTable.sizeInBytes())
+                + (pyramid == null ? 0 : pyramid.sizeInBytes())
+                + (extremes == null ? 0 : extremes.sizeInBytes());
+    }
+}
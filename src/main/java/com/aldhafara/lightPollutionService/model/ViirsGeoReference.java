@@ -13,4 +13,13 @@ public record ViirsGeoReference(
         int y = (int) ((originY - lat) / pixelScaleY);
         return new int[] { x, y };
     }
-}
\ No newline at end of file
+
+    /**
+     * Reference of a grid whose cells each cover {@code factor x factor} pixels of this one. Partial cells at
+     * the right and bottom edges count as whole cells.
+     */
+    public ViirsGeoReference downsampled(int factor) {
+        return new ViirsGeoReference(originX, originY, pixelScaleX * factor, pixelScaleY * factor,
+                Math.ceilDiv(width, factor), Math.ceilDiv(height, factor));
+    }
+}
@@ -0,0 +1,21 @@
+package com.aldhafara.lightPollutionService.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brightness of the valid pixels whose centres lie inside a polygon.
+ *
+ * @param pixelCount       valid pixels inside the polygon
+ * @param maskedPixelCount pixels inside the polygon without valid data, left out of every statistic
+ * @param percentiles      keyed {@code p<percentile>}, for example {@code p50}; empty when no valid pixel is inside
+ */
+public record ZonalStatistics(long pixelCount, long maskedPixelCount,
+                              @JsonInclude(JsonInclude.Include.NON_NULL) Double min,
+                              @JsonInclude(JsonInclude.Include.NON_NULL) Double mean,
+                              @JsonInclude(JsonInclude.Include.NON_NULL) Double max,
+                              Map<String, Double> percentiles,
+                              List<HistogramBin> histogram) {
+}
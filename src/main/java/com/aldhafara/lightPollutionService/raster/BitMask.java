@@ -0,0 +1,73 @@
+package com.aldhafara.lightPollutionService.raster;
+
+/**
+ * Immutable one-bit-per-pixel mask, packed row-major into 64-bit words.
+ */
+public final class BitMask {
+
+    private final int width;
+    private final int height;
+    private final long[] words;
+
+    private BitMask(int width, int height, long[] words) {
+        this.width = width;
+        this.height = height;
+        this.words = words;
+    }
+
+    /**
+     * Marks the pixels of a {@code columns.length x rows.length} grid whose source sample is below the threshold.
+     * Grid column {@code x} reads source column {@code columns[x]} (likewise for rows), so the source can be
+     * resampled onto the grid of another raster; a negative index leaves the pixel unmarked.
+     */
+    public static BitMask below(RasterStore source, double threshold, int[] columns, int[] rows) {
+        int width = columns.length;
+        int height = rows.length;
+        long bits = (long) width * height;
+        if ((bits + 63) >>> 6 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Mask " + width + "x" + height + " is too large");
+        }
+        long[] words = new long[(int) ((bits + 63) >>> 6)];
+        for (int y = 0; y < height; y++) {
+            if (rows[y] < 0) {
+                continue;
+            }
+            long offset = (long) y * width;
+            for (int x = 0; x < width; x++) {
+                if (columns[x] >= 0 && source.getValue(columns[x], rows[y]) < threshold) {
+                    long bit = offset + x;
+                    words[(int) (bit >>> 6)] |= 1L << bit;
+                }
+            }
+        }
+        return new BitMask(width, height, words);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Callers are responsible for bounds checking.
+     */
+    public boolean get(int x, int y) {
+        long bit = (long) y * width + x;
+        return (words[(int) (bit >>> 6)] & 1L << bit) != 0;
+    }
+
+    public long cardinality() {
+        long count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+}
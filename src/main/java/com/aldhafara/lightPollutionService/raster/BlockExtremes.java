@@ -0,0 +1,86 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.util.Arrays;
+
+/**
+ * Minimum and maximum of every {@code size x size} block of a raster, with partial blocks at the right and bottom
+ * edges. Masked pixels are left out, so a block without any valid pixel has a minimum of positive infinity and a
+ * maximum of negative infinity. Searches use the index to skip whole blocks that cannot hold a better pixel.
+ */
+public final class BlockExtremes {
+
+    private final int blockSize;
+    private final int blocksAcross;
+    private final int blocksDown;
+    private final float[] min;
+    private final float[] max;
+
+    private BlockExtremes(int blockSize, int blocksAcross, int blocksDown, float[] min, float[] max) {
+        this.blockSize = blockSize;
+        this.blocksAcross = blocksAcross;
+        this.blocksDown = blocksDown;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Reads the raster once, row by row.
+     *
+     * @param mask pixels to leave out, or {@code null}
+     */
+    public static BlockExtremes build(RasterStore raster, BitMask mask, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive, got " + blockSize);
+        }
+        int width = raster.width();
+        int height = raster.height();
+        int blocksAcross = Math.ceilDiv(width, blockSize);
+        int blocksDown = Math.ceilDiv(height, blockSize);
+        float[] min = new float[blocksAcross * blocksDown];
+        float[] max = new float[min.length];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+
+        for (int y = 0; y < height; y++) {
+            int rowOffset = y / blockSize * blocksAcross;
+            for (int x = 0; x < width; x++) {
+                if (mask != null && mask.get(x, y)) {
+                    continue;
+                }
+                float value = (float) raster.getValue(x, y);
+                int block = rowOffset + x / blockSize;
+                if (value < min[block]) {
+                    min[block] = value;
+                }
+                if (value > max[block]) {
+                    max[block] = value;
+                }
+            }
+        }
+        return new BlockExtremes(blockSize, blocksAcross, blocksDown, min, max);
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public int blocksAcross() {
+        return blocksAcross;
+    }
+
+    public int blocksDown() {
+        return blocksDown;
+    }
+
+    public float min(int blockX, int blockY) {
+        return min[blockY * blocksAcross + blockX];
+    }
+
+    public float max(int blockX, int blockY) {
+        return max[blockY * blocksAcross + blockX];
+    }
+
+    public long sizeInBytes() {
+        return (long) (min.length + max.length) * Float.BYTES;
+    }
+}
@@ -0,0 +1,37 @@
+package com.aldhafara.lightPollutionService.raster;
+
+public final class ByteRasterStore implements RasterStore {
+
+    private final int width;
+    private final int height;
+    private final byte[] samples;
+
+    public ByteRasterStore(int width, int height, byte[] samples) {
+        if ((long) width * height != samples.length) {
+            throw new IllegalArgumentException("Expected " + ((long) width * height) + " samples, got " + samples.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.samples = samples;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        return samples[y * width + x] & 0xff;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return samples.length;
+    }
+}
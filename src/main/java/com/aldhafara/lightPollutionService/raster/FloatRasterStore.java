@@ -0,0 +1,41 @@
+package com.aldhafara.lightPollutionService.raster;
+
+public final class FloatRasterStore implements RasterStore {
+
+    private final int width;
+    private final int height;
+    private final float[] samples;
+
+    public FloatRasterStore(int width, int height, float[] samples) {
+        if ((long) width * height != samples.length) {
+            throw new IllegalArgumentException("Expected " + ((long) width * height) + " samples, got " + samples.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.samples = samples;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        return samples[y * width + x];
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return (long) samples.length * Float.BYTES;
+    }
+
+    float[] samples() {
+        return samples;
+    }
+}
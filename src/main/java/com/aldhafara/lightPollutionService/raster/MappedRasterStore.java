@@ -0,0 +1,81 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.Checksum;
+
+/**
+ * Row-major samples memory-mapped straight from a {@link RasterCacheFile}, either one unsigned byte or one
+ * little-endian float per pixel. The mapping is split into segments because a single one cannot exceed 2 GiB;
+ * the segment size is a multiple of four, so no sample straddles two segments.
+ */
+final class MappedRasterStore implements RasterStore {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final ByteBuffer[] segments;
+    private final int width;
+    private final int height;
+    private final boolean floats;
+
+    private MappedRasterStore(ByteBuffer[] segments, int width, int height, boolean floats) {
+        this.segments = segments;
+        this.width = width;
+        this.height = height;
+        this.floats = floats;
+    }
+
+    static MappedRasterStore map(FileChannel channel, long offset, int width, int height, boolean floats) throws IOException {
+        long size = (long) width * height * (floats ? Float.BYTES : 1);
+        int count = (int) Math.max(1, (size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        ByteBuffer[] segments = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long position = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + position, Math.min(SEGMENT_MASK + 1, size - position))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new MappedRasterStore(segments, width, height, floats);
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        long index = (long) y * width + x;
+        if (floats) {
+            long offset = index * Float.BYTES;
+            return segments[(int) (offset >>> SEGMENT_SHIFT)].getFloat((int) (offset & SEGMENT_MASK));
+        }
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK)) & 0xff;
+    }
+
+    /**
+     * The samples live in the page cache, not on the heap.
+     */
+    @Override
+    public long sizeInBytes() {
+        return 0;
+    }
+
+    @Override
+    public boolean costlyReads() {
+        return true;
+    }
+
+    void updateChecksum(Checksum checksum) {
+        for (ByteBuffer segment : segments) {
+            checksum.update(segment.duplicate());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.aldhafara.lightPollutionService.raster;
+
+/**
+ * View of a raster that reads 0 wherever the mask is set, so every sampler and index built on it ignores
+ * masked pixels.
+ */
+public final class MaskedRasterStore implements RasterStore {
+
+    private final RasterStore raster;
+    private final BitMask mask;
+
+    public MaskedRasterStore(RasterStore raster, BitMask mask) {
+        if (raster.width() != mask.width() || raster.height() != mask.height()) {
+            throw new IllegalArgumentException("Mask " + mask.width() + "x" + mask.height()
+                    + " does not match raster " + raster.width() + "x" + raster.height());
+        }
+        this.raster = raster;
+        this.mask = mask;
+    }
+
+    @Override
+    public int width() {
+        return raster.width();
+    }
+
+    @Override
+    public int height() {
+        return raster.height();
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        return mask.get(x, y) ? 0 : raster.getValue(x, y);
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return raster.sizeInBytes() + mask.sizeInBytes();
+    }
+
+    @Override
+    public boolean costlyReads() {
+        return raster.costlyReads();
+    }
+}
@@ -0,0 +1,109 @@
+package com.aldhafara.lightPollutionService.raster;
+
+/**
+ * Raster of 8- or 16-bit codes read back through a decode table, built by {@link StorageMode}.
+ */
+public final class QuantizedRasterStore implements RasterStore {
+
+    private static final int UINT16_LEVELS = 1 << 16;
+
+    private final int width;
+    private final int height;
+    private final byte[] bytes;
+    private final short[] shorts;
+    private final float[] table;
+
+    private QuantizedRasterStore(int width, int height, byte[] bytes, short[] shorts, float[] table) {
+        this.width = width;
+        this.height = height;
+        this.bytes = bytes;
+        this.shorts = shorts;
+        this.table = table;
+    }
+
+    /**
+     * 256 evenly spaced levels between the band's minimum and maximum.
+     */
+    static QuantizedRasterStore linear8(RasterStore raster) {
+        double[] range = range(raster);
+        double min = range[0];
+        double step = (range[1] - min) / 255;
+        float[] table = new float[256];
+        for (int code = 0; code < table.length; code++) {
+            table[code] = (float) (min + code * step);
+        }
+        int width = raster.width();
+        byte[] codes = new byte[Math.multiplyExact(width, raster.height())];
+        for (int y = 0; y < raster.height(); y++) {
+            for (int x = 0; x < width; x++) {
+                double value = raster.getValue(x, y);
+                codes[y * width + x] = (byte) (step > 0 && value > min ? Math.min(255, Math.round((value - min) / step)) : 0);
+            }
+        }
+        return new QuantizedRasterStore(width, raster.height(), codes, null, table);
+    }
+
+    /**
+     * 65536 levels evenly spaced in {@code ln(1 + v - min)}.
+     */
+    static QuantizedRasterStore log16(RasterStore raster) {
+        double[] range = range(raster);
+        double min = range[0];
+        double step = Math.log1p(range[1] - min) / (UINT16_LEVELS - 1);
+        float[] table = new float[UINT16_LEVELS];
+        for (int code = 0; code < table.length; code++) {
+            table[code] = (float) (min + Math.expm1(code * step));
+        }
+        int width = raster.width();
+        short[] codes = new short[Math.multiplyExact(width, raster.height())];
+        for (int y = 0; y < raster.height(); y++) {
+            for (int x = 0; x < width; x++) {
+                double value = raster.getValue(x, y);
+                codes[y * width + x] = (short) (step > 0 && value > min
+                        ? Math.min(UINT16_LEVELS - 1, Math.round(Math.log1p(value - min) / step)) : 0);
+            }
+        }
+        return new QuantizedRasterStore(width, raster.height(), null, codes, table);
+    }
+
+    /**
+     * Minimum and maximum of the non-NaN samples, or zeros when there are none.
+     */
+    private static double[] range(RasterStore raster) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < raster.height(); y++) {
+            for (int x = 0; x < raster.width(); x++) {
+                double value = raster.getValue(x, y);
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+            }
+        }
+        return min <= max ? new double[] {min, max} : new double[] {0, 0};
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        int index = y * width + x;
+        return bytes != null ? table[bytes[index] & 0xff] : table[shorts[index] & 0xffff];
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return (bytes != null ? bytes.length : (long) shorts.length * Short.BYTES) + (long) table.length * Float.BYTES;
+    }
+}
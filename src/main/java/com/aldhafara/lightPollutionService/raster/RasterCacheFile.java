@@ -0,0 +1,143 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * On-disk form of a decoded first band: a little-endian header holding the geo-reference, the sample width and a
+ * CRC32C of the samples, followed by the samples in row-major order. Samples are stored as unsigned bytes or as
+ * floats, so wider integer types and doubles are narrowed to float.
+ * <p>
+ * Reading maps the samples instead of copying them, so a restart pays for one sequential checksum pass rather than
+ * for decompressing the TIFF.
+ */
+public final class RasterCacheFile {
+
+    private static final int MAGIC = 0x4352504C; // "LPRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 4 + 4 * 8 + 8;
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private RasterCacheFile() {
+    }
+
+    /**
+     * Writes to a sibling temporary file first and moves it into place, so readers never see a partial file.
+     *
+     * @param floats whether to store float samples rather than unsigned bytes
+     */
+    public static void write(Path path, RasterStore raster, ViirsGeoReference geoReference, boolean floats,
+                             long fingerprint) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int width = raster.width();
+            int height = raster.height();
+            CRC32C checksum = new CRC32C();
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_BYTES);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (chunk.remaining() < Float.BYTES) {
+                        flush(channel, chunk, checksum);
+                    }
+                    double value = raster.getValue(x, y);
+                    if (floats) {
+                        chunk.putFloat((float) value);
+                    } else {
+                        chunk.put((byte) value);
+                    }
+                }
+            }
+            flush(channel, chunk, checksum);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putLong(fingerprint)
+                    .putInt(floats ? Float.BYTES : 1).putInt(width).putInt(height).putInt(0)
+                    .putDouble(geoReference.originX()).putDouble(geoReference.originY())
+                    .putDouble(geoReference.pixelScaleX()).putDouble(geoReference.pixelScaleY())
+                    .putLong(checksum.getValue());
+            channel.position(0);
+            writeFully(channel, header.flip());
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the raster back, or returns {@code null} if the file is missing, of another format version or was
+     * written from a different source.
+     *
+     * @throws IOException if the file matches but is truncated or fails its checksum
+     */
+    public static Cached read(Path path, long fingerprint) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Unexpected end of raster cache file " + path);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != fingerprint) {
+                return null;
+            }
+            int sampleBytes = header.getInt();
+            int width = header.getInt();
+            int height = header.getInt();
+            header.getInt();
+            if (sampleBytes != 1 && sampleBytes != Float.BYTES || width <= 0 || height <= 0) {
+                throw new IOException("Corrupt raster cache file " + path + ": " + width + "x" + height + " x " + sampleBytes + " bytes");
+            }
+            ViirsGeoReference geoReference = new ViirsGeoReference(header.getDouble(), header.getDouble(),
+                    header.getDouble(), header.getDouble(), width, height);
+            long expectedChecksum = header.getLong();
+            if (channel.size() != HEADER_BYTES + (long) width * height * sampleBytes) {
+                throw new IOException("Corrupt raster cache file " + path + ": " + channel.size() + " bytes");
+            }
+
+            MappedRasterStore raster = MappedRasterStore.map(channel, HEADER_BYTES, width, height, sampleBytes == Float.BYTES);
+            CRC32C checksum = new CRC32C();
+            raster.updateChecksum(checksum);
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("Corrupt raster cache file " + path + ": checksum mismatch");
+            }
+            return new Cached(geoReference, raster);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer chunk, CRC32C checksum) throws IOException {
+        chunk.flip();
+        checksum.update(chunk.duplicate());
+        writeFully(channel, chunk);
+        chunk.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public record Cached(ViirsGeoReference geoReference, RasterStore raster) {
+    }
+}
@@ -0,0 +1,131 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.util.Arrays;
+
+/**
+ * Mipmap-style pyramid over a base raster. Level {@code k} holds the mean and the maximum of every
+ * {@code 2^k x 2^k} block of base pixels; partial blocks at the right and bottom edges aggregate only the
+ * pixels they cover. Level 0 is the base raster itself and is not stored here.
+ * <p>
+ * Levels larger than the configured pixel budget are skipped: the first stored level is computed straight from
+ * the base raster and every further level from the one before it, so the base is read exactly once.
+ */
+public final class RasterPyramid {
+
+    private final int baseWidth;
+    private final int baseHeight;
+    private final Level[] levels;
+
+    RasterPyramid(int baseWidth, int baseHeight, Level[] levels) {
+        this.baseWidth = baseWidth;
+        this.baseHeight = baseHeight;
+        this.levels = levels;
+    }
+
+    public static RasterPyramid build(RasterStore base, int maxLevel, long maxPixelsPerLevel) {
+        int width = base.width();
+        int height = base.height();
+        int top = 0;
+        while (top < maxLevel && (width > 1 << top || height > 1 << top)) {
+            top++;
+        }
+        Level[] levels = new Level[top + 1];
+        Level previous = null;
+        for (int level = 1; level <= top; level++) {
+            int factor = 1 << level;
+            if (previous == null && (long) Math.ceilDiv(width, factor) * Math.ceilDiv(height, factor) > maxPixelsPerLevel) {
+                continue;
+            }
+            previous = previous == null
+                    ? downsample(level, base, base, 1, factor, width, height)
+                    : downsample(level, previous.mean(), previous.max(), 1 << previous.level(), 1 << (level - previous.level()), width, height);
+            levels[level] = previous;
+        }
+        return new RasterPyramid(width, height, levels);
+    }
+
+    public int baseWidth() {
+        return baseWidth;
+    }
+
+    public int baseHeight() {
+        return baseHeight;
+    }
+
+    /**
+     * Highest level of the pyramid, whether or not every level below it is stored.
+     */
+    public int maxLevel() {
+        return levels.length - 1;
+    }
+
+    /**
+     * The stored level, or {@code null} for level 0, levels above {@link #maxLevel()} and levels skipped for size.
+     */
+    public Level level(int level) {
+        return level > 0 && level < levels.length ? levels[level] : null;
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Level level : levels) {
+            if (level != null) {
+                bytes += level.mean().sizeInBytes() + level.max().sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    Level[] levels() {
+        return levels;
+    }
+
+    private static Level downsample(int level, RasterStore sourceMean, RasterStore sourceMax, int sourceFactor, int step,
+                                    int baseWidth, int baseHeight) {
+        int sourceWidth = sourceMean.width();
+        int sourceHeight = sourceMean.height();
+        int width = Math.ceilDiv(sourceWidth, step);
+        int height = Math.ceilDiv(sourceHeight, step);
+        float[] mean = new float[width * height];
+        float[] max = new float[width * height];
+
+        double[] sums = new double[width];
+        double[] weights = new double[width];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(weights, 0);
+            Arrays.fill(max, y * width, (y + 1) * width, Float.NEGATIVE_INFINITY);
+            int sourceYEnd = Math.min((y + 1) * step, sourceHeight);
+            for (int sy = y * step; sy < sourceYEnd; sy++) {
+                int rowWeight = cellSize(sy, sourceFactor, baseHeight);
+                for (int sx = 0; sx < sourceWidth; sx++) {
+                    int x = sx / step;
+                    double weight = (double) rowWeight * cellSize(sx, sourceFactor, baseWidth);
+                    sums[x] += sourceMean.getValue(sx, sy) * weight;
+                    weights[x] += weight;
+                    float value = (float) sourceMax.getValue(sx, sy);
+                    if (value > max[y * width + x]) {
+                        max[y * width + x] = value;
+                    }
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                mean[y * width + x] = (float) (sums[x] / weights[x]);
+            }
+        }
+        return new Level(level, new FloatRasterStore(width, height, mean), new FloatRasterStore(width, height, max));
+    }
+
+    /**
+     * Number of base pixels covered along one axis by cell {@code index} of a grid with the given factor.
+     */
+    private static int cellSize(int index, int factor, int baseSize) {
+        return Math.min(factor, baseSize - index * factor);
+    }
+
+    public record Level(int level, FloatRasterStore mean, FloatRasterStore max) {
+        public int factor() {
+            return 1 << level;
+        }
+    }
+}
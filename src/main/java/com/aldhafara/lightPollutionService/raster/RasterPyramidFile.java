@@ -0,0 +1,140 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * On-disk form of a {@link RasterPyramid}: a little-endian header followed by the mean and max samples of each
+ * stored level. The header carries a fingerprint of the source raster so a stale file is never served.
+ */
+public final class RasterPyramidFile {
+
+    private static final int MAGIC = 0x5950504C; // "LPPY"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4;
+    private static final int LEVEL_HEADER_BYTES = 4 + 4 + 4;
+    private static final int CHUNK_FLOATS = 1 << 16;
+
+    private RasterPyramidFile() {
+    }
+
+    /**
+     * Writes to a sibling temporary file first and moves it into place, so readers never see a partial file.
+     */
+    public static void write(Path path, RasterPyramid pyramid, long fingerprint) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putLong(fingerprint)
+                    .putInt(pyramid.baseWidth()).putInt(pyramid.baseHeight()).putInt(pyramid.maxLevel());
+            writeFully(channel, header.flip());
+
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_FLOATS * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (RasterPyramid.Level level : pyramid.levels()) {
+                if (level == null) {
+                    continue;
+                }
+                ByteBuffer levelHeader = ByteBuffer.allocate(LEVEL_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(level.level()).putInt(level.mean().width()).putInt(level.mean().height());
+                writeFully(channel, levelHeader.flip());
+                writeFloats(channel, level.mean().samples(), chunk);
+                writeFloats(channel, level.max().samples(), chunk);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the pyramid back, or returns {@code null} if the file is missing, of another format version or
+     * was built from a different source raster.
+     *
+     * @throws IOException if the file matches but is truncated or otherwise unreadable
+     */
+    public static RasterPyramid read(Path path, long fingerprint) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != fingerprint) {
+                return null;
+            }
+            int baseWidth = header.getInt();
+            int baseHeight = header.getInt();
+            int maxLevel = header.getInt();
+            if (maxLevel < 0 || maxLevel > 30) {
+                throw new IOException("Corrupt pyramid file " + path + ": max level " + maxLevel);
+            }
+
+            RasterPyramid.Level[] levels = new RasterPyramid.Level[maxLevel + 1];
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_FLOATS * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (channel.position() < channel.size()) {
+                ByteBuffer levelHeader = readFully(channel, LEVEL_HEADER_BYTES);
+                int level = levelHeader.getInt();
+                int width = levelHeader.getInt();
+                int height = levelHeader.getInt();
+                if (level < 1 || level > maxLevel
+                        || width != Math.ceilDiv(baseWidth, 1 << level) || height != Math.ceilDiv(baseHeight, 1 << level)) {
+                    throw new IOException("Corrupt pyramid file " + path + ": unexpected level " + level + " (" + width + "x" + height + ")");
+                }
+                FloatRasterStore mean = new FloatRasterStore(width, height, readFloats(channel, width * height, chunk));
+                FloatRasterStore max = new FloatRasterStore(width, height, readFloats(channel, width * height, chunk));
+                levels[level] = new RasterPyramid.Level(level, mean, max);
+            }
+            return new RasterPyramid(baseWidth, baseHeight, levels);
+        }
+    }
+
+    private static void writeFloats(FileChannel channel, float[] values, ByteBuffer chunk) throws IOException {
+        for (int offset = 0; offset < values.length; offset += CHUNK_FLOATS) {
+            int count = Math.min(CHUNK_FLOATS, values.length - offset);
+            chunk.clear();
+            chunk.asFloatBuffer().put(values, offset, count);
+            chunk.limit(count * Float.BYTES);
+            writeFully(channel, chunk);
+        }
+    }
+
+    private static float[] readFloats(FileChannel channel, int count, ByteBuffer chunk) throws IOException {
+        float[] values = new float[count];
+        for (int offset = 0; offset < count; offset += CHUNK_FLOATS) {
+            int n = Math.min(CHUNK_FLOATS, count - offset);
+            chunk.clear().limit(n * Float.BYTES);
+            fill(channel, chunk);
+            chunk.flip().asFloatBuffer().get(values, offset, n);
+        }
+        return values;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        fill(channel, buffer);
+        return buffer.flip();
+    }
+
+    private static void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of pyramid file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
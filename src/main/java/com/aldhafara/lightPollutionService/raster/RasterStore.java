@@ -0,0 +1,25 @@
+package com.aldhafara.lightPollutionService.raster;
+
+public interface RasterStore {
+    int width();
+
+    int height();
+
+    /**
+     * Raw sample of the band at the given pixel. Callers are responsible for bounds checking.
+     */
+    double getValue(int x, int y);
+
+    /**
+     * Heap memory held by the store, used to budget how many datasets stay resident.
+     */
+    long sizeInBytes();
+
+    /**
+     * Whether a read costs more than an array index, such as touching a mapped file or decoding a block, which is
+     * what makes caching samples worthwhile.
+     */
+    default boolean costlyReads() {
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.util.Locale;
+
+/**
+ * How a decoded band is held in memory. Quantized modes map each sample to a code through the band's own value range
+ * and read it back through a decode table, so lookups cost one array read more than the native store.
+ * <p>
+ * Error bounds, for a band whose values span {@code [min, max]}:
+ * <ul>
+ *     <li>{@link #NATIVE}: none; 8-bit sources stay bytes, every other sample type becomes float32.</li>
+ *     <li>{@link #UINT8}: 1 byte per pixel, linear, absolute error at most {@code (max - min) / 510}. Exact for 8-bit
+ *     sources, which are kept as they are.</li>
+ *     <li>{@link #UINT16_LOG}: 2 bytes per pixel, logarithmic, error at most {@code (1 + v - min) * expm1(s / 2)} with
+ *     {@code s = ln(1 + max - min) / 65535}: for radiances up to 1000 that is under 0.006% of {@code 1 + v - min},
+ *     so dark pixels keep their fine steps while bright ones get coarser ones.</li>
+ *     <li>{@link #FLOAT32}: 4 bytes per pixel, error at most half a float32 ulp, none for 8- and 16-bit sources.</li>
+ * </ul>
+ * NaN samples are stored as {@code min} by the quantized modes.
+ */
+public enum StorageMode {
+    NATIVE,
+    UINT8,
+    UINT16_LOG,
+    FLOAT32;
+
+    /**
+     * Parses {@code native}, {@code uint8}, {@code uint16-log} or {@code float32}, ignoring case.
+     */
+    public static StorageMode fromProperty(String value) {
+        String normalized = value.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        for (StorageMode mode : values()) {
+            if (mode.name().equals(normalized)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException(
+                "Unknown storage mode '" + value + "', expected native, uint8, uint16-log or float32");
+    }
+
+    public String property() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * Copies the band into this mode's representation, or returns it unchanged when it already is one.
+     */
+    public RasterStore store(RasterStore raster) {
+        return switch (this) {
+            case NATIVE -> raster;
+            case UINT8 -> raster instanceof ByteRasterStore ? raster : QuantizedRasterStore.linear8(raster);
+            case UINT16_LOG -> QuantizedRasterStore.log16(raster);
+            case FLOAT32 -> raster instanceof FloatRasterStore ? raster : toFloats(raster);
+        };
+    }
+
+    private static FloatRasterStore toFloats(RasterStore raster) {
+        int width = raster.width();
+        float[] samples = new float[Math.multiplyExact(width, raster.height())];
+        for (int y = 0; y < raster.height(); y++) {
+            for (int x = 0; x < width; x++) {
+                samples[y * width + x] = (float) raster.getValue(x, y);
+            }
+        }
+        return new FloatRasterStore(width, raster.height(), samples);
+    }
+}
@@ -0,0 +1,64 @@
+package com.aldhafara.lightPollutionService.raster;
+
+/**
+ * Integral image of a raster: any axis-aligned rectangle sum is four lookups. Entry {@code (x, y)} holds the
+ * sum of all samples above and to the left of pixel {@code (x, y)}, so the table is one row and column larger
+ * than the raster.
+ */
+public final class SummedAreaTable {
+
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final double[] sums;
+
+    private SummedAreaTable(int width, int height, double[] sums) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+        this.sums = sums;
+    }
+
+    public static SummedAreaTable build(RasterStore raster) {
+        int width = raster.width();
+        int height = raster.height();
+        long entries = (long) (width + 1) * (height + 1);
+        if (entries > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Raster " + width + "x" + height + " is too large for a summed-area table");
+        }
+        int stride = width + 1;
+        double[] sums = new double[(int) entries];
+        for (int y = 0; y < height; y++) {
+            double rowSum = 0;
+            int above = y * stride;
+            int current = above + stride;
+            for (int x = 0; x < width; x++) {
+                rowSum += raster.getValue(x, y);
+                sums[current + x + 1] = sums[above + x + 1] + rowSum;
+            }
+        }
+        return new SummedAreaTable(width, height, sums);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public long sizeInBytes() {
+        return (long) sums.length * Double.BYTES;
+    }
+
+    /**
+     * Sum of the samples in columns {@code [x0, x1)} and rows {@code [y0, y1)}. Callers are responsible for
+     * bounds checking.
+     */
+    public double sum(int x0, int y0, int x1, int y1) {
+        int top = y0 * stride;
+        int bottom = y1 * stride;
+        return sums[bottom + x1] - sums[bottom + x0] - sums[top + x1] + sums[top + x0];
+    }
+}
@@ -0,0 +1,146 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.exception.TiffMetadataExtractionException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Turns one compressed strip or tile into its uncompressed bytes, in file byte order, with any
+ * predictor already undone.
+ */
+public final class TiffBlockDecoder {
+
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final TiffDirectory directory;
+    private final TiffByteSource source;
+
+    public TiffBlockDecoder(TiffDirectory directory, TiffByteSource source) {
+        this.directory = directory;
+        this.source = source;
+    }
+
+    public byte[] decode(int blockIndex) throws TiffMetadataExtractionException {
+        byte[] output = new byte[directory.decodedBlockBytes(blockIndex)];
+        decodeInto(blockIndex, output);
+        return output;
+    }
+
+    public void decodeInto(int blockIndex, byte[] output) throws TiffMetadataExtractionException {
+        long offset = directory.blockOffsets()[blockIndex];
+        int byteCount = Math.toIntExact(directory.blockByteCounts()[blockIndex]);
+        if (byteCount == 0) {
+            Arrays.fill(output, (byte) 0);
+            return;
+        }
+        ByteBuffer compressed = source.slice(offset, byteCount);
+
+        switch (directory.compression()) {
+            case TiffDirectory.COMPRESSION_NONE -> compressed.get(0, output, 0, Math.min(byteCount, output.length));
+            case TiffDirectory.COMPRESSION_LZW -> TiffLzwDecoder.decode(compressed, output);
+            case TiffDirectory.COMPRESSION_DEFLATE, TiffDirectory.COMPRESSION_DEFLATE_LEGACY -> inflate(compressed, output, blockIndex);
+            default -> throw new TiffMetadataExtractionException("Unsupported compression " + directory.compression());
+        }
+
+        int rows = directory.blockRows(blockIndex);
+        switch (directory.predictor()) {
+            case TiffDirectory.PREDICTOR_HORIZONTAL -> undoHorizontalDifferencing(output, rows);
+            case TiffDirectory.PREDICTOR_FLOATING_POINT -> undoFloatingPointDifferencing(output, rows);
+            default -> {
+            }
+        }
+    }
+
+    private void inflate(ByteBuffer compressed, byte[] output, int blockIndex) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int written = 0;
+            while (written < output.length && !inflater.finished()) {
+                int n = inflater.inflate(output, written, output.length - written);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                written += n;
+            }
+        } catch (DataFormatException e) {
+            throw new TiffMetadataExtractionException("Corrupt DEFLATE data in block " + blockIndex, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void undoHorizontalDifferencing(byte[] data, int rows) {
+        int stride = directory.pixelStride();
+        int samplesPerRow = directory.blockWidth() * stride;
+        boolean bigEndian = directory.byteOrder() == ByteOrder.BIG_ENDIAN;
+        switch (directory.sampleType().bytes()) {
+            case 1 -> {
+                for (int row = 0; row < rows; row++) {
+                    int base = row * samplesPerRow;
+                    for (int i = stride; i < samplesPerRow; i++) {
+                        data[base + i] += data[base + i - stride];
+                    }
+                }
+            }
+            case 2 -> {
+                VarHandle handle = bigEndian ? SHORT_BE : SHORT_LE;
+                for (int row = 0; row < rows; row++) {
+                    int base = row * samplesPerRow * 2;
+                    for (int i = stride; i < samplesPerRow; i++) {
+                        int at = base + i * 2;
+                        short sum = (short) ((short) handle.get(data, at) + (short) handle.get(data, at - stride * 2));
+                        handle.set(data, at, sum);
+                    }
+                }
+            }
+            case 4 -> {
+                VarHandle handle = bigEndian ? INT_BE : INT_LE;
+                for (int row = 0; row < rows; row++) {
+                    int base = row * samplesPerRow * 4;
+                    for (int i = stride; i < samplesPerRow; i++) {
+                        int at = base + i * 4;
+                        handle.set(data, at, (int) handle.get(data, at) + (int) handle.get(data, at - stride * 4));
+                    }
+                }
+            }
+            default -> throw new TiffMetadataExtractionException(
+                    "Horizontal predictor is not supported for " + directory.sampleType());
+        }
+    }
+
+    /**
+     * Reverses the byte-wise differencing and the byte-plane shuffle of TIFF predictor 3. The shuffled
+     * row stores the most significant byte of every sample first; the result is written in file byte order.
+     */
+    private void undoFloatingPointDifferencing(byte[] data, int rows) {
+        int stride = directory.pixelStride();
+        int bytes = directory.sampleType().bytes();
+        int samplesPerRow = directory.blockWidth() * stride;
+        int rowBytes = samplesPerRow * bytes;
+        boolean bigEndian = directory.byteOrder() == ByteOrder.BIG_ENDIAN;
+        byte[] shuffled = new byte[rowBytes];
+        for (int row = 0; row < rows; row++) {
+            int base = row * rowBytes;
+            for (int i = stride; i < rowBytes; i++) {
+                data[base + i] += data[base + i - stride];
+            }
+            System.arraycopy(data, base, shuffled, 0, rowBytes);
+            for (int sample = 0; sample < samplesPerRow; sample++) {
+                for (int b = 0; b < bytes; b++) {
+                    int plane = bigEndian ? b : bytes - 1 - b;
+                    data[base + sample * bytes + b] = shuffled[plane * samplesPerRow + sample];
+                }
+            }
+        }
+    }
+}
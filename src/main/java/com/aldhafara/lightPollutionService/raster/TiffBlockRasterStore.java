@@ -0,0 +1,104 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the first band of a strip- or tile-organized TIFF without decoding the whole image. Only the
+ * blocks touched by lookups are decompressed, and they are kept in a bounded direct-mapped cache.
+ */
+public final class TiffBlockRasterStore implements RasterStore {
+
+    private final TiffDirectory directory;
+    private final TiffBlockDecoder decoder;
+    private final AtomicReferenceArray<Block> cache;
+    private final TiffSampleType sampleType;
+    private final boolean bigEndian;
+    private final int blockWidth;
+    private final int blockHeight;
+    private final int blocksAcross;
+    private final int pixelBytes;
+    private final LongAdder decodedBlocks = new LongAdder();
+
+    public TiffBlockRasterStore(TiffDirectory directory, TiffByteSource source, int cachedBlocks) {
+        if (cachedBlocks < 1) {
+            throw new IllegalArgumentException("At least one block must be cached");
+        }
+        this.directory = directory;
+        this.decoder = new TiffBlockDecoder(directory, source);
+        this.cache = new AtomicReferenceArray<>(cachedBlocks);
+        this.sampleType = directory.sampleType();
+        this.bigEndian = directory.byteOrder() == ByteOrder.BIG_ENDIAN;
+        this.blockWidth = directory.blockWidth();
+        this.blockHeight = directory.blockHeight();
+        this.blocksAcross = directory.blocksAcross();
+        this.pixelBytes = directory.pixelStride() * sampleType.bytes();
+    }
+
+    public static TiffBlockRasterStore open(Path file, int cachedBlocks) throws IOException {
+        TiffByteSource source = TiffByteSource.map(file);
+        return new TiffBlockRasterStore(TiffDirectory.read(source), source, cachedBlocks);
+    }
+
+    public TiffDirectory directory() {
+        return directory;
+    }
+
+    @Override
+    public int width() {
+        return directory.width();
+    }
+
+    @Override
+    public int height() {
+        return directory.height();
+    }
+
+    /**
+     * Upper bound: the block cache filled with full-size decoded blocks. The mapped file itself lives in the
+     * page cache, not on the heap.
+     */
+    @Override
+    public long sizeInBytes() {
+        return (long) cache.length() * blockWidth * blockHeight * pixelBytes;
+    }
+
+    @Override
+    public boolean costlyReads() {
+        return true;
+    }
+
+    /**
+     * Blocks decompressed so far, counting each cache miss.
+     */
+    public long decodedBlocks() {
+        return decodedBlocks.sum();
+    }
+
+    @Override
+    public double getValue(int x, int y) {
+        int blockX = x / blockWidth;
+        int blockY = y / blockHeight;
+        byte[] data = block(blockY * blocksAcross + blockX);
+        int offset = ((y - blockY * blockHeight) * blockWidth + (x - blockX * blockWidth)) * pixelBytes;
+        return sampleType.read(data, offset, bigEndian);
+    }
+
+    private byte[] block(int index) {
+        int slot = index % cache.length();
+        Block cached = cache.get(slot);
+        if (cached != null && cached.index() == index) {
+            return cached.data();
+        }
+        byte[] data = decoder.decode(index);
+        decodedBlocks.increment();
+        cache.set(slot, new Block(index, data));
+        return data;
+    }
+
+    private record Block(int index, byte[] data) {
+    }
+}
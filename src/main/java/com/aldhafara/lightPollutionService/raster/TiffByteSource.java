@@ -0,0 +1,70 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to the bytes of a TIFF file, either wrapped from the heap or memory-mapped.
+ * Mapped files are split into segments because a single mapping cannot exceed 2 GiB.
+ */
+public final class TiffByteSource {
+
+    private static final int MAPPED_SEGMENT_SIZE = 1 << 30;
+
+    private final ByteBuffer[] segments;
+    private final int segmentSize;
+    private final long size;
+
+    private TiffByteSource(ByteBuffer[] segments, int segmentSize, long size) {
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+        this.size = size;
+    }
+
+    public static TiffByteSource wrap(byte[] data) {
+        return new TiffByteSource(new ByteBuffer[]{ByteBuffer.wrap(data)}, Math.max(1, data.length), data.length);
+    }
+
+    public static TiffByteSource map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int count = (int) Math.max(1, (size + MAPPED_SEGMENT_SIZE - 1) / MAPPED_SEGMENT_SIZE);
+            ByteBuffer[] segments = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long position = (long) i * MAPPED_SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_SEGMENT_SIZE, size - position));
+            }
+            return new TiffByteSource(segments, MAPPED_SEGMENT_SIZE, size);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns a buffer positioned at zero holding {@code length} bytes starting at {@code offset}.
+     * Ranges inside one segment are zero-copy views, ranges spanning segments are copied.
+     */
+    public ByteBuffer slice(long offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " outside file of " + size + " bytes");
+        }
+        int segment = (int) (offset / segmentSize);
+        int position = (int) (offset % segmentSize);
+        if (position + length <= segments[segment].limit()) {
+            return segments[segment].slice(position, length);
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        while (copy.hasRemaining()) {
+            int chunk = Math.min(copy.remaining(), segments[segment].limit() - position);
+            copy.put(segments[segment].slice(position, chunk));
+            segment++;
+            position = 0;
+        }
+        return copy.flip();
+    }
+}
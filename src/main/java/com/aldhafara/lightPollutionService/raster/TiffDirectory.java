@@ -0,0 +1,309 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.exception.InvalidTiffFieldException;
+import com.aldhafara.lightPollutionService.exception.MissingTiffFieldException;
+import com.aldhafara.lightPollutionService.exception.TiffMetadataExtractionException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Layout of the first image file directory of a classic or BigTIFF file. Strip-organized images are
+ * described as blocks spanning the full image width, so strips and tiles are addressed the same way.
+ */
+public record TiffDirectory(
+        ByteOrder byteOrder,
+        int width,
+        int height,
+        int samplesPerPixel,
+        TiffSampleType sampleType,
+        int compression,
+        int predictor,
+        int planarConfiguration,
+        boolean tiled,
+        int blockWidth,
+        int blockHeight,
+        long[] blockOffsets,
+        long[] blockByteCounts,
+        double[] modelPixelScale,
+        double[] modelTiepoint
+) {
+    public static final int COMPRESSION_NONE = 1;
+    public static final int COMPRESSION_LZW = 5;
+    public static final int COMPRESSION_DEFLATE = 8;
+    public static final int COMPRESSION_DEFLATE_LEGACY = 32946;
+
+    public static final int PREDICTOR_NONE = 1;
+    public static final int PREDICTOR_HORIZONTAL = 2;
+    public static final int PREDICTOR_FLOATING_POINT = 3;
+
+    public static final int PLANAR_CHUNKY = 1;
+    public static final int PLANAR_SEPARATE = 2;
+
+    static final int TAG_IMAGE_WIDTH = 256;
+    static final int TAG_IMAGE_LENGTH = 257;
+    static final int TAG_BITS_PER_SAMPLE = 258;
+    static final int TAG_COMPRESSION = 259;
+    static final int TAG_STRIP_OFFSETS = 273;
+    static final int TAG_SAMPLES_PER_PIXEL = 277;
+    static final int TAG_ROWS_PER_STRIP = 278;
+    static final int TAG_STRIP_BYTE_COUNTS = 279;
+    static final int TAG_PLANAR_CONFIGURATION = 284;
+    static final int TAG_PREDICTOR = 317;
+    static final int TAG_TILE_WIDTH = 322;
+    static final int TAG_TILE_LENGTH = 323;
+    static final int TAG_TILE_OFFSETS = 324;
+    static final int TAG_TILE_BYTE_COUNTS = 325;
+    static final int TAG_SAMPLE_FORMAT = 339;
+    static final int TAG_MODEL_PIXEL_SCALE = 33550;
+    static final int TAG_MODEL_TIEPOINT = 33922;
+
+    private static final int CLASSIC_MAGIC = 42;
+    private static final int BIG_TIFF_MAGIC = 43;
+
+    public int blocksAcross() {
+        return (width + blockWidth - 1) / blockWidth;
+    }
+
+    public int blocksDown() {
+        return (height + blockHeight - 1) / blockHeight;
+    }
+
+    /**
+     * Number of interleaved samples per pixel inside one decoded block.
+     */
+    public int pixelStride() {
+        return planarConfiguration == PLANAR_SEPARATE ? 1 : samplesPerPixel;
+    }
+
+    /**
+     * Number of rows actually stored in the given block; the last strip of an image may be shorter.
+     */
+    public int blockRows(int blockIndex) {
+        if (tiled) {
+            return blockHeight;
+        }
+        int row = (blockIndex % (blocksAcross() * blocksDown())) / blocksAcross();
+        return Math.min(blockHeight, height - row * blockHeight);
+    }
+
+    public int decodedBlockBytes(int blockIndex) {
+        return blockWidth * blockRows(blockIndex) * pixelStride() * sampleType.bytes();
+    }
+
+    /**
+     * Cheap identity of the image layout. Rewriting the pixel data changes the compressed block sizes, so this
+     * tells derived caches apart without hashing the whole file.
+     */
+    public long fingerprint() {
+        long hash = 17;
+        hash = 31 * hash + width;
+        hash = 31 * hash + height;
+        hash = 31 * hash + samplesPerPixel;
+        hash = 31 * hash + sampleType.ordinal();
+        hash = 31 * hash + compression;
+        hash = 31 * hash + predictor;
+        for (int i = 0; i < blockOffsets.length; i++) {
+            hash = 31 * hash + blockOffsets[i];
+            hash = 31 * hash + blockByteCounts[i];
+        }
+        hash = 31 * hash + Arrays.hashCode(modelPixelScale);
+        hash = 31 * hash + Arrays.hashCode(modelTiepoint);
+        return hash;
+    }
+
+    public static TiffDirectory read(TiffByteSource source) throws TiffMetadataExtractionException {
+        ByteBuffer header = source.slice(0, (int) Math.min(16, source.size()));
+        if (header.remaining() < 8) {
+            throw new TiffMetadataExtractionException("File too short to be a TIFF");
+        }
+        ByteOrder order = switch (header.getShort(0)) {
+            case 0x4949 -> ByteOrder.LITTLE_ENDIAN;
+            case 0x4D4D -> ByteOrder.BIG_ENDIAN;
+            default -> throw new TiffMetadataExtractionException("Missing TIFF byte order mark");
+        };
+        header.order(order);
+        int magic = header.getShort(2) & 0xffff;
+        boolean bigTiff;
+        long ifdOffset;
+        if (magic == CLASSIC_MAGIC) {
+            bigTiff = false;
+            ifdOffset = header.getInt(4) & 0xffffffffL;
+        } else if (magic == BIG_TIFF_MAGIC && header.remaining() >= 16) {
+            bigTiff = true;
+            ifdOffset = header.getLong(8);
+        } else {
+            throw new TiffMetadataExtractionException("Unsupported TIFF version " + magic);
+        }
+
+        Map<Integer, Entry> entries = readEntries(source, order, bigTiff, ifdOffset);
+
+        int width = (int) required(entries, TAG_IMAGE_WIDTH, "ImageWidth (256)").longValue(0);
+        int height = (int) required(entries, TAG_IMAGE_LENGTH, "ImageLength (257)").longValue(0);
+        int samplesPerPixel = (int) longValue(entries, TAG_SAMPLES_PER_PIXEL, 1);
+        int bitsPerSample = (int) longValue(entries, TAG_BITS_PER_SAMPLE, 1);
+        int sampleFormat = (int) longValue(entries, TAG_SAMPLE_FORMAT, 1);
+        int compression = (int) longValue(entries, TAG_COMPRESSION, COMPRESSION_NONE);
+        int predictor = (int) longValue(entries, TAG_PREDICTOR, PREDICTOR_NONE);
+        int planarConfiguration = (int) longValue(entries, TAG_PLANAR_CONFIGURATION, PLANAR_CHUNKY);
+
+        if (width <= 0 || height <= 0) {
+            throw new InvalidTiffFieldException("ImageWidth/ImageLength", "Invalid size " + width + "x" + height);
+        }
+        Entry bits = entries.get(TAG_BITS_PER_SAMPLE);
+        if (bits != null) {
+            for (long value : bits.longValues()) {
+                if (value != bitsPerSample) {
+                    throw new InvalidTiffFieldException("BitsPerSample", "Mixed sample sizes are not supported");
+                }
+            }
+        }
+        TiffSampleType sampleType = TiffSampleType.of(sampleFormat, bitsPerSample);
+        if (compression != COMPRESSION_NONE && compression != COMPRESSION_LZW
+                && compression != COMPRESSION_DEFLATE && compression != COMPRESSION_DEFLATE_LEGACY) {
+            throw new InvalidTiffFieldException("Compression", "Unsupported compression " + compression);
+        }
+        if (predictor < PREDICTOR_NONE || predictor > PREDICTOR_FLOATING_POINT) {
+            throw new InvalidTiffFieldException("Predictor", "Unsupported predictor " + predictor);
+        }
+        if (planarConfiguration != PLANAR_CHUNKY && planarConfiguration != PLANAR_SEPARATE) {
+            throw new InvalidTiffFieldException("PlanarConfiguration", "Unsupported value " + planarConfiguration);
+        }
+
+        boolean tiled = entries.containsKey(TAG_TILE_OFFSETS);
+        int blockWidth;
+        int blockHeight;
+        long[] offsets;
+        long[] byteCounts;
+        if (tiled) {
+            blockWidth = (int) required(entries, TAG_TILE_WIDTH, "TileWidth (322)").longValue(0);
+            blockHeight = (int) required(entries, TAG_TILE_LENGTH, "TileLength (323)").longValue(0);
+            offsets = entries.get(TAG_TILE_OFFSETS).longValues();
+            byteCounts = required(entries, TAG_TILE_BYTE_COUNTS, "TileByteCounts (325)").longValues();
+        } else {
+            blockWidth = width;
+            blockHeight = (int) Math.min(height, longValue(entries, TAG_ROWS_PER_STRIP, height));
+            offsets = required(entries, TAG_STRIP_OFFSETS, "StripOffsets (273)").longValues();
+            byteCounts = required(entries, TAG_STRIP_BYTE_COUNTS, "StripByteCounts (279)").longValues();
+        }
+        if (blockWidth <= 0 || blockHeight <= 0) {
+            throw new InvalidTiffFieldException(tiled ? "TileWidth/TileLength" : "RowsPerStrip", "Must be positive");
+        }
+        long blocksPerPlane = (long) ((width + blockWidth - 1) / blockWidth) * ((height + blockHeight - 1) / blockHeight);
+        long expectedBlocks = planarConfiguration == PLANAR_SEPARATE ? blocksPerPlane * samplesPerPixel : blocksPerPlane;
+        if (offsets.length < expectedBlocks || byteCounts.length < expectedBlocks) {
+            throw new InvalidTiffFieldException(tiled ? "TileOffsets" : "StripOffsets",
+                    "Expected " + expectedBlocks + " blocks, found " + Math.min(offsets.length, byteCounts.length));
+        }
+
+        Entry pixelScale = entries.get(TAG_MODEL_PIXEL_SCALE);
+        Entry tiepoint = entries.get(TAG_MODEL_TIEPOINT);
+
+        return new TiffDirectory(order, width, height, samplesPerPixel, sampleType, compression, predictor,
+                planarConfiguration, tiled, blockWidth, blockHeight, offsets, byteCounts,
+                pixelScale == null ? null : pixelScale.doubleValues(),
+                tiepoint == null ? null : tiepoint.doubleValues());
+    }
+
+    private static Entry required(Map<Integer, Entry> entries, int tag, String name) {
+        Entry entry = entries.get(tag);
+        if (entry == null) {
+            throw new MissingTiffFieldException(name);
+        }
+        return entry;
+    }
+
+    private static long longValue(Map<Integer, Entry> entries, int tag, long defaultValue) {
+        Entry entry = entries.get(tag);
+        return entry == null ? defaultValue : entry.longValue(0);
+    }
+
+    private static Map<Integer, Entry> readEntries(TiffByteSource source, ByteOrder order, boolean bigTiff, long ifdOffset) {
+        int countSize = bigTiff ? 8 : 2;
+        int entrySize = bigTiff ? 20 : 12;
+        int inlineSize = bigTiff ? 8 : 4;
+        try {
+            ByteBuffer countBuffer = source.slice(ifdOffset, countSize).order(order);
+            long count = bigTiff ? countBuffer.getLong(0) : countBuffer.getShort(0) & 0xffff;
+            ByteBuffer ifd = source.slice(ifdOffset + countSize, Math.toIntExact(count * entrySize)).order(order);
+
+            Map<Integer, Entry> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                int base = i * entrySize;
+                int tag = ifd.getShort(base) & 0xffff;
+                int type = ifd.getShort(base + 2) & 0xffff;
+                long valueCount = bigTiff ? ifd.getLong(base + 4) : ifd.getInt(base + 4) & 0xffffffffL;
+                int typeSize = typeSize(type);
+                if (typeSize == 0) {
+                    continue;
+                }
+                int byteLength = Math.toIntExact(valueCount * typeSize);
+                ByteBuffer values;
+                if (byteLength <= inlineSize) {
+                    values = ifd.slice(base + entrySize - inlineSize, byteLength);
+                } else {
+                    long valueOffset = bigTiff ? ifd.getLong(base + 12) : ifd.getInt(base + 8) & 0xffffffffL;
+                    values = source.slice(valueOffset, byteLength);
+                }
+                entries.put(tag, new Entry(type, (int) valueCount, values.order(order)));
+            }
+            return entries;
+        } catch (IndexOutOfBoundsException | ArithmeticException e) {
+            throw new TiffMetadataExtractionException("Corrupt TIFF directory at offset " + ifdOffset, e);
+        }
+    }
+
+    private static int typeSize(int type) {
+        return switch (type) {
+            case 1, 2, 6, 7 -> 1;
+            case 3, 8 -> 2;
+            case 4, 9, 11 -> 4;
+            case 5, 10, 12, 16, 17 -> 8;
+            default -> 0;
+        };
+    }
+
+    private record Entry(int type, int count, ByteBuffer values) {
+
+        long longValue(int index) {
+            if (index >= count) {
+                throw new InvalidTiffFieldException("type " + type, "Expected at least " + (index + 1) + " values");
+            }
+            return switch (type) {
+                case 1, 7 -> values.get(index) & 0xff;
+                case 6 -> values.get(index);
+                case 3 -> values.getShort(index * 2) & 0xffff;
+                case 8 -> values.getShort(index * 2);
+                case 4 -> values.getInt(index * 4) & 0xffffffffL;
+                case 9 -> values.getInt(index * 4);
+                case 16, 17 -> values.getLong(index * 8);
+                default -> throw new InvalidTiffFieldException("type " + type, "Expected an integer value");
+            };
+        }
+
+        long[] longValues() {
+            long[] result = new long[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = longValue(i);
+            }
+            return result;
+        }
+
+        double[] doubleValues() {
+            double[] result = new double[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = switch (type) {
+                    case 11 -> values.getFloat(i * 4);
+                    case 12 -> values.getDouble(i * 8);
+                    case 5 -> (values.getInt(i * 8) & 0xffffffffL) / (double) (values.getInt(i * 8 + 4) & 0xffffffffL);
+                    case 10 -> values.getInt(i * 8) / (double) values.getInt(i * 8 + 4);
+                    default -> longValue(i);
+                };
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.exception.TiffMetadataExtractionException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * TIFF flavour of LZW: MSB-first codes of 9 to 12 bits with the "early change" code width increase.
+ */
+final class TiffLzwDecoder {
+
+    private static final int CLEAR_CODE = 256;
+    private static final int END_OF_INFORMATION = 257;
+    private static final int FIRST_CODE = 258;
+    private static final int MAX_CODES = 4096;
+
+    private TiffLzwDecoder() {
+    }
+
+    static void decode(ByteBuffer input, byte[] output) {
+        int[] prefix = new int[MAX_CODES];
+        byte[] suffix = new byte[MAX_CODES];
+        byte[] first = new byte[MAX_CODES];
+        int[] length = new int[MAX_CODES];
+        for (int i = 0; i < 256; i++) {
+            suffix[i] = (byte) i;
+            first[i] = (byte) i;
+            length[i] = 1;
+        }
+
+        int inputLength = input.remaining();
+        int bitPosition = 0;
+        int codeWidth = 9;
+        int nextCode = FIRST_CODE;
+        int previous = -1;
+        int out = 0;
+
+        while (out < output.length) {
+            if (bitPosition + codeWidth > inputLength * 8) {
+                break;
+            }
+            int code = readCode(input, bitPosition, codeWidth);
+            bitPosition += codeWidth;
+
+            if (code == END_OF_INFORMATION) {
+                break;
+            }
+            if (code == CLEAR_CODE) {
+                codeWidth = 9;
+                nextCode = FIRST_CODE;
+                previous = -1;
+                continue;
+            }
+            if (previous == -1) {
+                if (code >= 256) {
+                    throw new TiffMetadataExtractionException("Corrupt LZW stream: code " + code + " after clear");
+                }
+                output[out++] = (byte) code;
+                previous = code;
+                continue;
+            }
+
+            int emitted;
+            if (code < nextCode) {
+                emitted = code;
+            } else if (code == nextCode) {
+                emitted = -1;
+            } else {
+                throw new TiffMetadataExtractionException("Corrupt LZW stream: code " + code + " beyond table size " + nextCode);
+            }
+
+            if (nextCode < MAX_CODES) {
+                prefix[nextCode] = previous;
+                first[nextCode] = first[previous];
+                suffix[nextCode] = emitted == -1 ? first[previous] : first[emitted];
+                length[nextCode] = length[previous] + 1;
+                nextCode++;
+            }
+            out = writeString(emitted == -1 ? nextCode - 1 : emitted, prefix, suffix, length, output, out);
+            previous = code;
+
+            if (nextCode >= (1 << codeWidth) - 1 && codeWidth < 12) {
+                codeWidth++;
+            }
+        }
+    }
+
+    private static int readCode(ByteBuffer input, int bitPosition, int codeWidth) {
+        int byteIndex = bitPosition >>> 3;
+        int bits = (input.get(input.position() + byteIndex) & 0xff) << 16;
+        if (byteIndex + 1 < input.remaining()) {
+            bits |= (input.get(input.position() + byteIndex + 1) & 0xff) << 8;
+        }
+        if (byteIndex + 2 < input.remaining()) {
+            bits |= input.get(input.position() + byteIndex + 2) & 0xff;
+        }
+        int shift = 24 - (bitPosition & 7) - codeWidth;
+        return (bits >>> shift) & ((1 << codeWidth) - 1);
+    }
+
+    private static int writeString(int code, int[] prefix, byte[] suffix, int[] length, byte[] output, int out) {
+        int stringLength = length[code];
+        int end = out + stringLength;
+        int position = end - 1;
+        while (code >= 0 && position >= out) {
+            if (position < output.length) {
+                output[position] = suffix[code];
+            }
+            position--;
+            code = code < 256 ? -1 : prefix[code];
+        }
+        return Math.min(end, output.length);
+    }
+}
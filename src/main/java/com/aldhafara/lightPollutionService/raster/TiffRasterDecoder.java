@@ -0,0 +1,129 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.exception.TiffMetadataExtractionException;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decodes the first band of a whole TIFF into a flat in-memory store: 8-bit unsigned samples stay
+ * bytes, every other sample type is widened or narrowed to float.
+ * <p>
+ * Given a pool, strips or tiles are decompressed in parallel on it. Every block covers its own pixels of the
+ * target array, so the tasks copy into it directly without coordinating.
+ */
+public final class TiffRasterDecoder {
+
+    private TiffRasterDecoder() {
+    }
+
+    public static RasterStore decodeFirstBand(TiffDirectory directory, TiffByteSource source) throws TiffMetadataExtractionException {
+        return decodeFirstBand(directory, source, null);
+    }
+
+    /**
+     * @param pool pool decoding the blocks in parallel, or {@code null} to decode them on the calling thread
+     */
+    public static RasterStore decodeFirstBand(TiffDirectory directory, TiffByteSource source, ForkJoinPool pool)
+            throws TiffMetadataExtractionException {
+        long pixels = (long) directory.width() * directory.height();
+        if (pixels > Integer.MAX_VALUE - 8) {
+            throw new TiffMetadataExtractionException("Raster of " + pixels + " pixels is too large to decode into memory");
+        }
+        TiffBlockDecoder decoder = new TiffBlockDecoder(directory, source);
+        if (directory.sampleType() == TiffSampleType.UINT8) {
+            byte[] samples = new byte[(int) pixels];
+            forEachBlock(directory, decoder, pool, (data, blockX, blockY, rows, columns) -> copyBytes(directory, data, samples, blockX, blockY, rows, columns));
+            return new ByteRasterStore(directory.width(), directory.height(), samples);
+        }
+        float[] samples = new float[(int) pixels];
+        forEachBlock(directory, decoder, pool, (data, blockX, blockY, rows, columns) -> copyFloats(directory, data, samples, blockX, blockY, rows, columns));
+        return new FloatRasterStore(directory.width(), directory.height(), samples);
+    }
+
+    private static void forEachBlock(TiffDirectory directory, TiffBlockDecoder decoder, ForkJoinPool pool,
+                                     BlockConsumer consumer) {
+        int count = directory.blocksAcross() * directory.blocksDown();
+        if (pool == null) {
+            new Blocks(directory, decoder, consumer, 0, count, false).compute();
+        } else {
+            pool.invoke(new Blocks(directory, decoder, consumer, 0, count, true));
+        }
+    }
+
+    private static void copyBytes(TiffDirectory directory, byte[] data, byte[] samples, int blockX, int blockY, int rows, int columns) {
+        int stride = directory.pixelStride();
+        int width = directory.width();
+        for (int row = 0; row < rows; row++) {
+            int source = row * directory.blockWidth() * stride;
+            int target = (blockY * directory.blockHeight() + row) * width + blockX * directory.blockWidth();
+            if (stride == 1) {
+                System.arraycopy(data, source, samples, target, columns);
+            } else {
+                for (int column = 0; column < columns; column++) {
+                    samples[target + column] = data[source + column * stride];
+                }
+            }
+        }
+    }
+
+    private static void copyFloats(TiffDirectory directory, byte[] data, float[] samples, int blockX, int blockY, int rows, int columns) {
+        TiffSampleType type = directory.sampleType();
+        boolean bigEndian = directory.byteOrder() == ByteOrder.BIG_ENDIAN;
+        int pixelBytes = directory.pixelStride() * type.bytes();
+        int width = directory.width();
+        for (int row = 0; row < rows; row++) {
+            int source = row * directory.blockWidth() * pixelBytes;
+            int target = (blockY * directory.blockHeight() + row) * width + blockX * directory.blockWidth();
+            for (int column = 0; column < columns; column++) {
+                samples[target + column] = (float) type.read(data, source + column * pixelBytes, bigEndian);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlockConsumer {
+        void accept(byte[] data, int blockX, int blockY, int rows, int columns);
+    }
+
+    /**
+     * Decodes a range of blocks in row-major order; when splitting, halves it until single blocks are left.
+     */
+    private static final class Blocks extends RecursiveAction {
+        private final TiffDirectory directory;
+        private final TiffBlockDecoder decoder;
+        private final BlockConsumer consumer;
+        private final int from;
+        private final int to;
+        private final boolean split;
+
+        private Blocks(TiffDirectory directory, TiffBlockDecoder decoder, BlockConsumer consumer, int from, int to,
+                       boolean split) {
+            this.directory = directory;
+            this.decoder = decoder;
+            this.consumer = consumer;
+            this.from = from;
+            this.to = to;
+            this.split = split;
+        }
+
+        @Override
+        protected void compute() {
+            if (split && to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Blocks(directory, decoder, consumer, from, middle, true),
+                        new Blocks(directory, decoder, consumer, middle, to, true));
+                return;
+            }
+            int across = directory.blocksAcross();
+            for (int index = from; index < to; index++) {
+                int blockX = index % across;
+                int blockY = index / across;
+                int rows = Math.min(directory.blockRows(index), directory.height() - blockY * directory.blockHeight());
+                int columns = Math.min(directory.blockWidth(), directory.width() - blockX * directory.blockWidth());
+                consumer.accept(decoder.decode(index), blockX, blockY, rows, columns);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.exception.InvalidTiffFieldException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+public enum TiffSampleType {
+    UINT8(1),
+    INT8(1),
+    UINT16(2),
+    INT16(2),
+    UINT32(4),
+    INT32(4),
+    FLOAT32(4),
+    FLOAT64(8);
+
+    private static final int SAMPLE_FORMAT_UINT = 1;
+    private static final int SAMPLE_FORMAT_INT = 2;
+    private static final int SAMPLE_FORMAT_FLOAT = 3;
+
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle FLOAT_LE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle FLOAT_BE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle DOUBLE_LE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle DOUBLE_BE = MethodHandles.byteArrayViewVarHandle(double[].class, ByteOrder.BIG_ENDIAN);
+
+    private final int bytes;
+
+    TiffSampleType(int bytes) {
+        this.bytes = bytes;
+    }
+
+    public int bytes() {
+        return bytes;
+    }
+
+    public boolean floatingPoint() {
+        return this == FLOAT32 || this == FLOAT64;
+    }
+
+    /**
+     * Reads one sample of this type from decoded block bytes stored in the given byte order.
+     */
+    public double read(byte[] data, int offset, boolean bigEndian) {
+        return switch (this) {
+            case UINT8 -> data[offset] & 0xff;
+            case INT8 -> data[offset];
+            case UINT16 -> ((short) (bigEndian ? SHORT_BE : SHORT_LE).get(data, offset)) & 0xffff;
+            case INT16 -> (short) (bigEndian ? SHORT_BE : SHORT_LE).get(data, offset);
+            case UINT32 -> ((int) (bigEndian ? INT_BE : INT_LE).get(data, offset)) & 0xffffffffL;
+            case INT32 -> (int) (bigEndian ? INT_BE : INT_LE).get(data, offset);
+            case FLOAT32 -> (float) (bigEndian ? FLOAT_BE : FLOAT_LE).get(data, offset);
+            case FLOAT64 -> (double) (bigEndian ? DOUBLE_BE : DOUBLE_LE).get(data, offset);
+        };
+    }
+
+    public static TiffSampleType of(int sampleFormat, int bitsPerSample) throws InvalidTiffFieldException {
+        TiffSampleType type = switch (sampleFormat) {
+            case SAMPLE_FORMAT_UINT -> switch (bitsPerSample) {
+                case 8 -> UINT8;
+                case 16 -> UINT16;
+                case 32 -> UINT32;
+                default -> null;
+            };
+            case SAMPLE_FORMAT_INT -> switch (bitsPerSample) {
+                case 8 -> INT8;
+                case 16 -> INT16;
+                case 32 -> INT32;
+                default -> null;
+            };
+            case SAMPLE_FORMAT_FLOAT -> switch (bitsPerSample) {
+                case 32 -> FLOAT32;
+                case 64 -> FLOAT64;
+                default -> null;
+            };
+            default -> null;
+        };
+        if (type == null) {
+            throw new InvalidTiffFieldException("SampleFormat/BitsPerSample",
+                    "Unsupported combination " + sampleFormat + "/" + bitsPerSample);
+        }
+        return type;
+    }
+}
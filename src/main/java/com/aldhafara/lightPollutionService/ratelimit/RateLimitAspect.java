@@ -1,95 +1,198 @@
 package com.aldhafara.lightPollutionService.ratelimit;
 
+import com.aldhafara.lightPollutionService.exception.BatchTooLargeException;
 import com.aldhafara.lightPollutionService.exception.RateLimitException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
-import java.time.Instant;
+import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 @Aspect
 @Component
-public class RateLimitAspect {
+public class RateLimitAspect implements ApplicationContextAware, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitAspect.class);
 
     private final Environment env;
+    private final LongSupplier clock;
+    private final int defaultRequests;
+    private final int defaultDurationSeconds;
+    private final double costPerPoint;
+    private final long evictionIntervalMillis;
+    private final AtomicLong nextEviction;
+    private ApplicationContext applicationContext;
 
-    private final Map<String, RateLimiter> requestMap = new ConcurrentHashMap<>();
+    private final Map<Method, RateLimitPolicy> policies = new ConcurrentHashMap<>();
 
+    @Autowired
     public RateLimitAspect(Environment env) {
+        this(env, monotonicMillis());
+    }
+
+    RateLimitAspect(Environment env, LongSupplier clock) {
         this.env = env;
+        this.clock = clock;
+        this.defaultRequests = Integer.parseInt(env.getProperty("ratelimit.requests", "50"));
+        this.defaultDurationSeconds = Integer.parseInt(env.getProperty("ratelimit.durationSeconds", "60"));
+        this.costPerPoint = Double.parseDouble(env.getProperty("ratelimit.batch.costPerPoint", "0.02"));
+        this.evictionIntervalMillis = Long.parseLong(env.getProperty("ratelimit.evictionIntervalSeconds", "60")) * 1000L;
+        this.nextEviction = new AtomicLong(clock.getAsLong() + evictionIntervalMillis);
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    /**
+     * Resolves the policy of every {@link RateLimited} bean method up front, so misconfigured limits fail
+     * at startup and the first request does not pay for it.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (applicationContext == null) {
+            return;
+        }
+        for (String beanName : applicationContext.getBeanNamesForType(Object.class, false, false)) {
+            Class<?> type = applicationContext.getType(beanName, false);
+            if (type == null) {
+                continue;
+            }
+            for (Method method : ReflectionUtils.getUniqueDeclaredMethods(ClassUtils.getUserClass(type))) {
+                RateLimited rateLimited = AnnotatedElementUtils.findMergedAnnotation(method, RateLimited.class);
+                if (rateLimited != null) {
+                    policies.computeIfAbsent(method, m -> createPolicy(m, rateLimited));
+                }
+            }
+        }
+        log.info("Resolved rate limits for {} method(s)", policies.size());
     }
 
     @Around("@annotation(rateLimited)")
     public Object rateLimit(ProceedingJoinPoint pjp, RateLimited rateLimited) throws Throwable {
-        HttpServletRequest request =
-                ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
-        String key = request.getRemoteAddr() + ":" +
-                pjp.getSignature().toShortString();
-
-        int requests = rateLimited.requests() == -1
-                ? Integer.parseInt(env.getProperty("ratelimit.requests", "50"))
-                : rateLimited.requests();
-
-        int duration = rateLimited.durationSeconds() == -1
-                ? Integer.parseInt(env.getProperty("ratelimit.durationSeconds", "60"))
-                : rateLimited.durationSeconds();
-
-        RateLimiter limiter = requestMap.computeIfAbsent(
-                key, k -> {
-                    return new RateLimiter(requests, duration);
-                }
-        );
+        RateLimitPolicy policy = policyFor((MethodSignature) pjp.getSignature(), rateLimited);
+        HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
+                .getRequest();
+        String client = request.getRemoteAddr();
 
-        boolean granted = limiter.grantAccess();
+        evictIdleBuckets(clock.getAsLong());
 
-        if (granted) {
+        long items = policy.items(pjp.getArgs());
+        if (items > policy.maxItems()) {
+            throw new BatchTooLargeException(
+                    String.format("Batch of %d points exceeds the maximum of %d", items, policy.maxItems()));
+        }
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (!policy.chargeNotModified() && ifNoneMatch != null) {
+            Object result = pjp.proceed();
+            if (notModified(result, ifNoneMatch) || policy.tryAcquire(client, policy.cost(items))) {
+                return result;
+            }
+        } else if (policy.tryAcquire(client, policy.cost(items))) {
+            RateLimitBudget budget = policy.budget(client);
+            if (budget != null) {
+                request.setAttribute(RateLimitBudget.ATTRIBUTE, budget);
+            }
             return pjp.proceed();
-        } else {
-            throw new RateLimitException("Too many requests");
         }
+        log.debug("Rate limit exceeded for client {} on {}", client, policy.name());
+        throw new RateLimitException("Too many requests");
     }
 
-    public void resetLimiters() {
-        requestMap.values().forEach(RateLimiter::reset);
-        requestMap.clear();
-    }
-
-    private static class RateLimiter {
-        private final int durationSeconds;
-        private final int maxRequests;
-        private int requests;
-        private long windowStart;
-
-        RateLimiter(int maxRequests, int durationSeconds) {
-            this.maxRequests = maxRequests;
-            this.durationSeconds = durationSeconds;
-            this.requests = 0;
-            this.windowStart = Instant.now().toEpochMilli();
+    /**
+     * Whether the response will be turned into a 304 because its entity tag matches the request's, compared weakly
+     * as Spring does.
+     */
+    private static boolean notModified(Object result, String ifNoneMatch) {
+        if (!(result instanceof ResponseEntity<?> entity) || entity.getHeaders().getETag() == null) {
+            return false;
         }
-
-        synchronized boolean grantAccess() {
-            long now = Instant.now().toEpochMilli();
-            if (now - windowStart >= durationSeconds * 1000L) {
-                requests = 0;
-                windowStart = now;
-            }
-            if (requests < maxRequests) {
-                requests++;
+        String etag = stripWeak(entity.getHeaders().getETag());
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(etag)) {
                 return true;
             }
-            return false;
         }
+        return false;
+    }
 
-        public void reset() {
-            this.requests = 0;
-            this.windowStart = Instant.now().toEpochMilli();
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private RateLimitPolicy policyFor(MethodSignature signature, RateLimited rateLimited) {
+        Method method = signature.getMethod();
+        RateLimitPolicy policy = policies.get(method);
+        return policy != null ? policy : policies.computeIfAbsent(method, m -> createPolicy(m, rateLimited));
+    }
+
+    private RateLimitPolicy createPolicy(Method method, RateLimited rateLimited) {
+        String name = method.getDeclaringClass().getSimpleName() + "." + method.getName() + "(..)";
+        int requests = resolve(rateLimited.requestsString(), rateLimited.requests(), defaultRequests);
+        int duration = resolve(rateLimited.durationSecondsString(), rateLimited.durationSeconds(), defaultDurationSeconds);
+        String maxItems = env.resolveRequiredPlaceholders(rateLimited.maxItems());
+        return new RateLimitPolicy(name, requests, duration, rateLimited.perItem(), rateLimited.bytesPerItem(),
+                maxItems.isBlank() ? Long.MAX_VALUE : Long.parseLong(maxItems.trim()), rateLimited.streamed(),
+                rateLimited.chargeNotModified(), costPerPoint, clock);
+    }
+
+    private int resolve(String expression, int value, int fallback) {
+        String resolved = env.resolveRequiredPlaceholders(expression);
+        if (!resolved.isBlank()) {
+            return Integer.parseInt(resolved.trim());
         }
+        return value == -1 ? fallback : value;
+    }
+
+    /**
+     * Drops buckets that have fully refilled, at most once per eviction interval. Only the caller that
+     * wins the compare-and-set on the next eviction time does the sweep; everyone else skips it.
+     */
+    private void evictIdleBuckets(long now) {
+        long due = nextEviction.get();
+        if (now < due || !nextEviction.compareAndSet(due, now + evictionIntervalMillis)) {
+            return;
+        }
+        policies.values().forEach(policy -> policy.evictIdle(now));
+    }
+
+    int trackedKeys() {
+        return policies.values().stream().mapToInt(RateLimitPolicy::trackedClients).sum();
+    }
+
+    int resolvedPolicies() {
+        return policies.size();
+    }
+
+    public void resetLimiters() {
+        policies.values().forEach(RateLimitPolicy::clear);
+    }
+
+    private static LongSupplier monotonicMillis() {
+        long origin = System.nanoTime();
+        return () -> (System.nanoTime() - origin) / 1_000_000L;
     }
 }
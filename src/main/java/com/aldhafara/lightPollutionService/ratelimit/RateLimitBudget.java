@@ -0,0 +1,41 @@
+package com.aldhafara.lightPollutionService.ratelimit;
+
+/**
+ * Charges the points of a {@link RateLimited#streamed()} call to the client's bucket while they are processed,
+ * {@code ratelimit.batch.costPerPoint} requests each. The request charged up front is spent on the first points.
+ * A budget belongs to one request and is not thread-safe.
+ */
+public final class RateLimitBudget {
+
+    /**
+     * Request attribute under which the aspect binds the budget of a streamed call.
+     */
+    public static final String ATTRIBUTE = RateLimitBudget.class.getName();
+
+    private final RateLimitPolicy policy;
+    private final String client;
+    private final double costPerPoint;
+    private long points;
+    private long charged = 1;
+
+    RateLimitBudget(RateLimitPolicy policy, String client, double costPerPoint) {
+        this.policy = policy;
+        this.client = client;
+        this.costPerPoint = costPerPoint;
+    }
+
+    /**
+     * Charges one more point, returning {@code false} without charging it when the bucket cannot cover it.
+     */
+    public boolean tryAcquirePoint() {
+        long due = (long) Math.ceil((points + 1) * costPerPoint);
+        if (due > charged) {
+            if (!policy.tryAcquire(client, (int) (due - charged))) {
+                return false;
+            }
+            charged = due;
+        }
+        points++;
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+package com.aldhafara.lightPollutionService.ratelimit;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits of one {@link RateLimited} method, resolved once, together with the buckets of the clients
+ * calling it. Buckets are keyed by client address alone, so no key has to be built per request.
+ */
+final class RateLimitPolicy {
+
+    private final String name;
+    private final int requests;
+    private final long refillMillis;
+    private final boolean perItem;
+    private final int bytesPerItem;
+    private final long maxItems;
+    private final boolean streamed;
+    private final boolean chargeNotModified;
+    private final double costPerPoint;
+    private final LongSupplier clock;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    RateLimitPolicy(String name, int requests, int durationSeconds, boolean perItem, int bytesPerItem, long maxItems,
+                    boolean streamed, boolean chargeNotModified, double costPerPoint, LongSupplier clock) {
+        if (requests < 1 || requests > TokenBucket.MAX_CAPACITY) {
+            throw new IllegalArgumentException(
+                    "Rate limit of " + name + " must be between 1 and " + TokenBucket.MAX_CAPACITY + " requests, got " + requests);
+        }
+        if (durationSeconds < 1) {
+            throw new IllegalArgumentException("Rate limit window of " + name + " must be positive, got " + durationSeconds);
+        }
+        this.name = name;
+        this.requests = requests;
+        this.refillMillis = durationSeconds * 1000L;
+        this.perItem = perItem;
+        this.bytesPerItem = Math.max(1, bytesPerItem);
+        this.maxItems = maxItems;
+        this.streamed = streamed;
+        this.chargeNotModified = chargeNotModified;
+        this.costPerPoint = costPerPoint;
+        this.clock = clock;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * The budget of the rest of a streamed call, or {@code null} when the method is not streamed.
+     */
+    RateLimitBudget budget(String client) {
+        return streamed ? new RateLimitBudget(this, client, costPerPoint) : null;
+    }
+
+    /**
+     * Takes the tokens from the client's bucket. A bucket retired by {@link #evictIdle} between looking it up and
+     * acquiring refuses the acquire, which is then retried on its replacement.
+     */
+    boolean tryAcquire(String client, int tokens) {
+        while (true) {
+            TokenBucket bucket = bucketFor(client);
+            if (bucket.tryAcquire(tokens)) {
+                return true;
+            }
+            if (!bucket.isRetired()) {
+                return false;
+            }
+        }
+    }
+
+    TokenBucket bucketFor(String client) {
+        TokenBucket bucket = buckets.get(client);
+        if (bucket != null && !bucket.isRetired()) {
+            return bucket;
+        }
+        return buckets.compute(client, (c, existing) -> existing == null || existing.isRetired()
+                ? new TokenBucket(requests, refillMillis, clock)
+                : existing);
+    }
+
+    boolean chargeNotModified() {
+        return chargeNotModified;
+    }
+
+    long maxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Elements the call is charged for, or 0 when it is charged as a single request.
+     */
+    long items(Object[] args) {
+        if (!perItem) {
+            return 0;
+        }
+        for (Object arg : args) {
+            if (arg instanceof Collection<?> items) {
+                return items.size();
+            }
+            if (arg instanceof byte[] packed) {
+                return packed.length / bytesPerItem;
+            }
+        }
+        return 0;
+    }
+
+    int cost(long items) {
+        return Math.max(1, (int) Math.ceil(items * costPerPoint));
+    }
+
+    /**
+     * Drops fully refilled buckets. A bucket is retired before it is removed, and only removed if it is still the
+     * client's bucket, so a concurrent acquire either lands before the retirement or moves on to a new bucket.
+     */
+    void evictIdle(long now) {
+        buckets.forEach((client, bucket) -> {
+            if (bucket.retireIfIdle(now)) {
+                buckets.remove(client, bucket);
+            }
+        });
+    }
+
+    int trackedClients() {
+        return buckets.size();
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+}
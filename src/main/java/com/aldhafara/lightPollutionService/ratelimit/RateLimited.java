@@ -10,4 +10,45 @@ import java.lang.annotation.Target;
 public @interface RateLimited {
     int requests() default -1;
     int durationSeconds() default -1;
+
+    /**
+     * {@link #requests()} as a number or a {@code ${...}} placeholder; takes precedence when not empty.
+     */
+    String requestsString() default "";
+
+    /**
+     * {@link #durationSeconds()} as a number or a {@code ${...}} placeholder; takes precedence when not empty.
+     */
+    String durationSecondsString() default "";
+
+    /**
+     * When unset, a conditional request whose {@code If-None-Match} matches the {@code ETag} of the returned
+     * {@link org.springframework.http.ResponseEntity}, and is therefore answered with 304, is not charged. Such a
+     * request is served first and charged only if it turns out to need a full response.
+     */
+    boolean chargeNotModified() default true;
+
+    /**
+     * When set, a call is charged per element of its first collection or {@code byte[]} argument, using
+     * {@code ratelimit.batch.costPerPoint} requests per element (at least one request per call).
+     */
+    boolean perItem() default false;
+
+    /**
+     * With {@link #perItem()}, the size of one packed element of a {@code byte[]} argument.
+     */
+    int bytesPerItem() default 1;
+
+    /**
+     * With {@link #perItem()}, the most elements a call may carry, as a number or a {@code ${...}} placeholder.
+     * Larger calls are rejected with a {@link com.aldhafara.lightPollutionService.exception.BatchTooLargeException}
+     * before anything is charged. Empty for no limit.
+     */
+    String maxItems() default "";
+
+    /**
+     * When set, the request charged up front covers only the first points of a stream; the method charges the rest
+     * as it goes through the {@link RateLimitBudget} bound to the request under {@link RateLimitBudget#ATTRIBUTE}.
+     */
+    boolean streamed() default false;
 }
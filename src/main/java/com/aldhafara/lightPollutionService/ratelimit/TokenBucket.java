@@ -0,0 +1,103 @@
+package com.aldhafara.lightPollutionService.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token bucket. The token count (in 1/256 token units) and the time of the last refill are
+ * packed into a single {@link AtomicLong}, so acquiring is one compare-and-set without locks or
+ * allocation. Time comes from a monotonic millisecond clock supplied by the owner.
+ */
+final class TokenBucket {
+
+    static final int MAX_CAPACITY = 0xFFFF;
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final int UNITS_PER_TOKEN = 256;
+    /**
+     * State of a bucket dropped by {@link #retireIfIdle}; it refuses every acquire from then on.
+     */
+    private static final long RETIRED = -1L;
+
+    private final long capacityUnits;
+    private final long refillMillis;
+    private final LongSupplier clock;
+    private final AtomicLong state;
+
+    TokenBucket(int capacity, long refillMillis, LongSupplier clock) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ", got " + capacity);
+        }
+        if (refillMillis < 1) {
+            throw new IllegalArgumentException("Refill period must be positive, got " + refillMillis);
+        }
+        this.capacityUnits = (long) capacity * UNITS_PER_TOKEN;
+        this.refillMillis = refillMillis;
+        this.clock = clock;
+        this.state = new AtomicLong(pack(clock.getAsLong(), capacityUnits));
+    }
+
+    /**
+     * Takes the tokens if available. Fails on a {@link #isRetired() retired} bucket, whose owner then has to acquire
+     * from its replacement.
+     */
+    boolean tryAcquire(int tokens) {
+        long cost = (long) tokens * UNITS_PER_TOKEN;
+        while (true) {
+            long current = state.get();
+            if (current == RETIRED) {
+                return false;
+            }
+            long now = clock.getAsLong();
+            long available = available(current, now);
+            if (available < cost) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(Math.max(now, current >>> TOKEN_BITS), available - cost))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * True once the bucket has been left alone long enough to refill completely, at which point it is
+     * indistinguishable from a freshly created one and can be dropped.
+     */
+    boolean isIdle(long now) {
+        long current = state.get();
+        return current != RETIRED && now - (current >>> TOKEN_BITS) >= refillMillis;
+    }
+
+    /**
+     * Retires the bucket if it is idle, in the same compare-and-set that an acquire would race with, so no
+     * tokens can be taken from a bucket after it was dropped.
+     *
+     * @return whether the bucket is now retired by this call
+     */
+    boolean retireIfIdle(long now) {
+        long current = state.get();
+        return current != RETIRED && now - (current >>> TOKEN_BITS) >= refillMillis
+                && state.compareAndSet(current, RETIRED);
+    }
+
+    boolean isRetired() {
+        return state.get() == RETIRED;
+    }
+
+    private long available(long current, long now) {
+        long elapsed = now - (current >>> TOKEN_BITS);
+        if (elapsed >= refillMillis) {
+            return capacityUnits;
+        }
+        long tokens = current & TOKEN_MASK;
+        if (elapsed <= 0) {
+            return tokens;
+        }
+        return Math.min(capacityUnits, tokens + elapsed * capacityUnits / refillMillis);
+    }
+
+    private static long pack(long millis, long units) {
+        return (millis << TOKEN_BITS) | units;
+    }
+}
@@ -0,0 +1,183 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.DarkSpot;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.BlockExtremes;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the darkest valid pixels whose centres lie inside a disc, ranked by value and then by distance from the
+ * centre. Blocks of the {@link BlockExtremes} index are visited from the darkest minimum up, and the search stops
+ * as soon as no remaining block can beat the worst pixel kept, so bright areas are never read. Blocks whose minimum
+ * equals their maximum are uniform and are taken from the index without reading their pixels.
+ */
+final class DarkestSpotSearch {
+
+    private static final Comparator<Candidate> DARKEST_FIRST =
+            Comparator.comparingDouble(Candidate::value).thenComparingDouble(Candidate::distanceKm);
+
+    private final double lat;
+    private final double lon;
+    private final int limit;
+    private final RasterStore raster;
+    private final BitMask mask;
+    private final ViirsGeoReference geoReference;
+    private final PriorityQueue<Candidate> best;
+
+    private int yMin;
+    private int[] spanStart;
+    private int[] spanEnd;
+
+    private DarkestSpotSearch(double lat, double lon, int limit, RasterStore raster, BitMask mask,
+                              ViirsGeoReference geoReference) {
+        this.lat = lat;
+        this.lon = lon;
+        this.limit = limit;
+        this.raster = raster;
+        this.mask = mask;
+        this.geoReference = geoReference;
+        this.best = new PriorityQueue<>(limit + 1, DARKEST_FIRST.reversed());
+    }
+
+    /**
+     * @param mask     pixels without valid data, never returned; may be {@code null}
+     * @param extremes block index over the same raster and mask, or {@code null} to scan every pixel of the disc,
+     *                 whose size the caller bounds
+     */
+    static List<DarkSpot> find(double lat, double lon, double radiusKm, int limit, RasterStore raster, BitMask mask,
+                               BlockExtremes extremes, ViirsGeoReference geoReference) {
+        DarkestSpotSearch search = new DarkestSpotSearch(lat, lon, limit, raster, mask, geoReference);
+        search.collectSpans(radiusKm);
+        if (extremes == null) {
+            search.scan(0, geoReference.height(), 0, geoReference.width(), Float.NaN);
+        } else {
+            search.searchBlocks(extremes);
+        }
+        return search.result();
+    }
+
+    private void collectSpans(double radiusKm) {
+        double radiusDegrees = radiusKm / RasterSampling.KM_PER_DEGREE;
+        yMin = Math.max(0, (int) Math.floor((geoReference.originY() - lat - radiusDegrees) / geoReference.pixelScaleY()));
+        int yMax = Math.min(geoReference.height() - 1,
+                (int) Math.floor((geoReference.originY() - lat + radiusDegrees) / geoReference.pixelScaleY()));
+        int rows = Math.max(0, yMax - yMin + 1);
+        spanStart = new int[rows];
+        spanEnd = new int[rows];
+        RasterSampling.forEachSpan(lat, lon, radiusKm, geoReference, (y, x0, x1) -> {
+            spanStart[y - yMin] = x0;
+            spanEnd[y - yMin] = x1;
+        });
+    }
+
+    private void searchBlocks(BlockExtremes extremes) {
+        int size = extremes.blockSize();
+        List<Block> blocks = new ArrayList<>();
+        for (int blockY = yMin / size; blockY * size < yMin + spanStart.length; blockY++) {
+            int rowFrom = Math.max(blockY * size, yMin) - yMin;
+            int rowTo = Math.min((blockY + 1) * size, yMin + spanStart.length) - yMin;
+            int x0 = Integer.MAX_VALUE;
+            int x1 = 0;
+            for (int row = rowFrom; row < rowTo; row++) {
+                if (spanStart[row] < spanEnd[row]) {
+                    x0 = Math.min(x0, spanStart[row]);
+                    x1 = Math.max(x1, spanEnd[row]);
+                }
+            }
+            for (int blockX = x0 == Integer.MAX_VALUE ? 0 : x0 / size; blockX * size < x1; blockX++) {
+                float min = extremes.min(blockX, blockY);
+                if (min != Float.POSITIVE_INFINITY) {
+                    blocks.add(new Block(blockX, blockY, min, extremes.max(blockX, blockY), minDistanceKm(blockX, blockY, size)));
+                }
+            }
+        }
+
+        Block[] ordered = blocks.toArray(Block[]::new);
+        Arrays.sort(ordered, Comparator.comparingDouble(Block::min).thenComparingDouble(Block::minDistanceKm));
+        for (Block block : ordered) {
+            if (best.size() == limit
+                    && DARKEST_FIRST.compare(new Candidate(0, 0, block.min(), block.minDistanceKm()), best.peek()) >= 0) {
+                break;
+            }
+            int x = block.blockX() * size;
+            int y = block.blockY() * size;
+            scan(y, Math.min(y + size, geoReference.height()), x, Math.min(x + size, geoReference.width()),
+                    block.min() == block.max() ? block.min() : Float.NaN);
+        }
+    }
+
+    /**
+     * Offers the disc's pixels inside the rectangle, reading {@code uniform} instead of the raster unless it is NaN.
+     */
+    private void scan(int yFrom, int yTo, int xFrom, int xTo, float uniform) {
+        for (int y = Math.max(yFrom, yMin); y < Math.min(yTo, yMin + spanStart.length); y++) {
+            int x0 = Math.max(xFrom, spanStart[y - yMin]);
+            int x1 = Math.min(xTo, spanEnd[y - yMin]);
+            for (int x = x0; x < x1; x++) {
+                if (mask != null && mask.get(x, y)) {
+                    continue;
+                }
+                double value = Float.isNaN(uniform) ? raster.getValue(x, y) : uniform;
+                Candidate candidate = new Candidate(x, y, value, distanceKm(x, y));
+                if (best.size() < limit) {
+                    best.add(candidate);
+                } else if (DARKEST_FIRST.compare(candidate, best.peek()) < 0) {
+                    best.poll();
+                    best.add(candidate);
+                }
+            }
+        }
+    }
+
+    private List<DarkSpot> result() {
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(DARKEST_FIRST);
+        List<DarkSpot> spots = new ArrayList<>(sorted.size());
+        for (Candidate candidate : sorted) {
+            spots.add(new DarkSpot(
+                    geoReference.originY() - (candidate.y() + 0.5) * geoReference.pixelScaleY(),
+                    geoReference.originX() + (candidate.x() + 0.5) * geoReference.pixelScaleX(),
+                    candidate.value(), candidate.distanceKm()));
+        }
+        return spots;
+    }
+
+    /**
+     * Distance to the pixel centre on the same local approximation the disc spans use.
+     */
+    private double distanceKm(int x, int y) {
+        double pixelLat = geoReference.originY() - (y + 0.5) * geoReference.pixelScaleY();
+        double pixelLon = geoReference.originX() + (x + 0.5) * geoReference.pixelScaleX();
+        double dy = (pixelLat - lat) * RasterSampling.KM_PER_DEGREE;
+        double dx = (pixelLon - lon) * RasterSampling.KM_PER_DEGREE * Math.cos(Math.toRadians(pixelLat));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Lower bound of {@link #distanceKm} over the pixels of a block: the nearest point of the block's extent, with
+     * the smallest longitude scale found in it.
+     */
+    private double minDistanceKm(int blockX, int blockY, int size) {
+        double north = geoReference.originY() - blockY * size * geoReference.pixelScaleY();
+        double south = geoReference.originY() - (blockY + 1) * size * geoReference.pixelScaleY();
+        double west = geoReference.originX() + blockX * size * geoReference.pixelScaleX();
+        double east = geoReference.originX() + (blockX + 1) * size * geoReference.pixelScaleX();
+        double dy = (Math.clamp(lat, south, north) - lat) * RasterSampling.KM_PER_DEGREE;
+        double cos = Math.min(Math.cos(Math.toRadians(north)), Math.cos(Math.toRadians(south)));
+        double dx = (Math.clamp(lon, west, east) - lon) * RasterSampling.KM_PER_DEGREE * Math.max(0, cos);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private record Block(int blockX, int blockY, float min, float max, double minDistanceKm) {
+    }
+
+    private record Candidate(int x, int y, double value, double distanceKm) {
+    }
+}
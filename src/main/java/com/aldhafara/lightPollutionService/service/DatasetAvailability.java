@@ -0,0 +1,122 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.exception.DatasetNotReadyException;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decides whether a lookup waits for its dataset to load or fails fast.
+ * <p>
+ * By default the default year is loaded before the application starts serving, and other years load on the request
+ * that first needs them. With {@code viirs.loading.async=true} loading never happens on a request thread: startup only
+ * schedules the default year, and a request for a dataset that is not in memory schedules its load and is answered
+ * with 503 and a {@code Retry-After} of {@code viirs.loading.retryAfterSeconds}. The service is ready while the default
+ * year is in memory. Loads run on virtual threads when {@code spring.threads.virtual.enabled} is set.
+ */
+@Component
+public class DatasetAvailability {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetAvailability.class);
+
+    private final RasterImageProvider imageProvider;
+    private final DatasetRegistry datasetRegistry;
+    private final boolean async;
+    private final long retryAfterSeconds;
+    private final ExecutorService executor;
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+
+    public DatasetAvailability(RasterImageProvider imageProvider,
+                               DatasetRegistry datasetRegistry,
+                               @Value("${viirs.loading.async:false}") boolean async,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                               @Value("${viirs.loading.retryAfterSeconds:5}") long retryAfterSeconds) {
+        this.imageProvider = imageProvider;
+        this.datasetRegistry = datasetRegistry;
+        this.async = async;
+        this.retryAfterSeconds = retryAfterSeconds;
+        ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name("dataset-load-", 0).factory()
+                : Thread.ofPlatform().daemon().name("dataset-load-", 0).factory();
+        this.executor = Executors.newThreadPerTaskExecutor(threads);
+    }
+
+    @PostConstruct
+    public void start() {
+        String key = datasetRegistry.defaultKey();
+        if (async) {
+            log.info("Loading dataset '{}' in the background", key);
+            loadInBackground(key);
+        } else {
+            imageProvider.getOrLoadReference(key);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Whether the default year is in memory and lookups are served without waiting. When it is not, for instance
+     * after it was evicted or while a failed load waits for a retry, it is loaded in the background and the service
+     * is ready again once that completes.
+     */
+    public boolean isReady() {
+        String key = datasetRegistry.defaultKey();
+        if (imageProvider.getRaster(key) != null) {
+            return true;
+        }
+        loadInBackground(key);
+        return false;
+    }
+
+    boolean isLoading(String key) {
+        return loading.contains(key);
+    }
+
+    /**
+     * @throws DatasetNotReadyException in asynchronous mode, while the dataset is not in memory
+     * @throws DatasetNotFoundException if the dataset could not be loaded
+     */
+    public ViirsDataset require(String key) throws DatasetNotReadyException, DatasetNotFoundException {
+        ViirsDataset dataset = async ? imageProvider.getLoadedDataset(key) : imageProvider.getDataset(key);
+        if (dataset != null) {
+            return dataset;
+        }
+        if (async) {
+            loadInBackground(key);
+            throw new DatasetNotReadyException("Dataset " + key + " is loading, retry later", retryAfterSeconds);
+        }
+        throw new DatasetNotFoundException("Dataset " + key + " could not be loaded");
+    }
+
+    private void loadInBackground(String key) {
+        if (!loading.add(key)) {
+            return;
+        }
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                if (imageProvider.getDataset(key) != null && key.equals(datasetRegistry.defaultKey())) {
+                    log.info("Dataset '{}' ready after {} ms", key, (System.nanoTime() - start) / 1_000_000);
+                }
+            } catch (RuntimeException e) {
+                log.error("Loading dataset '{}' failed, the next request for it retries", key, e);
+            } finally {
+                loading.remove(key);
+            }
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+
+/**
+ * Published after a dataset was dropped to stay within the memory budget, so caches holding on to its snapshot can
+ * let go of it.
+ */
+public record DatasetEvictedEvent(String key, ViirsDataset dataset) {
+}
@@ -0,0 +1,134 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.raster.StorageMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Maps dataset keys of the form {@code <year>/<product>} to GeoTIFF URLs, configured as
+ * {@code viirs.datasets.<year>.<product>=<url>}. The legacy {@code viirs.average.url} is registered as the
+ * {@code average} product of the default year unless that key is configured explicitly.
+ * <p>
+ * Each dataset is held in the {@link StorageMode} configured as {@code viirs.storage.<year>.<product>}, falling back
+ * to {@code viirs.storage.default} ({@code native} unless set).
+ */
+@Component
+public class DatasetRegistry {
+
+    public static final String DEFAULT_PRODUCT = "average";
+    public static final String MASK_PRODUCT = "mask";
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetRegistry.class);
+
+    private final Map<String, String> urls;
+    private final int defaultYear;
+    private final Map<String, StorageMode> storageModes;
+    private final StorageMode defaultStorageMode;
+
+    @Autowired
+    public DatasetRegistry(Environment env) {
+        this(bindUrls(env), Integer.parseInt(env.getProperty("viirs.dataset.defaultYear", "2023")),
+                bindStorageModes(env),
+                StorageMode.fromProperty(env.getProperty("viirs.storage.default", "native")));
+    }
+
+    public DatasetRegistry(Map<String, String> urls, int defaultYear) {
+        this(urls, defaultYear, Map.of(), StorageMode.NATIVE);
+    }
+
+    public DatasetRegistry(Map<String, String> urls, int defaultYear, Map<String, StorageMode> storageModes,
+                           StorageMode defaultStorageMode) {
+        this.urls = Collections.unmodifiableMap(new TreeMap<>(urls));
+        this.defaultYear = defaultYear;
+        this.storageModes = Map.copyOf(storageModes);
+        this.defaultStorageMode = defaultStorageMode;
+        log.info("Registered datasets {} (default year {})", this.urls.keySet(), defaultYear);
+    }
+
+    public int defaultYear() {
+        return defaultYear;
+    }
+
+    public String defaultKey() {
+        return defaultYear + "/" + DEFAULT_PRODUCT;
+    }
+
+    /**
+     * Key of the product for the year, or for the default year when {@code year} is {@code null}.
+     *
+     * @throws DatasetNotFoundException if no such dataset is configured
+     */
+    public String key(Integer year, String product) throws DatasetNotFoundException {
+        String key = (year == null ? defaultYear : year) + "/" + product;
+        if (!urls.containsKey(key)) {
+            throw new DatasetNotFoundException("No dataset configured for " + key + ", available: " + urls.keySet());
+        }
+        return key;
+    }
+
+    /**
+     * URL of the dataset, or {@code null} if the key is not configured.
+     */
+    public String url(String key) {
+        return urls.get(key);
+    }
+
+    /**
+     * Key of the mask applied to the dataset: the {@code mask} product of the same year, or {@code null} if there is
+     * none or the key is a mask itself.
+     */
+    public String maskKey(String key) {
+        int slash = key.indexOf('/');
+        if (slash < 0 || key.substring(slash + 1).equals(MASK_PRODUCT)) {
+            return null;
+        }
+        String maskKey = key.substring(0, slash + 1) + MASK_PRODUCT;
+        return urls.containsKey(maskKey) ? maskKey : null;
+    }
+
+    /**
+     * How the dataset's band is held in memory once decoded.
+     */
+    public StorageMode storageMode(String key) {
+        return storageModes.getOrDefault(key, defaultStorageMode);
+    }
+
+    public Set<String> keys() {
+        return urls.keySet();
+    }
+
+    private static Map<String, String> bindUrls(Environment env) {
+        Map<String, String> urls = new TreeMap<>();
+        Binder.get(env)
+                .bind("viirs.datasets", Bindable.mapOf(String.class, String.class))
+                .ifBound(byYear -> byYear.forEach((yearAndProduct, url) -> urls.put(yearAndProduct.replace('.', '/'), url)));
+        String legacyUrl = env.getProperty("viirs.average.url");
+        if (legacyUrl != null) {
+            urls.putIfAbsent(env.getProperty("viirs.dataset.defaultYear", "2023") + "/" + DEFAULT_PRODUCT, legacyUrl);
+        }
+        return urls;
+    }
+
+    private static Map<String, StorageMode> bindStorageModes(Environment env) {
+        Map<String, StorageMode> modes = new TreeMap<>();
+        Binder.get(env)
+                .bind("viirs.storage", Bindable.mapOf(String.class, String.class))
+                .ifBound(byYear -> byYear.forEach((yearAndProduct, mode) -> {
+                    if (!yearAndProduct.equals("default")) {
+                        modes.put(yearAndProduct.replace('.', '/'), StorageMode.fromProperty(mode));
+                    }
+                }));
+        return modes;
+    }
+}
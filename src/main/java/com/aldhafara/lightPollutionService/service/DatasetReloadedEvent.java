@@ -0,0 +1,9 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+
+/**
+ * Published after a reloaded dataset replaced the previous snapshot, so caches derived from it can be dropped.
+ */
+public record DatasetReloadedEvent(String key, ViirsDataset dataset) {
+}
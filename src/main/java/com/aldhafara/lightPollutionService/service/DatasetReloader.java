@@ -0,0 +1,122 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads datasets on a background thread: every {@code viirs.reload.intervalSeconds}, when the source file of a
+ * resident dataset changes (polled every {@code viirs.reload.watchSeconds}), or on demand. Both default to 0, which
+ * disables them. Reloads run one at a time, so at most one extra copy of a dataset is being built.
+ */
+@Component
+public class DatasetReloader {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetReloader.class);
+
+    private final ViirsTiffFileLoader loader;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long intervalSeconds;
+    private final long watchSeconds;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dataset-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, CompletableFuture<ViirsDataset>> pending = new ConcurrentHashMap<>();
+
+    public DatasetReloader(ViirsTiffFileLoader loader,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${viirs.reload.intervalSeconds:0}") long intervalSeconds,
+                           @Value("${viirs.reload.watchSeconds:0}") long watchSeconds) {
+        this.loader = loader;
+        this.eventPublisher = eventPublisher;
+        this.intervalSeconds = intervalSeconds;
+        this.watchSeconds = watchSeconds;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (intervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::reloadResident, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+        if (watchSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::reloadModified, watchSeconds, watchSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules a reload of the dataset. A request for a key that is already queued joins the queued reload.
+     *
+     * @return completes with the new snapshot once it is in place, or exceptionally if reading failed
+     */
+    public CompletableFuture<ViirsDataset> reload(String key) {
+        CompletableFuture<ViirsDataset> created = new CompletableFuture<>();
+        CompletableFuture<ViirsDataset> queued = pending.putIfAbsent(key, created);
+        if (queued != null) {
+            return queued;
+        }
+        executor.execute(() -> {
+            pending.remove(key, created);
+            try {
+                created.complete(swap(key));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Schedules a reload of every dataset currently in memory.
+     *
+     * @return the keys being reloaded
+     */
+    public Set<String> reloadResident() {
+        Set<String> keys = loader.residentKeys();
+        keys.forEach(this::reload);
+        return keys;
+    }
+
+    Set<String> reloadModified() {
+        Set<String> keys = loader.modifiedKeys();
+        if (!keys.isEmpty()) {
+            log.info("Source files of datasets {} changed, reloading", keys);
+            keys.forEach(this::reload);
+        }
+        return keys;
+    }
+
+    private ViirsDataset swap(String key) {
+        long start = System.nanoTime();
+        try {
+            ViirsDataset dataset = loader.reload(key);
+            if (dataset != null) {
+                log.info("Reloaded dataset '{}' in {} ms", key, (System.nanoTime() - start) / 1_000_000);
+                eventPublisher.publishEvent(new DatasetReloadedEvent(key, dataset));
+            }
+            return dataset;
+        } catch (RuntimeException e) {
+            log.warn("Reloading dataset '{}' failed, keeping the previous snapshot", key, e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.CacheStats;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of raster samples keyed by the resolved pixel, so every coordinate inside one pixel shares an
+ * entry. Entries expire after {@code darkness.cache.ttlSeconds} and the least recently used ones are evicted
+ * beyond {@code darkness.cache.maxEntries}. The cache is split into independently locked segments to keep
+ * concurrent lookups from serialising on one lock.
+ */
+@Component
+public class PixelValueCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public PixelValueCache(@Value("${darkness.cache.maxEntries:100000}") int maxEntries,
+                           @Value("${darkness.cache.ttlSeconds:3600}") long ttlSeconds) {
+        this(maxEntries, ttlSeconds, () -> System.nanoTime() / 1_000_000L);
+    }
+
+    PixelValueCache(int maxEntries, long ttlSeconds, LongSupplier clock) {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.clock = clock;
+        if (maxEntries <= 0) {
+            this.segments = null;
+        } else {
+            int perSegment = Math.ceilDiv(maxEntries, SEGMENTS);
+            this.segments = new Segment[SEGMENTS];
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(perSegment);
+            }
+        }
+    }
+
+    /**
+     * View of the raster whose samples are served from this cache. Keys mix in the raster's identity so several
+     * datasets can share the cache, and entries remember the raster they were read from, so a reloaded raster
+     * never sees values of its predecessor. Returns the raster itself when caching is disabled or its reads are
+     * already as cheap as a cache hit.
+     */
+    public RasterStore view(RasterStore raster) {
+        if (segments == null || !raster.costlyReads()) {
+            return raster;
+        }
+        return new RasterStore() {
+            @Override
+            public int width() {
+                return raster.width();
+            }
+
+            @Override
+            public int height() {
+                return raster.height();
+            }
+
+            @Override
+            public double getValue(int x, int y) {
+                return PixelValueCache.this.getValue(raster, x, y);
+            }
+
+            @Override
+            public long sizeInBytes() {
+                return raster.sizeInBytes();
+            }
+        };
+    }
+
+    public CacheStats stats() {
+        long size = 0;
+        if (segments != null) {
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    size += segment.size();
+                }
+            }
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return new CacheStats(size, hitCount, missCount, evictions.sum(), total == 0 ? 0 : (double) hitCount / total);
+    }
+
+    public void clear() {
+        if (segments != null) {
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Entries of a replaced raster can no longer be hit, so a reload frees them right away instead of waiting for
+     * them to age out.
+     */
+    @EventListener
+    public void onDatasetReloaded(DatasetReloadedEvent event) {
+        clear();
+    }
+
+    /**
+     * Drops the entries of an evicted dataset, which would otherwise keep its raster reachable until they age out.
+     */
+    @EventListener
+    public void onDatasetEvicted(DatasetEvictedEvent event) {
+        if (segments == null) {
+            return;
+        }
+        RasterStore raster = event.dataset().raster();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.values().removeIf(entry -> entry.raster == raster);
+            }
+        }
+    }
+
+    private double getValue(RasterStore raster, int x, int y) {
+        long key = (((long) y << 32) | (x & 0xffffffffL)) ^ (System.identityHashCode(raster) * 0x9E3779B97F4A7C15L);
+        Segment segment = segments[(int) ((key ^ (key >>> 29)) * 0x9E3779B97F4A7C15L >>> 60)];
+        long now = clock.getAsLong();
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (entry != null && entry.raster == raster && entry.expiresAt > now) {
+                hits.increment();
+                return entry.value;
+            }
+        }
+        misses.increment();
+        double value = raster.getValue(x, y);
+        synchronized (segment) {
+            segment.put(key, new Entry(raster, value, now + ttlMillis));
+        }
+        return value;
+    }
+
+    private record Entry(RasterStore raster, double value, long expiresAt) {
+    }
+
+    private final class Segment extends LinkedHashMap<Long, Entry> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(Math.min(capacity, 1024), 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
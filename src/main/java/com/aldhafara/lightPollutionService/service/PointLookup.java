@@ -0,0 +1,65 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+
+/**
+ * Nearest-pixel lookups against one dataset snapshot, for callers that look up many points one at a time and want
+ * neither a per-call dataset resolution nor a result object per point. Reads bypass the lookup cache, which would
+ * only churn under millions of distinct points.
+ */
+public final class PointLookup {
+
+    private final RasterStore raster;
+    private final BitMask mask;
+    private final double originX;
+    private final double originY;
+    private final double pixelScaleX;
+    private final double pixelScaleY;
+    private final int width;
+    private final int height;
+
+    public PointLookup(RasterStore raster, BitMask mask, ViirsGeoReference geoReference) {
+        this.raster = raster;
+        this.mask = mask;
+        this.originX = geoReference.originX();
+        this.originY = geoReference.originY();
+        this.pixelScaleX = geoReference.pixelScaleX();
+        this.pixelScaleY = geoReference.pixelScaleY();
+        this.width = geoReference.width();
+        this.height = geoReference.height();
+    }
+
+    /**
+     * Pixel value at the point, or {@code NaN} outside the raster or for a non-finite or out-of-range coordinate.
+     */
+    public double value(double lat, double lon) {
+        if (!valid(lat, lon)) {
+            return Double.NaN;
+        }
+        int x = (int) ((lon - originX) / pixelScaleX);
+        int y = (int) ((originY - lat) / pixelScaleY);
+        return x < 0 || x >= width || y < 0 || y >= height ? Double.NaN : raster.getValue(x, y);
+    }
+
+    /**
+     * Whether the mask marks the pixel as having no valid data; {@code false} outside the raster or for an invalid
+     * coordinate.
+     */
+    public boolean masked(double lat, double lon) {
+        if (mask == null || !valid(lat, lon)) {
+            return false;
+        }
+        int x = (int) ((lon - originX) / pixelScaleX);
+        int y = (int) ((originY - lat) / pixelScaleY);
+        return x >= 0 && x < width && y >= 0 && y < height && mask.get(x, y);
+    }
+
+    /**
+     * Rejects NaN, infinities and coordinates off the globe, any of which would otherwise truncate to a real pixel.
+     */
+    private static boolean valid(double lat, double lon) {
+        return Math.abs(lat) <= 90 && Math.abs(lon) <= 180;
+    }
+}
@@ -0,0 +1,70 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.RasterCacheFile;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Keeps the decoded first band of each source under {@code viirs.raster.cacheDir}, so a restart maps it instead
+ * of decoding the TIFF again. Without a cache directory every start decodes.
+ */
+@Component
+public class RasterFileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RasterFileCache.class);
+
+    private final Path cacheDir;
+
+    public RasterFileCache(@Value("${viirs.raster.cacheDir:}") String cacheDir) {
+        this.cacheDir = cacheDir.isBlank() ? null : Path.of(cacheDir);
+    }
+
+    public boolean isEnabled() {
+        return cacheDir != null;
+    }
+
+    /**
+     * @return the cached raster, or {@code null} when caching is disabled or no valid copy for this source exists
+     */
+    public RasterCacheFile.Cached read(String key, long fingerprint) {
+        if (cacheDir == null) {
+            return null;
+        }
+        Path file = file(key);
+        try {
+            RasterCacheFile.Cached cached = RasterCacheFile.read(file, fingerprint);
+            if (cached != null) {
+                log.info("Mapped decoded raster for '{}' from {}", key, file);
+            }
+            return cached;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable raster cache file {}", file, e);
+            return null;
+        }
+    }
+
+    public void write(String key, RasterStore raster, ViirsGeoReference geoReference, boolean floats, long fingerprint) {
+        if (cacheDir == null) {
+            return;
+        }
+        Path file = file(key);
+        long start = System.nanoTime();
+        try {
+            RasterCacheFile.write(file, raster, geoReference, floats, fingerprint);
+            log.info("Persisted decoded raster for '{}' to {} in {} ms", key, file, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("Failed to persist decoded raster to {}", file, e);
+        }
+    }
+
+    private Path file(String key) {
+        return cacheDir.resolve(key.replace('/', '_') + ".raster");
+    }
+}
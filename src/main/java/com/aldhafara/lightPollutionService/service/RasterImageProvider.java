@@ -1,9 +1,34 @@
 package com.aldhafara.lightPollutionService.service;
 
 import com.aldhafara.lightPollutionService.exception.TiffFileReadException;
-import java.awt.image.BufferedImage;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.raster.SummedAreaTable;
 
 public interface RasterImageProvider {
-    BufferedImage getImage(String key);
+    RasterStore getRaster(String key);
+
+    /**
+     * Integral image of the raster, or {@code null} if none was built for it.
+     */
+    SummedAreaTable getSummedAreaTable(String key);
+
+    /**
+     * Downsampled levels of the raster, or {@code null} if none were built for it.
+     */
+    RasterPyramid getPyramid(String key);
+
     void getOrLoadReference(String key) throws TiffFileReadException;
+
+    /**
+     * The dataset, loading it first if it is not resident, or {@code null} if the key is unknown. Raster,
+     * geo-reference and derived structures of the returned dataset always belong together.
+     */
+    ViirsDataset getDataset(String key) throws TiffFileReadException;
+
+    /**
+     * The dataset if it is resident, counting as a use, or {@code null} without loading it.
+     */
+    ViirsDataset getLoadedDataset(String key);
 }
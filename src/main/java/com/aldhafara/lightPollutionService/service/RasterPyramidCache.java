@@ -0,0 +1,85 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterPyramidFile;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Builds the pyramid of a dataset, reusing the copy persisted under {@code viirs.pyramid.cacheDir} when it was
+ * built from the same source raster. Without a cache directory the pyramid is rebuilt on every start.
+ */
+@Component
+public class RasterPyramidCache {
+
+    private static final Logger log = LoggerFactory.getLogger(RasterPyramidCache.class);
+
+    private final int maxLevel;
+    private final long maxPixelsPerLevel;
+    private final Path cacheDir;
+
+    public RasterPyramidCache(@Value("${viirs.pyramid.levels:8}") int maxLevel,
+                              @Value("${viirs.pyramid.maxPixelsPerLevel:20000000}") long maxPixelsPerLevel,
+                              @Value("${viirs.pyramid.cacheDir:}") String cacheDir) {
+        this.maxLevel = maxLevel;
+        this.maxPixelsPerLevel = maxPixelsPerLevel;
+        this.cacheDir = cacheDir.isBlank() ? null : Path.of(cacheDir);
+    }
+
+    /**
+     * @return the pyramid, or {@code null} when pyramids are disabled with {@code viirs.pyramid.levels=0}
+     */
+    public RasterPyramid getOrBuild(String key, RasterStore raster, long fingerprint) {
+        if (maxLevel <= 0) {
+            return null;
+        }
+        RasterPyramid cached = read(key, fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+
+        Path file = file(key);
+        long start = System.nanoTime();
+        RasterPyramid pyramid = RasterPyramid.build(raster, maxLevel, maxPixelsPerLevel);
+        log.info("Built {}-level pyramid for '{}' in {} ms", pyramid.maxLevel(), key, (System.nanoTime() - start) / 1_000_000);
+        if (file != null) {
+            try {
+                RasterPyramidFile.write(file, pyramid, fingerprint);
+            } catch (IOException e) {
+                log.warn("Failed to persist pyramid to {}", file, e);
+            }
+        }
+        return pyramid;
+    }
+
+    /**
+     * The persisted pyramid built from the same source raster, or {@code null} when there is none. Never reads the
+     * raster itself.
+     */
+    public RasterPyramid read(String key, long fingerprint) {
+        Path file = file(key);
+        if (maxLevel <= 0 || file == null) {
+            return null;
+        }
+        try {
+            RasterPyramid cached = RasterPyramidFile.read(file, fingerprint);
+            if (cached != null && cached.maxLevel() <= maxLevel) {
+                log.info("Loaded pyramid for '{}' from {}", key, file);
+                return cached;
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable pyramid file {}", file, e);
+        }
+        return null;
+    }
+
+    private Path file(String key) {
+        return cacheDir == null ? null : cacheDir.resolve(key.replace('/', '_') + ".pyramid");
+    }
+}
@@ -0,0 +1,115 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.raster.SummedAreaTable;
+
+/**
+ * Sub-pixel and area sampling over a geo-referenced raster. Pixel values are taken to sit at pixel centres.
+ * Discs are approximated on a sphere with a fixed length of one degree of latitude, which is well below
+ * the pixel size of the VIIRS composites.
+ */
+final class RasterSampling {
+
+    static final double KM_PER_DEGREE = 111.32;
+
+    private RasterSampling() {
+    }
+
+    /**
+     * Bilinear interpolation between the four pixel centres around the point, clamped at the raster edges.
+     */
+    static double bilinear(double lat, double lon, RasterStore raster, ViirsGeoReference geoReference) {
+        double fx = (lon - geoReference.originX()) / geoReference.pixelScaleX() - 0.5;
+        double fy = (geoReference.originY() - lat) / geoReference.pixelScaleY() - 0.5;
+        int x0 = clamp((int) Math.floor(fx), geoReference.width() - 1);
+        int y0 = clamp((int) Math.floor(fy), geoReference.height() - 1);
+        int x1 = Math.min(x0 + 1, geoReference.width() - 1);
+        int y1 = Math.min(y0 + 1, geoReference.height() - 1);
+        double tx = Math.clamp(fx - x0, 0.0, 1.0);
+        double ty = Math.clamp(fy - y0, 0.0, 1.0);
+
+        double top = raster.getValue(x0, y0) * (1 - tx) + raster.getValue(x1, y0) * tx;
+        double bottom = raster.getValue(x0, y1) * (1 - tx) + raster.getValue(x1, y1) * tx;
+        return top * (1 - ty) + bottom * ty;
+    }
+
+    /**
+     * Mean over the pixels whose centres fall inside the disc, clipped to the raster. With an integral image
+     * each row of the disc costs four lookups, so a query is linear in the radius instead of quadratic.
+     * Returns {@code NaN} if the disc contains no pixel centre.
+     */
+    static double discMean(double lat, double lon, double radiusKm, RasterStore raster, SummedAreaTable summedAreaTable,
+                           ViirsGeoReference geoReference) {
+        double[] sumAndCount = new double[2];
+        forEachSpan(lat, lon, radiusKm, geoReference, (y, x0, x1) -> {
+            if (summedAreaTable != null) {
+                sumAndCount[0] += summedAreaTable.sum(x0, y, x1, y + 1);
+            } else {
+                for (int x = x0; x < x1; x++) {
+                    sumAndCount[0] += raster.getValue(x, y);
+                }
+            }
+            sumAndCount[1] += x1 - x0;
+        });
+        return sumAndCount[1] == 0 ? Double.NaN : sumAndCount[0] / sumAndCount[1];
+    }
+
+    /**
+     * Maximum over the pixels whose centres fall inside the disc, clipped to the raster. Returns {@code NaN}
+     * if the disc contains no pixel centre.
+     */
+    static double discMax(double lat, double lon, double radiusKm, RasterStore raster, ViirsGeoReference geoReference) {
+        double[] max = {Double.NaN};
+        forEachSpan(lat, lon, radiusKm, geoReference, (y, x0, x1) -> {
+            for (int x = x0; x < x1; x++) {
+                double value = raster.getValue(x, y);
+                if (Double.isNaN(max[0]) || value > max[0]) {
+                    max[0] = value;
+                }
+            }
+        });
+        return max[0];
+    }
+
+    /**
+     * Calls the consumer with {@code [x0, x1)} for every raster row {@code y} that has pixel centres inside the disc.
+     */
+    static void forEachSpan(double lat, double lon, double radiusKm, ViirsGeoReference geoReference,
+                            SpanConsumer consumer) {
+        double originX = geoReference.originX();
+        double originY = geoReference.originY();
+        double scaleX = geoReference.pixelScaleX();
+        double scaleY = geoReference.pixelScaleY();
+        int width = geoReference.width();
+        int height = geoReference.height();
+
+        double radiusDegrees = radiusKm / KM_PER_DEGREE;
+        int yMin = Math.max(0, (int) Math.floor((originY - lat - radiusDegrees) / scaleY));
+        int yMax = Math.min(height - 1, (int) Math.floor((originY - lat + radiusDegrees) / scaleY));
+        for (int y = yMin; y <= yMax; y++) {
+            double rowLat = originY - (y + 0.5) * scaleY;
+            double dyKm = (rowLat - lat) * KM_PER_DEGREE;
+            if (Math.abs(dyKm) > radiusKm) {
+                continue;
+            }
+            double halfKm = Math.sqrt(radiusKm * radiusKm - dyKm * dyKm);
+            double cos = Math.cos(Math.toRadians(rowLat));
+            double halfDegrees = cos > 1e-9 ? halfKm / (KM_PER_DEGREE * cos) : 360.0;
+            int x0 = Math.max(0, (int) Math.ceil((lon - halfDegrees - originX) / scaleX - 0.5));
+            int x1 = Math.min(width, (int) Math.floor((lon + halfDegrees - originX) / scaleX - 0.5) + 1);
+            if (x0 < x1) {
+                consumer.accept(y, x0, x1);
+            }
+        }
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    @FunctionalInterface
+    interface SpanConsumer {
+        void accept(int y, int x0, int x1);
+    }
+}
@@ -0,0 +1,192 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.InvalidSamplingParameterException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.DarknessProfile;
+import com.aldhafara.lightPollutionService.model.ProfileSample;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Profiles a polyline in pixel space. Each segment is clipped to the raster once and then walked cell by cell
+ * (Amanatides–Woo traversal), so the statistics see every crossed cell with the length of route inside it, while
+ * samples are placed by stepping along the same segment. Segment lengths use the local approximation of
+ * {@link RasterSampling}, with the longitude scale of the segment's mid latitude.
+ */
+final class RouteProfiler {
+
+    private final RasterStore raster;
+    private final BitMask mask;
+    private final ViirsGeoReference geoReference;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double weightedSum;
+    private double coveredKm;
+
+    private RouteProfiler(RasterStore raster, BitMask mask, ViirsGeoReference geoReference) {
+        this.raster = raster;
+        this.mask = mask;
+        this.geoReference = geoReference;
+    }
+
+    /**
+     * Samples at {@code 0, spacingKm, 2 * spacingKm, ...} along the route, plus its last point.
+     *
+     * @param mask cells without valid data, left out of the statistics; may be {@code null}
+     * @throws InvalidSamplingParameterException if the route would need more than {@code maxSamples} samples
+     */
+    static DarknessProfile profile(List<Coordinates> points, double spacingKm, int maxSamples, RasterStore raster,
+                                   BitMask mask, ViirsGeoReference geoReference) throws InvalidSamplingParameterException {
+        double[] segmentKm = new double[points.size() - 1];
+        double lengthKm = 0;
+        for (int i = 0; i < segmentKm.length; i++) {
+            segmentKm[i] = distanceKm(points.get(i), points.get(i + 1));
+            lengthKm += segmentKm[i];
+        }
+        long lastIndex = (long) Math.floor(lengthKm / spacingKm);
+        long sampleCount = lastIndex + 1 + (lastIndex * spacingKm < lengthKm ? 1 : 0);
+        if (sampleCount > maxSamples) {
+            throw new InvalidSamplingParameterException(String.format(
+                    "A %.3f km route at spacingKm %s needs %d samples, more than the maximum of %d",
+                    lengthKm, spacingKm, sampleCount, maxSamples));
+        }
+
+        RouteProfiler profiler = new RouteProfiler(raster, mask, geoReference);
+        List<ProfileSample> samples = new ArrayList<>((int) sampleCount);
+        double startKm = 0;
+        long next = 0;
+        for (int i = 0; i < segmentKm.length; i++) {
+            Coordinates from = points.get(i);
+            Coordinates to = points.get(i + 1);
+            double x0 = pixelX(from, geoReference);
+            double y0 = pixelY(from, geoReference);
+            double x1 = pixelX(to, geoReference);
+            double y1 = pixelY(to, geoReference);
+            profiler.traverse(x0, y0, x1, y1, segmentKm[i]);
+
+            double endKm = startKm + segmentKm[i];
+            if (segmentKm[i] > 0) {
+                double perKm = 1 / segmentKm[i];
+                for (; next <= lastIndex && next * spacingKm <= endKm; next++) {
+                    double t = (next * spacingKm - startKm) * perKm;
+                    samples.add(profiler.sample(next * spacingKm,
+                            from.latitude() + t * (to.latitude() - from.latitude()),
+                            from.longitude() + t * (to.longitude() - from.longitude()),
+                            x0 + t * (x1 - x0), y0 + t * (y1 - y0)));
+                }
+            } else if (next == 0) {
+                samples.add(profiler.sample(0, from.latitude(), from.longitude(), x0, y0));
+                next++;
+            }
+            startKm = endKm;
+        }
+        if (samples.size() < sampleCount) {
+            Coordinates last = points.get(points.size() - 1);
+            samples.add(profiler.sample(lengthKm, last.latitude(), last.longitude(),
+                    pixelX(last, geoReference), pixelY(last, geoReference)));
+        }
+
+        boolean covered = profiler.coveredKm > 0;
+        return new DarknessProfile(lengthKm, spacingKm,
+                covered ? profiler.min : null,
+                covered ? profiler.weightedSum / profiler.coveredKm : null,
+                covered ? profiler.max : null,
+                samples);
+    }
+
+    private ProfileSample sample(double distanceKm, double lat, double lon, double x, double y) {
+        int cellX = (int) Math.floor(x);
+        int cellY = (int) Math.floor(y);
+        if (cellX < 0 || cellX >= geoReference.width() || cellY < 0 || cellY >= geoReference.height()) {
+            return new ProfileSample(distanceKm, lat, lon, null, false);
+        }
+        return new ProfileSample(distanceKm, lat, lon, raster.getValue(cellX, cellY),
+                mask != null && mask.get(cellX, cellY));
+    }
+
+    /**
+     * Walks the cells the segment crosses inside the raster, crediting each with the kilometres spent in it.
+     */
+    private void traverse(double x0, double y0, double x1, double y1, double segmentKm) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double[] range = {0, 1};
+        if (!clip(-dx, x0, range) || !clip(dx, geoReference.width() - x0, range)
+                || !clip(-dy, y0, range) || !clip(dy, geoReference.height() - y0, range)) {
+            return;
+        }
+        double t = range[0];
+        double tEnd = range[1];
+        int cellX = Math.clamp((long) Math.floor(x0 + t * dx), 0, geoReference.width() - 1);
+        int cellY = Math.clamp((long) Math.floor(y0 + t * dy), 0, geoReference.height() - 1);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        double tDeltaX = stepX != 0 ? 1 / Math.abs(dx) : Double.POSITIVE_INFINITY;
+        double tDeltaY = stepY != 0 ? 1 / Math.abs(dy) : Double.POSITIVE_INFINITY;
+        double tNextX = stepX != 0 ? (cellX + (stepX > 0 ? 1 : 0) - x0) / dx : Double.POSITIVE_INFINITY;
+        double tNextY = stepY != 0 ? (cellY + (stepY > 0 ? 1 : 0) - y0) / dy : Double.POSITIVE_INFINITY;
+
+        while (t < tEnd) {
+            double tExit = Math.min(Math.min(tNextX, tNextY), tEnd);
+            visit(cellX, cellY, (tExit - t) * segmentKm);
+            t = tExit;
+            if (tNextX < tNextY) {
+                cellX += stepX;
+                tNextX += tDeltaX;
+            } else {
+                cellY += stepY;
+                tNextY += tDeltaY;
+            }
+            if (cellX < 0 || cellX >= geoReference.width() || cellY < 0 || cellY >= geoReference.height()) {
+                return;
+            }
+        }
+    }
+
+    private void visit(int x, int y, double km) {
+        if (!(km > 0) || mask != null && mask.get(x, y)) {
+            return;
+        }
+        double value = raster.getValue(x, y);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        weightedSum += value * km;
+        coveredKm += km;
+    }
+
+    /**
+     * One Liang–Barsky boundary test, narrowing {@code range} to the part of the segment with {@code p * t <= q}.
+     */
+    private static boolean clip(double p, double q, double[] range) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        double r = q / p;
+        if (p < 0) {
+            range[0] = Math.max(range[0], r);
+        } else {
+            range[1] = Math.min(range[1], r);
+        }
+        return range[0] < range[1];
+    }
+
+    private static double pixelX(Coordinates point, ViirsGeoReference geoReference) {
+        return (point.longitude() - geoReference.originX()) / geoReference.pixelScaleX();
+    }
+
+    private static double pixelY(Coordinates point, ViirsGeoReference geoReference) {
+        return (geoReference.originY() - point.latitude()) / geoReference.pixelScaleY();
+    }
+
+    private static double distanceKm(Coordinates from, Coordinates to) {
+        double dy = (to.latitude() - from.latitude()) * RasterSampling.KM_PER_DEGREE;
+        double dx = (to.longitude() - from.longitude()) * RasterSampling.KM_PER_DEGREE
+                * Math.cos(Math.toRadians((from.latitude() + to.latitude()) / 2));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,68 @@
+package com.aldhafara.lightPollutionService.service;
+
+/**
+ * Approximate zenith sky quality for a VIIRS radiance in nW/cm²/sr, read from tables built once at class load.
+ * <p>
+ * Zenith luminance is modelled as the natural {@value #NATURAL_MCD} mcd/m² plus an artificial part proportional to
+ * the radiance of the pixel, {@value #ARTIFICIAL_MCD_PER_RADIANCE} mcd/m² per nW/cm²/sr, and converted to
+ * mag/arcsec² with {@code L = 108 000 cd/m² * 10^(-0.4 m)}. Bortle classes follow the usual SQM ranges. Light
+ * scattered in from neighbouring pixels is not modelled, so the figures are estimates for comparing places rather
+ * than predictions of a meter reading.
+ */
+public final class SkyBrightness {
+
+    static final double NATURAL_MCD = 0.171168465;
+    static final double ARTIFICIAL_MCD_PER_RADIANCE = 0.2;
+
+    private static final double MAX_RADIANCE = 100_000;
+    private static final int TABLE_SIZE = 4096;
+    private static final double STEP = Math.log1p(MAX_RADIANCE) / (TABLE_SIZE - 1);
+    private static final double[] SQM = new double[TABLE_SIZE];
+    /**
+     * Lowest SQM of Bortle classes 1 to 8; darker skies than the last bound are class 9.
+     */
+    private static final double[] BORTLE_MIN_SQM = {21.99, 21.89, 21.69, 20.49, 19.50, 18.94, 18.38, 17.80};
+
+    static {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            SQM[i] = exactSqm(Math.expm1(i * STEP));
+        }
+    }
+
+    private SkyBrightness() {
+    }
+
+    /**
+     * Estimated sky brightness in mag/arcsec², interpolated in {@code log(1 + radiance)}. Negative radiances, which
+     * VIIRS composites contain as noise, count as 0.
+     */
+    public static double sqm(double radiance) {
+        if (!(radiance > 0)) {
+            return SQM[0];
+        }
+        double position = Math.log1p(radiance) / STEP;
+        int index = (int) position;
+        if (index >= TABLE_SIZE - 1) {
+            return exactSqm(radiance);
+        }
+        double fraction = position - index;
+        return SQM[index] + (SQM[index + 1] - SQM[index]) * fraction;
+    }
+
+    /**
+     * Estimated Bortle class, 1 (excellent dark sky) to 9 (inner city).
+     */
+    public static int bortle(double radiance) {
+        double sqm = sqm(radiance);
+        int bortle = 1;
+        while (bortle <= BORTLE_MIN_SQM.length && sqm < BORTLE_MIN_SQM[bortle - 1]) {
+            bortle++;
+        }
+        return bortle;
+    }
+
+    static double exactSqm(double radiance) {
+        double luminanceMcd = NATURAL_MCD + ARTIFICIAL_MCD_PER_RADIANCE * Math.max(0, radiance);
+        return -2.5 * Math.log10(luminanceMcd / 1000 / 108_000);
+    }
+}
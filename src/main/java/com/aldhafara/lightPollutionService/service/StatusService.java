@@ -1,5 +1,7 @@
 package com.aldhafara.lightPollutionService.service;
 
+import com.aldhafara.lightPollutionService.model.CacheStats;
+import com.aldhafara.lightPollutionService.model.DecodeStats;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -18,12 +20,24 @@ public class StatusService {
     @Getter
     private final int ratelimitDurationSeconds;
 
+    private final PixelValueCache pixelValueCache;
+
+    private final DatasetAvailability datasetAvailability;
+
+    private final ViirsTiffFileLoader loader;
+
     private final Instant startTime = Instant.now();
 
     public StatusService(@Value("${ratelimit.requests}") int ratelimitRequests,
-                         @Value("${ratelimit.durationSeconds}") int ratelimitDurationSeconds) {
+                         @Value("${ratelimit.durationSeconds}") int ratelimitDurationSeconds,
+                         PixelValueCache pixelValueCache,
+                         DatasetAvailability datasetAvailability,
+                         ViirsTiffFileLoader loader) {
         this.ratelimitRequests = ratelimitRequests;
         this.ratelimitDurationSeconds = ratelimitDurationSeconds;
+        this.pixelValueCache = pixelValueCache;
+        this.datasetAvailability = datasetAvailability;
+        this.loader = loader;
     }
 
     public long getUptimeMillis() {
@@ -33,4 +47,16 @@ public class StatusService {
     public String getTimestamp() {
         return DateTimeFormatter.ISO_INSTANT.format(Instant.now().atZone(ZoneOffset.UTC));
     }
+
+    public CacheStats getLookupCacheStats() {
+        return pixelValueCache.stats();
+    }
+
+    public DecodeStats getDecodeStats() {
+        return loader.decodeStats();
+    }
+
+    public boolean isReady() {
+        return datasetAvailability.isReady();
+    }
 }
@@ -2,63 +2,546 @@ package com.aldhafara.lightPollutionService.service;
 
 import com.aldhafara.lightPollutionService.exception.ResourceNotFoundException;
 import com.aldhafara.lightPollutionService.exception.TiffFileReadException;
+import com.aldhafara.lightPollutionService.model.DecodeStats;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.BlockExtremes;
+import com.aldhafara.lightPollutionService.raster.MaskedRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterCacheFile;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.raster.StorageMode;
+import com.aldhafara.lightPollutionService.raster.SummedAreaTable;
+import com.aldhafara.lightPollutionService.raster.TiffBlockRasterStore;
+import com.aldhafara.lightPollutionService.raster.TiffByteSource;
+import com.aldhafara.lightPollutionService.raster.TiffDirectory;
+import com.aldhafara.lightPollutionService.raster.TiffRasterDecoder;
+import com.aldhafara.lightPollutionService.raster.TiffSampleType;
 import com.aldhafara.lightPollutionService.utils.FileStreamProvider;
-import org.apache.commons.imaging.Imaging;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.stereotype.Service;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Loads each dataset in a single pass: the TIFF header and directory are parsed once and yield both the
+ * geo-reference and the raster, which are then served through both provider interfaces.
+ * <p>
+ * Datasets of the {@link DatasetRegistry} load on first use. When their combined size exceeds
+ * {@code viirs.dataset.memoryBudgetMb}, the least recently used ones are dropped and reload on their next use.
+ * <p>
+ * Each resident dataset is an immutable {@link ViirsDataset} snapshot. A {@link #reload(String) reload} builds the
+ * replacement without holding any lock and swaps it in with a single map write, so lookups keep reading the previous
+ * snapshot until then and never see a raster paired with another file's geo-reference. Loads and reloads of one key
+ * never overlap, so a slow first load cannot swap in its snapshot after a reload that read the newer file.
+ */
 @Service
-public class ViirsTiffFileLoader implements RasterImageProvider {
+public class ViirsTiffFileLoader implements RasterImageProvider, GeoReferenceProvider, ApplicationEventPublisherAware {
 
     private static final Logger log = LoggerFactory.getLogger(ViirsTiffFileLoader.class);
 
-    private final String viirsAverageDataPath;
+    private final DatasetRegistry datasetRegistry;
+    private final boolean mapped;
+    private final int cachedBlocks;
+    private final long summedAreaTableMaxPixels;
     private final FileStreamProvider fileStreamProvider;
+    private final ViirsGeoReferenceExtractor geoReferenceExtractor;
+    private final RasterPyramidCache pyramidCache;
+    private final RasterFileCache rasterCache;
+    private final long memoryBudgetBytes;
+    private final double maskThreshold;
+    /**
+     * Side of the {@link BlockExtremes} blocks that let area searches skip blocks without reading their pixels, or 0
+     * for no index.
+     */
+    private final int extremesBlockSize;
+    private final int decodeThreads;
+    /**
+     * Decompresses the strips or tiles of in-memory bands in parallel, or {@code null} to decode on the loading thread.
+     */
+    private final ForkJoinPool decodePool;
 
-    private final Map<String, BufferedImage> geoRefCacheStream = new ConcurrentHashMap<>();
+    private final Map<String, Resident> datasetCache = new ConcurrentHashMap<>();
+    private final Map<String, Load> loading = new ConcurrentHashMap<>();
+    /**
+     * Last version of each mapped file reported as rewritten in place, so the warning is logged once per write.
+     */
+    private final Map<String, FileVersion> rewrittenInPlace = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private ApplicationEventPublisher eventPublisher;
 
-    public ViirsTiffFileLoader(@Value("${viirs.average.url}") String viirsAverageDataPath, FileStreamProvider fileStreamProvider) {
-        this.viirsAverageDataPath = viirsAverageDataPath;
+    public ViirsTiffFileLoader(DatasetRegistry datasetRegistry,
+                               @Value("${viirs.raster.mapped:false}") boolean mapped,
+                               @Value("${viirs.raster.cachedBlocks:256}") int cachedBlocks,
+                               @Value("${viirs.raster.summedAreaTable.maxPixels:20000000}") long summedAreaTableMaxPixels,
+                               FileStreamProvider fileStreamProvider,
+                               ViirsGeoReferenceExtractor geoReferenceExtractor,
+                               RasterPyramidCache pyramidCache,
+                               RasterFileCache rasterCache,
+                               @Value("${viirs.dataset.memoryBudgetMb:2048}") long memoryBudgetMb,
+                               @Value("${viirs.mask.threshold:128}") double maskThreshold,
+                               @Value("${viirs.raster.extremes.blockSize:64}") int extremesBlockSize,
+                               @Value("${viirs.raster.decodeThreads:0}") int decodeThreads) {
+        this.datasetRegistry = datasetRegistry;
+        this.mapped = mapped;
+        this.cachedBlocks = cachedBlocks;
+        this.summedAreaTableMaxPixels = summedAreaTableMaxPixels;
         this.fileStreamProvider = fileStreamProvider;
+        this.geoReferenceExtractor = geoReferenceExtractor;
+        this.pyramidCache = pyramidCache;
+        this.rasterCache = rasterCache;
+        this.memoryBudgetBytes = memoryBudgetMb * 1024 * 1024;
+        this.maskThreshold = maskThreshold;
+        this.extremesBlockSize = extremesBlockSize;
+        this.decodePool = decodeThreads == 1 ? null
+                : decodeThreads > 1 ? new ForkJoinPool(decodeThreads) : ForkJoinPool.commonPool();
+        this.decodeThreads = decodePool == null ? 1 : decodePool.getParallelism();
+    }
+
+    /**
+     * Shuts down the decode pool created for {@code viirs.raster.decodeThreads} above 1; the common pool is left alone.
+     */
+    @PreDestroy
+    public void stop() {
+        if (decodePool != null && decodePool != ForkJoinPool.commonPool()) {
+            decodePool.shutdownNow();
+        }
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
     public void getOrLoadReference(String key) throws TiffFileReadException {
-        try {
-            geoRefCacheStream.computeIfAbsent(key, k -> {
+        getDataset(key);
+    }
+
+    @Override
+    public ViirsDataset getDataset(String key) throws TiffFileReadException {
+        Resident resident = datasetCache.get(key);
+        if (resident == null) {
+            resident = loadOnce(key, false);
+            if (resident == null) {
+                return null;
+            }
+        }
+        resident.lastUsed = System.nanoTime();
+        return resident.dataset;
+    }
+
+    /**
+     * Reads the dataset again and swaps it in once complete. Until then lookups are served from the previous
+     * snapshot; if reading fails, that snapshot stays in place. A reload waits for a first load of the key already in
+     * progress, which may have read the file before it changed, and shares the result of a reload already in progress.
+     *
+     * @return the new snapshot, or {@code null} if the key is not configured
+     */
+    public ViirsDataset reload(String key) throws TiffFileReadException {
+        Resident fresh = loadOnce(key, true);
+        return fresh == null ? null : fresh.dataset;
+    }
+
+    /**
+     * Keys of resident datasets whose local source file was modified since it was read. Datasets that are not
+     * plain files (classpath or remote URLs) are never reported. Mapped datasets are only reported once a new file
+     * has been moved into place: a file rewritten in place is already visible, possibly half-written, through the
+     * mapping, and reading it again would not make that safe.
+     */
+    public Set<String> modifiedKeys() {
+        Set<String> modified = new HashSet<>();
+        datasetCache.forEach((key, resident) -> {
+            String maskKey = datasetRegistry.maskKey(key);
+            if (changed(datasetRegistry.url(key), resident.sourceVersion)
+                    || maskKey != null && changed(datasetRegistry.url(maskKey), resident.maskVersion)) {
+                modified.add(key);
+            }
+        });
+        return modified;
+    }
+
+    @Override
+    public ViirsDataset getLoadedDataset(String key) {
+        Resident resident = datasetCache.get(key);
+        if (resident == null) {
+            return null;
+        }
+        resident.lastUsed = System.nanoTime();
+        return resident.dataset;
+    }
+
+    @Override
+    public RasterStore getRaster(String key) {
+        ViirsDataset dataset = residentDataset(key);
+        return dataset == null ? null : dataset.raster();
+    }
+
+    @Override
+    public SummedAreaTable getSummedAreaTable(String key) {
+        ViirsDataset dataset = residentDataset(key);
+        return dataset == null ? null : dataset.summedAreaTable();
+    }
+
+    @Override
+    public RasterPyramid getPyramid(String key) {
+        ViirsDataset dataset = residentDataset(key);
+        return dataset == null ? null : dataset.pyramid();
+    }
+
+    @Override
+    public ViirsGeoReference getReference(String key) {
+        ViirsDataset dataset = residentDataset(key);
+        return dataset == null ? null : dataset.geoReference();
+    }
+
+    /**
+     * Keys of the datasets currently held in memory.
+     */
+    public Set<String> residentKeys() {
+        return Set.copyOf(datasetCache.keySet());
+    }
+
+    /**
+     * Heap held by the resident datasets, the figure weighed against {@code viirs.dataset.memoryBudgetMb}.
+     */
+    public long residentBytes() {
+        return datasetCache.values().stream().mapToLong(resident -> resident.size).sum();
+    }
+
+    /**
+     * Number of completed dataset loads and reloads.
+     */
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Total time spent in completed loads and reloads, in nanoseconds.
+     */
+    public long loadNanos() {
+        return loadNanos.sum();
+    }
+
+    /**
+     * Throughput of the bands decoded into memory so far.
+     */
+    public DecodeStats decodeStats() {
+        long bytes = decodedBytes.sum();
+        long nanos = decodeNanos.sum();
+        double megabytesPerSecond = nanos == 0 ? 0 : bytes / (1024.0 * 1024.0) / (nanos / 1e9);
+        return new DecodeStats(decodes.sum(), bytes, nanos / 1_000_000, megabytesPerSecond, decodeThreads);
+    }
+
+    /**
+     * Loads the dataset on the calling thread while concurrent callers for the same key wait for that result.
+     * The decode runs outside the map's locks, so lookups of other datasets are never held up by it. Only the caller
+     * holding the key's {@link Load} writes its cache entry, so a load and a reload of one key cannot overwrite
+     * each other's snapshot.
+     *
+     * @param reload read the file even if the dataset is resident; waits out an in-flight first load instead of
+     *               sharing its possibly stale result
+     */
+    private Resident loadOnce(String key, boolean reload) {
+        Load created = new Load(new CompletableFuture<>(), reload);
+        Load inFlight;
+        while ((inFlight = loading.putIfAbsent(key, created)) != null) {
+            if (!reload || inFlight.reload()) {
                 try {
-                    InputStream inputStream;
-                    if (k.contains("average")) {
-                        inputStream = fileStreamProvider.getFileInputStream(viirsAverageDataPath);
-                    } else {
-                        log.error("Error while reading TIFF file, unknown key='{}'", k);
-                        return null;
-                    }
-                    return Imaging.getBufferedImage(inputStream);
-                } catch (ResourceNotFoundException | IOException e) {
-                    throw new RuntimeException(e);
+                    return inFlight.result().join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
                 }
-            });
+            }
+            inFlight.result().exceptionally(e -> null).join();
+        }
+        try {
+            Resident resident = reload ? null : datasetCache.get(key);
+            if (resident == null) {
+                resident = load(key);
+                if (resident != null) {
+                    datasetCache.put(key, resident);
+                    evictBeyondBudget(key);
+                }
+            }
+            created.result().complete(resident);
+            return resident;
         } catch (RuntimeException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof ResourceNotFoundException || cause instanceof TiffFileReadException) {
-                throw new TiffFileReadException("Failed to read TIFF file", cause);
-            } else {
-                throw e;
+            created.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, created);
+        }
+    }
+
+    private ViirsDataset residentDataset(String key) {
+        Resident resident = datasetCache.get(key);
+        return resident == null ? null : resident.dataset;
+    }
+
+    /**
+     * Drops least recently used datasets until the resident ones fit the budget. The dataset just loaded is
+     * never dropped, so a single dataset larger than the budget still serves. Each drop publishes a
+     * {@link DatasetEvictedEvent}.
+     */
+    private synchronized void evictBeyondBudget(String loadedKey) {
+        long total = residentBytes();
+        while (total > memoryBudgetBytes) {
+            Map.Entry<String, Resident> eldest = null;
+            for (Map.Entry<String, Resident> entry : datasetCache.entrySet()) {
+                if (!entry.getKey().equals(loadedKey)
+                        && (eldest == null || entry.getValue().lastUsed < eldest.getValue().lastUsed)) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            datasetCache.remove(eldest.getKey(), eldest.getValue());
+            total -= eldest.getValue().size;
+            log.info("Evicted dataset '{}' ({} MB) to stay within the {} MB budget", eldest.getKey(),
+                    eldest.getValue().size / (1024 * 1024), memoryBudgetBytes / (1024 * 1024));
+            if (eventPublisher != null) {
+                eventPublisher.publishEvent(new DatasetEvictedEvent(eldest.getKey(), eldest.getValue().dataset));
             }
         }
     }
 
-    @Override
-    public BufferedImage getImage(String key) {
-        return geoRefCacheStream.get(key);
+    /**
+     * Builds a dataset snapshot. In-memory bands are converted to the dataset's
+     * {@link DatasetRegistry#storageMode(String) storage mode} before anything is derived from them, so the indexes
+     * describe exactly the values lookups read; mapped bands keep their native samples, as converting them would pull
+     * the whole band onto the heap. Pixels of the year's mask below {@code viirs.mask.threshold} read as 0, which also
+     * keeps them out of the summed-area table and the pyramid.
+     */
+    private Resident load(String key) throws TiffFileReadException {
+        String url = datasetRegistry.url(key);
+        if (url == null) {
+            log.error("Error while reading TIFF file, unknown key='{}'", key);
+            return null;
+        }
+        String maskKey = datasetRegistry.maskKey(key);
+        String maskUrl = maskKey == null ? null : datasetRegistry.url(maskKey);
+        long start = System.nanoTime();
+        FileVersion sourceVersion = version(url);
+        FileVersion maskVersion = version(maskUrl);
+        try {
+            Decoded decoded = decode(key, url, mapped, cachedBlocks, modified(sourceVersion));
+            StorageMode storageMode = mapped ? StorageMode.NATIVE : datasetRegistry.storageMode(key);
+            RasterStore raster = storageMode.store(decoded.raster());
+            long fingerprint = storageMode == StorageMode.NATIVE
+                    ? decoded.fingerprint()
+                    : decoded.fingerprint() * 31 + storageMode.ordinal();
+            BitMask mask = null;
+            if (maskUrl != null) {
+                Decoded maskDecoded = decode(maskKey, maskUrl, mapped, 0, modified(maskVersion));
+                mask = alignMask(maskDecoded, decoded.geoReference());
+                raster = new MaskedRasterStore(raster, mask);
+                fingerprint = fingerprint * 31 + maskDecoded.fingerprint() + Double.hashCode(maskThreshold);
+                log.info("Applied mask '{}' to dataset '{}' ({} of {} pixels masked)", maskKey, key,
+                        mask.cardinality(), (long) mask.width() * mask.height());
+            }
+            SummedAreaTable summedAreaTable = buildSummedAreaTable(raster);
+            TiffDirectory directory = decoded.directory();
+            log.info("Loaded dataset '{}' ({}x{} {}, storage={}, mapped={}, cached={}, summedAreaTable={}) in {} ms",
+                    key, directory.width(), directory.height(), directory.sampleType(), storageMode.property(),
+                    mapped, decoded.cached(), summedAreaTable != null,
+                    (System.nanoTime() - start) / 1_000_000);
+            RasterPyramid pyramid = buildPyramid(key, raster, fingerprint);
+            BlockExtremes extremes = extremesBlockSize > 0 && !mapped
+                    ? BlockExtremes.build(raster, mask, extremesBlockSize)
+                    : null;
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+            return new Resident(new ViirsDataset(decoded.geoReference(), raster, summedAreaTable, pyramid, mask, extremes,
+                    directory.sampleType().floatingPoint()), sourceVersion, maskVersion);
+        } catch (ResourceNotFoundException | IOException e) {
+            log.error("Error while reading TIFF file", e);
+            throw new TiffFileReadException("Failed to read TIFF file", e);
+        }
+    }
+
+    /**
+     * Parses the header and directory once, yielding both the geo-reference and the first band. The band comes from
+     * the raster cache when it holds a copy of this exact source; local files are then only mapped to read their
+     * directory, never copied to the heap. Only bands decoded into memory are written to the cache, as writing a
+     * mapped band would decode all of it.
+     *
+     * @param blockCache blocks a mapped band keeps decoded, or 0 for one row of blocks, enough to read it row by row
+     *                   decoding each block once
+     */
+    private Decoded decode(String key, String url, boolean mapFile, int blockCache, long modified) throws IOException {
+        TiffByteSource source = mapFile || rasterCache.isEnabled() && url.startsWith("file:")
+                ? TiffByteSource.map(fileStreamProvider.getLocalFile(url))
+                : TiffByteSource.wrap(readFully(url));
+        TiffDirectory directory = TiffDirectory.read(source);
+        long fingerprint = (directory.fingerprint() * 31 + source.size()) * 31 + modified;
+        RasterCacheFile.Cached cached = rasterCache.read(key, fingerprint);
+        if (cached != null) {
+            return new Decoded(directory, cached.geoReference(), cached.raster(), fingerprint, true);
+        }
+
+        ViirsGeoReference geoReference = geoReferenceExtractor.extractGeoReference(directory);
+        RasterStore raster;
+        if (mapFile) {
+            raster = new TiffBlockRasterStore(directory, source,
+                    blockCache > 0 ? blockCache : Math.max(1, directory.blocksAcross()));
+        } else {
+            long start = System.nanoTime();
+            raster = TiffRasterDecoder.decodeFirstBand(directory, source, decodePool);
+            recordDecode(key, directory, System.nanoTime() - start);
+        }
+        if (rasterCache.isEnabled() && !mapFile) {
+            rasterCache.write(key, raster, geoReference, directory.sampleType() != TiffSampleType.UINT8, fingerprint);
+        }
+        return new Decoded(directory, geoReference, raster, fingerprint, false);
+    }
+
+    private void recordDecode(String key, TiffDirectory directory, long nanos) {
+        long bytes = (long) directory.width() * directory.height() * directory.sampleType().bytes();
+        decodes.increment();
+        decodedBytes.add(bytes);
+        decodeNanos.add(nanos);
+        double megabytes = bytes / (1024.0 * 1024.0);
+        log.info("Decoded '{}' ({} MB in {} blocks) in {} ms on {} threads, {} MB/s", key, Math.round(megabytes),
+                (long) directory.blocksAcross() * directory.blocksDown(), nanos / 1_000_000, decodeThreads,
+                Math.round(megabytes / Math.max(nanos, 1) * 1e9));
+    }
+
+    /**
+     * Resamples the mask onto the raster grid by nearest pixel centre, so lookups test a single bit. Raster pixels
+     * outside the mask's extent stay unmasked. A mapped mask is read row by row, decoding each block once, and only
+     * the bitmask, one bit per raster pixel, stays on the heap.
+     */
+    private BitMask alignMask(Decoded mask, ViirsGeoReference target) {
+        ViirsGeoReference maskReference = mask.geoReference();
+        int[] columns = new int[target.width()];
+        for (int x = 0; x < columns.length; x++) {
+            double lon = target.originX() + (x + 0.5) * target.pixelScaleX();
+            double column = (lon - maskReference.originX()) / maskReference.pixelScaleX();
+            columns[x] = column >= 0 && column < maskReference.width() ? (int) column : -1;
+        }
+        int[] rows = new int[target.height()];
+        for (int y = 0; y < rows.length; y++) {
+            double lat = target.originY() - (y + 0.5) * target.pixelScaleY();
+            double row = (maskReference.originY() - lat) / maskReference.pixelScaleY();
+            rows[y] = row >= 0 && row < maskReference.height() ? (int) row : -1;
+        }
+        return BitMask.below(mask.raster(), maskThreshold, columns, rows);
+    }
+
+    /**
+     * Mapped rasters are never indexed: building the table would decode every block, which is exactly what
+     * mapping avoids. In-memory rasters are indexed up to the configured size, at eight bytes per pixel.
+     */
+    private SummedAreaTable buildSummedAreaTable(RasterStore raster) {
+        if (mapped || (long) raster.width() * raster.height() > summedAreaTableMaxPixels) {
+            return null;
+        }
+        return SummedAreaTable.build(raster);
+    }
+
+    /**
+     * Mapped rasters only get a pyramid persisted by an earlier in-memory load: building one would decode every
+     * block, like the summed-area table.
+     */
+    private RasterPyramid buildPyramid(String key, RasterStore raster, long fingerprint) {
+        return mapped ? pyramidCache.read(key, fingerprint) : pyramidCache.getOrBuild(key, raster, fingerprint);
+    }
+
+    /**
+     * A file counts as changed when its modification time or its file key (the inode on Unix) differs. For mapped
+     * datasets only a new file key counts, that is a complete copy moved into place.
+     */
+    private boolean changed(String url, FileVersion recorded) {
+        if (recorded == null) {
+            return false;
+        }
+        FileVersion current = version(url);
+        if (current == null || current.equals(recorded)) {
+            return false;
+        }
+        if (!mapped || recorded.fileKey() != null && !recorded.fileKey().equals(current.fileKey())) {
+            return true;
+        }
+        if (!current.equals(rewrittenInPlace.put(url, current))) {
+            log.warn("Mapped file '{}' was modified in place and is not reloaded; move a complete copy into place "
+                    + "instead", url);
+        }
+        return false;
+    }
+
+    /**
+     * Modification time and file key of a {@code file:} URL, or {@code null} for other URLs and unreadable files.
+     */
+    private FileVersion version(String url) {
+        if (url == null || !url.startsWith("file:")) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Path.of(URI.create(url)), BasicFileAttributes.class);
+            return new FileVersion(attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private static long modified(FileVersion version) {
+        return version == null ? -1 : version.modified();
+    }
+
+    private byte[] readFully(String url) throws IOException {
+        try (InputStream inputStream = fileStreamProvider.getFileInputStream(url)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private record FileVersion(long modified, Object fileKey) {
+    }
+
+    private record Load(CompletableFuture<Resident> result, boolean reload) {
+    }
+
+    private record Decoded(TiffDirectory directory, ViirsGeoReference geoReference, RasterStore raster,
+                           long fingerprint, boolean cached) {
+    }
+
+    private static final class Resident {
+        private final ViirsDataset dataset;
+        private final long size;
+        private final FileVersion sourceVersion;
+        private final FileVersion maskVersion;
+        private volatile long lastUsed;
+
+        private Resident(ViirsDataset dataset, FileVersion sourceVersion, FileVersion maskVersion) {
+            this.dataset = dataset;
+            this.size = dataset.sizeInBytes();
+            this.sourceVersion = sourceVersion;
+            this.maskVersion = maskVersion;
+            this.lastUsed = System.nanoTime();
+        }
     }
 }
@@ -1,34 +1,51 @@
 package com.aldhafara.lightPollutionService.service;
 
 import com.aldhafara.lightPollutionService.exception.CoordinatesOutOfRasterBoundsException;
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.exception.InvalidSamplingParameterException;
 import com.aldhafara.lightPollutionService.exception.TiffFileReadException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.DarkSpot;
+import com.aldhafara.lightPollutionService.model.DarknessProfile;
+import com.aldhafara.lightPollutionService.model.SamplingMode;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
 import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
-import jakarta.annotation.PostConstruct;
+import com.aldhafara.lightPollutionService.model.ZonalStatistics;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.raster.SummedAreaTable;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.awt.image.BufferedImage;
+import java.util.List;
 
 @Service
 public class ViirsTiffService {
 
     private static final Logger log = LoggerFactory.getLogger(ViirsTiffService.class);
+    private static final String LOOKUP_TIMER = "lightpollution.lookup";
 
     private final RasterImageProvider imageProvider;
     private final GeoReferenceProvider referenceProvider;
+    private final PixelValueCache pixelValueCache;
+    private final DatasetRegistry datasetRegistry;
+    private final DatasetAvailability datasetAvailability;
 
-    public ViirsTiffService(RasterImageProvider imageProvider, GeoReferenceProvider referenceProvider) {
+    public ViirsTiffService(RasterImageProvider imageProvider, GeoReferenceProvider referenceProvider,
+                            PixelValueCache pixelValueCache, DatasetRegistry datasetRegistry,
+                            DatasetAvailability datasetAvailability) {
         this.imageProvider = imageProvider;
         this.referenceProvider = referenceProvider;
+        this.pixelValueCache = pixelValueCache;
+        this.datasetRegistry = datasetRegistry;
+        this.datasetAvailability = datasetAvailability;
     }
 
-    @PostConstruct
-    public void init() {
-        getOrLoadReference("2023/average");
-    }
-
-    public Double getValueForLocation(double lat, double lon, BufferedImage tiffFile, ViirsGeoReference geoReference) throws CoordinatesOutOfRasterBoundsException {
+    public double getValueForLocation(double lat, double lon, RasterStore raster, ViirsGeoReference geoReference) throws CoordinatesOutOfRasterBoundsException {
         int x = (int) ((lon - geoReference.originX()) / geoReference.pixelScaleX());
         int y = (int) ((geoReference.originY() - lat) / geoReference.pixelScaleY());
 
@@ -39,18 +56,236 @@ public class ViirsTiffService {
             );
         }
 
-        int pixel = tiffFile.getRGB(x, y);
+        return raster.getValue(x, y);
+    }
+
+    public double getValueForLocation(double lat, double lon) throws CoordinatesOutOfRasterBoundsException {
+        return getValueForLocation(lat, lon, (Integer) null);
+    }
+
+    /**
+     * @param year composite year, or {@code null} for the default year
+     */
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "nearest"})
+    public double getValueForLocation(double lat, double lon, Integer year)
+            throws CoordinatesOutOfRasterBoundsException, DatasetNotFoundException {
+        return getValueForLocation(lat, lon, dataset(year));
+    }
+
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "nearest"})
+    public double getValueForLocation(double lat, double lon, ViirsDataset dataset)
+            throws CoordinatesOutOfRasterBoundsException {
+        return getValueForLocation(lat, lon, pixelValueCache.view(dataset.raster()), dataset.geoReference());
+    }
+
+    /**
+     * Samples the raster around the point with the given mode. The point itself must lie inside the raster;
+     * area modes clip their disc to it and fall back to the nearest pixel when the disc is smaller than a pixel.
+     */
+    public double getValueForLocation(double lat, double lon, SamplingMode mode, double radiusKm, RasterStore raster,
+                                      SummedAreaTable summedAreaTable, ViirsGeoReference geoReference)
+            throws CoordinatesOutOfRasterBoundsException {
+        double nearest = getValueForLocation(lat, lon, raster, geoReference);
+        double value = switch (mode) {
+            case NEAREST -> nearest;
+            case BILINEAR -> RasterSampling.bilinear(lat, lon, raster, geoReference);
+            case MEAN -> RasterSampling.discMean(lat, lon, radiusKm, raster, summedAreaTable, geoReference);
+            case MAX -> RasterSampling.discMax(lat, lon, radiusKm, raster, geoReference);
+        };
+        return Double.isNaN(value) ? nearest : value;
+    }
+
+    public double getValueForLocation(double lat, double lon, SamplingMode mode, double radiusKm)
+            throws CoordinatesOutOfRasterBoundsException {
+        return getValueForLocation(lat, lon, mode, radiusKm, (Integer) null);
+    }
+
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "area"})
+    public double getValueForLocation(double lat, double lon, SamplingMode mode, double radiusKm, Integer year)
+            throws CoordinatesOutOfRasterBoundsException, DatasetNotFoundException {
+        return getValueForLocation(lat, lon, mode, radiusKm, dataset(year));
+    }
+
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "area"})
+    public double getValueForLocation(double lat, double lon, SamplingMode mode, double radiusKm, ViirsDataset dataset)
+            throws CoordinatesOutOfRasterBoundsException {
+        return getValueForLocation(lat, lon, mode, radiusKm, dataset.raster(), dataset.summedAreaTable(),
+                dataset.geoReference());
+    }
+
+    /**
+     * Samples a precomputed pyramid level, where each cell aggregates {@code 2^level x 2^level} pixels.
+     * {@code max} reads the max level, {@code bilinear} interpolates the mean level and the other modes read the
+     * mean cell containing the point. The point must lie inside the full-resolution raster.
+     */
+    public double getValueForLocationAtLevel(double lat, double lon, SamplingMode mode, int level, RasterPyramid pyramid,
+                                             ViirsGeoReference geoReference) throws CoordinatesOutOfRasterBoundsException {
+        RasterPyramid.Level stored = pyramid == null ? null : pyramid.level(level);
+        if (stored == null) {
+            throw new InvalidSamplingParameterException("Pyramid level " + level + " is not available");
+        }
+        int x = (int) ((lon - geoReference.originX()) / geoReference.pixelScaleX());
+        int y = (int) ((geoReference.originY() - lat) / geoReference.pixelScaleY());
+        if (lon < geoReference.originX() || lat > geoReference.originY() || x >= geoReference.width() || y >= geoReference.height()) {
+            throw new CoordinatesOutOfRasterBoundsException(
+                    String.format("Coordinates lat:%.8f, lon:%.8f are outside the TIFF raster range", lat, lon)
+            );
+        }
+
+        ViirsGeoReference levelReference = geoReference.downsampled(stored.factor());
+        return switch (mode) {
+            case BILINEAR -> RasterSampling.bilinear(lat, lon, stored.mean(), levelReference);
+            case MAX -> getValueForLocation(lat, lon, stored.max(), levelReference);
+            case NEAREST, MEAN -> getValueForLocation(lat, lon, stored.mean(), levelReference);
+        };
+    }
+
+    public double getValueForLocationAtLevel(double lat, double lon, SamplingMode mode, int level)
+            throws CoordinatesOutOfRasterBoundsException {
+        return getValueForLocationAtLevel(lat, lon, mode, level, (Integer) null);
+    }
+
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "level"})
+    public double getValueForLocationAtLevel(double lat, double lon, SamplingMode mode, int level, Integer year)
+            throws CoordinatesOutOfRasterBoundsException, DatasetNotFoundException {
+        return getValueForLocationAtLevel(lat, lon, mode, level, dataset(year));
+    }
 
-        double alpha = (pixel >> 24) & 0xff;
-        double red = (pixel >> 16) & 0xff;
-        double green = (pixel >> 8) & 0xff;
-        double blue = (pixel) & 0xff;
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "level"})
+    public double getValueForLocationAtLevel(double lat, double lon, SamplingMode mode, int level, ViirsDataset dataset)
+            throws CoordinatesOutOfRasterBoundsException {
+        return getValueForLocationAtLevel(lat, lon, mode, level, dataset.pyramid(), dataset.geoReference());
+    }
+
+    /**
+     * Looks up many points against one raster snapshot. Points outside the raster yield {@code NaN}
+     * instead of failing the whole batch.
+     */
+    public double[] getValuesForLocations(List<Coordinates> coordinates, RasterStore raster, ViirsGeoReference geoReference) {
+        double originX = geoReference.originX();
+        double originY = geoReference.originY();
+        double pixelScaleX = geoReference.pixelScaleX();
+        double pixelScaleY = geoReference.pixelScaleY();
+        int width = geoReference.width();
+        int height = geoReference.height();
+
+        double[] values = new double[coordinates.size()];
+        for (int i = 0; i < values.length; i++) {
+            Coordinates point = coordinates.get(i);
+            int x = (int) ((point.longitude() - originX) / pixelScaleX);
+            int y = (int) ((originY - point.latitude()) / pixelScaleY);
+            values[i] = x < 0 || x >= width || y < 0 || y >= height ? Double.NaN : raster.getValue(x, y);
+        }
+        return values;
+    }
+
+    public double[] getValuesForLocations(List<Coordinates> coordinates) {
+        return getValuesForLocations(coordinates, (Integer) null);
+    }
+
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "batch"})
+    public double[] getValuesForLocations(List<Coordinates> coordinates, Integer year) throws DatasetNotFoundException {
+        return getValuesForLocations(coordinates, dataset(year));
+    }
+
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "batch"})
+    public double[] getValuesForLocations(List<Coordinates> coordinates, ViirsDataset dataset) {
+        return getValuesForLocations(coordinates, pixelValueCache.view(dataset.raster()), dataset.geoReference());
+    }
+
+    /**
+     * Binds a nearest-pixel lookup to the dataset current now, so a long run of lookups sees one snapshot even if
+     * the dataset is reloaded meanwhile.
+     */
+    public PointLookup pointLookup(Integer year) throws DatasetNotFoundException {
+        ViirsDataset dataset = dataset(year);
+        return new PointLookup(dataset.raster(), dataset.mask(), dataset.geoReference());
+    }
+
+    /**
+     * The dataset current now. Lookups given the same dataset see one snapshot, even if it is reloaded between them.
+     */
+    public ViirsDataset dataset(Integer year) throws DatasetNotFoundException {
+        return datasetAvailability.require(datasetRegistry.key(year, DatasetRegistry.DEFAULT_PRODUCT));
+    }
+
+    /**
+     * Whether the dataset's mask marks the pixel containing the point as having no valid data. Such pixels read as
+     * 0 in every lookup. Points outside the raster and datasets without a mask are never masked.
+     */
+    public boolean isMasked(double lat, double lon, Integer year) throws DatasetNotFoundException {
+        return isMasked(lat, lon, dataset(year));
+    }
+
+    public boolean isMasked(double lat, double lon, ViirsDataset dataset) {
+        BitMask mask = dataset.mask();
+        if (mask == null) {
+            return false;
+        }
+        ViirsGeoReference geoReference = dataset.geoReference();
+        int x = (int) ((lon - geoReference.originX()) / geoReference.pixelScaleX());
+        int y = (int) ((geoReference.originY() - lat) / geoReference.pixelScaleY());
+        return x >= 0 && x < mask.width() && y >= 0 && y < mask.height() && mask.get(x, y);
+    }
+
+    public boolean[] isMasked(List<Coordinates> coordinates, Integer year) throws DatasetNotFoundException {
+        return isMasked(coordinates, dataset(year));
+    }
+
+    public boolean[] isMasked(List<Coordinates> coordinates, ViirsDataset dataset) {
+        boolean[] masked = new boolean[coordinates.size()];
+        BitMask mask = dataset.mask();
+        if (mask == null) {
+            return masked;
+        }
+        ViirsGeoReference geoReference = dataset.geoReference();
+        for (int i = 0; i < masked.length; i++) {
+            Coordinates point = coordinates.get(i);
+            int x = (int) ((point.longitude() - geoReference.originX()) / geoReference.pixelScaleX());
+            int y = (int) ((geoReference.originY() - point.latitude()) / geoReference.pixelScaleY());
+            masked[i] = x >= 0 && x < mask.width() && y >= 0 && y < mask.height() && mask.get(x, y);
+        }
+        return masked;
+    }
+
+    /**
+     * The {@code limit} darkest valid pixels whose centres lie within {@code radiusKm} of the point, darkest first
+     * and nearest first among equally dark ones. Masked pixels are never returned. The point itself must lie inside
+     * the raster.
+     */
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "darkest"})
+    public List<DarkSpot> findDarkest(double lat, double lon, double radiusKm, int limit, Integer year)
+            throws CoordinatesOutOfRasterBoundsException, DatasetNotFoundException {
+        ViirsDataset dataset = dataset(year);
+        getValueForLocation(lat, lon, dataset.raster(), dataset.geoReference());
+        return DarkestSpotSearch.find(lat, lon, radiusKm, limit, dataset.raster(), dataset.mask(), dataset.extremes(),
+                dataset.geoReference());
+    }
 
-        return red;
+    /**
+     * Brightness along a route of at least two points, sampled every {@code spacingKm} and summarised over every
+     * raster cell the route crosses. Parts of the route outside the raster yield samples without a value and are
+     * left out of the statistics.
+     */
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "profile"})
+    public DarknessProfile getProfile(List<Coordinates> route, double spacingKm, int maxSamples, Integer year)
+            throws InvalidSamplingParameterException, DatasetNotFoundException {
+        ViirsDataset dataset = dataset(year);
+        return RouteProfiler.profile(route, spacingKm, maxSamples, dataset.raster(), dataset.mask(),
+                dataset.geoReference());
     }
 
-    public Double getValueForLocation(double lat, double lon) throws CoordinatesOutOfRasterBoundsException {
-        return getValueForLocation(lat, lon, imageProvider.getImage("2023/average"), referenceProvider.getReference("2023/average"));
+    /**
+     * Statistics of the valid pixels whose centres lie inside the polygon, given as rings under the even-odd rule.
+     * Parts of the polygon outside the raster are ignored.
+     */
+    @Timed(value = LOOKUP_TIMER, extraTags = {"mode", "zonal"})
+    public ZonalStatistics getZonalStatistics(List<List<Coordinates>> rings, List<Double> percentiles, int bins,
+                                              long maxPixels, Integer year)
+            throws InvalidGeometryException, DatasetNotFoundException {
+        ViirsDataset dataset = dataset(year);
+        return ZonalAggregation.aggregate(rings, percentiles, bins, maxPixels, dataset.raster(), dataset.mask(),
+                dataset.extremes(), dataset.geoReference());
     }
 
     public void getOrLoadReference(String key) throws TiffFileReadException {
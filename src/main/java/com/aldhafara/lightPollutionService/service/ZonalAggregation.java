@@ -0,0 +1,320 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.HistogramBin;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.model.ZonalStatistics;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.BlockExtremes;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Zonal statistics over the pixels whose centres lie inside a polygon, under the even-odd rule so holes and separate
+ * parts need no special handling. The polygon is scan-converted against the pixel grid, each edge stepping its
+ * crossing by a constant amount per row, and row bands are aggregated in parallel on the common fork-join pool.
+ * <p>
+ * Each band keeps a histogram of {@value #FINE_BINS} bins over the dataset's value range with the sum of every bin, so
+ * merging bands is cheap. Percentiles are the mean of the bin holding the requested rank, which is exact whenever a bin
+ * holds one distinct value, as it does for 8-bit rasters.
+ */
+final class ZonalAggregation {
+
+    static final int FINE_BINS = 4096;
+    private static final int MIN_BAND_ROWS = 32;
+
+    private final Edge[] edges;
+    private final RasterStore raster;
+    private final BitMask mask;
+    private final int width;
+    private final int bandRows;
+
+    private ZonalAggregation(Edge[] edges, RasterStore raster, BitMask mask, int width, int rows) {
+        this.edges = edges;
+        this.raster = raster;
+        this.mask = mask;
+        this.width = width;
+        this.bandRows = Math.max(MIN_BAND_ROWS, rows / (ForkJoinPool.getCommonPoolParallelism() * 4));
+    }
+
+    /**
+     * @param mask        pixels without valid data, counted separately; may be {@code null}
+     * @param extremes    block index over the same raster and mask, used for the value range; {@code null} adds a pass
+     * @param percentiles requested percentiles in {@code [0, 100]}
+     * @throws InvalidGeometryException if the polygon's bounding box covers more than {@code maxPixels} raster pixels
+     */
+    static ZonalStatistics aggregate(List<List<Coordinates>> rings, List<Double> percentiles, int bins, long maxPixels,
+                                     RasterStore raster, BitMask mask, BlockExtremes extremes,
+                                     ViirsGeoReference geoReference) throws InvalidGeometryException {
+        Edge[] edges = edges(rings, geoReference);
+        int rowFrom = Math.max(0, Arrays.stream(edges).mapToInt(Edge::firstRow).min().orElse(0));
+        int rowTo = Math.min(geoReference.height(), Arrays.stream(edges).mapToInt(Edge::endRow).max().orElse(0));
+        if (rowFrom >= rowTo) {
+            return statistics(new Histogram(0, 0), percentiles, bins);
+        }
+        long pixels = (long) (rowTo - rowFrom) * columns(rings, geoReference);
+        if (pixels > maxPixels) {
+            throw new InvalidGeometryException(String.format(
+                    "Polygon spans %d raster pixels, more than the maximum of %d", pixels, maxPixels));
+        }
+        ZonalAggregation aggregation = new ZonalAggregation(edges, raster, mask, geoReference.width(), rowTo - rowFrom);
+
+        double[] range = extremes == null ? null : range(extremes);
+        if (range == null) {
+            Range zoneRange = aggregation.run(rowFrom, rowTo, Range::new);
+            range = new double[] {zoneRange.min, zoneRange.max};
+        }
+        double lo = range[0];
+        double hi = range[1];
+        Histogram histogram = aggregation.run(rowFrom, rowTo, () -> new Histogram(lo, hi));
+        return statistics(histogram, percentiles, bins);
+    }
+
+    /**
+     * Converts every ring to pixel-space edges, closing rings that do not repeat their first position.
+     */
+    private static Edge[] edges(List<List<Coordinates>> rings, ViirsGeoReference geoReference) {
+        List<Edge> edges = new ArrayList<>();
+        for (List<Coordinates> ring : rings) {
+            for (int i = 0; i < ring.size(); i++) {
+                Coordinates from = ring.get(i);
+                Coordinates to = ring.get((i + 1) % ring.size());
+                double x0 = (from.longitude() - geoReference.originX()) / geoReference.pixelScaleX();
+                double y0 = (geoReference.originY() - from.latitude()) / geoReference.pixelScaleY();
+                double x1 = (to.longitude() - geoReference.originX()) / geoReference.pixelScaleX();
+                double y1 = (geoReference.originY() - to.latitude()) / geoReference.pixelScaleY();
+                if (y0 > y1) {
+                    double swap = x0;
+                    x0 = x1;
+                    x1 = swap;
+                    swap = y0;
+                    y0 = y1;
+                    y1 = swap;
+                }
+                // Rows whose centre y + 0.5 lies in [y0, y1); horizontal edges cross none.
+                int firstRow = (int) Math.ceil(y0 - 0.5);
+                int endRow = (int) Math.ceil(y1 - 0.5);
+                if (firstRow < endRow) {
+                    double slope = (x1 - x0) / (y1 - y0);
+                    edges.add(new Edge(firstRow, endRow, x0 + (firstRow + 0.5 - y0) * slope, slope));
+                }
+            }
+        }
+        Edge[] sorted = edges.toArray(Edge[]::new);
+        Arrays.sort(sorted, Comparator.comparingInt(Edge::firstRow));
+        return sorted;
+    }
+
+    /**
+     * Raster columns between the westernmost and easternmost vertex.
+     */
+    private static int columns(List<List<Coordinates>> rings, ViirsGeoReference geoReference) {
+        double west = Double.POSITIVE_INFINITY;
+        double east = Double.NEGATIVE_INFINITY;
+        for (List<Coordinates> ring : rings) {
+            for (Coordinates point : ring) {
+                west = Math.min(west, point.longitude());
+                east = Math.max(east, point.longitude());
+            }
+        }
+        int x0 = (int) Math.max(0, Math.floor((west - geoReference.originX()) / geoReference.pixelScaleX()));
+        int x1 = (int) Math.min(geoReference.width(), Math.ceil((east - geoReference.originX()) / geoReference.pixelScaleX()));
+        return Math.max(0, x1 - x0);
+    }
+
+    private static double[] range(BlockExtremes extremes) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int blockY = 0; blockY < extremes.blocksDown(); blockY++) {
+            for (int blockX = 0; blockX < extremes.blocksAcross(); blockX++) {
+                min = Math.min(min, extremes.min(blockX, blockY));
+                max = Math.max(max, extremes.max(blockX, blockY));
+            }
+        }
+        return min <= max ? new double[] {min, max} : new double[] {0, 0};
+    }
+
+    private <A extends Accumulator<A>> A run(int rowFrom, int rowTo, Supplier<A> accumulators) {
+        return ForkJoinPool.commonPool().invoke(new Band<>(rowFrom, rowTo, accumulators));
+    }
+
+    /**
+     * Feeds the pixels of rows {@code [rowFrom, rowTo)} inside the polygon to the accumulator, row by row.
+     */
+    private void scan(int rowFrom, int rowTo, Accumulator<?> accumulator) {
+        List<Edge> active = new ArrayList<>();
+        int next = 0;
+        double[] crossings = new double[8];
+        for (int y = rowFrom; y < rowTo; y++) {
+            while (next < edges.length && edges[next].firstRow() <= y) {
+                if (edges[next].endRow() > y) {
+                    active.add(edges[next]);
+                }
+                next++;
+            }
+            int row = y;
+            active.removeIf(edge -> edge.endRow() <= row);
+            if (active.size() > crossings.length) {
+                crossings = new double[Math.max(active.size(), crossings.length * 2)];
+            }
+            for (int i = 0; i < active.size(); i++) {
+                Edge edge = active.get(i);
+                crossings[i] = edge.x() + (y - edge.firstRow()) * edge.slope();
+            }
+            Arrays.sort(crossings, 0, active.size());
+            // Pixels whose centre x + 0.5 lies in [enter, exit).
+            for (int i = 0; i + 1 < active.size(); i += 2) {
+                int x0 = (int) Math.max(0, Math.ceil(crossings[i] - 0.5));
+                int x1 = (int) Math.min(width, Math.ceil(crossings[i + 1] - 0.5));
+                for (int x = x0; x < x1; x++) {
+                    if (mask != null && mask.get(x, y)) {
+                        accumulator.masked++;
+                    } else {
+                        accumulator.accept(raster.getValue(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    private static ZonalStatistics statistics(Histogram histogram, List<Double> percentiles, int bins) {
+        if (histogram.count == 0) {
+            return new ZonalStatistics(0, histogram.masked, null, null, null, Map.of(), List.of());
+        }
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (double percentile : percentiles) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * histogram.count));
+            long seen = 0;
+            for (int bin = 0; bin < FINE_BINS; bin++) {
+                seen += histogram.counts[bin];
+                if (seen >= rank) {
+                    values.put(key(percentile), histogram.sums[bin] / histogram.counts[bin]);
+                    break;
+                }
+            }
+        }
+
+        double width = (histogram.max - histogram.min) / bins;
+        long[] counts = new long[bins];
+        for (int bin = 0; bin < FINE_BINS; bin++) {
+            if (histogram.counts[bin] > 0) {
+                double value = histogram.sums[bin] / histogram.counts[bin];
+                int target = width > 0 ? (int) Math.min(bins - 1, Math.max(0, (value - histogram.min) / width)) : 0;
+                counts[target] += histogram.counts[bin];
+            }
+        }
+        List<HistogramBin> histogramBins = new ArrayList<>(bins);
+        for (int bin = 0; bin < bins; bin++) {
+            histogramBins.add(new HistogramBin(histogram.min + bin * width,
+                    bin == bins - 1 ? histogram.max : histogram.min + (bin + 1) * width, counts[bin]));
+        }
+        return new ZonalStatistics(histogram.count, histogram.masked, histogram.min, histogram.sum / histogram.count,
+                histogram.max, values, histogramBins);
+    }
+
+    private static String key(double percentile) {
+        return percentile == Math.rint(percentile) ? "p" + (long) percentile : "p" + percentile;
+    }
+
+    /**
+     * Crossing of the edge with the centre line of {@code firstRow}, moving by {@code slope} pixels per row.
+     */
+    private record Edge(int firstRow, int endRow, double x, double slope) {
+    }
+
+    private final class Band<A extends Accumulator<A>> extends RecursiveTask<A> {
+        private final int rowFrom;
+        private final int rowTo;
+        private final Supplier<A> accumulators;
+
+        private Band(int rowFrom, int rowTo, Supplier<A> accumulators) {
+            this.rowFrom = rowFrom;
+            this.rowTo = rowTo;
+            this.accumulators = accumulators;
+        }
+
+        @Override
+        protected A compute() {
+            if (rowTo - rowFrom <= bandRows) {
+                A accumulator = accumulators.get();
+                scan(rowFrom, rowTo, accumulator);
+                return accumulator;
+            }
+            int middle = (rowFrom + rowTo) >>> 1;
+            Band<A> lower = new Band<>(middle, rowTo, accumulators);
+            lower.fork();
+            A upper = new Band<>(rowFrom, middle, accumulators).compute();
+            upper.merge(lower.join());
+            return upper;
+        }
+    }
+
+    private abstract static class Accumulator<A extends Accumulator<A>> {
+        long count;
+        long masked;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void accept(double value) {
+            count++;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        void merge(A other) {
+            count += other.count;
+            masked += other.masked;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    private static final class Range extends Accumulator<Range> {
+    }
+
+    private static final class Histogram extends Accumulator<Histogram> {
+        private final double lo;
+        private final double binsPerUnit;
+        private final long[] counts = new long[FINE_BINS];
+        private final double[] sums = new double[FINE_BINS];
+        private double sum;
+
+        private Histogram(double lo, double hi) {
+            this.lo = lo;
+            this.binsPerUnit = hi > lo ? FINE_BINS / (hi - lo) : 0;
+        }
+
+        @Override
+        void accept(double value) {
+            super.accept(value);
+            int bin = (int) Math.min(FINE_BINS - 1, Math.max(0, (value - lo) * binsPerUnit));
+            counts[bin]++;
+            sums[bin] += value;
+            sum += value;
+        }
+
+        @Override
+        void merge(Histogram other) {
+            super.merge(other);
+            for (int bin = 0; bin < FINE_BINS; bin++) {
+                counts[bin] += other.counts[bin];
+                sums[bin] += other.sums[bin];
+            }
+            sum += other.sum;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.aldhafara.lightPollutionService.stream;
+
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.service.PointLookup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact binary encoding of lookups, served as {@code application/octet-stream}. Requests are packed little-endian
+ * float32 {@code latitude, longitude} pairs. Responses hold one little-endian float32 value per point, {@code NaN} for
+ * points outside the raster and for non-finite or out-of-range coordinates, followed by a bitset of {@code ceil(n / 8)} bytes in which bit {@code i % 8} of byte
+ * {@code i / 8} marks point {@code i} as masked. A point costs 8 bytes in and just over 4 bytes out.
+ */
+public final class PackedPoints {
+
+    public static final int POINT_BYTES = 2 * Float.BYTES;
+
+    private PackedPoints() {
+    }
+
+    /**
+     * @throws InvalidGeometryException if the body does not hold whole pairs
+     */
+    public static int count(byte[] body) throws InvalidGeometryException {
+        if (body.length % POINT_BYTES != 0) {
+            throw new InvalidGeometryException(String.format(
+                    "Binary body of %d bytes does not hold whole float32 latitude/longitude pairs", body.length));
+        }
+        return body.length / POINT_BYTES;
+    }
+
+    /**
+     * Looks up every packed point straight from the request bytes into the response bytes.
+     */
+    public static byte[] lookUp(byte[] body, PointLookup lookup) throws InvalidGeometryException {
+        int count = count(body);
+        ByteBuffer in = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] response = new byte[responseBytes(count)];
+        ByteBuffer out = ByteBuffer.wrap(response).order(ByteOrder.LITTLE_ENDIAN);
+        int maskOffset = count * Float.BYTES;
+        for (int i = 0; i < count; i++) {
+            float lat = in.getFloat(i * POINT_BYTES);
+            float lon = in.getFloat(i * POINT_BYTES + Float.BYTES);
+            out.putFloat(i * Float.BYTES, (float) lookup.value(lat, lon));
+            if (lookup.masked(lat, lon)) {
+                response[maskOffset + (i >>> 3)] |= (byte) (1 << (i & 7));
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Encodes a single looked-up point.
+     */
+    public static byte[] encode(double value, boolean masked) {
+        byte[] response = new byte[responseBytes(1)];
+        ByteBuffer.wrap(response).order(ByteOrder.LITTLE_ENDIAN).putFloat(0, (float) value);
+        response[Float.BYTES] = (byte) (masked ? 1 : 0);
+        return response;
+    }
+
+    private static int responseBytes(int count) {
+        return count * Float.BYTES + (count + 7) / 8;
+    }
+}
@@ -0,0 +1,325 @@
+package com.aldhafara.lightPollutionService.stream;
+
+import com.aldhafara.lightPollutionService.service.PointLookup;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Looks up a stream of points line by line, writing one result line per non-blank input line in input order.
+ * Only the current line is held, so memory stays constant however long the stream is, and because reads and writes
+ * block, a slow reader on either side slows the whole pipeline instead of filling buffers.
+ * <p>
+ * Lines that cannot be parsed, lie outside the valid coordinate range or the raster produce an error line rather than
+ * ending the stream; only exceeding the point limit or the rate limit ends it early, after a final error line.
+ */
+public final class PointStream {
+
+    public enum Format {
+        /**
+         * One {@code {"latitude": .., "longitude": ..}} object per line; results are JSON objects too.
+         */
+        NDJSON,
+        /**
+         * {@code latitude,longitude} per line, with an optional header line; results carry a header.
+         */
+        CSV
+    }
+
+    static final int MAX_LINE_CHARS = 4096;
+    private static final int FLUSH_EVERY = 1024;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final LineReader lines;
+    private final Writer out;
+    private final Format format;
+    private final PointLookup lookup;
+    private final JsonGenerator json;
+    private final BooleanSupplier allowance;
+
+    private PointStream(Reader in, Writer out, Format format, PointLookup lookup, BooleanSupplier allowance)
+            throws IOException {
+        this.lines = new LineReader(in);
+        this.out = out;
+        this.format = format;
+        this.lookup = lookup;
+        this.json = format == Format.NDJSON ? JSON.createGenerator(out).setRootValueSeparator(null) : null;
+        this.allowance = allowance;
+    }
+
+    /**
+     * Processes the whole input and flushes the output, without closing either.
+     *
+     * @param allowance asked before each point; once it returns {@code false} the stream ends
+     * @return points looked up, including those that produced an error line
+     */
+    public static long process(Reader in, Writer out, Format format, PointLookup lookup, long maxPoints,
+                               BooleanSupplier allowance) throws IOException {
+        return new PointStream(in, out, format, lookup, allowance).run(maxPoints);
+    }
+
+    private long run(long maxPoints) throws IOException {
+        if (format == Format.CSV) {
+            out.write("latitude,longitude,relativeBrightness,masked,error\n");
+        }
+        long points = 0;
+        long lineNumber = 0;
+        boolean first = true;
+        while (lines.next()) {
+            lineNumber++;
+            int start = lines.start();
+            if (start == lines.length()) {
+                continue;
+            }
+            if (first && format == Format.CSV && Character.isLetter(lines.chars()[start])) {
+                first = false;
+                continue;
+            }
+            first = false;
+            if (++points > maxPoints) {
+                writeError(lineNumber, "Stream exceeds the maximum of " + maxPoints + " points");
+                points--;
+                break;
+            }
+            if (!allowance.getAsBoolean()) {
+                writeError(lineNumber, "Rate limit exceeded after " + (points - 1) + " points");
+                points--;
+                break;
+            }
+            if (lines.truncated()) {
+                writeError(lineNumber, "Line longer than " + MAX_LINE_CHARS + " characters");
+            } else {
+                lookUp(lineNumber, start);
+            }
+            if (points % FLUSH_EVERY == 0) {
+                flush();
+            }
+        }
+        flush();
+        return points;
+    }
+
+    private void lookUp(long lineNumber, int start) throws IOException {
+        double lat;
+        double lon;
+        try {
+            double[] point = format == Format.NDJSON ? parseJson(start) : parseCsv(start);
+            lat = point[0];
+            lon = point[1];
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            writeError(lineNumber, "Malformed line: " + firstLine(e.getMessage()));
+            return;
+        }
+        if (!(Math.abs(lat) <= 90) || !(Math.abs(lon) <= 180)) {
+            writeResult(lat, lon, Double.NaN, false,
+                    String.format("Coordinates lat:%.8f, lon:%.8f are not valid", lat, lon));
+            return;
+        }
+        double value = lookup.value(lat, lon);
+        if (Double.isNaN(value)) {
+            writeResult(lat, lon, value, false,
+                    String.format("Coordinates lat:%.8f, lon:%.8f are outside the TIFF raster range", lat, lon));
+        } else {
+            writeResult(lat, lon, value, lookup.masked(lat, lon), null);
+        }
+    }
+
+    private double[] parseJson(int start) throws IOException {
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        try (JsonParser parser = JSON.createParser(lines.chars(), start, lines.length() - start)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("latitude".equals(field) && value.isNumeric()) {
+                    lat = parser.getDoubleValue();
+                } else if ("longitude".equals(field) && value.isNumeric()) {
+                    lon = parser.getDoubleValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw new IllegalArgumentException("expected a single JSON object");
+            }
+        }
+        if (Double.isNaN(lat) || Double.isNaN(lon)) {
+            throw new IllegalArgumentException("expected numeric latitude and longitude");
+        }
+        return new double[] {lat, lon};
+    }
+
+    private double[] parseCsv(int start) {
+        char[] chars = lines.chars();
+        int end = lines.length();
+        int comma = start;
+        while (comma < end && chars[comma] != ',') {
+            comma++;
+        }
+        if (comma == end) {
+            throw new IllegalArgumentException("expected latitude,longitude");
+        }
+        int next = comma + 1;
+        while (next < end && chars[next] != ',') {
+            next++;
+        }
+        return new double[] {
+                Double.parseDouble(new String(chars, start, comma - start).trim()),
+                Double.parseDouble(new String(chars, comma + 1, next - comma - 1).trim())
+        };
+    }
+
+    private void writeResult(double lat, double lon, double value, boolean masked, String error) throws IOException {
+        if (format == Format.NDJSON) {
+            json.writeStartObject();
+            json.writeNumberField("latitude", lat);
+            json.writeNumberField("longitude", lon);
+            if (error == null) {
+                json.writeNumberField("relativeBrightness", value);
+                json.writeBooleanField("masked", masked);
+            } else {
+                json.writeStringField("error", error);
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        } else {
+            out.write(Double.toString(lat));
+            out.write(',');
+            out.write(Double.toString(lon));
+            out.write(',');
+            if (error == null) {
+                out.write(Double.toString(value));
+                out.write(',');
+                out.write(masked ? "true," : "false,");
+            } else {
+                out.write(",,");
+                writeCsvField(error);
+            }
+            out.write('\n');
+        }
+    }
+
+    private void writeError(long lineNumber, String error) throws IOException {
+        if (format == Format.NDJSON) {
+            json.writeStartObject();
+            json.writeNumberField("line", lineNumber);
+            json.writeStringField("error", error);
+            json.writeEndObject();
+            json.writeRaw('\n');
+        } else {
+            out.write(",,,,");
+            writeCsvField("line " + lineNumber + ": " + error);
+            out.write('\n');
+        }
+    }
+
+    private void writeCsvField(String value) throws IOException {
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private void flush() throws IOException {
+        if (json != null) {
+            json.flush();
+        } else {
+            out.flush();
+        }
+    }
+
+    private static String firstLine(String message) {
+        if (message == null) {
+            return "unreadable value";
+        }
+        int newline = message.indexOf('\n');
+        return newline < 0 ? message : message.substring(0, newline);
+    }
+
+    /**
+     * Reads lines into one reusable buffer of {@value #MAX_LINE_CHARS} characters, dropping the rest of longer lines.
+     */
+    private static final class LineReader {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private final char[] line = new char[MAX_LINE_CHARS];
+        private int position;
+        private int limit;
+        private int length;
+        private boolean truncated;
+
+        private LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next line, returning {@code false} at the end of the input.
+         */
+        boolean next() throws IOException {
+            length = 0;
+            truncated = false;
+            boolean read = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return read;
+                    }
+                }
+                char c = buffer[position++];
+                read = true;
+                if (c == '\n') {
+                    break;
+                }
+                if (length < line.length) {
+                    line[length++] = c;
+                } else {
+                    truncated = true;
+                }
+            }
+            return true;
+        }
+
+        char[] chars() {
+            return line;
+        }
+
+        /**
+         * Line length without trailing whitespace, including a {@code \r} before the newline.
+         */
+        int length() {
+            int end = length;
+            while (end > 0 && Character.isWhitespace(line[end - 1])) {
+                end--;
+            }
+            return end;
+        }
+
+        /**
+         * Index of the first non-whitespace character, or {@link #length()} for a blank line.
+         */
+        int start() {
+            int end = length();
+            int start = 0;
+            while (start < end && Character.isWhitespace(line[start])) {
+                start++;
+            }
+            return start;
+        }
+
+        boolean truncated() {
+            return truncated;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.aldhafara.lightPollutionService.tiles;
+
+import java.util.Arrays;
+
+/**
+ * Piecewise-linear mapping from raster values to ARGB colours, parsed from stops such as
+ * {@code "0:#00000000,8:#7e03a8,255:#f0f921"}. Colours are {@code #rrggbb} or {@code #rrggbbaa}; values below the
+ * first stop or above the last one take the colour of that stop.
+ */
+public final class ColorRamp {
+
+    private final double[] values;
+    private final int[] colors;
+
+    private ColorRamp(double[] values, int[] colors) {
+        this.values = values;
+        this.colors = colors;
+    }
+
+    public static ColorRamp parse(String spec) {
+        String[] stops = spec.split(",");
+        double[] values = new double[stops.length];
+        int[] colors = new int[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            String stop = stops[i].trim();
+            int separator = stop.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Color ramp stop '" + stop + "' is not of the form value:#color");
+            }
+            values[i] = Double.parseDouble(stop.substring(0, separator).trim());
+            colors[i] = parseColor(stop.substring(separator + 1).trim());
+            if (i > 0 && values[i] <= values[i - 1]) {
+                throw new IllegalArgumentException("Color ramp values must be strictly increasing: " + spec);
+            }
+        }
+        return new ColorRamp(values, colors);
+    }
+
+    /**
+     * ARGB colour of the value; {@code NaN} is fully transparent.
+     */
+    public int argb(double value) {
+        if (Double.isNaN(value)) {
+            return 0;
+        }
+        if (value <= values[0]) {
+            return colors[0];
+        }
+        int last = values.length - 1;
+        if (value >= values[last]) {
+            return colors[last];
+        }
+        int index = Arrays.binarySearch(values, value);
+        if (index >= 0) {
+            return colors[index];
+        }
+        int upper = -index - 1;
+        double t = (value - values[upper - 1]) / (values[upper] - values[upper - 1]);
+        return interpolate(colors[upper - 1], colors[upper], t);
+    }
+
+    private static int interpolate(int from, int to, double t) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int a = (from >>> shift) & 0xff;
+            int b = (to >>> shift) & 0xff;
+            result |= ((int) Math.round(a + (b - a) * t) & 0xff) << shift;
+        }
+        return result;
+    }
+
+    private static int parseColor(String color) {
+        if (!color.startsWith("#") || (color.length() != 7 && color.length() != 9)) {
+            throw new IllegalArgumentException("Color '" + color + "' is not of the form #rrggbb or #rrggbbaa");
+        }
+        long rgba = Long.parseLong(color.substring(1), 16);
+        if (color.length() == 7) {
+            return (int) (0xff000000L | rgba);
+        }
+        return (int) (((rgba & 0xff) << 24) | (rgba >>> 8));
+    }
+}
@@ -0,0 +1,7 @@
+package com.aldhafara.lightPollutionService.tiles;
+
+/**
+ * Encoded PNG of one tile together with its strong entity tag.
+ */
+public record RenderedTile(byte[] png, String etag) {
+}
@@ -0,0 +1,49 @@
+package com.aldhafara.lightPollutionService.tiles;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of encoded tiles, bounded by the total size of the PNG bytes it holds.
+ */
+final class TileCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<Long, RenderedTile> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    TileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized RenderedTile get(long key) {
+        return tiles.get(key);
+    }
+
+    synchronized void put(long key, RenderedTile tile) {
+        if (tile.png().length > maxBytes) {
+            return;
+        }
+        RenderedTile previous = tiles.put(key, tile);
+        bytes += tile.png().length - (previous == null ? 0 : previous.png().length);
+        Iterator<Map.Entry<Long, RenderedTile>> eldest = tiles.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().png().length;
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+}
@@ -0,0 +1,156 @@
+package com.aldhafara.lightPollutionService.tiles;
+
+import com.aldhafara.lightPollutionService.exception.TileNotFoundException;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.service.DatasetAvailability;
+import com.aldhafara.lightPollutionService.service.DatasetRegistry;
+import com.aldhafara.lightPollutionService.service.DatasetReloadedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Renders 256x256 Web-Mercator tiles in the XYZ scheme from the VIIRS raster of the default year. Each tile samples the coarsest
+ * pyramid level that is still at least as fine as the tile pixels, so zoomed-out tiles average the raster
+ * instead of aliasing it. Encoded tiles are kept in an LRU cache bounded by {@code tiles.cache.maxBytes}.
+ */
+@Service
+public class TileService {
+
+    static final int TILE_SIZE = 256;
+    /**
+     * Highest zoom whose tile coordinates fit the 29-bit fields of the cache key.
+     */
+    static final int MAX_ZOOM = 28;
+
+    private final DatasetAvailability datasetAvailability;
+    private final DatasetRegistry datasetRegistry;
+    private final ColorRamp colorRamp;
+    private final int maxZoom;
+    private final TileCache cache;
+    private volatile int generation;
+
+    public TileService(DatasetAvailability datasetAvailability,
+                       DatasetRegistry datasetRegistry,
+                       @Value("${tiles.colorRamp:0:#00000000,1:#0d0887,8:#7e03a8,32:#cc4778,96:#f89540,255:#f0f921}") String colorRamp,
+                       @Value("${tiles.maxZoom:12}") int maxZoom,
+                       @Value("${tiles.cache.maxBytes:67108864}") long cacheMaxBytes) {
+        this.datasetAvailability = datasetAvailability;
+        this.datasetRegistry = datasetRegistry;
+        if (maxZoom < 0 || maxZoom > MAX_ZOOM) {
+            throw new IllegalArgumentException(
+                    "tiles.maxZoom must be between 0 and " + MAX_ZOOM + ", got " + maxZoom);
+        }
+        this.colorRamp = ColorRamp.parse(colorRamp);
+        this.maxZoom = maxZoom;
+        this.cache = new TileCache(cacheMaxBytes);
+    }
+
+    public RenderedTile getTile(int z, int x, int y) {
+        if (z < 0 || z > maxZoom || x < 0 || y < 0 || x >= 1 << z || y >= 1 << z) {
+            throw new TileNotFoundException(String.format("Tile %d/%d/%d does not exist (maximum zoom %d)", z, x, y, maxZoom));
+        }
+        long key = ((long) z << 58) | ((long) x << 29) | y;
+        RenderedTile tile = cache.get(key);
+        if (tile == null) {
+            int renderedGeneration = generation;
+            tile = encode(render(z, x, y));
+            if (renderedGeneration == generation) {
+                cache.put(key, tile);
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Drops cached tiles once the default dataset was reloaded. Tiles still being rendered from the previous
+     * snapshot are served but not cached.
+     */
+    @EventListener
+    public void onDatasetReloaded(DatasetReloadedEvent event) {
+        if (event.key().equals(datasetRegistry.defaultKey())) {
+            generation++;
+            cache.clear();
+        }
+    }
+
+    int cachedTiles() {
+        return cache.size();
+    }
+
+    int[] render(int z, int x, int y) {
+        ViirsDataset dataset = datasetAvailability.require(datasetRegistry.defaultKey());
+        RasterStore base = dataset.raster();
+        ViirsGeoReference geoReference = dataset.geoReference();
+
+        double tiles = 1 << z;
+        double pixelDegrees = 360.0 / (tiles * TILE_SIZE);
+        RasterStore raster = base;
+        int factor = 1;
+        RasterPyramid pyramid = dataset.pyramid();
+        if (pyramid != null) {
+            for (int level = pyramid.maxLevel(); level > 0; level--) {
+                RasterPyramid.Level stored = pyramid.level(level);
+                if (stored != null && geoReference.pixelScaleX() * stored.factor() <= pixelDegrees) {
+                    raster = stored.mean();
+                    factor = stored.factor();
+                    break;
+                }
+            }
+        }
+        double scaleX = geoReference.pixelScaleX() * factor;
+        double scaleY = geoReference.pixelScaleY() * factor;
+
+        int[] columns = new int[TILE_SIZE];
+        for (int px = 0; px < TILE_SIZE; px++) {
+            double lon = (x + (px + 0.5) / TILE_SIZE) / tiles * 360.0 - 180.0;
+            columns[px] = lon < geoReference.originX() ? -1 : (int) ((lon - geoReference.originX()) / scaleX);
+            if (columns[px] >= raster.width()) {
+                columns[px] = -1;
+            }
+        }
+
+        int[] argb = new int[TILE_SIZE * TILE_SIZE];
+        for (int py = 0; py < TILE_SIZE; py++) {
+            double mercatorY = Math.PI * (1 - 2 * (y + (py + 0.5) / TILE_SIZE) / tiles);
+            double lat = Math.toDegrees(Math.atan(Math.sinh(mercatorY)));
+            if (lat > geoReference.originY()) {
+                continue;
+            }
+            int row = (int) ((geoReference.originY() - lat) / scaleY);
+            if (row >= raster.height()) {
+                continue;
+            }
+            for (int px = 0; px < TILE_SIZE; px++) {
+                if (columns[px] >= 0) {
+                    argb[py * TILE_SIZE + px] = colorRamp.argb(raster.getValue(columns[px], row));
+                }
+            }
+        }
+        return argb;
+    }
+
+    private static RenderedTile encode(int[] argb) {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, argb, 0, TILE_SIZE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode tile", e);
+        }
+        byte[] png = out.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(png);
+        return new RenderedTile(png, "\"" + Long.toHexString(crc.getValue()) + "-" + png.length + "\"");
+    }
+}
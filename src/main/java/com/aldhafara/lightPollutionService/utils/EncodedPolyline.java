@@ -0,0 +1,50 @@
+package com.aldhafara.lightPollutionService.utils;
+
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder for the encoded polyline format used by Google Maps, OSRM and most routing engines, at the usual precision
+ * of five decimal places.
+ */
+public final class EncodedPolyline {
+
+    private static final double SCALE = 1e5;
+
+    private EncodedPolyline() {
+    }
+
+    public static List<Coordinates> decode(String encoded) throws InvalidGeometryException {
+        List<Coordinates> points = new ArrayList<>();
+        int[] index = {0};
+        long lat = 0;
+        long lon = 0;
+        while (index[0] < encoded.length()) {
+            lat += nextValue(encoded, index);
+            lon += nextValue(encoded, index);
+            points.add(new Coordinates(lat / SCALE, lon / SCALE));
+        }
+        return points;
+    }
+
+    private static long nextValue(String encoded, int[] index) {
+        long result = 0;
+        int shift = 0;
+        int chunk;
+        do {
+            if (index[0] >= encoded.length() || shift > 30) {
+                throw new InvalidGeometryException("Malformed encoded polyline at character " + index[0]);
+            }
+            chunk = encoded.charAt(index[0]++) - 63;
+            if (chunk < 0 || chunk > 63) {
+                throw new InvalidGeometryException("Malformed encoded polyline at character " + (index[0] - 1));
+            }
+            result |= (long) (chunk & 0x1f) << shift;
+            shift += 5;
+        } while (chunk >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+}
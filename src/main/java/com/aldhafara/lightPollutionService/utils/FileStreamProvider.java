@@ -4,7 +4,9 @@ import com.aldhafara.lightPollutionService.exception.ResourceNotFoundException;
 import com.aldhafara.lightPollutionService.exception.TiffFileReadException;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 
 public interface FileStreamProvider {
     InputStream getFileInputStream(String tiffUrl) throws ResourceNotFoundException, TiffFileReadException;
+    Path getLocalFile(String tiffUrl) throws ResourceNotFoundException, TiffFileReadException;
 }
@@ -13,6 +13,8 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 @Component
 public class TiffFileStreamProvider implements FileStreamProvider {
@@ -44,4 +46,23 @@ public class TiffFileStreamProvider implements FileStreamProvider {
             throw new TiffFileReadException("IO error opening stream for: " + tiffUrl, e);
         }
     }
+
+    @Override
+    public Path getLocalFile(String tiffUrl) throws ResourceNotFoundException, TiffFileReadException {
+        if (!tiffUrl.startsWith("file:")) {
+            log.error("Not a local file URL: {}", tiffUrl);
+            throw new TiffFileReadException("Memory-mapped access requires a file:// URL, got: " + tiffUrl);
+        }
+        try {
+            Path path = Path.of(URI.create(tiffUrl));
+            if (!Files.isRegularFile(path)) {
+                log.error("File not found: {}", path);
+                throw new ResourceNotFoundException(path.toString());
+            }
+            return path;
+        } catch (IllegalArgumentException e) {
+            log.error("Malformed URL: {}", tiffUrl, e);
+            throw new TiffFileReadException("Malformed URL: " + tiffUrl, e);
+        }
+    }
 }
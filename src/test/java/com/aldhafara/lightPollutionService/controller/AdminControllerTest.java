@@ -0,0 +1,77 @@
+package com.aldhafara.lightPollutionService.controller;
+
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.service.DatasetRegistry;
+import com.aldhafara.lightPollutionService.service.DatasetReloader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Set;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AdminController.class)
+@Import(SimpleMeterRegistry.class)
+@TestPropertySource(properties = "admin.token=secret")
+class AdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private DatasetReloader datasetReloader;
+
+    @MockitoBean
+    private DatasetRegistry datasetRegistry;
+
+    @Test
+    void shouldReloadResidentDatasets() throws Exception {
+        when(datasetReloader.reloadResident()).thenReturn(Set.of("2023/average", "2022/average"));
+
+        mockMvc.perform(post("/admin/datasets/reload").header("X-Admin-Token", "secret"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.reloading[0]").value("2022/average"))
+                .andExpect(jsonPath("$.reloading[1]").value("2023/average"));
+    }
+
+    @Test
+    void shouldReloadRequestedYear() throws Exception {
+        when(datasetRegistry.key(2022, "average")).thenReturn("2022/average");
+
+        mockMvc.perform(post("/admin/datasets/reload").param("year", "2022").header("X-Admin-Token", "secret"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.reloading[0]").value("2022/average"));
+
+        verify(datasetReloader).reload("2022/average");
+    }
+
+    @Test
+    void shouldReturnNotFound_whenYearIsNotConfigured() throws Exception {
+        when(datasetRegistry.key(1999, "average")).thenThrow(new DatasetNotFoundException("No dataset configured for 1999/average"));
+
+        mockMvc.perform(post("/admin/datasets/reload").param("year", "1999").header("X-Admin-Token", "secret"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldRejectMissingOrWrongToken() throws Exception {
+        mockMvc.perform(post("/admin/datasets/reload"))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.error").value("Forbidden"));
+        mockMvc.perform(post("/admin/datasets/reload").header("X-Admin-Token", "guess"))
+                .andExpect(status().isForbidden());
+
+        verify(datasetReloader, never()).reloadResident();
+    }
+}
@@ -1,7 +1,23 @@
 package com.aldhafara.lightPollutionService.controller;
 
+import com.aldhafara.lightPollutionService.exception.CoordinatesOutOfRasterBoundsException;
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.exception.DatasetNotReadyException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.DarkSpot;
+import com.aldhafara.lightPollutionService.model.DarknessProfile;
+import com.aldhafara.lightPollutionService.model.HistogramBin;
+import com.aldhafara.lightPollutionService.model.ProfileSample;
+import com.aldhafara.lightPollutionService.model.SamplingMode;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.model.ZonalStatistics;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
 import com.aldhafara.lightPollutionService.ratelimit.RateLimitAspect;
+import com.aldhafara.lightPollutionService.service.PointLookup;
 import com.aldhafara.lightPollutionService.service.ViirsTiffService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,11 +30,28 @@ import org.springframework.core.env.Environment;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -27,6 +60,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebMvcTest(DarknessController.class)
 class DarknessControllerTest {
 
+    private static final ViirsDataset DATASET = new ViirsDataset(null, null, null, null, null, null, false);
+    private static final ViirsDataset RADIANCE_DATASET = new ViirsDataset(null, null, null, null, null, null, true);
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -36,21 +72,26 @@ class DarknessControllerTest {
     @Autowired
     private RateLimitAspect rateLimitAspect;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeEach
     void setUp() {
         rateLimitAspect.resetLimiters();
+        when(tiffService.dataset(null)).thenReturn(DATASET);
     }
 
     @Test
     void shouldReturnBrightnessValue_whenValidParameters() throws Exception {
-        when(tiffService.getValueForLocation(52.2298, 21.0117)).thenReturn(128.0);
+        when(tiffService.getValueForLocation(52.2298, 21.0117, DATASET)).thenReturn(128.0);
 
         mockMvc.perform(get("/darkness")
                         .param("latitude", "52.2298")
                         .param("longitude", "21.0117")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
-                .andExpect(content().json("{\"latitude\":52.2298,\"longitude\":21.0117,\"relativeBrightness\":128.0}"));
+                .andExpect(content().json("{\"latitude\":52.2298,\"longitude\":21.0117,\"relativeBrightness\":128.0,\"masked\":false}"));
+        verify(tiffService, times(1)).dataset(null);
     }
 
     @Test
@@ -62,7 +103,7 @@ class DarknessControllerTest {
 
     @Test
     void shouldReturnInternalServerError_whenServiceThrows() throws Exception {
-        when(tiffService.getValueForLocation(anyDouble(), anyDouble()))
+        when(tiffService.getValueForLocation(anyDouble(), anyDouble(), eq(DATASET)))
                 .thenThrow(new RuntimeException("Unexpected error"));
 
         mockMvc.perform(get("/darkness")
@@ -74,7 +115,8 @@ class DarknessControllerTest {
 
     @Test
     void shouldReturn429AfterThirdRequestDueToRateLimiting() throws Exception {
-        when(tiffService.getValueForLocation(52.2298, 21.0117)).thenReturn(128.0);
+        when(tiffService.getValueForLocation(52.2298, 21.0117, DATASET)).thenReturn(128.0);
+        double rejectedBefore = meterRegistry.counter("lightpollution.ratelimit.rejections", "uri", "/darkness").count();
 
         mockMvc.perform(get("/darkness")
                         .param("latitude", "52.2298")
@@ -93,6 +135,22 @@ class DarknessControllerTest {
                         .param("longitude", "21.0117")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isTooManyRequests());
+        assertEquals(rejectedBefore + 1,
+                meterRegistry.counter("lightpollution.ratelimit.rejections", "uri", "/darkness").count());
+    }
+
+    @Test
+    void shouldCountOutOfRasterLookups() throws Exception {
+        when(tiffService.getValueForLocation(10.0, 10.0, DATASET))
+                .thenThrow(new CoordinatesOutOfRasterBoundsException("outside"));
+        double before = meterRegistry.counter("lightpollution.lookup.outside.raster", "uri", "/darkness").count();
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "10")
+                        .param("longitude", "10"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(before + 1, meterRegistry.counter("lightpollution.lookup.outside.raster", "uri", "/darkness").count());
     }
 
     @TestConfiguration
@@ -101,6 +159,11 @@ class DarknessControllerTest {
         public RateLimitAspect rateLimitAspect(Environment env) {
             return new RateLimitAspect(env);
         }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
     }
 
     @Test
@@ -174,4 +237,527 @@ class DarknessControllerTest {
                 .andExpect(jsonPath("$.error").value("Bad Request"))
                 .andExpect(jsonPath("$.message").value("Invalid parameter: latitude"));
     }
+
+    @Test
+    void shouldReturnPerPointResults_whenBatchContainsOutOfBoundsPoint() throws Exception {
+        when(tiffService.getValuesForLocations(List.of(new Coordinates(52.2298, 21.0117), new Coordinates(-10, -10)), DATASET))
+                .thenReturn(new double[]{128.0, Double.NaN});
+        when(tiffService.isMasked(anyList(), eq(DATASET))).thenReturn(new boolean[]{false, false});
+
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"latitude\":52.2298,\"longitude\":21.0117},{\"latitude\":-10,\"longitude\":-10}]")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].relativeBrightness").value(128.0))
+                .andExpect(jsonPath("$[0].masked").value(false))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].latitude").value(-10.0))
+                .andExpect(jsonPath("$[1].relativeBrightness").doesNotExist())
+                .andExpect(jsonPath("$[1].masked").doesNotExist())
+                .andExpect(jsonPath("$[1].error").value(containsString("outside the TIFF raster range")));
+    }
+
+    @Test
+    void shouldReturnRadianceAndSkyEstimates_whenDatasetHoldsRadiance() throws Exception {
+        when(tiffService.dataset(null)).thenReturn(RADIANCE_DATASET);
+        when(tiffService.getValueForLocation(52.2298, 21.0117, RADIANCE_DATASET)).thenReturn(60.0);
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.relativeBrightness").value(60.0))
+                .andExpect(jsonPath("$.radiance").value(60.0))
+                .andExpect(jsonPath("$.sqm").value(closeTo(17.37, 0.01)))
+                .andExpect(jsonPath("$.bortle").value(9));
+    }
+
+    @Test
+    void shouldOmitSkyEstimates_whenDatasetIsNotRadiance() throws Exception {
+        when(tiffService.getValueForLocation(52.2298, 21.0117, DATASET)).thenReturn(128.0);
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.radiance").doesNotExist())
+                .andExpect(jsonPath("$.sqm").doesNotExist())
+                .andExpect(jsonPath("$.bortle").doesNotExist());
+    }
+
+    @Test
+    void shouldReturnSkyEstimatesPerPoint_whenBatchDatasetHoldsRadiance() throws Exception {
+        when(tiffService.dataset(null)).thenReturn(RADIANCE_DATASET);
+        when(tiffService.getValuesForLocations(anyList(), eq(RADIANCE_DATASET))).thenReturn(new double[]{0.0, Double.NaN});
+        when(tiffService.isMasked(anyList(), eq(RADIANCE_DATASET))).thenReturn(new boolean[]{true, false});
+
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"latitude\":52.2298,\"longitude\":21.0117},{\"latitude\":-10,\"longitude\":-10}]")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].radiance").value(0.0))
+                .andExpect(jsonPath("$[0].bortle").value(1))
+                .andExpect(jsonPath("$[1].sqm").doesNotExist())
+                .andExpect(jsonPath("$[1].error").exists());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenBatchExceedsMaximumSize() throws Exception {
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"latitude\":1,\"longitude\":1},{\"latitude\":2,\"longitude\":2},"
+                                + "{\"latitude\":3,\"longitude\":3},{\"latitude\":4,\"longitude\":4},{\"latitude\":5,\"longitude\":5}]")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Batch too large"));
+    }
+
+    @Test
+    void shouldNotChargeRateLimit_whenBatchExceedsMaximumSize() throws Exception {
+        when(tiffService.getValuesForLocations(anyList(), eq(DATASET))).thenReturn(new double[]{1.0, 2.0, 3.0});
+        when(tiffService.isMasked(anyList(), eq(DATASET))).thenReturn(new boolean[3]);
+        String point = "{\"latitude\":1,\"longitude\":1}";
+
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + String.join(",", Collections.nCopies(100, point)) + "]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Batch too large"));
+
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + String.join(",", Collections.nCopies(3, point)) + "]"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenBatchContainsNullPoint() throws Exception {
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"latitude\":1,\"longitude\":1},null]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid batch"))
+                .andExpect(jsonPath("$.message").value("Batch point 1 is null"));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenBatchPointIsOutOfRange() throws Exception {
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"latitude\":95,\"longitude\":1}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid batch"))
+                .andExpect(jsonPath("$.message").value(containsString("Batch point 0 has invalid coordinates")));
+    }
+
+    @Test
+    void shouldChargeRateLimitPerBatchPoint() throws Exception {
+        when(tiffService.getValuesForLocations(anyList(), eq(DATASET))).thenReturn(new double[]{1.0, 2.0, 3.0});
+        when(tiffService.isMasked(anyList(), eq(DATASET))).thenReturn(new boolean[3]);
+        String body = "[{\"latitude\":1,\"longitude\":1},{\"latitude\":2,\"longitude\":2},{\"latitude\":3,\"longitude\":3}]";
+
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void shouldReturnBinaryValue_whenOctetStreamIsAccepted() throws Exception {
+        when(tiffService.getValueForLocation(52.2298, 21.0117, DATASET)).thenReturn(128.0);
+        when(tiffService.isMasked(52.2298, 21.0117, DATASET)).thenReturn(false);
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .accept(MediaType.APPLICATION_OCTET_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_OCTET_STREAM_VALUE))
+                .andExpect(content().bytes(new byte[] {0, 0, 0, 0x43, 0}));
+    }
+
+    @Test
+    void shouldProcessBinaryBatchAndChargePerPoint() throws Exception {
+        when(tiffService.pointLookup(null)).thenReturn(new PointLookup(new ByteRasterStore(2, 2, new byte[] {1, 2, 3, 4}),
+                null, new ViirsGeoReference(21.0, 52.3, 0.1, 0.1, 2, 2)));
+        ByteBuffer body = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN)
+                .putFloat(52.25f).putFloat(21.15f)
+                .putFloat(52.15f).putFloat(21.05f)
+                .putFloat(10f).putFloat(10f);
+
+        MvcResult result = mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(body.array()))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        ByteBuffer response = ByteBuffer.wrap(result.getResponse().getContentAsByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(3 * 4 + 1, response.capacity());
+        assertEquals(2f, response.getFloat(0));
+        assertEquals(3f, response.getFloat(4));
+        assertTrue(Float.isNaN(response.getFloat(8)));
+        assertEquals(0, response.get(12));
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .accept(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(body.array()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenBinaryBatchHasPartialPair() throws Exception {
+        mockMvc.perform(post("/darkness/batch")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[12]))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid geometry"));
+    }
+
+    @Test
+    void shouldSampleWithRequestedMode() throws Exception {
+        when(tiffService.getValueForLocation(52.2298, 21.0117, SamplingMode.MEAN, 5.0, DATASET)).thenReturn(12.5);
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("mode", "mean")
+                        .param("radiusKm", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.relativeBrightness").value(12.5));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenAreaModeHasNoRadius() throws Exception {
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("mode", "max")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid sampling parameters"));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenRadiusExceedsMaximum() throws Exception {
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("mode", "mean")
+                        .param("radiusKm", "51")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid sampling parameters"));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenModeIsUnknown() throws Exception {
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("mode", "median")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("Unknown sampling mode 'median'")));
+    }
+
+    @Test
+    void shouldSamplePyramidLevel() throws Exception {
+        when(tiffService.getValueForLocationAtLevel(52.2298, 21.0117, SamplingMode.MAX, 3, DATASET)).thenReturn(40.0);
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("mode", "max")
+                        .param("level", "3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.relativeBrightness").value(40.0));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenRadiusIsCombinedWithLevel() throws Exception {
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("mode", "mean")
+                        .param("radiusKm", "5")
+                        .param("level", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid sampling parameters"));
+    }
+
+    @Test
+    void shouldReturnDarkestSpots() throws Exception {
+        when(tiffService.findDarkest(52.2298, 21.0117, 30.0, 2, null)).thenReturn(List.of(
+                new DarkSpot(52.1, 21.3, 1.0, 24.5), new DarkSpot(52.4, 20.9, 2.0, 20.1)));
+
+        mockMvc.perform(get("/darkness/darkest")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("radiusKm", "30")
+                        .param("limit", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.radiusKm").value(30.0))
+                .andExpect(jsonPath("$.spots.length()").value(2))
+                .andExpect(jsonPath("$.spots[0].relativeBrightness").value(1.0))
+                .andExpect(jsonPath("$.spots[0].distanceKm").value(24.5))
+                .andExpect(jsonPath("$.spots[1].latitude").value(52.4));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenDarkestRadiusExceedsMaximum() throws Exception {
+        mockMvc.perform(get("/darkness/darkest")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("radiusKm", "500"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid sampling parameters"));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenDarkestLimitIsOutOfRange() throws Exception {
+        mockMvc.perform(get("/darkness/darkest")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("radiusKm", "30")
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("limit must be between 1 and 100"));
+    }
+
+    @Test
+    void shouldProfileGeoJsonLineString() throws Exception {
+        List<Coordinates> route = List.of(new Coordinates(52.2, 21.0), new Coordinates(52.3, 21.1));
+        when(tiffService.getProfile(route, 5.0, 10000, null)).thenReturn(new DarknessProfile(13.2, 5.0, 10.0, 22.5, 40.0,
+                List.of(new ProfileSample(0, 52.2, 21.0, 40.0, false), new ProfileSample(13.2, 52.3, 21.1, null, false))));
+
+        mockMvc.perform(post("/darkness/profile")
+                        .param("spacingKm", "5")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"LineString\",\"coordinates\":[[21.0,52.2],[21.1,52.3]]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mean").value(22.5))
+                .andExpect(jsonPath("$.samples.length()").value(2))
+                .andExpect(jsonPath("$.samples[0].relativeBrightness").value(40.0))
+                .andExpect(jsonPath("$.samples[1].relativeBrightness").doesNotExist());
+    }
+
+    @Test
+    void shouldProfileEncodedPolyline() throws Exception {
+        List<Coordinates> route = List.of(new Coordinates(38.5, -120.2), new Coordinates(40.7, -120.95),
+                new Coordinates(43.252, -126.453));
+        when(tiffService.getProfile(route, 1.0, 10000, null)).thenReturn(new DarknessProfile(0, 1.0, null, null, null, List.of()));
+
+        mockMvc.perform(post("/darkness/profile")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"polyline\":\"_p~iF~ps|U_ulLnnqC_mqNvxq`@\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.min").doesNotExist());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenRouteGeometryIsInvalid() throws Exception {
+        mockMvc.perform(post("/darkness/profile")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"Point\",\"coordinates\":[[21.0,52.2]]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid geometry"));
+        mockMvc.perform(post("/darkness/profile")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"polyline\":\"_p~iF~ps|U_\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid geometry"));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenProfileSpacingIsNotPositive() throws Exception {
+        mockMvc.perform(post("/darkness/profile")
+                        .param("spacingKm", "0")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"LineString\",\"coordinates\":[[21.0,52.2],[21.1,52.3]]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("spacingKm must be greater than 0"));
+    }
+
+    @Test
+    void shouldReturnZonalStatistics() throws Exception {
+        List<List<Coordinates>> rings = List.of(List.of(new Coordinates(52.2, 21.0), new Coordinates(52.2, 21.1),
+                new Coordinates(52.3, 21.1), new Coordinates(52.2, 21.0)));
+        when(tiffService.getZonalStatistics(rings, List.of(50.0, 90.0), 2, 200000000L, null)).thenReturn(
+                new ZonalStatistics(120, 3, 4.0, 18.5, 60.0, Map.of("p50", 15.0, "p90", 40.0),
+                        List.of(new HistogramBin(4, 32, 100), new HistogramBin(32, 60, 20))));
+
+        mockMvc.perform(post("/darkness/zonal")
+                        .param("percentiles", "50,90")
+                        .param("bins", "2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"Polygon\",\"coordinates\":[[[21.0,52.2],[21.1,52.2],[21.1,52.3],[21.0,52.2]]]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pixelCount").value(120))
+                .andExpect(jsonPath("$.maskedPixelCount").value(3))
+                .andExpect(jsonPath("$.percentiles.p90").value(40.0))
+                .andExpect(jsonPath("$.histogram[1].count").value(20));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenZonalGeometryIsNotAPolygon() throws Exception {
+        mockMvc.perform(post("/darkness/zonal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"LineString\",\"coordinates\":[[21.0,52.2],[21.1,52.3]]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid geometry"));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenZonalParametersAreInvalid() throws Exception {
+        String square = "{\"type\":\"Polygon\",\"coordinates\":[[[21.0,52.2],[21.1,52.2],[21.1,52.3]]]}";
+        mockMvc.perform(post("/darkness/zonal")
+                        .param("bins", "1000")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(square))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("bins must be between 1 and 256"));
+        mockMvc.perform(post("/darkness/zonal")
+                        .param("percentiles", "50,101")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(square))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("percentiles must be between 0 and 100"));
+    }
+
+    @Test
+    void shouldStreamNdjsonResults() throws Exception {
+        when(tiffService.pointLookup(null)).thenReturn(new PointLookup(new ByteRasterStore(2, 2, new byte[] {1, 2, 3, 4}),
+                null, new ViirsGeoReference(21.0, 52.3, 0.1, 0.1, 2, 2)));
+
+        mockMvc.perform(post("/darkness/stream")
+                        .contentType("application/x-ndjson")
+                        .content("{\"latitude\":52.25,\"longitude\":21.15}\n{\"latitude\":52.15,\"longitude\":21.05}\n"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString("application/x-ndjson")))
+                .andExpect(content().string("""
+                        {"latitude":52.25,"longitude":21.15,"relativeBrightness":2.0,"masked":false}
+                        {"latitude":52.15,"longitude":21.05,"relativeBrightness":3.0,"masked":false}
+                        """));
+    }
+
+    @Test
+    void shouldStreamCsvResults() throws Exception {
+        when(tiffService.pointLookup(2022)).thenReturn(new PointLookup(new ByteRasterStore(2, 2, new byte[] {1, 2, 3, 4}),
+                null, new ViirsGeoReference(21.0, 52.3, 0.1, 0.1, 2, 2)));
+
+        mockMvc.perform(post("/darkness/stream")
+                        .param("year", "2022")
+                        .contentType("text/csv")
+                        .content("52.15,21.15\n"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", containsString("text/csv")))
+                .andExpect(content().string("latitude,longitude,relativeBrightness,masked,error\n52.15,21.15,4.0,false,\n"));
+    }
+
+    @Test
+    void shouldEndStream_whenRateLimitRunsOut() throws Exception {
+        when(tiffService.pointLookup(null)).thenReturn(new PointLookup(new ByteRasterStore(2, 2, new byte[] {1, 2, 3, 4}),
+                null, new ViirsGeoReference(21.0, 52.3, 0.1, 0.1, 2, 2)));
+
+        MvcResult result = mockMvc.perform(post("/darkness/stream")
+                        .contentType("text/csv")
+                        .content("52.15,21.15\n".repeat(8)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(7, lines.length);
+        assertEquals(",,,,\"line 6: Rate limit exceeded after 5 points\"", lines[6]);
+        mockMvc.perform(post("/darkness/stream")
+                        .contentType("text/csv")
+                        .content("52.15,21.15\n"))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void shouldReturnNotFound_beforeStreaming_whenYearIsNotConfigured() throws Exception {
+        when(tiffService.pointLookup(1999)).thenThrow(new DatasetNotFoundException("No dataset configured for 1999/average"));
+
+        mockMvc.perform(post("/darkness/stream")
+                        .param("year", "1999")
+                        .contentType("text/csv")
+                        .content("52.15,21.15\n"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Dataset not found"));
+    }
+
+    @Test
+    void shouldReadRequestedYear() throws Exception {
+        ViirsDataset dataset2022 = new ViirsDataset(null, null, null, null, null, null, false);
+        when(tiffService.dataset(2022)).thenReturn(dataset2022);
+        when(tiffService.getValueForLocation(52.2298, 21.0117, dataset2022)).thenReturn(64.0);
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("year", "2022")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.relativeBrightness").value(64.0));
+    }
+
+    @Test
+    void shouldReturnNotFound_whenYearIsNotConfigured() throws Exception {
+        when(tiffService.dataset(1999)).thenThrow(new DatasetNotFoundException("No dataset configured for 1999/average"));
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .param("year", "1999")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Dataset not found"))
+                .andExpect(jsonPath("$.message").value("No dataset configured for 1999/average"));
+    }
+
+    @Test
+    void shouldFlagMaskedPixel() throws Exception {
+        when(tiffService.getValueForLocation(52.2298, 21.0117, DATASET)).thenReturn(0.0);
+        when(tiffService.isMasked(52.2298, 21.0117, DATASET)).thenReturn(true);
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.relativeBrightness").value(0.0))
+                .andExpect(jsonPath("$.masked").value(true));
+    }
+
+    @Test
+    void shouldReturnServiceUnavailable_whenDatasetIsLoading() throws Exception {
+        when(tiffService.dataset(null))
+                .thenThrow(new DatasetNotReadyException("Dataset 2023/average is loading, retry later", 5));
+
+        mockMvc.perform(get("/darkness")
+                        .param("latitude", "52.2298")
+                        .param("longitude", "21.0117")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"))
+                .andExpect(jsonPath("$.error").value("Service Unavailable"));
+    }
 }
@@ -1,12 +1,16 @@
 package com.aldhafara.lightPollutionService.controller;
 
+import com.aldhafara.lightPollutionService.model.CacheStats;
+import com.aldhafara.lightPollutionService.model.DecodeStats;
 import com.aldhafara.lightPollutionService.service.StatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.hamcrest.Matchers.emptyString;
@@ -18,6 +22,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(StatusController.class)
+@Import(SimpleMeterRegistry.class)
 class StatusControllerIT {
 
     @Autowired
@@ -27,12 +32,34 @@ class StatusControllerIT {
 
     @Test
     void shouldReturnStatusUp() throws Exception {
+        Mockito.when(statusService.getLookupCacheStats()).thenReturn(new CacheStats(3, 6, 2, 0, 0.75));
+        Mockito.when(statusService.isReady()).thenReturn(true);
+        Mockito.when(statusService.getDecodeStats()).thenReturn(new DecodeStats(2, 1 << 30, 500, 2048, 8));
+
         mockMvc.perform(get("/status"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status", is("UP")))
                 .andExpect(jsonPath("$.uptime", greaterThanOrEqualTo(0)))
                 .andExpect(jsonPath("$.uptimePretty", not(emptyString())))
-                .andExpect(jsonPath("$.timestamp", not(emptyString())));
+                .andExpect(jsonPath("$.timestamp", not(emptyString())))
+                .andExpect(jsonPath("$.lookupCache.hits", is(6)))
+                .andExpect(jsonPath("$.lookupCache.hitRatio", is(0.75)))
+                .andExpect(jsonPath("$.ready", is(true)))
+                .andExpect(jsonPath("$.decode.megabytesPerSecond", is(2048.0)))
+                .andExpect(jsonPath("$.decode.threads", is(8)));
+    }
+
+    @Test
+    void shouldReportReadinessOfDefaultDataset() throws Exception {
+        Mockito.when(statusService.isReady()).thenReturn(false);
+        mockMvc.perform(get("/status/readiness"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.status", is("LOADING")));
+
+        Mockito.when(statusService.isReady()).thenReturn(true);
+        mockMvc.perform(get("/status/readiness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("READY")));
     }
 
     @TestConfiguration
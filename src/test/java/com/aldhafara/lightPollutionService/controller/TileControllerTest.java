@@ -0,0 +1,90 @@
+package com.aldhafara.lightPollutionService.controller;
+
+import com.aldhafara.lightPollutionService.exception.TileNotFoundException;
+import com.aldhafara.lightPollutionService.ratelimit.RateLimitAspect;
+import com.aldhafara.lightPollutionService.tiles.RenderedTile;
+import com.aldhafara.lightPollutionService.tiles.TileService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@EnableAspectJAutoProxy(proxyTargetClass = true)
+@WebMvcTest(value = TileController.class, properties = "tiles.rateLimit.requests=2")
+@Import({SimpleMeterRegistry.class, RateLimitAspect.class})
+class TileControllerTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G'};
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private TileService tileService;
+
+    @Autowired
+    private RateLimitAspect rateLimitAspect;
+
+    @BeforeEach
+    void setUp() {
+        rateLimitAspect.resetLimiters();
+    }
+
+    @Test
+    void shouldReturnPngWithCachingHeaders() throws Exception {
+        when(tileService.getTile(3, 4, 2)).thenReturn(new RenderedTile(PNG, "\"abc-4\""));
+
+        mockMvc.perform(get("/tiles/3/4/2.png"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(content().bytes(PNG))
+                .andExpect(header().string("ETag", "\"abc-4\""))
+                .andExpect(header().string("Cache-Control", "max-age=86400, public"));
+    }
+
+    @Test
+    void shouldReturnNotModified_whenETagMatches() throws Exception {
+        when(tileService.getTile(3, 4, 2)).thenReturn(new RenderedTile(PNG, "\"abc-4\""));
+
+        mockMvc.perform(get("/tiles/3/4/2.png").header("If-None-Match", "\"abc-4\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void shouldReturnNotFound_whenTileDoesNotExist() throws Exception {
+        when(tileService.getTile(1, 5, 0)).thenThrow(new TileNotFoundException("Tile 1/5/0 does not exist"));
+
+        mockMvc.perform(get("/tiles/1/5/0.png"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Tile not found"));
+    }
+
+    @Test
+    void shouldReturn429_whenTileRateLimitIsExhaustedWithoutChargingRevalidations() throws Exception {
+        when(tileService.getTile(3, 4, 2)).thenReturn(new RenderedTile(PNG, "\"abc-4\""));
+
+        mockMvc.perform(get("/tiles/3/4/2.png")).andExpect(status().isOk());
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/tiles/3/4/2.png").header("If-None-Match", "\"abc-4\""))
+                    .andExpect(status().isNotModified());
+        }
+        mockMvc.perform(get("/tiles/3/4/2.png").header("If-None-Match", "\"stale\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/tiles/3/4/2.png"))
+                .andExpect(status().isTooManyRequests());
+    }
+}
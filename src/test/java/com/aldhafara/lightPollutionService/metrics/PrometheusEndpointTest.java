@@ -0,0 +1,40 @@
+package com.aldhafara.lightPollutionService.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "management.endpoints.web.exposure.include=prometheus")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class PrometheusEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldExposeLookupAndDatasetMetrics() throws Exception {
+        mockMvc.perform(get("/darkness").param("latitude", "53.98").param("longitude", "6.92"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/darkness").param("latitude", "10").param("longitude", "10"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("lightpollution_lookup_seconds_count{")))
+                .andExpect(content().string(containsString("lightpollution_dataset_load_seconds_count 1\n")))
+                .andExpect(content().string(containsString("lightpollution_dataset_resident 1.0")))
+                .andExpect(content().string(containsString("lightpollution_dataset_memory_bytes")))
+                .andExpect(content().string(containsString("lightpollution_lookup_cache_misses_total")))
+                .andExpect(content().string(containsString(
+                        "lightpollution_lookup_outside_raster_total{uri=\"/darkness\"} 1.0")));
+    }
+}
@@ -0,0 +1,65 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitMaskTest {
+
+    @Test
+    void below_marksSamplesUnderThresholdOnePerBit() {
+        Random random = new Random(3);
+        byte[] samples = new byte[67 * 13];
+        random.nextBytes(samples);
+        RasterStore source = new ByteRasterStore(67, 13, samples);
+
+        BitMask mask = BitMask.below(source, 128, IntStream.range(0, 67).toArray(), IntStream.range(0, 13).toArray());
+
+        long expectedCount = 0;
+        for (int y = 0; y < 13; y++) {
+            for (int x = 0; x < 67; x++) {
+                boolean below = source.getValue(x, y) < 128;
+                assertEquals(below, mask.get(x, y));
+                expectedCount += below ? 1 : 0;
+            }
+        }
+        assertEquals(expectedCount, mask.cardinality());
+        assertEquals((67 * 13 + 63) / 64 * 8, mask.sizeInBytes());
+    }
+
+    @Test
+    void below_resamplesSourceAndLeavesUnmappedPixelsClear() {
+        RasterStore source = new ByteRasterStore(2, 1, new byte[]{0, (byte) 255});
+
+        BitMask mask = BitMask.below(source, 128, new int[]{0, 0, 1, 1, -1}, new int[]{0, -1});
+
+        assertTrue(mask.get(0, 0));
+        assertTrue(mask.get(1, 0));
+        assertFalse(mask.get(2, 0));
+        assertFalse(mask.get(4, 0));
+        assertFalse(mask.get(0, 1));
+        assertEquals(2, mask.cardinality());
+    }
+
+    @Test
+    void maskedRasterStore_readsZeroForMaskedPixels() {
+        RasterStore raster = new ByteRasterStore(2, 2, new byte[]{10, 20, 30, 40});
+        BitMask mask = BitMask.below(new ByteRasterStore(2, 2, new byte[]{(byte) 255, 0, 0, (byte) 255}), 128,
+                new int[]{0, 1}, new int[]{0, 1});
+
+        MaskedRasterStore masked = new MaskedRasterStore(raster, mask);
+
+        assertEquals(10, masked.getValue(0, 0));
+        assertEquals(0, masked.getValue(1, 0));
+        assertEquals(0, masked.getValue(0, 1));
+        assertEquals(40, masked.getValue(1, 1));
+        assertEquals(40, SummedAreaTable.build(masked).sum(0, 0, 2, 2) - 10);
+        assertThrows(IllegalArgumentException.class, () -> new MaskedRasterStore(new ByteRasterStore(1, 1, new byte[1]), mask));
+    }
+}
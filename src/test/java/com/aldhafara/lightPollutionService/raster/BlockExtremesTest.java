@@ -0,0 +1,49 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockExtremesTest {
+
+    @Test
+    void build_coversPartialEdgeBlocks() {
+        RasterStore raster = new ByteRasterStore(5, 3, new byte[]{
+                1, 2, 3, 4, 5,
+                6, 7, 8, 9, 10,
+                11, 12, 13, 14, 15});
+
+        BlockExtremes extremes = BlockExtremes.build(raster, null, 2);
+
+        assertEquals(3, extremes.blocksAcross());
+        assertEquals(2, extremes.blocksDown());
+        assertEquals(1f, extremes.min(0, 0));
+        assertEquals(7f, extremes.max(0, 0));
+        assertEquals(5f, extremes.min(2, 0));
+        assertEquals(10f, extremes.max(2, 0));
+        assertEquals(15f, extremes.min(2, 1));
+        assertEquals(15f, extremes.max(2, 1));
+    }
+
+    @Test
+    void build_leavesOutMaskedPixels() {
+        RasterStore raster = new ByteRasterStore(4, 1, new byte[]{0, 50, 0, 0});
+        BitMask mask = BitMask.below(new ByteRasterStore(4, 1, new byte[]{0, (byte) 255, 0, 0}), 128,
+                IntStream.range(0, 4).toArray(), new int[]{0});
+
+        BlockExtremes extremes = BlockExtremes.build(raster, mask, 2);
+
+        assertEquals(50f, extremes.min(0, 0));
+        assertEquals(50f, extremes.max(0, 0));
+        assertEquals(Float.POSITIVE_INFINITY, extremes.min(1, 0));
+        assertEquals(Float.NEGATIVE_INFINITY, extremes.max(1, 0));
+    }
+
+    @Test
+    void build_rejectsNonPositiveBlockSize() {
+        assertThrows(IllegalArgumentException.class, () -> BlockExtremes.build(new ByteRasterStore(1, 1, new byte[1]), null, 0));
+    }
+}
@@ -0,0 +1,24 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteRasterStoreTest {
+
+    @Test
+    void getValue_readsUnsignedSampleInRowMajorOrder() {
+        ByteRasterStore store = new ByteRasterStore(3, 2, new byte[]{0, 1, 2, 3, 4, (byte) 250});
+
+        assertEquals(0, store.getValue(0, 0));
+        assertEquals(2, store.getValue(2, 0));
+        assertEquals(3, store.getValue(0, 1));
+        assertEquals(250, store.getValue(2, 1));
+    }
+
+    @Test
+    void constructor_rejectsMismatchedSampleCount() {
+        assertThrows(IllegalArgumentException.class, () -> new ByteRasterStore(3, 2, new byte[5]));
+    }
+}
@@ -0,0 +1,83 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RasterCacheFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ViirsGeoReference geoReference = new ViirsGeoReference(6.9, 53.99, 0.004, 0.004, 3, 2);
+
+    @Test
+    void read_mapsByteSamplesAndGeoReferenceWritten() throws IOException {
+        Path file = tempDir.resolve("2023_average.raster");
+        RasterCacheFile.write(file, new ByteRasterStore(3, 2, new byte[]{0, 1, 2, 3, (byte) 200, (byte) 255}),
+                geoReference, false, 42L);
+
+        RasterCacheFile.Cached cached = RasterCacheFile.read(file, 42L);
+
+        assertEquals(geoReference, cached.geoReference());
+        assertEquals(3, cached.raster().width());
+        assertEquals(2, cached.raster().height());
+        assertEquals(2.0, cached.raster().getValue(2, 0));
+        assertEquals(255.0, cached.raster().getValue(2, 1));
+    }
+
+    @Test
+    void read_mapsFloatSamples() throws IOException {
+        Path file = tempDir.resolve("2023_average.raster");
+        RasterCacheFile.write(file, new FloatRasterStore(3, 2, new float[]{0.5f, 1, 2, 3, 4, 1234.25f}),
+                geoReference, true, 42L);
+
+        RasterCacheFile.Cached cached = RasterCacheFile.read(file, 42L);
+
+        assertEquals(0.5, cached.raster().getValue(0, 0));
+        assertEquals(1234.25, cached.raster().getValue(2, 1));
+    }
+
+    @Test
+    void read_returnsNullForMissingFileOrOtherSource() throws IOException {
+        Path file = tempDir.resolve("2023_average.raster");
+        assertNull(RasterCacheFile.read(file, 42L));
+
+        RasterCacheFile.write(file, new ByteRasterStore(3, 2, new byte[6]), geoReference, false, 42L);
+
+        assertNull(RasterCacheFile.read(file, 43L));
+    }
+
+    @Test
+    void read_rejectsCorruptedSamples() throws IOException {
+        Path file = tempDir.resolve("2023_average.raster");
+        RasterCacheFile.write(file, new ByteRasterStore(3, 2, new byte[6]), geoReference, false, 42L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{7}), Files.size(file) - 1);
+        }
+
+        assertThrows(IOException.class, () -> RasterCacheFile.read(file, 42L));
+    }
+
+    @Test
+    void read_rejectsTruncatedFile() throws IOException {
+        Path file = tempDir.resolve("2023_average.raster");
+        RasterCacheFile.write(file, new ByteRasterStore(3, 2, new byte[6]), geoReference, false, 42L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 2);
+        }
+
+        assertThrows(IOException.class, () -> RasterCacheFile.read(file, 42L));
+    }
+}
@@ -0,0 +1,119 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RasterPyramidTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void build_aggregatesEveryLevelFromBasePixels() {
+        RasterStore base = randomRaster(37, 21);
+
+        RasterPyramid pyramid = RasterPyramid.build(base, 8, Long.MAX_VALUE);
+
+        assertEquals(6, pyramid.maxLevel());
+        for (int level = 1; level <= pyramid.maxLevel(); level++) {
+            assertLevelMatchesBase(base, pyramid.level(level));
+        }
+        assertEquals(1, pyramid.level(6).mean().width());
+        assertEquals(1, pyramid.level(6).mean().height());
+    }
+
+    @Test
+    void build_skipsLevelsAbovePixelBudgetAndStartsFromBase() {
+        RasterStore base = randomRaster(64, 64);
+
+        RasterPyramid pyramid = RasterPyramid.build(base, 4, 64);
+
+        assertNull(pyramid.level(0));
+        assertNull(pyramid.level(1));
+        assertNull(pyramid.level(2));
+        assertLevelMatchesBase(base, pyramid.level(3));
+        assertLevelMatchesBase(base, pyramid.level(4));
+        assertNull(pyramid.level(5));
+    }
+
+    @Test
+    void file_roundTripsPyramidWithMatchingFingerprint() throws IOException {
+        RasterPyramid pyramid = RasterPyramid.build(randomRaster(19, 11), 3, 50);
+        Path file = tempDir.resolve("nested/average.pyramid");
+
+        RasterPyramidFile.write(file, pyramid, 42L);
+        RasterPyramid read = RasterPyramidFile.read(file, 42L);
+
+        assertNotNull(read);
+        assertEquals(pyramid.maxLevel(), read.maxLevel());
+        assertNull(read.level(1));
+        for (int level = 2; level <= 3; level++) {
+            RasterPyramid.Level expected = pyramid.level(level);
+            RasterPyramid.Level actual = read.level(level);
+            for (int y = 0; y < expected.mean().height(); y++) {
+                for (int x = 0; x < expected.mean().width(); x++) {
+                    assertEquals(expected.mean().getValue(x, y), actual.mean().getValue(x, y));
+                    assertEquals(expected.max().getValue(x, y), actual.max().getValue(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    void file_returnsNullForMissingFileOrOtherFingerprint() throws IOException {
+        Path file = tempDir.resolve("average.pyramid");
+        assertNull(RasterPyramidFile.read(file, 1L));
+
+        RasterPyramidFile.write(file, RasterPyramid.build(randomRaster(8, 8), 3, Long.MAX_VALUE), 1L);
+
+        assertNull(RasterPyramidFile.read(file, 2L));
+    }
+
+    @Test
+    void file_rejectsTruncatedFile() throws IOException {
+        Path file = tempDir.resolve("average.pyramid");
+        RasterPyramidFile.write(file, RasterPyramid.build(randomRaster(16, 16), 3, Long.MAX_VALUE), 1L);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertThrows(IOException.class, () -> RasterPyramidFile.read(file, 1L));
+    }
+
+    private static void assertLevelMatchesBase(RasterStore base, RasterPyramid.Level level) {
+        int factor = level.factor();
+        for (int cy = 0; cy < level.mean().height(); cy++) {
+            for (int cx = 0; cx < level.mean().width(); cx++) {
+                double sum = 0;
+                double max = Double.NEGATIVE_INFINITY;
+                int count = 0;
+                for (int y = cy * factor; y < Math.min((cy + 1) * factor, base.height()); y++) {
+                    for (int x = cx * factor; x < Math.min((cx + 1) * factor, base.width()); x++) {
+                        sum += base.getValue(x, y);
+                        max = Math.max(max, base.getValue(x, y));
+                        count++;
+                    }
+                }
+                assertEquals(sum / count, level.mean().getValue(cx, cy), 1e-3);
+                assertEquals(max, level.max().getValue(cx, cy));
+            }
+        }
+    }
+
+    private static RasterStore randomRaster(int width, int height) {
+        byte[] samples = new byte[width * height];
+        new Random(width * 31L + height).nextBytes(samples);
+        return new ByteRasterStore(width, height, samples);
+    }
+}
@@ -0,0 +1,98 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageModeTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    @Test
+    void fromProperty_acceptsDocumentedNames() {
+        assertEquals(StorageMode.NATIVE, StorageMode.fromProperty("native"));
+        assertEquals(StorageMode.UINT8, StorageMode.fromProperty("UINT8"));
+        assertEquals(StorageMode.UINT16_LOG, StorageMode.fromProperty(" uint16-log "));
+        assertEquals(StorageMode.FLOAT32, StorageMode.fromProperty("float32"));
+        assertEquals("uint16-log", StorageMode.UINT16_LOG.property());
+        assertThrows(IllegalArgumentException.class, () -> StorageMode.fromProperty("uint4"));
+    }
+
+    @Test
+    void uint8_staysWithinHalfAStepOfTheRange() {
+        FloatRasterStore source = radiance();
+        RasterStore stored = StorageMode.UINT8.store(source);
+
+        double bound = (range(source)[1] - range(source)[0]) / 510;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(source.getValue(x, y), stored.getValue(x, y), bound * 1.0001);
+            }
+        }
+        assertEquals(source.sizeInBytes() / 4 + 256 * Float.BYTES, stored.sizeInBytes());
+    }
+
+    @Test
+    void uint16Log_boundsErrorRelativeToDistanceFromMinimum() {
+        FloatRasterStore source = radiance();
+        RasterStore stored = StorageMode.UINT16_LOG.store(source);
+
+        double[] range = range(source);
+        double relative = Math.expm1(Math.log1p(range[1] - range[0]) / 65535 / 2);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double value = source.getValue(x, y);
+                double bound = (1 + value - range[0]) * relative;
+                assertEquals(value, stored.getValue(x, y), bound * 1.0001 + Math.ulp((float) value));
+            }
+        }
+        assertTrue(relative < 6e-5);
+        assertEquals(source.sizeInBytes() / 2 + 65536 * Float.BYTES, stored.sizeInBytes());
+    }
+
+    @Test
+    void keepsExactSourcesAndConstantBands() {
+        ByteRasterStore bytes = new ByteRasterStore(2, 1, new byte[] {3, (byte) 200});
+        FloatRasterStore constant = new FloatRasterStore(2, 1, new float[] {7.5f, 7.5f});
+
+        assertSame(bytes, StorageMode.UINT8.store(bytes));
+        assertSame(bytes, StorageMode.NATIVE.store(bytes));
+        FloatRasterStore floats = assertInstanceOf(FloatRasterStore.class, StorageMode.FLOAT32.store(bytes));
+        assertEquals(200, floats.getValue(1, 0));
+        assertEquals(7.5, StorageMode.UINT8.store(constant).getValue(1, 0));
+        assertEquals(7.5, StorageMode.UINT16_LOG.store(constant).getValue(0, 0));
+    }
+
+    /**
+     * Mostly dark pixels with a few bright ones and slightly negative noise, like a VIIRS radiance band.
+     */
+    private static FloatRasterStore radiance() {
+        Random random = new Random(23);
+        float[] samples = new float[WIDTH * HEIGHT];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (float) (random.nextDouble() < 0.05
+                    ? random.nextDouble() * 900
+                    : random.nextDouble() * 2 - 0.2);
+        }
+        return new FloatRasterStore(WIDTH, HEIGHT, samples);
+    }
+
+    private static double[] range(RasterStore raster) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int y = 0; y < raster.height(); y++) {
+            for (int x = 0; x < raster.width(); x++) {
+                min = Math.min(min, raster.getValue(x, y));
+                max = Math.max(max, raster.getValue(x, y));
+            }
+        }
+        return new double[] {min, max};
+    }
+}
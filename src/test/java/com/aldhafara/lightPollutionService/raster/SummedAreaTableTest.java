@@ -0,0 +1,43 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SummedAreaTableTest {
+
+    @Test
+    void sum_matchesBruteForceForEveryRectangle() {
+        Random random = new Random(7);
+        byte[] samples = new byte[9 * 6];
+        random.nextBytes(samples);
+        RasterStore raster = new ByteRasterStore(9, 6, samples);
+
+        SummedAreaTable table = SummedAreaTable.build(raster);
+
+        for (int y0 = 0; y0 <= 6; y0++) {
+            for (int y1 = y0; y1 <= 6; y1++) {
+                for (int x0 = 0; x0 <= 9; x0++) {
+                    for (int x1 = x0; x1 <= 9; x1++) {
+                        double expected = 0;
+                        for (int y = y0; y < y1; y++) {
+                            for (int x = x0; x < x1; x++) {
+                                expected += raster.getValue(x, y);
+                            }
+                        }
+                        assertEquals(expected, table.sum(x0, y0, x1, y1));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void sum_ofWholeFloatRaster() {
+        RasterStore raster = new FloatRasterStore(2, 2, new float[]{0.5f, 1.25f, -2f, 10f});
+
+        assertEquals(9.75, SummedAreaTable.build(raster).sum(0, 0, 2, 2));
+    }
+}
@@ -0,0 +1,302 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.DoubleBinaryOperator;
+import java.util.zip.Deflater;
+
+/**
+ * Writes small single-directory GeoTIFFs with a chosen layout, used to exercise the reader against
+ * formats the bundled fixtures do not cover. Band 0 holds {@code values(x, y)}, other bands hold 7.
+ */
+public class SyntheticGeoTiffWriter {
+
+    private int width = 64;
+    private int height = 48;
+    private int samplesPerPixel = 1;
+    private TiffSampleType sampleType = TiffSampleType.UINT8;
+    private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private boolean bigTiff;
+    private boolean tiled;
+    private int blockWidth = 16;
+    private int blockHeight = 16;
+    private int compression = TiffDirectory.COMPRESSION_NONE;
+    private int predictor = TiffDirectory.PREDICTOR_NONE;
+    private double originX = 10.0;
+    private double originY = 60.0;
+    private double pixelScale = 0.01;
+    private DoubleBinaryOperator values = (x, y) -> (x + y) % 256;
+
+    public SyntheticGeoTiffWriter size(int width, int height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter samplesPerPixel(int samplesPerPixel) {
+        this.samplesPerPixel = samplesPerPixel;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter sampleType(TiffSampleType sampleType) {
+        this.sampleType = sampleType;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter byteOrder(ByteOrder byteOrder) {
+        this.byteOrder = byteOrder;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter bigTiff(boolean bigTiff) {
+        this.bigTiff = bigTiff;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter tiles(int tileWidth, int tileHeight) {
+        this.tiled = true;
+        this.blockWidth = tileWidth;
+        this.blockHeight = tileHeight;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter strips(int rowsPerStrip) {
+        this.tiled = false;
+        this.blockHeight = rowsPerStrip;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter deflate(int predictor) {
+        this.compression = TiffDirectory.COMPRESSION_DEFLATE;
+        this.predictor = predictor;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter geoReference(double originX, double originY, double pixelScale) {
+        this.originX = originX;
+        this.originY = originY;
+        this.pixelScale = pixelScale;
+        return this;
+    }
+
+    public SyntheticGeoTiffWriter values(DoubleBinaryOperator values) {
+        this.values = values;
+        return this;
+    }
+
+    public Path write(Path file) throws IOException {
+        Files.write(file, toBytes());
+        return file;
+    }
+
+    public byte[] toBytes() {
+        int effectiveBlockWidth = tiled ? blockWidth : width;
+        int across = (width + effectiveBlockWidth - 1) / effectiveBlockWidth;
+        int down = (height + blockHeight - 1) / blockHeight;
+        List<byte[]> blocks = new ArrayList<>();
+        for (int by = 0; by < down; by++) {
+            for (int bx = 0; bx < across; bx++) {
+                int rows = tiled ? blockHeight : Math.min(blockHeight, height - by * blockHeight);
+                blocks.add(encodeBlock(bx * effectiveBlockWidth, by * blockHeight, effectiveBlockWidth, rows));
+            }
+        }
+
+        int headerSize = bigTiff ? 16 : 8;
+        long dataSize = blocks.stream().mapToLong(b -> b.length).sum();
+        long[] offsets = new long[blocks.size()];
+        long[] counts = new long[blocks.size()];
+        long position = headerSize;
+        for (int i = 0; i < blocks.size(); i++) {
+            offsets[i] = position;
+            counts[i] = blocks.get(i).length;
+            position += counts[i];
+        }
+
+        TreeMap<Integer, Object> tags = new TreeMap<>();
+        tags.put(TiffDirectory.TAG_IMAGE_WIDTH, new long[]{width});
+        tags.put(TiffDirectory.TAG_IMAGE_LENGTH, new long[]{height});
+        long[] bits = new long[samplesPerPixel];
+        Arrays.fill(bits, sampleType.bytes() * 8L);
+        tags.put(TiffDirectory.TAG_BITS_PER_SAMPLE, bits);
+        tags.put(TiffDirectory.TAG_COMPRESSION, new long[]{compression});
+        tags.put(TiffDirectory.TAG_SAMPLES_PER_PIXEL, new long[]{samplesPerPixel});
+        if (predictor != TiffDirectory.PREDICTOR_NONE) {
+            tags.put(TiffDirectory.TAG_PREDICTOR, new long[]{predictor});
+        }
+        long[] sampleFormat = new long[samplesPerPixel];
+        Arrays.fill(sampleFormat, switch (sampleType) {
+            case FLOAT32, FLOAT64 -> 3;
+            case INT8, INT16, INT32 -> 2;
+            default -> 1;
+        });
+        tags.put(TiffDirectory.TAG_SAMPLE_FORMAT, sampleFormat);
+        if (tiled) {
+            tags.put(TiffDirectory.TAG_TILE_WIDTH, new long[]{blockWidth});
+            tags.put(TiffDirectory.TAG_TILE_LENGTH, new long[]{blockHeight});
+            tags.put(TiffDirectory.TAG_TILE_OFFSETS, offsets);
+            tags.put(TiffDirectory.TAG_TILE_BYTE_COUNTS, counts);
+        } else {
+            tags.put(TiffDirectory.TAG_ROWS_PER_STRIP, new long[]{blockHeight});
+            tags.put(TiffDirectory.TAG_STRIP_OFFSETS, offsets);
+            tags.put(TiffDirectory.TAG_STRIP_BYTE_COUNTS, counts);
+        }
+        tags.put(TiffDirectory.TAG_MODEL_PIXEL_SCALE, new double[]{pixelScale, pixelScale, 0.0});
+        tags.put(TiffDirectory.TAG_MODEL_TIEPOINT, new double[]{0.0, 0.0, 0.0, originX, originY, 0.0});
+
+        long ifdOffset = headerSize + dataSize;
+        int entrySize = bigTiff ? 20 : 12;
+        int inlineSize = bigTiff ? 8 : 4;
+        int countSize = bigTiff ? 8 : 2;
+        long extraOffset = ifdOffset + countSize + (long) tags.size() * entrySize + inlineSize;
+
+        ByteBuffer ifd = ByteBuffer.allocate(countSize + tags.size() * entrySize + inlineSize).order(byteOrder);
+        ByteArrayOutputStream extra = new ByteArrayOutputStream();
+        if (bigTiff) {
+            ifd.putLong(tags.size());
+        } else {
+            ifd.putShort((short) tags.size());
+        }
+        for (var tag : tags.entrySet()) {
+            ByteBuffer value;
+            int type;
+            long count;
+            if (tag.getValue() instanceof double[] doubles) {
+                type = 12;
+                count = doubles.length;
+                value = ByteBuffer.allocate(doubles.length * 8).order(byteOrder);
+                for (double d : doubles) {
+                    value.putDouble(d);
+                }
+            } else {
+                long[] longs = (long[]) tag.getValue();
+                count = longs.length;
+                boolean wide = bigTiff && longs.length > 0 && Arrays.stream(longs).anyMatch(l -> l > 0xffffffffL);
+                type = wide ? 16 : (Arrays.stream(longs).allMatch(l -> l <= 0xffff) ? 3 : 4);
+                int size = type == 16 ? 8 : type == 4 ? 4 : 2;
+                value = ByteBuffer.allocate(longs.length * size).order(byteOrder);
+                for (long l : longs) {
+                    switch (size) {
+                        case 8 -> value.putLong(l);
+                        case 4 -> value.putInt((int) l);
+                        default -> value.putShort((short) l);
+                    }
+                }
+            }
+            ifd.putShort(tag.getKey().shortValue());
+            ifd.putShort((short) type);
+            if (bigTiff) {
+                ifd.putLong(count);
+            } else {
+                ifd.putInt((int) count);
+            }
+            byte[] bytes = value.array();
+            if (bytes.length <= inlineSize) {
+                byte[] inline = new byte[inlineSize];
+                System.arraycopy(bytes, 0, inline, 0, bytes.length);
+                ifd.put(inline);
+            } else {
+                long offset = extraOffset + extra.size();
+                if (bigTiff) {
+                    ifd.putLong(offset);
+                } else {
+                    ifd.putInt((int) offset);
+                }
+                extra.writeBytes(bytes);
+            }
+        }
+
+        ByteBuffer file = ByteBuffer.allocate(Math.toIntExact(extraOffset + extra.size())).order(byteOrder);
+        file.putShort(byteOrder == ByteOrder.LITTLE_ENDIAN ? (short) 0x4949 : (short) 0x4D4D);
+        if (bigTiff) {
+            file.putShort((short) 43).putShort((short) 8).putShort((short) 0).putLong(ifdOffset);
+        } else {
+            file.putShort((short) 42).putInt((int) ifdOffset);
+        }
+        for (byte[] block : blocks) {
+            file.put(block);
+        }
+        file.put(ifd.array());
+        file.put(extra.toByteArray());
+        return file.array();
+    }
+
+    private byte[] encodeBlock(int x0, int y0, int blockWidth, int rows) {
+        int bytes = sampleType.bytes();
+        int samplesPerRow = blockWidth * samplesPerPixel;
+        int rowBytes = samplesPerRow * bytes;
+        byte[] raw = new byte[rowBytes * rows];
+        ByteBuffer buffer = ByteBuffer.wrap(raw).order(predictor == TiffDirectory.PREDICTOR_FLOATING_POINT ? ByteOrder.BIG_ENDIAN : byteOrder);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < blockWidth; col++) {
+                int x = x0 + col;
+                int y = y0 + row;
+                for (int s = 0; s < samplesPerPixel; s++) {
+                    double v = x < width && y < height ? (s == 0 ? values.applyAsDouble(x, y) : 7) : 0;
+                    int at = (row * samplesPerRow + col * samplesPerPixel + s) * bytes;
+                    switch (sampleType) {
+                        case UINT8, INT8 -> buffer.put(at, (byte) v);
+                        case UINT16, INT16 -> buffer.putShort(at, (short) v);
+                        case UINT32, INT32 -> buffer.putInt(at, (int) (long) v);
+                        case FLOAT32 -> buffer.putFloat(at, (float) v);
+                        case FLOAT64 -> buffer.putDouble(at, v);
+                    }
+                }
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            if (predictor == TiffDirectory.PREDICTOR_HORIZONTAL) {
+                applyHorizontalDifferencing(buffer, row * rowBytes, samplesPerRow);
+            } else if (predictor == TiffDirectory.PREDICTOR_FLOATING_POINT) {
+                applyFloatingPointDifferencing(raw, row * rowBytes, samplesPerRow, bytes);
+            }
+        }
+        if (compression == TiffDirectory.COMPRESSION_NONE) {
+            return raw;
+        }
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private void applyHorizontalDifferencing(ByteBuffer buffer, int base, int samplesPerRow) {
+        int bytes = sampleType.bytes();
+        for (int i = samplesPerRow - 1; i >= samplesPerPixel; i--) {
+            int at = base + i * bytes;
+            int previous = base + (i - samplesPerPixel) * bytes;
+            switch (bytes) {
+                case 1 -> buffer.put(at, (byte) (buffer.get(at) - buffer.get(previous)));
+                case 2 -> buffer.putShort(at, (short) (buffer.getShort(at) - buffer.getShort(previous)));
+                default -> buffer.putInt(at, buffer.getInt(at) - buffer.getInt(previous));
+            }
+        }
+    }
+
+    private void applyFloatingPointDifferencing(byte[] raw, int base, int samplesPerRow, int bytes) {
+        int rowBytes = samplesPerRow * bytes;
+        byte[] shuffled = new byte[rowBytes];
+        for (int s = 0; s < samplesPerRow; s++) {
+            for (int b = 0; b < bytes; b++) {
+                shuffled[b * samplesPerRow + s] = raw[base + s * bytes + b];
+            }
+        }
+        for (int i = rowBytes - 1; i >= samplesPerPixel; i--) {
+            shuffled[i] -= shuffled[i - samplesPerPixel];
+        }
+        System.arraycopy(shuffled, 0, raw, base, rowBytes);
+    }
+}
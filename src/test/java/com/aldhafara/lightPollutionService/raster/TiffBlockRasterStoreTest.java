@@ -0,0 +1,108 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.apache.commons.imaging.Imaging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TiffBlockRasterStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void open_readsLzwStripsOfMockTiffLikeImaging() throws Exception {
+        Path file = Path.of(getClass().getClassLoader().getResource("tiff/mock_average.tiff").toURI());
+        BufferedImage expected = Imaging.getBufferedImage(file.toFile());
+
+        TiffBlockRasterStore store = TiffBlockRasterStore.open(file, 1);
+
+        assertEquals(expected.getWidth(), store.width());
+        assertEquals(expected.getHeight(), store.height());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals((expected.getRGB(x, y) >> 16) & 0xff, store.getValue(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void open_readsDeflateTilesWithFloatingPointPredictor() throws Exception {
+        DoubleBinaryOperator values = (x, y) -> Math.sin(x * 0.1) * 100 + y * 0.25;
+        Path file = new SyntheticGeoTiffWriter()
+                .size(70, 50)
+                .tiles(16, 32)
+                .sampleType(TiffSampleType.FLOAT32)
+                .deflate(TiffDirectory.PREDICTOR_FLOATING_POINT)
+                .values(values)
+                .write(tempDir.resolve("float.tif"));
+
+        assertMatches(TiffBlockRasterStore.open(file, 4), values, 70, 50, 1e-4);
+    }
+
+    @Test
+    void open_readsBigEndianUint16StripsWithHorizontalPredictor() throws Exception {
+        DoubleBinaryOperator values = (x, y) -> (x * 131 + y * 977) % 65536;
+        Path file = new SyntheticGeoTiffWriter()
+                .size(41, 29)
+                .strips(5)
+                .samplesPerPixel(2)
+                .sampleType(TiffSampleType.UINT16)
+                .byteOrder(ByteOrder.BIG_ENDIAN)
+                .deflate(TiffDirectory.PREDICTOR_HORIZONTAL)
+                .values(values)
+                .write(tempDir.resolve("uint16.tif"));
+
+        assertMatches(TiffBlockRasterStore.open(file, 2), values, 41, 29, 0);
+    }
+
+    @Test
+    void open_readsUncompressedBigTiff() throws Exception {
+        DoubleBinaryOperator values = (x, y) -> -(x * y) % 1000;
+        Path file = new SyntheticGeoTiffWriter()
+                .size(33, 17)
+                .tiles(16, 16)
+                .sampleType(TiffSampleType.INT32)
+                .bigTiff(true)
+                .values(values)
+                .write(tempDir.resolve("big.tif"));
+
+        assertMatches(TiffBlockRasterStore.open(file, 1), values, 33, 17, 0);
+    }
+
+    @Test
+    void getValue_staysCorrectWhenRandomAccessEvictsBlocks() throws Exception {
+        DoubleBinaryOperator values = (x, y) -> (x * 7 + y * 3) % 256;
+        Path file = new SyntheticGeoTiffWriter()
+                .size(128, 128)
+                .tiles(16, 16)
+                .deflate(TiffDirectory.PREDICTOR_HORIZONTAL)
+                .values(values)
+                .write(tempDir.resolve("evict.tif"));
+        TiffBlockRasterStore store = TiffBlockRasterStore.open(file, 3);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            int x = random.nextInt(128);
+            int y = random.nextInt(128);
+            assertEquals(values.applyAsDouble(x, y), store.getValue(x, y));
+        }
+    }
+
+    private static void assertMatches(RasterStore store, DoubleBinaryOperator values, int width, int height, double delta) {
+        assertEquals(width, store.width());
+        assertEquals(height, store.height());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(values.applyAsDouble(x, y), store.getValue(x, y), delta, "pixel " + x + "," + y);
+            }
+        }
+    }
+}
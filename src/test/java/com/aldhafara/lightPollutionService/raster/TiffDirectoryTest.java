@@ -0,0 +1,84 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import com.aldhafara.lightPollutionService.exception.MissingTiffFieldException;
+import com.aldhafara.lightPollutionService.exception.TiffMetadataExtractionException;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TiffDirectoryTest {
+
+    @Test
+    void read_parsesStripLayoutAndGeoTagsOfMockTiff() throws Exception {
+        byte[] data;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("tiff/mock_average.tiff")) {
+            data = in.readAllBytes();
+        }
+
+        TiffDirectory directory = TiffDirectory.read(TiffByteSource.wrap(data));
+
+        assertEquals(ByteOrder.LITTLE_ENDIAN, directory.byteOrder());
+        assertEquals(1355, directory.width());
+        assertEquals(830, directory.height());
+        assertEquals(4, directory.samplesPerPixel());
+        assertEquals(TiffSampleType.UINT8, directory.sampleType());
+        assertEquals(TiffDirectory.COMPRESSION_LZW, directory.compression());
+        assertFalse(directory.tiled());
+        assertEquals(1355, directory.blockWidth());
+        assertEquals(773, directory.blockHeight());
+        assertEquals(2, directory.blocksDown());
+        assertEquals(57, directory.blockRows(1));
+        assertEquals(3.5072121771217295e-05, directory.modelPixelScale()[0], 1e-15);
+        assertEquals(6.899457547015222, directory.modelTiepoint()[3], 1e-12);
+        assertEquals(53.993959731019835, directory.modelTiepoint()[4], 1e-12);
+    }
+
+    @Test
+    void read_parsesBigEndianBigTiffWithTiles() {
+        byte[] data = new SyntheticGeoTiffWriter()
+                .size(100, 70)
+                .tiles(32, 16)
+                .sampleType(TiffSampleType.FLOAT32)
+                .byteOrder(ByteOrder.BIG_ENDIAN)
+                .bigTiff(true)
+                .deflate(TiffDirectory.PREDICTOR_FLOATING_POINT)
+                .geoReference(-180.0, 75.0, 0.004)
+                .toBytes();
+
+        TiffDirectory directory = TiffDirectory.read(TiffByteSource.wrap(data));
+
+        assertEquals(ByteOrder.BIG_ENDIAN, directory.byteOrder());
+        assertTrue(directory.tiled());
+        assertEquals(4, directory.blocksAcross());
+        assertEquals(5, directory.blocksDown());
+        assertEquals(20, directory.blockOffsets().length);
+        assertEquals(TiffSampleType.FLOAT32, directory.sampleType());
+        assertEquals(TiffDirectory.PREDICTOR_FLOATING_POINT, directory.predictor());
+        assertArrayEquals(new double[]{0.004, 0.004, 0.0}, directory.modelPixelScale());
+        assertEquals(-180.0, directory.modelTiepoint()[3]);
+    }
+
+    @Test
+    void read_rejectsNonTiffData() {
+        assertThrows(TiffMetadataExtractionException.class,
+                () -> TiffDirectory.read(TiffByteSource.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+    }
+
+    @Test
+    void read_reportsMissingRequiredTag() {
+        byte[] data = new SyntheticGeoTiffWriter().size(4, 4).strips(4).toBytes();
+        // Overwrite the ImageWidth tag id (first directory entry) with an unknown private tag
+        int ifdOffset = (data[4] & 0xff) | (data[5] & 0xff) << 8 | (data[6] & 0xff) << 16 | (data[7] & 0xff) << 24;
+        data[ifdOffset + 2] = (byte) 0xFF;
+        data[ifdOffset + 3] = (byte) 0xFF;
+
+        assertThrows(MissingTiffFieldException.class, () -> TiffDirectory.read(TiffByteSource.wrap(data)));
+    }
+}
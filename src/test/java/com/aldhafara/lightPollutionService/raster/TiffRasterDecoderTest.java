@@ -0,0 +1,88 @@
+package com.aldhafara.lightPollutionService.raster;
+
+import org.apache.commons.imaging.Imaging;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class TiffRasterDecoderTest {
+
+    @Test
+    void decodeFirstBand_keepsRedBandOfRgbaStripsAsBytes() throws Exception {
+        byte[] data;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("tiff/mock_mask.tiff")) {
+            data = in.readAllBytes();
+        }
+        BufferedImage expected = Imaging.getBufferedImage(data);
+
+        TiffByteSource source = TiffByteSource.wrap(data);
+        RasterStore store = TiffRasterDecoder.decodeFirstBand(TiffDirectory.read(source), source);
+
+        assertInstanceOf(ByteRasterStore.class, store);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals((expected.getRGB(x, y) >> 16) & 0xff, store.getValue(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void decodeFirstBand_widensNonByteSamplesToFloatAndClipsTilePadding() {
+        DoubleBinaryOperator values = (x, y) -> x * 0.5 - y * 3.25;
+        byte[] data = new SyntheticGeoTiffWriter()
+                .size(37, 21)
+                .tiles(16, 16)
+                .sampleType(TiffSampleType.FLOAT64)
+                .byteOrder(ByteOrder.BIG_ENDIAN)
+                .values(values)
+                .toBytes();
+
+        TiffByteSource source = TiffByteSource.wrap(data);
+        RasterStore store = TiffRasterDecoder.decodeFirstBand(TiffDirectory.read(source), source);
+
+        assertInstanceOf(FloatRasterStore.class, store);
+        assertEquals(37, store.width());
+        assertEquals(21, store.height());
+        for (int y = 0; y < 21; y++) {
+            for (int x = 0; x < 37; x++) {
+                assertEquals(values.applyAsDouble(x, y), store.getValue(x, y), 1e-4);
+            }
+        }
+    }
+
+    @Test
+    void decodeFirstBand_decodesBlocksInParallelIntoSameRaster() {
+        DoubleBinaryOperator values = (x, y) -> Math.sin(x * 0.1) * 40 + y;
+        byte[] data = new SyntheticGeoTiffWriter()
+                .size(130, 90)
+                .tiles(16, 16)
+                .sampleType(TiffSampleType.FLOAT32)
+                .deflate(2)
+                .values(values)
+                .toBytes();
+        TiffByteSource source = TiffByteSource.wrap(data);
+        TiffDirectory directory = TiffDirectory.read(source);
+
+        RasterStore sequential = TiffRasterDecoder.decodeFirstBand(directory, source);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            RasterStore parallel = TiffRasterDecoder.decodeFirstBand(directory, source, pool);
+
+            for (int y = 0; y < 90; y++) {
+                for (int x = 0; x < 130; x++) {
+                    assertEquals(sequential.getValue(x, y), parallel.getValue(x, y), "pixel " + x + "," + y);
+                    assertEquals(values.applyAsDouble(x, y), parallel.getValue(x, y), 1e-4);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
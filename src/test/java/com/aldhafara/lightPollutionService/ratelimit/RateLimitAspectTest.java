@@ -0,0 +1,198 @@
+package com.aldhafara.lightPollutionService.ratelimit;
+
+import com.aldhafara.lightPollutionService.exception.BatchTooLargeException;
+import com.aldhafara.lightPollutionService.exception.RateLimitException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atMostOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitAspectTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+    private final ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+    private final RateLimited rateLimited = mock(RateLimited.class);
+    private MockEnvironment env;
+    private RateLimitAspect aspect;
+
+    @BeforeEach
+    void setUp() throws Throwable {
+        env = new MockEnvironment()
+                .withProperty("ratelimit.requests", "2")
+                .withProperty("ratelimit.durationSeconds", "10")
+                .withProperty("ratelimit.evictionIntervalSeconds", "30");
+        aspect = new RateLimitAspect(env, now::get);
+
+        MethodSignature signature = mock(MethodSignature.class);
+        when(signature.getMethod()).thenReturn(LimitedEndpoint.class.getMethod("get"));
+        when(pjp.getSignature()).thenReturn(signature);
+        when(pjp.getArgs()).thenReturn(new Object[0]);
+        when(pjp.proceed()).thenReturn("ok");
+        when(rateLimited.requests()).thenReturn(-1);
+        when(rateLimited.durationSeconds()).thenReturn(-1);
+        when(rateLimited.maxItems()).thenReturn("");
+        when(rateLimited.requestsString()).thenReturn("");
+        when(rateLimited.durationSecondsString()).thenReturn("");
+        when(rateLimited.chargeNotModified()).thenReturn(true);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void rateLimit_rejectsAfterBudgetAndRecoversAfterRefill() throws Throwable {
+        request.setRemoteAddr("10.0.0.1");
+
+        assertEquals("ok", aspect.rateLimit(pjp, rateLimited));
+        assertEquals("ok", aspect.rateLimit(pjp, rateLimited));
+        assertThrows(RateLimitException.class, () -> aspect.rateLimit(pjp, rateLimited));
+
+        now.addAndGet(5_000);
+        assertEquals("ok", aspect.rateLimit(pjp, rateLimited));
+    }
+
+    @Test
+    void rateLimit_evictsKeysThatWentIdle() throws Throwable {
+        for (int i = 0; i < 100; i++) {
+            request.setRemoteAddr("10.0.0." + i);
+            aspect.rateLimit(pjp, rateLimited);
+        }
+        assertEquals(100, aspect.trackedKeys());
+
+        now.addAndGet(30_000);
+        request.setRemoteAddr("10.0.1.1");
+        aspect.rateLimit(pjp, rateLimited);
+
+        assertEquals(1, aspect.trackedKeys());
+    }
+
+    @Test
+    void rateLimit_keepsKeysThatAreStillRefilling() throws Throwable {
+        request.setRemoteAddr("10.0.0.1");
+        aspect.rateLimit(pjp, rateLimited);
+
+        now.addAndGet(29_000);
+        request.setRemoteAddr("10.0.0.2");
+        aspect.rateLimit(pjp, rateLimited);
+        now.addAndGet(1_000);
+        request.setRemoteAddr("10.0.0.3");
+        aspect.rateLimit(pjp, rateLimited);
+
+        assertEquals(2, aspect.trackedKeys());
+    }
+
+    @Test
+    void rateLimit_bindsBudgetChargingStreamedPointsToTheSameBucket() throws Throwable {
+        env.setProperty("ratelimit.batch.costPerPoint", "0.5");
+        RateLimitAspect streaming = new RateLimitAspect(env, now::get);
+        when(rateLimited.streamed()).thenReturn(true);
+        request.setRemoteAddr("10.0.0.1");
+
+        streaming.rateLimit(pjp, rateLimited);
+        RateLimitBudget budget = (RateLimitBudget) request.getAttribute(RateLimitBudget.ATTRIBUTE);
+
+        for (int point = 0; point < 4; point++) {
+            assertTrue(budget.tryAcquirePoint());
+        }
+        assertFalse(budget.tryAcquirePoint());
+        assertThrows(RateLimitException.class, () -> streaming.rateLimit(pjp, rateLimited));
+    }
+
+    @Test
+    void rateLimit_bindsNoBudgetToUnstreamedCalls() throws Throwable {
+        request.setRemoteAddr("10.0.0.1");
+
+        aspect.rateLimit(pjp, rateLimited);
+
+        assertNull(request.getAttribute(RateLimitBudget.ATTRIBUTE));
+    }
+
+    @Test
+    void rateLimit_rejectsOversizedBatchBeforeCharging() throws Throwable {
+        env.setProperty("batch.max", "3");
+        when(rateLimited.perItem()).thenReturn(true);
+        when(rateLimited.bytesPerItem()).thenReturn(1);
+        when(rateLimited.maxItems()).thenReturn("${batch.max}");
+        request.setRemoteAddr("10.0.0.1");
+
+        when(pjp.getArgs()).thenReturn(new Object[] {List.of(1, 2, 3, 4)});
+        assertThrows(BatchTooLargeException.class, () -> aspect.rateLimit(pjp, rateLimited));
+        when(pjp.getArgs()).thenReturn(new Object[] {List.of(1, 2, 3)});
+        assertEquals("ok", aspect.rateLimit(pjp, rateLimited));
+        assertEquals("ok", aspect.rateLimit(pjp, rateLimited));
+        assertThrows(RateLimitException.class, () -> aspect.rateLimit(pjp, rateLimited));
+    }
+
+    @Test
+    void rateLimit_resolvesLimitsOncePerMethod() throws Throwable {
+        request.setRemoteAddr("10.0.0.1");
+        aspect.rateLimit(pjp, rateLimited);
+        env.setProperty("ratelimit.requests", "100");
+        aspect.rateLimit(pjp, rateLimited);
+
+        assertThrows(RateLimitException.class, () -> aspect.rateLimit(pjp, rateLimited));
+        verify(rateLimited, atMostOnce()).requests();
+        assertEquals(1, aspect.resolvedPolicies());
+    }
+
+    @Test
+    void afterSingletonsInstantiated_resolvesAnnotatedBeanMethods() {
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            context.registerBean(LimitedEndpoint.class);
+            context.refresh();
+            aspect.setApplicationContext(context);
+
+            aspect.afterSingletonsInstantiated();
+
+            assertEquals(1, aspect.resolvedPolicies());
+        }
+    }
+
+    @Test
+    void afterSingletonsInstantiated_failsOnInvalidLimit() {
+        RateLimitAspect misconfigured = new RateLimitAspect(
+                new MockEnvironment().withProperty("ratelimit.requests", "0"), now::get);
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            context.registerBean(LimitedEndpoint.class);
+            context.refresh();
+            misconfigured.setApplicationContext(context);
+
+            assertThrows(IllegalArgumentException.class, misconfigured::afterSingletonsInstantiated);
+        }
+    }
+
+    static class LimitedEndpoint {
+
+        @RateLimited
+        public String get() {
+            return "ok";
+        }
+
+        public String unlimited() {
+            return "ok";
+        }
+    }
+}
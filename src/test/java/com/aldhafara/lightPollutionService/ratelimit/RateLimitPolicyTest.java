@@ -0,0 +1,46 @@
+package com.aldhafara.lightPollutionService.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitPolicyTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final RateLimitPolicy policy = new RateLimitPolicy("test", 2, 1, false, 0, 0, false, true, 1.0, now::get);
+
+    @Test
+    void evictIdle_retiresBucketSoStaleReferenceCannotGrantExtraTokens() {
+        TokenBucket stale = policy.bucketFor("client");
+        now.addAndGet(1_000);
+
+        policy.evictIdle(now.get());
+
+        assertEquals(0, policy.trackedClients());
+        assertFalse(stale.tryAcquire(1));
+        assertTrue(policy.tryAcquire("client", 2));
+        assertFalse(policy.tryAcquire("client", 1));
+        assertEquals(1, policy.trackedClients());
+    }
+
+    @Test
+    void tryAcquire_movesOnFromBucketRetiredBeforeItWasRemoved() {
+        TokenBucket retired = policy.bucketFor("client");
+        now.addAndGet(1_000);
+        assertTrue(retired.retireIfIdle(now.get()));
+
+        assertTrue(policy.tryAcquire("client", 1));
+        TokenBucket replacement = policy.bucketFor("client");
+        assertNotSame(retired, replacement);
+
+        policy.evictIdle(now.get());
+        assertEquals(1, policy.trackedClients());
+        assertTrue(policy.tryAcquire("client", 1));
+        assertFalse(policy.tryAcquire("client", 1));
+    }
+}
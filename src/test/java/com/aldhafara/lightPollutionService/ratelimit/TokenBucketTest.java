@@ -0,0 +1,123 @@
+package com.aldhafara.lightPollutionService.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    void tryAcquire_grantsUpToCapacityThenRejects() {
+        TokenBucket bucket = new TokenBucket(3, 60_000, now::get);
+
+        assertTrue(bucket.tryAcquire(1));
+        assertTrue(bucket.tryAcquire(2));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void tryAcquire_refillsProportionallyToElapsedTime() {
+        TokenBucket bucket = new TokenBucket(60, 60_000, now::get);
+        assertTrue(bucket.tryAcquire(60));
+        assertFalse(bucket.tryAcquire(1));
+
+        now.addAndGet(999);
+        assertFalse(bucket.tryAcquire(1));
+
+        now.addAndGet(1);
+        assertTrue(bucket.tryAcquire(1));
+        assertFalse(bucket.tryAcquire(1));
+
+        now.addAndGet(10_000);
+        assertTrue(bucket.tryAcquire(10));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void tryAcquire_neverRefillsBeyondCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 1_000, now::get);
+
+        now.addAndGet(1_000_000);
+
+        assertTrue(bucket.tryAcquire(2));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void tryAcquire_rejectsCostLargerThanCapacity() {
+        TokenBucket bucket = new TokenBucket(5, 1_000, now::get);
+
+        assertFalse(bucket.tryAcquire(6));
+        assertTrue(bucket.tryAcquire(5));
+    }
+
+    @Test
+    void isIdle_onceFullyRefilled() {
+        TokenBucket bucket = new TokenBucket(5, 1_000, now::get);
+        bucket.tryAcquire(5);
+
+        now.addAndGet(999);
+        assertFalse(bucket.isIdle(now.get()));
+
+        now.addAndGet(1);
+        assertTrue(bucket.isIdle(now.get()));
+    }
+
+    @Test
+    void retireIfIdle_refusesLaterAcquiresOnlyOnceIdle() {
+        TokenBucket bucket = new TokenBucket(5, 1_000, now::get);
+        bucket.tryAcquire(5);
+
+        assertFalse(bucket.retireIfIdle(now.get()));
+        now.addAndGet(1_000);
+        assertTrue(bucket.retireIfIdle(now.get()));
+
+        assertTrue(bucket.isRetired());
+        assertFalse(bucket.isIdle(now.get()));
+        assertFalse(bucket.retireIfIdle(now.get()));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    void constructor_rejectsCapacityThatDoesNotFitPackedState() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(TokenBucket.MAX_CAPACITY + 1, 1_000, now::get));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1_000, now::get));
+    }
+
+    @Test
+    void tryAcquire_grantsExactlyCapacityUnderContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(1_000, 3_600_000, now::get);
+        AtomicInteger granted = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 500; i++) {
+                    if (bucket.tryAcquire(1)) {
+                        granted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1_000, granted.get());
+    }
+}
@@ -0,0 +1,113 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.DarkSpot;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.BlockExtremes;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.MaskedRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DarkestSpotSearchTest {
+
+    private static final ViirsGeoReference GEO = new ViirsGeoReference(10.0, 50.0, 0.01, 0.01, 200, 150);
+
+    @Test
+    void find_matchesFullScanWhilePruningBlocks() {
+        byte[] samples = new byte[200 * 150];
+        Random random = new Random(11);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (byte) (40 + i % 200 / 2 + random.nextInt(100));
+        }
+        samples[70 * 200 + 90] = 3;
+        samples[75 * 200 + 95] = 5;
+        CountingRaster raster = new CountingRaster(new ByteRasterStore(200, 150, samples));
+        BlockExtremes extremes = BlockExtremes.build(raster, null, 16);
+
+        raster.reads = 0;
+        List<DarkSpot> pruned = DarkestSpotSearch.find(49.3, 10.9, 40, 25, raster, null, extremes, GEO);
+        long prunedReads = raster.reads;
+        raster.reads = 0;
+        List<DarkSpot> scanned = DarkestSpotSearch.find(49.3, 10.9, 40, 25, raster, null, null, GEO);
+
+        assertEquals(25, pruned.size());
+        assertEquals(scanned, pruned);
+        assertTrue(prunedReads < raster.reads / 3, prunedReads + " of " + raster.reads + " pixels read");
+        assertEquals(3.0, pruned.get(0).relativeBrightness());
+        assertEquals(49.295, pruned.get(0).latitude(), 1e-9);
+        assertEquals(10.905, pruned.get(0).longitude(), 1e-9);
+        assertTrue(pruned.stream().allMatch(spot -> spot.distanceKm() <= 40));
+    }
+
+    @Test
+    void find_prefersNearestAmongEquallyDarkPixels() {
+        RasterStore raster = new ByteRasterStore(200, 150, new byte[200 * 150]);
+
+        List<DarkSpot> spots = DarkestSpotSearch.find(49.3, 10.9, 5, 3, raster, null,
+                BlockExtremes.build(raster, null, 16), GEO);
+
+        assertEquals(3, spots.size());
+        for (int i = 1; i < spots.size(); i++) {
+            assertTrue(spots.get(i - 1).distanceKm() <= spots.get(i).distanceKm());
+        }
+        assertEquals(0.665, spots.get(0).distanceKm(), 0.01);
+    }
+
+    @Test
+    void find_skipsMaskedPixels() {
+        byte[] samples = new byte[200 * 150];
+        Arrays.fill(samples, (byte) 100);
+        samples[70 * 200 + 90] = 20;
+        byte[] maskSource = new byte[200 * 150];
+        Arrays.fill(maskSource, (byte) 255);
+        maskSource[60 * 200 + 80] = 0;
+        BitMask mask = BitMask.below(new ByteRasterStore(200, 150, maskSource), 128,
+                IntStream.range(0, 200).toArray(), IntStream.range(0, 150).toArray());
+        RasterStore raster = new MaskedRasterStore(new ByteRasterStore(200, 150, samples), mask);
+
+        List<DarkSpot> spots = DarkestSpotSearch.find(49.3, 10.9, 40, 2, raster, mask,
+                BlockExtremes.build(raster, mask, 16), GEO);
+
+        assertEquals(20.0, spots.get(0).relativeBrightness());
+        assertEquals(100.0, spots.get(1).relativeBrightness());
+    }
+
+    private static final class CountingRaster implements RasterStore {
+        private final RasterStore delegate;
+        private long reads;
+
+        private CountingRaster(RasterStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int width() {
+            return delegate.width();
+        }
+
+        @Override
+        public int height() {
+            return delegate.height();
+        }
+
+        @Override
+        public double getValue(int x, int y) {
+            reads++;
+            return delegate.getValue(x, y);
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return delegate.sizeInBytes();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.exception.DatasetNotReadyException;
+import com.aldhafara.lightPollutionService.exception.TiffFileReadException;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DatasetAvailabilityTest {
+
+    private final RasterImageProvider imageProvider = mock(RasterImageProvider.class);
+    private final DatasetRegistry datasetRegistry = new DatasetRegistry(
+            Map.of("2023/average", "classpath:/a.tiff", "2022/average", "classpath:/b.tiff"), 2023);
+    private final ViirsDataset dataset = new ViirsDataset(null, new ByteRasterStore(1, 1, new byte[1]), null, null, null, null, false);
+    private DatasetAvailability availability;
+
+    @AfterEach
+    void tearDown() {
+        availability.stop();
+    }
+
+    @Test
+    void synchronousMode_loadsDefaultAtStartupAndWaitsForOtherYears() {
+        availability = new DatasetAvailability(imageProvider, datasetRegistry, false, false, 5);
+        when(imageProvider.getDataset("2022/average")).thenReturn(dataset);
+        when(imageProvider.getRaster("2023/average")).thenReturn(dataset.raster());
+
+        availability.start();
+
+        verify(imageProvider).getOrLoadReference("2023/average");
+        assertTrue(availability.isReady());
+        assertSame(dataset, availability.require("2022/average"));
+        assertThrows(DatasetNotFoundException.class, () -> availability.require("2023/average"));
+    }
+
+    @Test
+    void asynchronousMode_refusesLookupsUntilDefaultIsLoaded() throws Exception {
+        availability = new DatasetAvailability(imageProvider, datasetRegistry, true, true, 7);
+        CountDownLatch release = new CountDownLatch(1);
+        when(imageProvider.getDataset("2023/average")).thenAnswer(invocation -> {
+            release.await();
+            return dataset;
+        });
+
+        availability.start();
+
+        assertFalse(availability.isReady());
+        DatasetNotReadyException exception = assertThrows(DatasetNotReadyException.class,
+                () -> availability.require("2023/average"));
+        assertEquals(7, exception.getRetryAfterSeconds());
+
+        when(imageProvider.getLoadedDataset("2023/average")).thenReturn(dataset);
+        when(imageProvider.getRaster("2023/average")).thenReturn(dataset.raster());
+        release.countDown();
+        awaitIdle("2023/average");
+        assertTrue(availability.isReady());
+        assertSame(dataset, availability.require("2023/average"));
+        verify(imageProvider, times(1)).getDataset("2023/average");
+    }
+
+    @Test
+    void asynchronousMode_retriesFailedLoadOnNextRequest() throws Exception {
+        availability = new DatasetAvailability(imageProvider, datasetRegistry, true, false, 5);
+        when(imageProvider.getDataset("2022/average"))
+                .thenThrow(new TiffFileReadException("unreachable"))
+                .thenReturn(dataset);
+
+        assertThrows(DatasetNotReadyException.class, () -> availability.require("2022/average"));
+        awaitIdle("2022/average");
+        assertThrows(DatasetNotReadyException.class, () -> availability.require("2022/average"));
+        awaitIdle("2022/average");
+        verify(imageProvider, times(2)).getDataset("2022/average");
+        assertFalse(availability.isReady());
+    }
+
+    @Test
+    void readiness_followsWhetherDefaultIsInMemory() throws Exception {
+        availability = new DatasetAvailability(imageProvider, datasetRegistry, false, false, 5);
+        when(imageProvider.getRaster("2023/average")).thenReturn(dataset.raster(), null, dataset.raster());
+
+        availability.start();
+
+        assertTrue(availability.isReady());
+        assertFalse(availability.isReady());
+        awaitIdle("2023/average");
+        verify(imageProvider).getDataset("2023/average");
+        assertTrue(availability.isReady());
+    }
+
+    private void awaitIdle(String key) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (availability.isLoading(key) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(availability.isLoading(key));
+    }
+}
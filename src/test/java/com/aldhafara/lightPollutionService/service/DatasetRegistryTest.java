@@ -0,0 +1,88 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.raster.StorageMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DatasetRegistryTest {
+
+    @Test
+    void bindsDatasetsByYearAndProduct() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("viirs.datasets.2022.average", "classpath:/2022.tiff")
+                .withProperty("viirs.datasets.2023.average", "classpath:/2023.tiff")
+                .withProperty("viirs.datasets.2023.mask", "classpath:/2023-mask.tiff")
+                .withProperty("viirs.dataset.defaultYear", "2022");
+
+        DatasetRegistry registry = new DatasetRegistry(env);
+
+        assertEquals(Set.of("2022/average", "2023/average", "2023/mask"), registry.keys());
+        assertEquals("classpath:/2023-mask.tiff", registry.url("2023/mask"));
+        assertEquals("2022/average", registry.defaultKey());
+        assertEquals("2022/average", registry.key(null, DatasetRegistry.DEFAULT_PRODUCT));
+        assertEquals("2023/average", registry.key(2023, DatasetRegistry.DEFAULT_PRODUCT));
+    }
+
+    @Test
+    void registersLegacyAverageUrlForDefaultYear() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("viirs.average.url", "classpath:/legacy.tiff");
+
+        DatasetRegistry registry = new DatasetRegistry(env);
+
+        assertEquals(Set.of("2023/average"), registry.keys());
+        assertEquals("classpath:/legacy.tiff", registry.url("2023/average"));
+    }
+
+    @Test
+    void prefersExplicitDatasetOverLegacyUrl() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("viirs.average.url", "classpath:/legacy.tiff")
+                .withProperty("viirs.datasets.2023.average", "classpath:/2023.tiff");
+
+        assertEquals("classpath:/2023.tiff", new DatasetRegistry(env).url("2023/average"));
+    }
+
+    @Test
+    void rejectsUnconfiguredYearOrProduct() {
+        DatasetRegistry registry = new DatasetRegistry(new MockEnvironment()
+                .withProperty("viirs.datasets.2023.average", "classpath:/2023.tiff"));
+
+        assertThrows(DatasetNotFoundException.class, () -> registry.key(1999, DatasetRegistry.DEFAULT_PRODUCT));
+        assertThrows(DatasetNotFoundException.class, () -> registry.key(2023, "mask"));
+        assertNull(registry.url("1999/average"));
+    }
+
+    @Test
+    void maskKeyPointsAtMaskOfSameYear() {
+        DatasetRegistry registry = new DatasetRegistry(Map.of(
+                "2023/average", "classpath:/2023.tiff",
+                "2023/mask", "classpath:/2023-mask.tiff",
+                "2022/average", "classpath:/2022.tiff"), 2023);
+
+        assertEquals("2023/mask", registry.maskKey("2023/average"));
+        assertNull(registry.maskKey("2023/mask"));
+        assertNull(registry.maskKey("2022/average"));
+    }
+
+    @Test
+    void bindsStorageModePerDatasetWithDefault() {
+        DatasetRegistry registry = new DatasetRegistry(new MockEnvironment()
+                .withProperty("viirs.datasets.2022.average", "classpath:/2022.tiff")
+                .withProperty("viirs.datasets.2023.average", "classpath:/2023.tiff")
+                .withProperty("viirs.storage.default", "float32")
+                .withProperty("viirs.storage.2023.average", "uint16-log"));
+
+        assertEquals(StorageMode.UINT16_LOG, registry.storageMode("2023/average"));
+        assertEquals(StorageMode.FLOAT32, registry.storageMode("2022/average"));
+        assertEquals(StorageMode.NATIVE, new DatasetRegistry(Map.of(), 2023).storageMode("2023/average"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.TiffFileReadException;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DatasetReloaderTest {
+
+    private final ViirsTiffFileLoader loader = mock(ViirsTiffFileLoader.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final ViirsDataset dataset = new ViirsDataset(null, new ByteRasterStore(1, 1, new byte[1]), null, null, null, null, false);
+    private DatasetReloader reloader;
+
+    @BeforeEach
+    void setUp() {
+        reloader = new DatasetReloader(loader, eventPublisher, 0, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reloader.stop();
+    }
+
+    @Test
+    void reload_swapsOffThreadAndPublishesEvent() throws Exception {
+        when(loader.reload("2023/average")).thenReturn(dataset);
+
+        assertSame(dataset, reloader.reload("2023/average").get());
+
+        verify(eventPublisher).publishEvent(new DatasetReloadedEvent("2023/average", dataset));
+    }
+
+    @Test
+    void reload_joinsQueuedReloadOfSameKey() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(loader.reload("2022/average")).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return dataset;
+        });
+        when(loader.reload("2023/average")).thenReturn(dataset);
+
+        CompletableFuture<ViirsDataset> blocking = reloader.reload("2022/average");
+        running.await();
+        CompletableFuture<ViirsDataset> first = reloader.reload("2023/average");
+        CompletableFuture<ViirsDataset> second = reloader.reload("2023/average");
+        release.countDown();
+
+        assertSame(first, second);
+        assertSame(dataset, blocking.get());
+        assertSame(dataset, first.get());
+        verify(loader, times(1)).reload("2023/average");
+    }
+
+    @Test
+    void reload_failureCompletesExceptionallyWithoutEvent() {
+        when(loader.reload("2023/average")).thenThrow(new TiffFileReadException("broken"));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> reloader.reload("2023/average").get());
+
+        assertInstanceOf(TiffFileReadException.class, exception.getCause());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void reloadModified_reloadsOnlyChangedDatasets() {
+        when(loader.modifiedKeys()).thenReturn(Set.of("2022/average"));
+        when(loader.reload("2022/average")).thenReturn(dataset);
+
+        assertEquals(Set.of("2022/average"), reloader.reloadModified());
+
+        verify(loader, timeout(1000)).reload("2022/average");
+        verify(loader, never()).reload("2023/average");
+    }
+}
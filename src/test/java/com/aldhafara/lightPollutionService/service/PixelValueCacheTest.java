@@ -0,0 +1,111 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.model.CacheStats;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.FloatRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PixelValueCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final RasterStore raster = costly(new ByteRasterStore(64, 64, new byte[64 * 64]));
+
+    @Test
+    void view_readsEachPixelOnceUntilExpiry() {
+        PixelValueCache cache = new PixelValueCache(100, 10, now::get);
+        RasterStore view = cache.view(raster);
+
+        view.getValue(3, 4);
+        view.getValue(3, 4);
+        now.addAndGet(9_999);
+        view.getValue(3, 4);
+        verify(raster, times(1)).getValue(3, 4);
+
+        now.addAndGet(1);
+        view.getValue(3, 4);
+        verify(raster, times(2)).getValue(3, 4);
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(0.5, stats.hitRatio());
+    }
+
+    @Test
+    void view_boundsEntriesAndCountsEvictions() {
+        PixelValueCache cache = new PixelValueCache(32, 3600, now::get);
+        RasterStore view = cache.view(raster);
+
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                view.getValue(x, y);
+            }
+        }
+
+        CacheStats stats = cache.stats();
+        assertTrue(stats.size() <= 32, "size " + stats.size());
+        assertEquals(64 * 64 - stats.size(), stats.evictions());
+    }
+
+    @Test
+    void view_doesNotServeValuesOfAnotherRaster() {
+        PixelValueCache cache = new PixelValueCache(100, 3600, now::get);
+        RasterStore other = costly(new ByteRasterStore(1, 1, new byte[]{9}));
+
+        assertEquals(0.0, cache.view(raster).getValue(0, 0));
+        assertEquals(9.0, cache.view(other).getValue(0, 0));
+    }
+
+    @Test
+    void onDatasetEvicted_dropsOnlyEntriesOfEvictedRaster() {
+        PixelValueCache cache = new PixelValueCache(100, 3600, now::get);
+        RasterStore other = costly(new ByteRasterStore(1, 1, new byte[]{9}));
+        cache.view(raster).getValue(0, 0);
+        cache.view(raster).getValue(1, 0);
+        cache.view(other).getValue(0, 0);
+
+        cache.onDatasetEvicted(new DatasetEvictedEvent("2022/average",
+                new ViirsDataset(null, raster, null, null, null, null, false)));
+
+        assertEquals(1, cache.stats().size());
+        cache.view(other).getValue(0, 0);
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void view_returnsRasterItselfWhenDisabled() {
+        assertSame(raster, new PixelValueCache(0, 3600, now::get).view(raster));
+    }
+
+    @Test
+    void view_returnsInMemoryRastersItself() {
+        PixelValueCache cache = new PixelValueCache(100, 3600, now::get);
+        RasterStore bytes = new ByteRasterStore(1, 1, new byte[]{9});
+        RasterStore floats = new FloatRasterStore(1, 1, new float[]{2.5f});
+
+        assertSame(bytes, cache.view(bytes));
+        assertSame(floats, cache.view(floats));
+        assertEquals(9.0, cache.view(bytes).getValue(0, 0));
+        assertEquals(0, cache.stats().misses());
+    }
+
+    /**
+     * Spy reporting costly reads, as a mapped or block-decoded raster would.
+     */
+    private static RasterStore costly(RasterStore raster) {
+        RasterStore spy = spy(raster);
+        doReturn(true).when(spy).costlyReads();
+        return spy;
+    }
+}
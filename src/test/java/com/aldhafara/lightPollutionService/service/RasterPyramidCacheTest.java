@@ -0,0 +1,55 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RasterPyramidCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ByteRasterStore dark = new ByteRasterStore(4, 4, new byte[16]);
+    private final ByteRasterStore bright = new ByteRasterStore(4, 4, filled(16, (byte) 100));
+
+    @Test
+    void getOrBuild_reusesPersistedPyramidForSameFingerprint() {
+        new RasterPyramidCache(2, Long.MAX_VALUE, tempDir.toString()).getOrBuild("2023/average", dark, 7L);
+        assertTrue(Files.isRegularFile(tempDir.resolve("2023_average.pyramid")));
+
+        RasterPyramid restarted = new RasterPyramidCache(2, Long.MAX_VALUE, tempDir.toString())
+                .getOrBuild("2023/average", bright, 7L);
+
+        assertEquals(0.0, restarted.level(1).mean().getValue(0, 0));
+    }
+
+    @Test
+    void getOrBuild_rebuildsWhenFingerprintChanges() {
+        new RasterPyramidCache(2, Long.MAX_VALUE, tempDir.toString()).getOrBuild("2023/average", dark, 7L);
+
+        RasterPyramid rebuilt = new RasterPyramidCache(2, Long.MAX_VALUE, tempDir.toString())
+                .getOrBuild("2023/average", bright, 8L);
+
+        assertEquals(100.0, rebuilt.level(1).mean().getValue(0, 0));
+    }
+
+    @Test
+    void getOrBuild_returnsNullWhenDisabled() {
+        assertNull(new RasterPyramidCache(0, Long.MAX_VALUE, tempDir.toString()).getOrBuild("2023/average", dark, 7L));
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
@@ -0,0 +1,158 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.InvalidSamplingParameterException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.DarknessProfile;
+import com.aldhafara.lightPollutionService.model.ProfileSample;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteProfilerTest {
+
+    private static final ViirsGeoReference GEO = new ViirsGeoReference(0.0, 10.0, 0.01, 0.01, 100, 100);
+    private static final double KM_PER_PIXEL = 0.01 * RasterSampling.KM_PER_DEGREE;
+
+    @Test
+    void profile_samplesAtFixedSpacingAndAddsLastPoint() {
+        RasterStore raster = columns();
+        List<Coordinates> route = List.of(new Coordinates(9.5, 0.105), new Coordinates(9.5, 0.462));
+
+        DarknessProfile profile = RouteProfiler.profile(route, 5 * KM_PER_PIXEL * Math.cos(Math.toRadians(9.5)),
+                100, raster, null, GEO);
+
+        List<ProfileSample> samples = profile.samples();
+        assertEquals(9, samples.size());
+        assertEquals(10.0, samples.get(0).relativeBrightness());
+        assertEquals(15.0, samples.get(1).relativeBrightness());
+        assertEquals(45.0, samples.get(7).relativeBrightness());
+        assertEquals(46.0, samples.get(8).relativeBrightness());
+        assertEquals(profile.lengthKm(), samples.get(8).distanceKm());
+        assertEquals(0.462, samples.get(8).longitude(), 1e-12);
+    }
+
+    @Test
+    void profile_weightsMeanByLengthInEveryCrossedCell() {
+        RasterStore raster = columns();
+        List<Coordinates> route = List.of(new Coordinates(9.5, 0.105), new Coordinates(9.5, 0.125));
+
+        DarknessProfile profile = RouteProfiler.profile(route, 100, 10, raster, null, GEO);
+
+        assertEquals(10.0, profile.min());
+        assertEquals(12.0, profile.max());
+        assertEquals((10 * 0.5 + 11 * 1 + 12 * 0.5) / 2, profile.mean(), 1e-9);
+        assertEquals(2, profile.samples().size());
+    }
+
+    @Test
+    void profile_visitsEveryCellOfADiagonalOnce() {
+        RecordingRaster raster = new RecordingRaster(columns());
+        List<Coordinates> route = List.of(new Coordinates(9.995, 0.005), new Coordinates(9.515, 0.895));
+
+        RouteProfiler.profile(route, 1000, 10, raster, null, GEO);
+
+        Set<Integer> visited = new HashSet<>(raster.cells);
+        assertEquals(raster.cells.size() - 2, visited.size());
+        assertEquals(89 + 48 + 1, visited.size());
+        for (int cell : visited) {
+            int x = cell % 100;
+            int y = cell / 100;
+            double lineY = 0.5 + x * 48.0 / 89.0;
+            assertTrue(Math.abs(y + 0.5 - lineY) < 1.5, "cell " + x + "," + y + " is off the line");
+        }
+    }
+
+    @Test
+    void profile_skipsMaskedCellsAndPartsOutsideTheRaster() {
+        byte[] maskSource = new byte[100 * 100];
+        Arrays.fill(maskSource, (byte) 255);
+        maskSource[50 * 100 + 11] = 0;
+        BitMask mask = BitMask.below(new ByteRasterStore(100, 100, maskSource), 128,
+                IntStream.range(0, 100).toArray(), IntStream.range(0, 100).toArray());
+        List<Coordinates> route = List.of(new Coordinates(9.495, -0.2), new Coordinates(9.495, 0.115));
+
+        DarknessProfile profile = RouteProfiler.profile(route, 100, 10, columns(), mask, GEO);
+
+        assertEquals(0.0, profile.min());
+        assertEquals(10.0, profile.max());
+        assertEquals(5.0, profile.mean(), 1e-9);
+        assertNull(profile.samples().get(0).relativeBrightness());
+        assertFalse(profile.samples().get(0).masked());
+        assertTrue(profile.samples().get(1).masked());
+    }
+
+    @Test
+    void profile_returnsNoStatisticsOutsideTheRaster() {
+        List<Coordinates> route = List.of(new Coordinates(20, 20), new Coordinates(21, 21));
+
+        DarknessProfile profile = RouteProfiler.profile(route, 50, 10, columns(), null, GEO);
+
+        assertNull(profile.min());
+        assertNull(profile.mean());
+        assertTrue(profile.samples().stream().allMatch(sample -> sample.relativeBrightness() == null));
+    }
+
+    @Test
+    void profile_rejectsTooManySamples() {
+        List<Coordinates> route = List.of(new Coordinates(9.5, 0.0), new Coordinates(9.5, 0.9));
+
+        assertThrows(InvalidSamplingParameterException.class,
+                () -> RouteProfiler.profile(route, 0.1, 100, columns(), null, GEO));
+    }
+
+    /**
+     * Each pixel holds its column index.
+     */
+    private static RasterStore columns() {
+        byte[] samples = new byte[100 * 100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (byte) (i % 100);
+        }
+        return new ByteRasterStore(100, 100, samples);
+    }
+
+    private static final class RecordingRaster implements RasterStore {
+        private final RasterStore delegate;
+        private final List<Integer> cells = new ArrayList<>();
+
+        private RecordingRaster(RasterStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int width() {
+            return delegate.width();
+        }
+
+        @Override
+        public int height() {
+            return delegate.height();
+        }
+
+        @Override
+        public double getValue(int x, int y) {
+            cells.add(y * width() + x);
+            return delegate.getValue(x, y);
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return delegate.sizeInBytes();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.aldhafara.lightPollutionService.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SkyBrightnessTest {
+
+    @Test
+    void sqm_isNaturalSkyWithoutRadiance() {
+        assertEquals(22.0, SkyBrightness.sqm(0), 0.01);
+        assertEquals(SkyBrightness.sqm(0), SkyBrightness.sqm(-0.3));
+        assertEquals(1, SkyBrightness.bortle(0));
+    }
+
+    @Test
+    void sqm_tableMatchesModelAcrossRadianceRange() {
+        for (double radiance = 0.001; radiance < 200_000; radiance *= 1.37) {
+            assertEquals(SkyBrightness.exactSqm(radiance), SkyBrightness.sqm(radiance), 1e-4, "radiance " + radiance);
+        }
+    }
+
+    @Test
+    void sqmFallsAndBortleRisesWithRadiance() {
+        double previousSqm = Double.POSITIVE_INFINITY;
+        int previousBortle = 0;
+        for (double radiance = 0; radiance < 1000; radiance += 0.05) {
+            double sqm = SkyBrightness.sqm(radiance);
+            int bortle = SkyBrightness.bortle(radiance);
+            assertTrue(sqm <= previousSqm);
+            assertTrue(bortle >= previousBortle);
+            previousSqm = sqm;
+            previousBortle = bortle;
+        }
+        assertEquals(9, previousBortle);
+    }
+
+    @Test
+    void bortle_followsSqmRanges() {
+        assertEquals(4, SkyBrightness.bortle(radianceFor(21.0)));
+        assertEquals(5, SkyBrightness.bortle(radianceFor(20.0)));
+        assertEquals(8, SkyBrightness.bortle(radianceFor(18.0)));
+        assertEquals(9, SkyBrightness.bortle(radianceFor(17.0)));
+    }
+
+    private static double radianceFor(double sqm) {
+        double luminanceMcd = 108_000 * 1000 * Math.pow(10, -0.4 * sqm);
+        return (luminanceMcd - SkyBrightness.NATURAL_MCD) / SkyBrightness.ARTIFICIAL_MCD_PER_RADIANCE;
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
 
 class StatusServiceTest {
 
@@ -12,7 +13,8 @@ class StatusServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new StatusService(2, 60);
+        service = new StatusService(2, 60, new PixelValueCache(10, 60), mock(DatasetAvailability.class),
+                mock(ViirsTiffFileLoader.class));
     }
 
     @Test
@@ -1,71 +1,571 @@
 package com.aldhafara.lightPollutionService.service;
 
+import com.aldhafara.lightPollutionService.exception.ResourceNotFoundException;
+import com.aldhafara.lightPollutionService.exception.TiffFileReadException;
+import com.aldhafara.lightPollutionService.model.DecodeStats;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.MaskedRasterStore;
+import com.aldhafara.lightPollutionService.raster.QuantizedRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.raster.StorageMode;
+import com.aldhafara.lightPollutionService.raster.SummedAreaTable;
+import com.aldhafara.lightPollutionService.raster.TiffBlockRasterStore;
 import com.aldhafara.lightPollutionService.utils.FileStreamProvider;
+import com.aldhafara.lightPollutionService.utils.TiffFileStreamProvider;
 import org.apache.commons.imaging.Imaging;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.MockedStatic;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class ViirsTiffFileLoaderTest {
 
     FileStreamProvider fileStreamProvider = mock(FileStreamProvider.class);
+    @TempDir
+    Path cacheDir;
+    private URL averageResourceUrl;
     private ViirsTiffFileLoader loader;
 
     @BeforeEach
     void setUp() throws URISyntaxException {
-        URL averageResourceUrl = getClass().getClassLoader().getResource("tiff/mock_average.tiff");
+        averageResourceUrl = getClass().getClassLoader().getResource("tiff/mock_average.tiff");
 
         loader = new ViirsTiffFileLoader(
-                averageResourceUrl.toURI().toString(),
-                fileStreamProvider
+                registry(averageResourceUrl.toURI().toString()),
+                false,
+                256,
+                20_000_000L,
+                fileStreamProvider,
+                new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
         );
     }
 
     @Test
-    void testGetOrLoadReference_CachesImage_ForAverageKey() {
-        try (MockedStatic<Imaging> imaging = mockStatic(Imaging.class)) {
-            BufferedImage mockedImage = mock(BufferedImage.class);
-            imaging.when(() -> Imaging.getBufferedImage(any(InputStream.class))).thenReturn(mockedImage);
-
-            when(fileStreamProvider.getFileInputStream(anyString())).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+    void testGetOrLoadReference_ReadsFileOnceForRasterAndGeoReference() throws Exception {
+        byte[] tiff;
+        try (InputStream in = averageResourceUrl.openStream()) {
+            tiff = in.readAllBytes();
+        }
+        when(fileStreamProvider.getFileInputStream(anyString())).thenAnswer(invocation -> new ByteArrayInputStream(tiff));
 
-            loader.getOrLoadReference("2023/average");
-            BufferedImage result = loader.getImage("2023/average");
+        RasterImageProvider imageProvider = loader;
+        GeoReferenceProvider referenceProvider = loader;
+        imageProvider.getOrLoadReference("2023/average");
+        referenceProvider.getOrLoadReference("2023/average");
 
-            assertNotNull(result);
-            imaging.verify(() -> Imaging.getBufferedImage(any(InputStream.class)), times(1));
-        }
+        RasterStore raster = imageProvider.getRaster("2023/average");
+        ViirsGeoReference geoReference = referenceProvider.getReference("2023/average");
+        assertInstanceOf(ByteRasterStore.class, raster);
+        assertNotNull(geoReference);
+        assertEquals(raster.width(), geoReference.width());
+        assertEquals(raster.height(), geoReference.height());
+        assertEquals(6.899457547015222, geoReference.originX(), 1e-12);
+        assertEquals(53.993959731019835, geoReference.originY(), 1e-12);
+        SummedAreaTable summedAreaTable = imageProvider.getSummedAreaTable("2023/average");
+        assertNotNull(summedAreaTable);
+        assertEquals(raster.getValue(700, 400), summedAreaTable.sum(700, 400, 701, 401));
+        assertEquals(8, imageProvider.getPyramid("2023/average").maxLevel());
+        verify(fileStreamProvider, times(1)).getFileInputStream(anyString());
     }
 
     @Test
     void testGetOrLoadReference_IgnoresUnknownKey() {
         loader.getOrLoadReference("2023/unknown");
-        assertNull(loader.getImage("2023/unknown"));
+        assertNull(loader.getRaster("2023/unknown"));
+        assertNull(loader.getReference("2023/unknown"));
     }
 
     @Test
     void testGetOrLoadReference_HandlesIOException() {
         ViirsTiffFileLoader failingLoader = new ViirsTiffFileLoader(
-                "file:///nonexistent/average.tiff", fileStreamProvider
+                registry("file:///nonexistent/average.tiff"), false, 256, 20_000_000L, fileStreamProvider, new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
         );
         assertThrows(RuntimeException.class, () -> {
             failingLoader.getOrLoadReference("2023/average");
         });
     }
+
+    @Test
+    void testGetOrLoadReference_ThrowsTiffFileReadExceptionOnResourceNotFoundException() {
+        when(fileStreamProvider.getFileInputStream(anyString())).thenThrow(new ResourceNotFoundException("File error"));
+
+        TiffFileReadException exception = assertThrows(TiffFileReadException.class, () ->
+                loader.getOrLoadReference("2023/average"));
+
+        assertInstanceOf(ResourceNotFoundException.class, exception.getCause());
+    }
+
+    @Test
+    void testGetOrLoadReference_KeepsRedChannelOfMockTiff() throws Exception {
+        ViirsTiffFileLoader realLoader = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        realLoader.getOrLoadReference("2023/average");
+        RasterStore raster = realLoader.getRaster("2023/average");
+        DecodeStats decodeStats = realLoader.decodeStats();
+        assertEquals(1, decodeStats.decodes());
+        assertEquals(1355L * raster.height(), decodeStats.decodedBytes());
+        assertTrue(decodeStats.megabytesPerSecond() > 0);
+
+        BufferedImage expected = Imaging.getBufferedImage(averageResourceUrl.openStream());
+        assertEquals(expected.getWidth(), raster.width());
+        assertEquals(expected.getHeight(), raster.height());
+        for (int y = 0; y < expected.getHeight(); y += 7) {
+            for (int x = 0; x < expected.getWidth(); x += 7) {
+                assertEquals((expected.getRGB(x, y) >> 16) & 0xff, raster.getValue(x, y));
+            }
+        }
+    }
+
+    @Test
+    void testGetOrLoadReference_MapsLocalFileInMappedMode() throws Exception {
+        when(fileStreamProvider.getLocalFile(anyString())).thenReturn(Path.of(averageResourceUrl.toURI()));
+        ViirsTiffFileLoader mappedLoader = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), true, 4, 20_000_000L, fileStreamProvider, new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        mappedLoader.getOrLoadReference("2023/average");
+        RasterStore raster = mappedLoader.getRaster("2023/average");
+
+        assertInstanceOf(TiffBlockRasterStore.class, raster);
+        assertEquals(1355, mappedLoader.getReference("2023/average").width());
+        BufferedImage expected = Imaging.getBufferedImage(averageResourceUrl.openStream());
+        assertEquals((expected.getRGB(700, 400) >> 16) & 0xff, raster.getValue(700, 400));
+        assertNull(mappedLoader.getSummedAreaTable("2023/average"));
+        verify(fileStreamProvider, never()).getFileInputStream(anyString());
+    }
+
+    @Test
+    void testGetOrLoadReference_DecodesNoBlocksOfMappedRaster() throws Exception {
+        when(fileStreamProvider.getLocalFile(anyString())).thenReturn(Path.of(averageResourceUrl.toURI()));
+        ViirsTiffFileLoader mappedLoader = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), true, 4, 20_000_000L, fileStreamProvider, new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        ViirsDataset dataset = mappedLoader.getDataset("2023/average");
+
+        assertEquals(0, assertInstanceOf(TiffBlockRasterStore.class, dataset.raster()).decodedBlocks());
+        assertNull(dataset.pyramid());
+        assertNull(dataset.extremes());
+    }
+
+    @Test
+    void testGetOrLoadReference_MappedRasterReusesPersistedPyramid() throws Exception {
+        String url = averageResourceUrl.toURI().toString();
+        when(fileStreamProvider.getLocalFile(anyString())).thenReturn(Path.of(averageResourceUrl.toURI()));
+        RasterPyramidCache pyramidCache = new RasterPyramidCache(8, 20_000_000L, cacheDir.toString());
+        new ViirsTiffFileLoader(registry(url), false, 4, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), pyramidCache, new RasterFileCache(""), 2048, 128, 0, 0)
+                .getDataset("2023/average");
+        ViirsTiffFileLoader mappedLoader = new ViirsTiffFileLoader(
+                registry(url), true, 4, 20_000_000L, fileStreamProvider, new ViirsGeoReferenceExtractor(), pyramidCache, new RasterFileCache(""), 2048, 128, 0, 0
+        );
+
+        ViirsDataset dataset = mappedLoader.getDataset("2023/average");
+
+        assertNotNull(dataset.pyramid());
+        assertEquals(0, ((TiffBlockRasterStore) dataset.raster()).decodedBlocks());
+    }
+
+    @Test
+    void testGetOrLoadReference_StoresBandInConfiguredMode() throws Exception {
+        DatasetRegistry registry = new DatasetRegistry(Map.of("2023/average", averageResourceUrl.toURI().toString()),
+                2023, Map.of("2023/average", StorageMode.UINT16_LOG), StorageMode.NATIVE);
+        ViirsTiffFileLoader quantizedLoader = new ViirsTiffFileLoader(
+                registry, false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        ViirsDataset dataset = quantizedLoader.getDataset("2023/average");
+
+        assertInstanceOf(QuantizedRasterStore.class, dataset.raster());
+        BufferedImage expected = Imaging.getBufferedImage(averageResourceUrl.openStream());
+        for (int y = 0; y < expected.getHeight(); y += 7) {
+            for (int x = 0; x < expected.getWidth(); x += 7) {
+                double value = (expected.getRGB(x, y) >> 16) & 0xff;
+                assertEquals(value, dataset.raster().getValue(x, y), (1 + value) * 1e-4);
+            }
+        }
+        assertEquals(dataset.raster().getValue(700, 400), dataset.summedAreaTable().sum(700, 400, 701, 401), 1e-6);
+    }
+
+    @Test
+    void testGetOrLoadReference_SkipsSummedAreaTableAboveLimit() throws Exception {
+        ViirsTiffFileLoader smallLimitLoader = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), false, 256, 1_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        smallLimitLoader.getOrLoadReference("2023/average");
+
+        assertNotNull(smallLimitLoader.getRaster("2023/average"));
+        assertNull(smallLimitLoader.getSummedAreaTable("2023/average"));
+    }
+
+    @Test
+    void testGetDataset_EvictsLeastRecentlyUsedBeyondMemoryBudget() throws Exception {
+        String url = averageResourceUrl.toURI().toString();
+        DatasetRegistry registry = new DatasetRegistry(
+                Map.of("2021/average", url, "2022/average", url, "2023/average", url), 2023);
+        ViirsTiffFileLoader budgetLoader = new ViirsTiffFileLoader(
+                registry, false, 256, 0L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(0, 20_000_000L, ""), new RasterFileCache(""), 3, 128, 64, 0
+        );
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+        budgetLoader.setApplicationEventPublisher(eventPublisher);
+
+        // Each raster takes ~1.1 MB, so a 3 MB budget holds two of them.
+        budgetLoader.getDataset("2021/average");
+        ViirsDataset evicted = budgetLoader.getDataset("2022/average");
+        budgetLoader.getDataset("2021/average");
+        budgetLoader.getDataset("2023/average");
+
+        assertEquals(Set.of("2021/average", "2023/average"), budgetLoader.residentKeys());
+        verify(eventPublisher).publishEvent(new DatasetEvictedEvent("2022/average", evicted));
+        assertNull(budgetLoader.getRaster("2022/average"));
+        assertNotNull(budgetLoader.getDataset("2022/average"));
+        assertEquals(Set.of("2022/average", "2023/average"), budgetLoader.residentKeys());
+    }
+
+    @Test
+    void testGetDataset_KeepsSingleDatasetLargerThanBudget() throws Exception {
+        ViirsTiffFileLoader tinyBudgetLoader = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 0, 128, 64, 0
+        );
+
+        assertNotNull(tinyBudgetLoader.getDataset("2023/average"));
+        assertEquals(Set.of("2023/average"), tinyBudgetLoader.residentKeys());
+    }
+
+    @Test
+    void testReload_SwapsSnapshotWhileReadersKeepPreviousOne() throws Exception {
+        ViirsTiffFileLoader realLoader = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+        ViirsDataset before = realLoader.getDataset("2023/average");
+
+        ViirsDataset after = realLoader.reload("2023/average");
+
+        assertNotSame(before, after);
+        assertSame(after, realLoader.getDataset("2023/average"));
+        assertSame(after.raster(), realLoader.getRaster("2023/average"));
+        assertEquals(before.raster().getValue(700, 400), after.raster().getValue(700, 400));
+        assertNull(realLoader.reload("1999/average"));
+    }
+
+    @Test
+    void testReload_KeepsPreviousSnapshotWhenReadFails() throws Exception {
+        byte[] tiff;
+        try (InputStream in = averageResourceUrl.openStream()) {
+            tiff = in.readAllBytes();
+        }
+        when(fileStreamProvider.getFileInputStream(anyString()))
+                .thenAnswer(invocation -> new ByteArrayInputStream(tiff))
+                .thenThrow(new ResourceNotFoundException("gone"));
+        ViirsDataset before = loader.getDataset("2023/average");
+
+        assertThrows(TiffFileReadException.class, () -> loader.reload("2023/average"));
+        assertSame(before, loader.getDataset("2023/average"));
+    }
+
+    @Test
+    void testReload_WaitsForInFlightFirstLoadInsteadOfBeingOverwrittenByIt() throws Exception {
+        byte[] tiff;
+        try (InputStream in = averageResourceUrl.openStream()) {
+            tiff = in.readAllBytes();
+        }
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fileStreamProvider.getFileInputStream(anyString()))
+                .thenAnswer(invocation -> {
+                    reading.countDown();
+                    release.await();
+                    return new ByteArrayInputStream(tiff);
+                })
+                .thenAnswer(invocation -> new ByteArrayInputStream(tiff));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ViirsDataset> first = executor.submit(() -> loader.getDataset("2023/average"));
+            reading.await();
+            Future<ViirsDataset> reloaded = executor.submit(() -> loader.reload("2023/average"));
+            assertThrows(TimeoutException.class, () -> reloaded.get(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+
+            assertNotSame(first.get(), reloaded.get());
+            assertSame(reloaded.get(), loader.getDataset("2023/average"));
+            verify(fileStreamProvider, times(2)).getFileInputStream(anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testReload_ConcurrentReloadsReadFileOnce() throws Exception {
+        byte[] tiff;
+        try (InputStream in = averageResourceUrl.openStream()) {
+            tiff = in.readAllBytes();
+        }
+        CountDownLatch reading = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fileStreamProvider.getFileInputStream(anyString())).thenAnswer(invocation -> {
+            reading.countDown();
+            if (reading.getCount() == 0) {
+                release.await();
+            }
+            return new ByteArrayInputStream(tiff);
+        });
+        loader.getDataset("2023/average");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ViirsDataset> first = executor.submit(() -> loader.reload("2023/average"));
+            reading.await();
+            Future<ViirsDataset> second = executor.submit(() -> loader.reload("2023/average"));
+            assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+
+            assertSame(first.get(), second.get());
+            verify(fileStreamProvider, times(2)).getFileInputStream(anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testGetDataset_MapsPersistedRasterOnRestart() throws Exception {
+        String url = averageResourceUrl.toURI().toString();
+        ViirsDataset decoded = cachingLoader(url).getDataset("2023/average");
+        assertTrue(Files.isRegularFile(cacheDir.resolve("2023_average.raster")));
+
+        ViirsDataset cached = cachingLoader(url).getDataset("2023/average");
+
+        assertEquals(0, cached.raster().sizeInBytes());
+        assertEquals(decoded.geoReference(), cached.geoReference());
+        for (int y = 0; y < 830; y += 13) {
+            for (int x = 0; x < 1355; x += 13) {
+                assertEquals(decoded.raster().getValue(x, y), cached.raster().getValue(x, y));
+            }
+        }
+    }
+
+    @Test
+    void testGetDataset_DoesNotPersistMappedRaster() throws Exception {
+        String url = averageResourceUrl.toURI().toString();
+        ViirsTiffFileLoader mappedLoader = new ViirsTiffFileLoader(
+                registry(url), true, 4, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(0, 20_000_000L, ""), new RasterFileCache(cacheDir.toString()), 2048, 128, 64, 0
+        );
+
+        ViirsDataset dataset = mappedLoader.getDataset("2023/average");
+
+        assertEquals(0, ((TiffBlockRasterStore) dataset.raster()).decodedBlocks());
+        assertFalse(Files.exists(cacheDir.resolve("2023_average.raster")));
+    }
+
+    @Test
+    void testGetDataset_DecodesAgainWhenSourceChanged() throws Exception {
+        Path copy = Files.createTempFile("average", ".tiff");
+        try {
+            Files.copy(Path.of(averageResourceUrl.toURI()), copy, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(copy, FileTime.fromMillis(1_000_000L));
+            cachingLoader(copy.toUri().toString()).getDataset("2023/average");
+
+            Files.setLastModifiedTime(copy, FileTime.fromMillis(2_000_000L));
+            ViirsDataset redecoded = cachingLoader(copy.toUri().toString()).getDataset("2023/average");
+            ViirsDataset remapped = cachingLoader(copy.toUri().toString()).getDataset("2023/average");
+
+            assertTrue(redecoded.raster().sizeInBytes() > 0);
+            assertEquals(0, remapped.raster().sizeInBytes());
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Test
+    void testModifiedKeys_ReportsChangedLocalFiles() throws Exception {
+        Path copy = Files.createTempFile("average", ".tiff");
+        try {
+            Files.copy(Path.of(averageResourceUrl.toURI()), copy, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(copy, FileTime.fromMillis(1_000_000L));
+            ViirsTiffFileLoader fileLoader = new ViirsTiffFileLoader(
+                    registry(copy.toUri().toString()), false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(0, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+            );
+            fileLoader.getDataset("2023/average");
+            assertEquals(Set.of(), fileLoader.modifiedKeys());
+
+            Files.setLastModifiedTime(copy, FileTime.fromMillis(2_000_000L));
+            assertEquals(Set.of("2023/average"), fileLoader.modifiedKeys());
+
+            fileLoader.reload("2023/average");
+            assertEquals(Set.of(), fileLoader.modifiedKeys());
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Test
+    void testModifiedKeys_ReportsMappedFileOnlyOnceReplacedByMove() throws Exception {
+        Path copy = Files.createTempFile("average", ".tiff");
+        Path replacement = Files.createTempFile("average", ".tiff");
+        try {
+            Files.copy(Path.of(averageResourceUrl.toURI()), copy, StandardCopyOption.REPLACE_EXISTING);
+            ViirsTiffFileLoader mappedLoader = new ViirsTiffFileLoader(
+                    registry(copy.toUri().toString()), true, 4, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(0, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+            );
+            mappedLoader.getDataset("2023/average");
+
+            Files.setLastModifiedTime(copy, FileTime.fromMillis(2_000_000L));
+            assertEquals(Set.of(), mappedLoader.modifiedKeys());
+
+            Files.copy(Path.of(averageResourceUrl.toURI()), replacement, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(replacement, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            assertEquals(Set.of("2023/average"), mappedLoader.modifiedKeys());
+        } finally {
+            Files.deleteIfExists(copy);
+            Files.deleteIfExists(replacement);
+        }
+    }
+
+    @Test
+    void testGetDataset_ConcurrentFirstCallsReadFileOnce() throws Exception {
+        byte[] tiff;
+        try (InputStream in = averageResourceUrl.openStream()) {
+            tiff = in.readAllBytes();
+        }
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(fileStreamProvider.getFileInputStream(anyString())).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await();
+            return new ByteArrayInputStream(tiff);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ViirsDataset> first = executor.submit(() -> loader.getDataset("2023/average"));
+            reading.await();
+            Future<ViirsDataset> second = executor.submit(() -> loader.getDataset("2023/average"));
+            release.countDown();
+
+            assertSame(first.get(), second.get());
+            verify(fileStreamProvider, times(1)).getFileInputStream(anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testGetDataset_AppliesMaskOfSameYear() throws Exception {
+        URL maskResourceUrl = getClass().getClassLoader().getResource("tiff/mock_mask.tiff");
+        DatasetRegistry registry = new DatasetRegistry(Map.of(
+                "2023/average", averageResourceUrl.toURI().toString(),
+                "2023/mask", maskResourceUrl.toURI().toString()), 2023);
+        ViirsTiffFileLoader maskedLoader = new ViirsTiffFileLoader(
+                registry, false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        ViirsDataset dataset = maskedLoader.getDataset("2023/average");
+
+        BufferedImage average = Imaging.getBufferedImage(averageResourceUrl.openStream());
+        BufferedImage mask = Imaging.getBufferedImage(maskResourceUrl.openStream());
+        long masked = 0;
+        for (int y = 0; y < mask.getHeight(); y += 5) {
+            for (int x = 0; x < mask.getWidth(); x += 5) {
+                boolean expectedMasked = ((mask.getRGB(x, y) >> 16) & 0xff) < 128;
+                assertEquals(expectedMasked, dataset.mask().get(x, y));
+                assertEquals(expectedMasked ? 0 : (average.getRGB(x, y) >> 16) & 0xff, dataset.raster().getValue(x, y));
+                masked += expectedMasked ? 1 : 0;
+            }
+        }
+        assertTrue(masked > 0);
+        assertEquals(244_392, dataset.mask().cardinality());
+        assertEquals(dataset.raster().getValue(700, 400), dataset.summedAreaTable().sum(700, 400, 701, 401));
+    }
+
+    @Test
+    void testGetDataset_MapsMaskInMappedModeKeepingOnlyItsBits() throws Exception {
+        URL maskResourceUrl = getClass().getClassLoader().getResource("tiff/mock_mask.tiff");
+        DatasetRegistry registry = new DatasetRegistry(Map.of(
+                "2023/average", averageResourceUrl.toURI().toString(),
+                "2023/mask", maskResourceUrl.toURI().toString()), 2023);
+        when(fileStreamProvider.getLocalFile(anyString()))
+                .thenAnswer(invocation -> Path.of(URI.create(invocation.getArgument(0))));
+        ViirsTiffFileLoader mappedLoader = new ViirsTiffFileLoader(
+                registry, true, 4, 20_000_000L, fileStreamProvider, new ViirsGeoReferenceExtractor(), new RasterPyramidCache(8, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        ViirsDataset dataset = mappedLoader.getDataset("2023/average");
+
+        assertEquals(244_392, dataset.mask().cardinality());
+        assertInstanceOf(MaskedRasterStore.class, dataset.raster());
+        assertTrue(dataset.raster().costlyReads());
+        for (int x = 0; x < dataset.mask().width(); x += 97) {
+            if (dataset.mask().get(x, 400)) {
+                assertEquals(0, dataset.raster().getValue(x, 400));
+            }
+        }
+        verify(fileStreamProvider, never()).getFileInputStream(anyString());
+    }
+
+    @Test
+    void testStop_ShutsDownDedicatedDecodePoolOnly() throws Exception {
+        ViirsTiffFileLoader dedicated = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(0, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 2
+        );
+        ViirsTiffFileLoader common = new ViirsTiffFileLoader(
+                registry(averageResourceUrl.toURI().toString()), false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(0, 20_000_000L, ""), new RasterFileCache(""), 2048, 128, 64, 0
+        );
+
+        dedicated.stop();
+        common.stop();
+
+        assertThrows(RejectedExecutionException.class, () -> dedicated.getOrLoadReference("2023/average"));
+        common.getOrLoadReference("2023/average");
+        assertEquals(1, common.decodeStats().decodes());
+    }
+
+    private ViirsTiffFileLoader cachingLoader(String url) {
+        return new ViirsTiffFileLoader(
+                registry(url), false, 256, 20_000_000L, new TiffFileStreamProvider(), new ViirsGeoReferenceExtractor(), new RasterPyramidCache(0, 20_000_000L, ""), new RasterFileCache(cacheDir.toString()), 2048, 128, 64, 0
+        );
+    }
+
+    private static DatasetRegistry registry(String url) {
+        return new DatasetRegistry(Map.of("2023/average", url), 2023);
+    }
 }
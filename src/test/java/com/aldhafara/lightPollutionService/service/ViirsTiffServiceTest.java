@@ -1,16 +1,31 @@
 package com.aldhafara.lightPollutionService.service;
 
 import com.aldhafara.lightPollutionService.exception.CoordinatesOutOfRasterBoundsException;
+import com.aldhafara.lightPollutionService.exception.DatasetNotFoundException;
+import com.aldhafara.lightPollutionService.exception.InvalidSamplingParameterException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.SamplingMode;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
 import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.BlockExtremes;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.MaskedRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.raster.SummedAreaTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -19,13 +34,18 @@ import static org.mockito.Mockito.when;
 public class ViirsTiffServiceTest {
     private RasterImageProvider mockImageProvider;
     private GeoReferenceProvider mockReferenceProvider;
+    private PixelValueCache pixelValueCache;
     private ViirsTiffService service;
 
     @BeforeEach
     void setUp() {
         mockImageProvider = mock(RasterImageProvider.class);
         mockReferenceProvider = mock(GeoReferenceProvider.class);
-        service = new ViirsTiffService(mockImageProvider, mockReferenceProvider);
+        pixelValueCache = new PixelValueCache(1000, 3600);
+        DatasetRegistry datasetRegistry = new DatasetRegistry(
+                Map.of("2023/average", "classpath:/a.tiff", "2022/average", "classpath:/b.tiff"), 2023);
+        service = new ViirsTiffService(mockImageProvider, mockReferenceProvider, pixelValueCache, datasetRegistry,
+                new DatasetAvailability(mockImageProvider, datasetRegistry, false, false, 5));
     }
 
     @Test
@@ -38,15 +58,15 @@ public class ViirsTiffServiceTest {
         when(ref.width()).thenReturn(50);
         when(ref.height()).thenReturn(50);
 
-        BufferedImage image = mock(BufferedImage.class);
+        byte[] samples = new byte[50 * 50];
         int expectedRed = 123;
-        int mockPixel = (255 << 24) | (expectedRed << 16);
-        when(image.getRGB(15, 10)).thenReturn(mockPixel);
+        samples[10 * 50 + 15] = (byte) expectedRed;
+        RasterStore raster = new ByteRasterStore(50, 50, samples);
 
         double lat = 10;
         double lon = 25;
 
-        double red = service.getValueForLocation(lat, lon, image, ref);
+        double red = service.getValueForLocation(lat, lon, raster, ref);
         assertEquals(expectedRed, red);
     }
 
@@ -60,14 +80,14 @@ public class ViirsTiffServiceTest {
         when(ref.width()).thenReturn(5);
         when(ref.height()).thenReturn(5);
 
-        BufferedImage image = mock(BufferedImage.class);
+        RasterStore raster = new ByteRasterStore(5, 5, new byte[25]);
 
         double lat = 7.0;
         double lon = 6.0;
 
         CoordinatesOutOfRasterBoundsException ex = assertThrows(
                 CoordinatesOutOfRasterBoundsException.class,
-                () -> service.getValueForLocation(lat, lon, image, ref)
+                () -> service.getValueForLocation(lat, lon, raster, ref)
         );
         assertTrue(ex.getMessage().contains("outside the TIFF raster range"));
     }
@@ -82,17 +102,33 @@ public class ViirsTiffServiceTest {
         when(ref.width()).thenReturn(1);
         when(ref.height()).thenReturn(1);
 
-        BufferedImage image = mock(BufferedImage.class);
-        when(image.getRGB(anyInt(), anyInt())).thenReturn(42 << 16);
+        RasterStore raster = new ByteRasterStore(1, 1, new byte[]{42});
 
-        when(mockImageProvider.getImage("2023/average")).thenReturn(image);
-        when(mockReferenceProvider.getReference("2023/average")).thenReturn(ref);
+        when(mockImageProvider.getDataset("2023/average")).thenReturn(new ViirsDataset(ref, raster, null, null, null, null, false));
 
         double red = service.getValueForLocation(0.0, 0.0);
 
         assertEquals(42, red);
-        verify(mockImageProvider, times(1)).getImage("2023/average");
-        verify(mockReferenceProvider, times(1)).getReference("2023/average");
+        verify(mockImageProvider, times(1)).getDataset("2023/average");
+    }
+
+    @Test
+    void getValueForLocation_readsRequestedYear() {
+        ViirsGeoReference ref = new ViirsGeoReference(0.0, 1.0, 1.0, 1.0, 1, 1);
+        when(mockImageProvider.getDataset("2023/average"))
+                .thenReturn(new ViirsDataset(ref, new ByteRasterStore(1, 1, new byte[]{42}), null, null, null, null, false));
+        when(mockImageProvider.getDataset("2022/average"))
+                .thenReturn(new ViirsDataset(ref, new ByteRasterStore(1, 1, new byte[]{7}), null, null, null, null, false));
+
+        assertEquals(7.0, service.getValueForLocation(0.5, 0.5, 2022));
+        assertEquals(42.0, service.getValueForLocation(0.5, 0.5, (Integer) null));
+        assertArrayEquals(new double[]{7.0}, service.getValuesForLocations(List.of(new Coordinates(0.5, 0.5)), 2022));
+    }
+
+    @Test
+    void getValueForLocation_throwsDatasetNotFound_forUnconfiguredYear() {
+        assertThrows(DatasetNotFoundException.class, () -> service.getValueForLocation(0.5, 0.5, 1999));
+        verify(mockImageProvider, times(0)).getDataset("1999/average");
     }
 
     @Test
@@ -101,4 +137,166 @@ public class ViirsTiffServiceTest {
         verify(mockImageProvider, times(1)).getOrLoadReference("2023/average");
         verify(mockReferenceProvider, times(1)).getOrLoadReference("2023/average");
     }
+
+    @Test
+    void getValuesForLocations_returnsNaNOnlyForPointsOutsideRaster() {
+        ViirsGeoReference ref = new ViirsGeoReference(10.0, 20.0, 1.0, 1.0, 3, 2);
+        RasterStore raster = new ByteRasterStore(3, 2, new byte[]{1, 2, 3, 4, 5, 6});
+
+        double[] values = service.getValuesForLocations(List.of(
+                new Coordinates(20.0, 10.0),
+                new Coordinates(19.0, 12.5),
+                new Coordinates(25.0, 10.0),
+                new Coordinates(19.0, 13.0)
+        ), raster, ref);
+
+        assertArrayEquals(new double[]{1, 6, Double.NaN, Double.NaN}, values);
+    }
+
+    @Test
+    void getValueForLocation_bilinearInterpolatesBetweenPixelCentres() {
+        ViirsGeoReference ref = new ViirsGeoReference(0.0, 2.0, 1.0, 1.0, 2, 2);
+        RasterStore raster = new ByteRasterStore(2, 2, new byte[]{0, 100, 50, (byte) 150});
+
+        assertEquals(75.0, service.getValueForLocation(1.0, 1.0, SamplingMode.BILINEAR, 0, raster, null, ref), 1e-9);
+        assertEquals(50.0, service.getValueForLocation(1.5, 1.0, SamplingMode.BILINEAR, 0, raster, null, ref), 1e-9);
+        assertEquals(0.0, service.getValueForLocation(1.9, 0.1, SamplingMode.BILINEAR, 0, raster, null, ref), 1e-9);
+    }
+
+    @Test
+    void getValueForLocation_discMeanUsesSummedAreaTableAndMatchesDirectScan() {
+        double scale = 0.01;
+        ViirsGeoReference ref = new ViirsGeoReference(20.0, 50.0, scale, scale, 200, 200);
+        byte[] samples = new byte[200 * 200];
+        new Random(3).nextBytes(samples);
+        RasterStore raster = new ByteRasterStore(200, 200, samples);
+        SummedAreaTable table = SummedAreaTable.build(raster);
+
+        double withTable = service.getValueForLocation(49.0, 21.0, SamplingMode.MEAN, 20, raster, table, ref);
+        double withoutTable = service.getValueForLocation(49.0, 21.0, SamplingMode.MEAN, 20, raster, null, ref);
+
+        double sum = 0;
+        int count = 0;
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 200; x++) {
+                double lat = 50.0 - (y + 0.5) * scale;
+                double lon = 20.0 + (x + 0.5) * scale;
+                double dyKm = (lat - 49.0) * RasterSampling.KM_PER_DEGREE;
+                double dxKm = (lon - 21.0) * RasterSampling.KM_PER_DEGREE * Math.cos(Math.toRadians(lat));
+                if (dxKm * dxKm + dyKm * dyKm <= 20 * 20) {
+                    sum += raster.getValue(x, y);
+                    count++;
+                }
+            }
+        }
+        assertEquals(sum / count, withTable, 1e-9);
+        assertEquals(withTable, withoutTable, 1e-9);
+    }
+
+    @Test
+    void getValueForLocation_discMaxFindsBrightestPixelInRadiusOnly() {
+        ViirsGeoReference ref = new ViirsGeoReference(0.0, 1.0, 0.01, 0.01, 100, 100);
+        byte[] samples = new byte[100 * 100];
+        samples[50 * 100 + 53] = 90;
+        samples[50 * 100 + 90] = (byte) 200;
+        RasterStore raster = new ByteRasterStore(100, 100, samples);
+
+        assertEquals(90.0, service.getValueForLocation(0.495, 0.505, SamplingMode.MAX, 5, raster, null, ref));
+        assertEquals(200.0, service.getValueForLocation(0.495, 0.505, SamplingMode.MAX, 50, raster, null, ref));
+    }
+
+    @Test
+    void getValueForLocation_areaModeFallsBackToNearestForSubPixelRadius() {
+        ViirsGeoReference ref = new ViirsGeoReference(0.0, 1.0, 0.5, 0.5, 2, 2);
+        RasterStore raster = new ByteRasterStore(2, 2, new byte[]{1, 2, 3, 4});
+
+        assertEquals(1.0, service.getValueForLocation(0.99, 0.01, SamplingMode.MEAN, 0.1, raster, null, ref));
+    }
+
+    @Test
+    void getValueForLocation_areaModeStillRejectsPointsOutsideRaster() {
+        ViirsGeoReference ref = new ViirsGeoReference(0.0, 1.0, 0.5, 0.5, 2, 2);
+        RasterStore raster = new ByteRasterStore(2, 2, new byte[]{1, 2, 3, 4});
+
+        assertThrows(CoordinatesOutOfRasterBoundsException.class,
+                () -> service.getValueForLocation(2.0, 0.5, SamplingMode.MEAN, 500, raster, null, ref));
+    }
+
+    @Test
+    void getValueForLocationAtLevel_readsMeanOrMaxCell() {
+        ViirsGeoReference ref = new ViirsGeoReference(0.0, 4.0, 1.0, 1.0, 4, 4);
+        RasterStore raster = new ByteRasterStore(4, 4, new byte[]{
+                0, 4, 0, 0,
+                8, 0, 0, 0,
+                0, 0, 1, 1,
+                0, 0, 1, 1});
+        RasterPyramid pyramid = RasterPyramid.build(raster, 2, Long.MAX_VALUE);
+
+        assertEquals(3.0, service.getValueForLocationAtLevel(3.5, 0.5, SamplingMode.NEAREST, 1, pyramid, ref));
+        assertEquals(8.0, service.getValueForLocationAtLevel(3.5, 0.5, SamplingMode.MAX, 1, pyramid, ref));
+        assertEquals(1.0, service.getValueForLocationAtLevel(0.5, 3.5, SamplingMode.MEAN, 1, pyramid, ref));
+        assertEquals(1.0, service.getValueForLocationAtLevel(0.5, 3.5, SamplingMode.MEAN, 2, pyramid, ref));
+    }
+
+    @Test
+    void getValueForLocationAtLevel_rejectsMissingLevelAndPointsOutsideRaster() {
+        ViirsGeoReference ref = new ViirsGeoReference(0.0, 3.0, 1.0, 1.0, 3, 3);
+        RasterPyramid pyramid = RasterPyramid.build(new ByteRasterStore(3, 3, new byte[9]), 1, Long.MAX_VALUE);
+
+        assertThrows(InvalidSamplingParameterException.class,
+                () -> service.getValueForLocationAtLevel(1.5, 1.5, SamplingMode.MEAN, 2, pyramid, ref));
+        assertThrows(CoordinatesOutOfRasterBoundsException.class,
+                () -> service.getValueForLocationAtLevel(1.5, 3.5, SamplingMode.MEAN, 1, pyramid, ref));
+    }
+
+    @Test
+    void getValueForLocation_noArgs_servesNearbyCoordinatesOfSamePixelFromCache() {
+        RasterStore raster = mock(RasterStore.class);
+        when(raster.costlyReads()).thenReturn(true);
+        when(raster.getValue(2, 1)).thenReturn(17.0);
+        when(mockImageProvider.getDataset("2023/average"))
+                .thenReturn(new ViirsDataset(new ViirsGeoReference(0.0, 10.0, 1.0, 1.0, 5, 5), raster, null, null, null, null, false));
+
+        assertEquals(17.0, service.getValueForLocation(8.9, 2.1));
+        assertEquals(17.0, service.getValueForLocation(8.1, 2.9));
+        assertArrayEquals(new double[]{17.0}, service.getValuesForLocations(List.of(new Coordinates(8.5, 2.5))));
+
+        verify(raster, times(1)).getValue(2, 1);
+        assertEquals(2, pixelValueCache.stats().hits());
+        assertEquals(1, pixelValueCache.stats().misses());
+    }
+
+    @Test
+    void isMasked_readsMaskBitOfContainingPixel() {
+        RasterStore raster = new ByteRasterStore(2, 1, new byte[]{9, 9});
+        BitMask mask = BitMask.below(new ByteRasterStore(2, 1, new byte[]{0, (byte) 255}), 128, new int[]{0, 1}, new int[]{0});
+        when(mockImageProvider.getDataset("2023/average")).thenReturn(new ViirsDataset(
+                new ViirsGeoReference(0.0, 1.0, 1.0, 1.0, 2, 1), new MaskedRasterStore(raster, mask), null, null, mask, null, false));
+
+        assertTrue(service.isMasked(0.5, 0.5, (Integer) null));
+        assertFalse(service.isMasked(0.5, 1.5, (Integer) null));
+        assertFalse(service.isMasked(5, 5, (Integer) null));
+        assertEquals(0.0, service.getValueForLocation(0.5, 0.5, (Integer) null));
+        assertArrayEquals(new boolean[]{true, false, false},
+                service.isMasked(List.of(new Coordinates(0.5, 0.5), new Coordinates(0.5, 1.5), new Coordinates(5, 5)), (Integer) null));
+    }
+
+    @Test
+    void findDarkest_requiresPointInsideRaster() {
+        RasterStore raster = new ByteRasterStore(2, 1, new byte[]{9, 3});
+        when(mockImageProvider.getDataset("2023/average")).thenReturn(new ViirsDataset(
+                new ViirsGeoReference(0.0, 1.0, 1.0, 1.0, 2, 1), raster, null, null, null,
+                BlockExtremes.build(raster, null, 1), false));
+
+        assertEquals(3.0, service.findDarkest(0.5, 0.5, 200, 1, null).get(0).relativeBrightness());
+        assertThrows(CoordinatesOutOfRasterBoundsException.class, () -> service.findDarkest(5, 5, 200, 1, null));
+    }
+
+    @Test
+    void isMasked_isFalseWithoutMask() {
+        when(mockImageProvider.getDataset("2023/average")).thenReturn(new ViirsDataset(
+                new ViirsGeoReference(0.0, 1.0, 1.0, 1.0, 1, 1), new ByteRasterStore(1, 1, new byte[1]), null, null, null, null, false));
+
+        assertFalse(service.isMasked(0.5, 0.5, (Integer) null));
+    }
 }
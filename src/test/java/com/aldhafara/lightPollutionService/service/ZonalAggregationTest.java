@@ -0,0 +1,151 @@
+package com.aldhafara.lightPollutionService.service;
+
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.model.Coordinates;
+import com.aldhafara.lightPollutionService.model.HistogramBin;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.model.ZonalStatistics;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.BlockExtremes;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.MaskedRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZonalAggregationTest {
+
+    private static final ViirsGeoReference GEO = new ViirsGeoReference(10.0, 50.0, 0.01, 0.01, 200, 150);
+    private static final List<Double> PERCENTILES = List.of(0.0, 10.0, 50.0, 99.5, 100.0);
+
+    @Test
+    void aggregate_matchesPointInPolygonOverPixelCentres() {
+        RasterStore raster = noise();
+        List<List<Coordinates>> rings = List.of(List.of(
+                new Coordinates(49.9313, 10.1237), new Coordinates(49.9521, 11.7109), new Coordinates(48.6137, 11.9533),
+                new Coordinates(49.1211, 11.0241), new Coordinates(48.5527, 10.3119), new Coordinates(49.9313, 10.1237)));
+
+        ZonalStatistics indexed = ZonalAggregation.aggregate(rings, PERCENTILES, 8, Long.MAX_VALUE, raster, null,
+                BlockExtremes.build(raster, null, 16), GEO);
+        ZonalStatistics scanned = ZonalAggregation.aggregate(rings, PERCENTILES, 8, Long.MAX_VALUE, raster, null,
+                null, GEO);
+
+        double[] expected = bruteForce(rings, raster);
+        Arrays.sort(expected);
+        assertEquals(expected.length, indexed.pixelCount());
+        assertEquals(Arrays.stream(expected).average().orElseThrow(), indexed.mean(), 1e-9);
+        assertEquals(expected[0], indexed.min());
+        assertEquals(expected[expected.length - 1], indexed.max());
+        assertEquals(expected[(int) Math.ceil(0.5 * expected.length) - 1], indexed.percentiles().get("p50"));
+        assertEquals(expected[(int) Math.ceil(0.995 * expected.length) - 1], indexed.percentiles().get("p99.5"));
+        assertEquals(expected[0], indexed.percentiles().get("p0"));
+        assertEquals(indexed, scanned);
+        assertEquals(8, indexed.histogram().size());
+        assertEquals(expected.length, indexed.histogram().stream().mapToLong(HistogramBin::count).sum());
+    }
+
+    @Test
+    void aggregate_leavesHolesOut() {
+        RasterStore raster = new ByteRasterStore(200, 150, filled(100));
+        List<List<Coordinates>> rings = List.of(
+                square(49.8, 10.2, 0.5),
+                square(49.6, 10.4, 0.1));
+
+        ZonalStatistics statistics = ZonalAggregation.aggregate(rings, PERCENTILES, 4, Long.MAX_VALUE, raster, null,
+                null, GEO);
+
+        assertEquals(50 * 50 - 10 * 10, statistics.pixelCount());
+        assertEquals(100.0, statistics.mean());
+        assertEquals(List.of(new HistogramBin(100, 100, 2400), new HistogramBin(100, 100, 0),
+                new HistogramBin(100, 100, 0), new HistogramBin(100, 100, 0)), statistics.histogram());
+    }
+
+    @Test
+    void aggregate_countsMaskedPixelsSeparately() {
+        byte[] maskSource = filled(255);
+        maskSource[40 * 200 + 40] = 0;
+        maskSource[41 * 200 + 41] = 0;
+        BitMask mask = BitMask.below(new ByteRasterStore(200, 150, maskSource), 128,
+                IntStream.range(0, 200).toArray(), IntStream.range(0, 150).toArray());
+        RasterStore raster = new MaskedRasterStore(new ByteRasterStore(200, 150, filled(60)), mask);
+
+        ZonalStatistics statistics = ZonalAggregation.aggregate(List.of(square(49.7, 10.3, 0.2)), PERCENTILES, 4,
+                Long.MAX_VALUE, raster, mask, BlockExtremes.build(raster, mask, 16), GEO);
+
+        assertEquals(400 - 2, statistics.pixelCount());
+        assertEquals(2, statistics.maskedPixelCount());
+        assertEquals(60.0, statistics.min());
+    }
+
+    @Test
+    void aggregate_returnsNoStatisticsOutsideTheRaster() {
+        ZonalStatistics statistics = ZonalAggregation.aggregate(List.of(square(20, 20, 1)), PERCENTILES, 4,
+                Long.MAX_VALUE, noise(), null, null, GEO);
+
+        assertEquals(0, statistics.pixelCount());
+        assertNull(statistics.mean());
+        assertTrue(statistics.percentiles().isEmpty());
+    }
+
+    @Test
+    void aggregate_rejectsPolygonsSpanningTooManyPixels() {
+        assertThrows(InvalidGeometryException.class, () -> ZonalAggregation.aggregate(
+                List.of(square(49.9, 10.1, 1.0)), PERCENTILES, 4, 1000, noise(), null, null, GEO));
+    }
+
+    private static List<Coordinates> square(double north, double west, double size) {
+        return List.of(new Coordinates(north, west), new Coordinates(north, west + size),
+                new Coordinates(north - size, west + size), new Coordinates(north - size, west));
+    }
+
+    /**
+     * Values of the pixels whose centres pass an even-odd ray test against the rings.
+     */
+    private static double[] bruteForce(List<List<Coordinates>> rings, RasterStore raster) {
+        List<Double> values = new ArrayList<>();
+        for (int y = 0; y < GEO.height(); y++) {
+            double lat = GEO.originY() - (y + 0.5) * GEO.pixelScaleY();
+            for (int x = 0; x < GEO.width(); x++) {
+                double lon = GEO.originX() + (x + 0.5) * GEO.pixelScaleX();
+                boolean inside = false;
+                for (List<Coordinates> ring : rings) {
+                    for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+                        Coordinates a = ring.get(i);
+                        Coordinates b = ring.get(j);
+                        if ((a.latitude() > lat) != (b.latitude() > lat)
+                                && lon < a.longitude() + (lat - a.latitude()) * (b.longitude() - a.longitude())
+                                / (b.latitude() - a.latitude())) {
+                            inside = !inside;
+                        }
+                    }
+                }
+                if (inside) {
+                    values.add(raster.getValue(x, y));
+                }
+            }
+        }
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static RasterStore noise() {
+        byte[] samples = new byte[200 * 150];
+        new Random(5).nextBytes(samples);
+        return new ByteRasterStore(200, 150, samples);
+    }
+
+    private static byte[] filled(int value) {
+        byte[] samples = new byte[200 * 150];
+        Arrays.fill(samples, (byte) value);
+        return samples;
+    }
+}
@@ -0,0 +1,92 @@
+package com.aldhafara.lightPollutionService.stream;
+
+import com.aldhafara.lightPollutionService.exception.InvalidGeometryException;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.service.PointLookup;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedPointsTest {
+
+    @Test
+    void lookUp_writesFloatValuesFollowedByMaskBits() {
+        float[] points = new float[18];
+        for (int i = 0; i < 9; i++) {
+            points[2 * i] = 49.95f - i * 0.1f;
+            points[2 * i + 1] = 10.05f + i * 0.1f;
+        }
+        points[2 * 8] = 60f;
+
+        byte[] response = PackedPoints.lookUp(pack(points), lookup());
+
+        assertEquals(9 * 4 + 2, response.length);
+        ByteBuffer values = ByteBuffer.wrap(response).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(11f * i, values.getFloat(i * 4));
+        }
+        assertTrue(Float.isNaN(values.getFloat(8 * 4)));
+        assertEquals(1 << 7, response[36] & 0xff);
+        assertEquals(0, response[37]);
+    }
+
+    @Test
+    void lookUp_returnsNaNForNonFiniteCoordinates() {
+        float[] points = {Float.NaN, 10.05f, 49.25f, Float.NaN, Float.POSITIVE_INFINITY, 10.75f, 49.25f, 10.75f};
+
+        byte[] response = PackedPoints.lookUp(pack(points), lookup());
+
+        ByteBuffer values = ByteBuffer.wrap(response).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(Float.isNaN(values.getFloat(i * 4)), "point " + i);
+        }
+        assertEquals(77f, values.getFloat(3 * 4));
+        assertEquals(1 << 3, response[16] & 0xff);
+    }
+
+    @Test
+    void count_rejectsPartialPairs() {
+        assertEquals(2, PackedPoints.count(new byte[16]));
+        assertThrows(InvalidGeometryException.class, () -> PackedPoints.count(new byte[12]));
+    }
+
+    @Test
+    void encode_writesOnePoint() {
+        assertArrayEquals(new byte[] {0, 0, (byte) 0x80, 0x3f, 1}, PackedPoints.encode(1.0, true));
+    }
+
+    private static byte[] pack(float[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : values) {
+            buffer.putFloat(value);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Pixel {@code (x, y)} holds {@code 10 * y + x}; pixel (7, 7) is masked.
+     */
+    private static PointLookup lookup() {
+        byte[] samples = new byte[100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (byte) i;
+        }
+        byte[] maskSource = new byte[100];
+        Arrays.fill(maskSource, (byte) 255);
+        maskSource[77] = 0;
+        BitMask mask = BitMask.below(new ByteRasterStore(10, 10, maskSource), 128,
+                IntStream.range(0, 10).toArray(), IntStream.range(0, 10).toArray());
+        return new PointLookup(new ByteRasterStore(10, 10, samples), mask,
+                new ViirsGeoReference(10.0, 50.0, 0.1, 0.1, 10, 10));
+    }
+}
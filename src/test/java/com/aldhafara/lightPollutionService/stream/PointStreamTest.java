@@ -0,0 +1,162 @@
+package com.aldhafara.lightPollutionService.stream;
+
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.BitMask;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.service.PointLookup;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PointStreamTest {
+
+    private static final ViirsGeoReference GEO = new ViirsGeoReference(10.0, 50.0, 0.1, 0.1, 10, 10);
+
+    @Test
+    void process_writesOneNdjsonResultPerLine() throws IOException {
+        String input = """
+                {"latitude": 49.95, "longitude": 10.05}
+
+                {"longitude": 10.95, "latitude": 49.05, "name": "camp"}\r
+                {"latitude": 60, "longitude": 10.05}
+                not json
+                {"latitude": 95, "longitude": 10.05}
+                """;
+        StringWriter out = new StringWriter();
+
+        long points = PointStream.process(new StringReader(input), out, PointStream.Format.NDJSON, lookup(), 100,
+                () -> true);
+
+        assertEquals(5, points);
+        String[] lines = out.toString().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("{\"latitude\":49.95,\"longitude\":10.05,\"relativeBrightness\":0.0,\"masked\":false}", lines[0]);
+        assertEquals("{\"latitude\":49.05,\"longitude\":10.95,\"relativeBrightness\":99.0,\"masked\":true}", lines[1]);
+        assertEquals("{\"latitude\":60.0,\"longitude\":10.05,\"error\":"
+                + "\"Coordinates lat:60.00000000, lon:10.05000000 are outside the TIFF raster range\"}", lines[2]);
+        assertTrue(lines[3].startsWith("{\"line\":5,\"error\":\"Malformed line: "), lines[3]);
+        assertTrue(lines[4].endsWith("are not valid\"}"), lines[4]);
+    }
+
+    @Test
+    void process_readsAndWritesCsv() throws IOException {
+        String input = "latitude,longitude\n49.95, 10.15\n49.05,10.95,extra\n49.5\n";
+        StringWriter out = new StringWriter();
+
+        PointStream.process(new StringReader(input), out, PointStream.Format.CSV, lookup(), 100, () -> true);
+
+        assertEquals("""
+                latitude,longitude,relativeBrightness,masked,error
+                49.95,10.15,1.0,false,
+                49.05,10.95,99.0,true,
+                ,,,,"line 4: Malformed line: expected latitude,longitude"
+                """, out.toString());
+    }
+
+    @Test
+    void process_stopsAfterMaximumPoints() throws IOException {
+        StringWriter out = new StringWriter();
+
+        long points = PointStream.process(new StringReader("49.95,10.05\n49.95,10.05\n49.95,10.05\n"), out,
+                PointStream.Format.CSV, lookup(), 2, () -> true);
+
+        assertEquals(2, points);
+        assertTrue(out.toString().endsWith(",,,,\"line 3: Stream exceeds the maximum of 2 points\"\n"));
+    }
+
+    @Test
+    void process_stopsWhenAllowanceRunsOut() throws IOException {
+        StringWriter out = new StringWriter();
+        int[] allowed = {2};
+
+        long points = PointStream.process(new StringReader("49.95,10.05\n49.95,10.05\n49.95,10.05\n"), out,
+                PointStream.Format.CSV, lookup(), 100, () -> allowed[0]-- > 0);
+
+        assertEquals(2, points);
+        assertTrue(out.toString().endsWith(",,,,\"line 3: Rate limit exceeded after 2 points\"\n"), out.toString());
+    }
+
+    @Test
+    void process_dropsOverlongLinesWithoutBufferingThem() throws IOException {
+        String input = "{\"latitude\": 49.95, \"longitude\": 10.05, \"pad\": \"" + "x".repeat(10_000) + "\"}\n"
+                + "{\"latitude\": 49.95, \"longitude\": 10.05}\n";
+        StringWriter out = new StringWriter();
+
+        PointStream.process(new StringReader(input), out, PointStream.Format.NDJSON, lookup(), 100, () -> true);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("{\"line\":1,\"error\":\"Line longer than 4096 characters\"}", lines[0]);
+        assertTrue(lines[1].contains("\"relativeBrightness\":0.0"));
+    }
+
+    @Test
+    void process_writesResultsBeforeTheInputEnds() throws IOException {
+        int[] written = {0};
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                for (int i = offset; i < offset + length; i++) {
+                    if (chars[i] == '\n') {
+                        written[0]++;
+                    }
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        int lines = 5000;
+        int[] linesWrittenWhenInputEnded = {-1};
+        Reader in = new Reader() {
+            private final StringReader delegate = new StringReader("49.95,10.05\n".repeat(lines));
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = delegate.read(buffer, offset, Math.min(length, 64));
+                if (read < 0) {
+                    linesWrittenWhenInputEnded[0] = written[0];
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        PointStream.process(in, out, PointStream.Format.CSV, lookup(), lines, () -> true);
+
+        assertEquals(lines + 1, written[0]);
+        assertTrue(linesWrittenWhenInputEnded[0] >= lines - 1024, "only " + linesWrittenWhenInputEnded[0] + " lines out");
+    }
+
+    /**
+     * Pixel {@code (x, y)} holds {@code 10 * y + x}; the bottom-right pixel is masked.
+     */
+    private static PointLookup lookup() {
+        byte[] samples = new byte[100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (byte) i;
+        }
+        byte[] maskSource = new byte[100];
+        Arrays.fill(maskSource, (byte) 255);
+        maskSource[99] = 0;
+        BitMask mask = BitMask.below(new ByteRasterStore(10, 10, maskSource), 128,
+                IntStream.range(0, 10).toArray(), IntStream.range(0, 10).toArray());
+        return new PointLookup(new ByteRasterStore(10, 10, samples), mask, GEO);
+    }
+}
@@ -0,0 +1,32 @@
+package com.aldhafara.lightPollutionService.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ColorRampTest {
+
+    private final ColorRamp ramp = ColorRamp.parse("0:#00000000, 10:#ff0000, 20:#0000ff80");
+
+    @Test
+    void argb_clampsOutsideStopsAndInterpolatesBetweenThem() {
+        assertEquals(0x00000000, ramp.argb(-5));
+        assertEquals(0xffff0000, ramp.argb(10));
+        assertEquals(0x800000ff, ramp.argb(25));
+        assertEquals(0x80800000, ramp.argb(5));
+        assertEquals(0xc0800080, ramp.argb(15));
+    }
+
+    @Test
+    void argb_isTransparentForNaN() {
+        assertEquals(0, ColorRamp.parse("0:#ffffff,1:#000000").argb(Double.NaN));
+    }
+
+    @Test
+    void parse_rejectsMalformedStops() {
+        assertThrows(IllegalArgumentException.class, () -> ColorRamp.parse("0:#fff"));
+        assertThrows(IllegalArgumentException.class, () -> ColorRamp.parse("0-#ffffff"));
+        assertThrows(IllegalArgumentException.class, () -> ColorRamp.parse("5:#ffffff,5:#000000"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.aldhafara.lightPollutionService.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TileCacheTest {
+
+    @Test
+    void put_evictsLeastRecentlyUsedTilesBeyondByteBudget() {
+        TileCache cache = new TileCache(30);
+        cache.put(1, tile(10));
+        cache.put(2, tile(10));
+        cache.put(3, tile(10));
+        cache.get(1);
+
+        cache.put(4, tile(10));
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(3, cache.size());
+        assertEquals(30, cache.bytes());
+    }
+
+    @Test
+    void put_skipsTilesLargerThanBudget() {
+        TileCache cache = new TileCache(30);
+        cache.put(1, tile(10));
+
+        cache.put(2, tile(31));
+
+        assertNull(cache.get(2));
+        assertEquals(10, cache.bytes());
+    }
+
+    private static RenderedTile tile(int size) {
+        return new RenderedTile(new byte[size], "\"" + size + "\"");
+    }
+}
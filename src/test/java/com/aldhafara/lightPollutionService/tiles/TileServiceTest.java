@@ -0,0 +1,123 @@
+package com.aldhafara.lightPollutionService.tiles;
+
+import com.aldhafara.lightPollutionService.exception.TileNotFoundException;
+import com.aldhafara.lightPollutionService.model.ViirsDataset;
+import com.aldhafara.lightPollutionService.model.ViirsGeoReference;
+import com.aldhafara.lightPollutionService.raster.ByteRasterStore;
+import com.aldhafara.lightPollutionService.raster.RasterPyramid;
+import com.aldhafara.lightPollutionService.raster.RasterStore;
+import com.aldhafara.lightPollutionService.service.DatasetAvailability;
+import com.aldhafara.lightPollutionService.service.DatasetRegistry;
+import com.aldhafara.lightPollutionService.service.DatasetReloadedEvent;
+import com.aldhafara.lightPollutionService.service.RasterImageProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TileServiceTest {
+
+    private final RasterImageProvider imageProvider = mock(RasterImageProvider.class);
+    private TileService tileService;
+
+    @BeforeEach
+    void setUp() {
+        // Eastern hemisphere, north of the equator: bright (200) up to 91 degrees east, dark (0) beyond.
+        byte[] samples = new byte[180 * 90];
+        for (int y = 0; y < 90; y++) {
+            for (int x = 0; x <= 90; x++) {
+                samples[y * 180 + x] = (byte) 200;
+            }
+        }
+        RasterStore raster = new ByteRasterStore(180, 90, samples);
+        when(imageProvider.getDataset("2023/average")).thenReturn(new ViirsDataset(
+                new ViirsGeoReference(0.0, 90.0, 1.0, 1.0, 180, 90), raster, null, RasterPyramid.build(raster, 4, Long.MAX_VALUE), null, null, false));
+        DatasetRegistry datasetRegistry = new DatasetRegistry(Map.of("2023/average", "classpath:/a.tiff"), 2023);
+        tileService = new TileService(new DatasetAvailability(imageProvider, datasetRegistry, false, false, 5), datasetRegistry, "0:#00000000,200:#ffffff", 6, 1 << 20);
+    }
+
+    @Test
+    void getTile_rendersRasterAndLeavesOutsideTransparent() throws Exception {
+        RenderedTile tile = tileService.getTile(1, 1, 0);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(tile.png()));
+        assertEquals(256, image.getWidth());
+        assertEquals(0xffffffff, image.getRGB(10, 200));
+        assertEquals(0x00000000, image.getRGB(200, 200) & 0xff000000);
+
+        BufferedImage western = ImageIO.read(new ByteArrayInputStream(tileService.getTile(1, 0, 0).png()));
+        assertEquals(0, western.getRGB(128, 200) >>> 24);
+    }
+
+    @Test
+    void getTile_usesCoarsePyramidLevelWhenZoomedOut() {
+        // Quarter-degree pixels, bright up to 90.75 degrees east. At zoom 0 a tile pixel spans ~1.4 degrees, so
+        // the tile samples level 2 (one degree), whose cell at 90 degrees mixes three bright and one dark column.
+        byte[] samples = new byte[720 * 360];
+        for (int y = 0; y < 360; y++) {
+            for (int x = 0; x <= 362; x++) {
+                samples[y * 720 + x] = (byte) 200;
+            }
+        }
+        RasterStore raster = new ByteRasterStore(720, 360, samples);
+        when(imageProvider.getDataset("2023/average")).thenReturn(new ViirsDataset(
+                new ViirsGeoReference(0.0, 90.0, 0.25, 0.25, 720, 360), raster, null, RasterPyramid.build(raster, 4, Long.MAX_VALUE), null, null, false));
+
+        int[] argb = tileService.render(0, 0, 0);
+
+        assertEquals(ColorRamp.parse("0:#00000000,200:#ffffff").argb(150), argb[100 * 256 + 192]);
+    }
+
+    @Test
+    void getTile_servesRepeatedRequestsFromCache() {
+        RenderedTile first = tileService.getTile(2, 2, 1);
+        RenderedTile second = tileService.getTile(2, 2, 1);
+
+        assertSame(first, second);
+        assertEquals(1, tileService.cachedTiles());
+        verify(imageProvider, times(1)).getDataset("2023/average");
+    }
+
+    @Test
+    void getTile_rendersAgainAfterDefaultDatasetReload() {
+        tileService.getTile(2, 2, 1);
+
+        tileService.onDatasetReloaded(new DatasetReloadedEvent("2022/average", null));
+        assertEquals(1, tileService.cachedTiles());
+        tileService.onDatasetReloaded(new DatasetReloadedEvent("2023/average", null));
+        assertEquals(0, tileService.cachedTiles());
+
+        tileService.getTile(2, 2, 1);
+        verify(imageProvider, times(2)).getDataset("2023/average");
+    }
+
+    @Test
+    void getTile_rejectsCoordinatesOutsideGrid() {
+        assertThrows(TileNotFoundException.class, () -> tileService.getTile(7, 0, 0));
+        assertThrows(TileNotFoundException.class, () -> tileService.getTile(2, 4, 0));
+        assertThrows(TileNotFoundException.class, () -> tileService.getTile(2, 0, -1));
+    }
+
+    @Test
+    void constructor_rejectsZoomBeyondCacheKeyRange() {
+        DatasetRegistry datasetRegistry = new DatasetRegistry(Map.of("2023/average", "classpath:/a.tiff"), 2023);
+        DatasetAvailability availability = new DatasetAvailability(imageProvider, datasetRegistry, false, false, 5);
+
+        new TileService(availability, datasetRegistry, "0:#00000000", 28, 1 << 20);
+        assertThrows(IllegalArgumentException.class,
+                () -> new TileService(availability, datasetRegistry, "0:#00000000", 29, 1 << 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TileService(availability, datasetRegistry, "0:#00000000", -1, 1 << 20));
+    }
+}